@@ -0,0 +1,79 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fills a widget manager and gets random widgets by UUID from it. Once filled, it also
+ * prints the heap the manager retains per widget and how long a full collection takes
+ * with it live.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HeapFootprintBenchmark {
+
+    @Param({"1000000"})
+    int nWidgets;
+
+    @Param({"blocking", "sequenced", "snapshot", "zorder-tree", "columnar"})
+    String manager;
+
+    private WidgetManager widgetManager;
+    private UUID[] uuids;
+
+    @Setup(Level.Trial)
+    public void fill() throws WidgetManagerException {
+        uuids = new UUID[nWidgets];
+        final long before = usedHeap();
+        widgetManager = WidgetManagers.create(manager);
+        for (int i = 0; i < nWidgets; i++)
+            uuids[i] = widgetManager.create(new NewWidgetSpec(i % 1000, i / 1000, 10, 10)).getUUID();
+
+        final long start = System.nanoTime();
+        // Leaves the UUIDs kept by the benchmark itself out
+        final long after = usedHeap() - (long) nWidgets * (16 + 16 + 4);
+        final long fullGcMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / 2;
+        System.out.printf("%n%s: %d bytes retained per widget, %d ms per full collection%n",
+            manager, (after - before) / nWidgets, fullGcMillis);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        WidgetManagers.close(widgetManager);
+    }
+
+    @Benchmark
+    public Widget get() throws WidgetManagerException {
+        return widgetManager.get(uuids[ThreadLocalRandom.current().nextInt(nWidgets)]);
+    }
+
+    // Runs two full collections so that only live objects are counted
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,155 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.marcos_sb.widgets.WidgetsApplication;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Serves the REST API on the servlet stack (Tomcat) or on the reactive one (Netty), in
+ * the same JVM as the clients, and has every thread create, get and update widgets over
+ * HTTP with keep-alive connections. Both stacks share the hardware, the engine and the
+ * benchmark options, so their throughput and latency percentiles can be compared.
+ * {@code -p stack=virtual-threads} serves the servlet stack on virtual threads, which
+ * requires JDK 21 or later.
+ * </p>
+ * {@code slowClients} connections send the headers of an update but never its body, so
+ * each one holds a request thread for as long as the benchmark runs, as slow clients do.
+ * Beyond {@code server.tomcat.threads.max} (200) of them, the servlet stack has no
+ * threads left and requests time out after {@code timeoutMillis}, failing the benchmark.
+ * </p>
+ * Run with {@code -t} well above the number of cores to queue up requests, and with
+ * {@code -jvmArgsAppend -Dwidgets.manager.type=...} to pick the engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(32)
+public class HttpStackBenchmark {
+
+    private static final int timeoutMillis = 30_000;
+    private static final Pattern uuidPattern = Pattern.compile("\"uuid\"\\s*:\\s*\"([^\"]+)\"");
+
+    @Param({"servlet", "reactive"})
+    String stack;
+
+    @Param({"0", "150"})
+    int slowClients;
+
+    private ConfigurableApplicationContext context;
+    private int port;
+    private String baseUrl;
+    private List<Socket> slowConnections;
+
+    @State(Scope.Thread)
+    public static class Client {
+        String uuid;
+        long x;
+
+        @Setup(Level.Trial)
+        public void createWidget(HttpStackBenchmark benchmark) throws IOException {
+            uuid = benchmark.create();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        final SpringApplicationBuilder application = new SpringApplicationBuilder(WidgetsApplication.class)
+            // Slow clients mustn't time out before the benchmark is over
+            .properties("server.port=0", "logging.level.root=warn", "server.tomcat.connection-timeout=1h");
+        if (!stack.equals("servlet")) application.profiles(stack);
+        context = application.run();
+        port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        baseUrl = "http://localhost:" + port;
+
+        slowConnections = new ArrayList<>(slowClients);
+        for (int i = 0; i < slowClients; i++) {
+            final Socket socket = new Socket("localhost", port);
+            socket.getOutputStream().write(("PUT /widgets/update HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: 1024\r\n\r\n{").getBytes(StandardCharsets.US_ASCII));
+            slowConnections.add(socket);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        for (Socket socket : slowConnections)
+            socket.close();
+        context.close();
+    }
+
+    @Benchmark
+    public String create() throws IOException {
+        final Matcher uuid = uuidPattern.matcher(
+            request("POST", "/widgets/new", "{\"x\":0,\"y\":0,\"width\":1,\"height\":1}"));
+        if (!uuid.find()) throw new IOException("No widget in the response");
+        return uuid.group(1);
+    }
+
+    @Benchmark
+    public String get(Client client) throws IOException {
+        return request("GET", "/widgets/" + client.uuid, null);
+    }
+
+    @Benchmark
+    public String update(Client client) throws IOException {
+        return request("PUT", "/widgets/update",
+            "{\"uuid\":\"" + client.uuid + "\",\"x\":" + client.x++ + "}");
+    }
+
+    private String request(String method, String path, String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK)
+            throw new IOException(String.format("%s %s responded %d",
+                method, path, connection.getResponseCode()));
+        // Read to the end, so the connection is kept alive for the next request
+        try (InputStream in = connection.getInputStream()) {
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) != -1; )
+                response.write(buffer, 0, n);
+            return new String(response.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.UUIDGenerator;
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.WidgetManagerMetrics;
+import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.util.TimeOrderedUUIDGenerator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creates {@link Widget}s on top of the stack of a {@link BlockingWidgetManager} from 32
+ * threads, by default, with every {@link UUIDGenerator}, and generates {@link UUID}s
+ * alone. The manager starts empty every iteration, so its size depends on the
+ * throughput; {@code -t} changes the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(32)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UUIDGeneratorBenchmark {
+
+    @Param({"random", "time-ordered"})
+    String generator;
+
+    private UUIDGenerator uuidGenerator;
+    private WidgetManager widgetManager;
+
+    @Setup(Level.Trial)
+    public void createGenerator() {
+        switch (generator) {
+            case "random": uuidGenerator = UUIDGenerator.RANDOM; break;
+            case "time-ordered": uuidGenerator = new TimeOrderedUUIDGenerator(); break;
+            default: throw new IllegalArgumentException(String.format("Unknown UUID generator '%s'", generator));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createManager() {
+        widgetManager =
+            new BlockingWidgetManager(WidgetChangeListener.NONE, WidgetManagerMetrics.NONE, uuidGenerator);
+    }
+
+    @Benchmark
+    public Widget create() throws WidgetManagerException {
+        return widgetManager.create(new NewWidgetSpec(0, 0, 10, 10));
+    }
+
+    @Benchmark
+    public UUID next() {
+        return uuidGenerator.next();
+    }
+}
@@ -0,0 +1,94 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.WidgetOps;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The steady-state update of a {@link Widget}, one stage at a time: decoding the JSON
+ * body of the request into a {@link WidgetMutationSpec}, applying it to a
+ * {@link Widget}, and updating it in a {@link WidgetManager} of {@code nWidgets}, alone
+ * and right after decoding it. Meant to be run with {@code -prof gc}, whose
+ * {@code gc.alloc.rate.norm} is the number of bytes each stage allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class UpdateAllocationBenchmark {
+
+    @Param({"blocking", "columnar"})
+    String manager;
+
+    @Param({"1000"})
+    int nWidgets;
+
+    private ObjectMapper objectMapper;
+    private WidgetManager widgetManager;
+    private Widget widget;
+    private WidgetMutationSpec widgetMutationSpec;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException, WidgetManagerException {
+        // As configured by Spring Boot
+        objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        widgetManager = WidgetManagers.create(manager);
+        for (int i = 0; i < nWidgets; i++)
+            widget = widgetManager.create(new NewWidgetSpec(i, i, 10D, 10D, null));
+        // A move, which leaves the z-order alone
+        body = String.format("{\"uuid\":\"%s\",\"x\":123456,\"y\":-654321,\"width\":12.5}", widget.getUUID())
+            .getBytes(StandardCharsets.UTF_8);
+        widgetMutationSpec = objectMapper.readValue(body, WidgetMutationSpec.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        WidgetManagers.close(widgetManager);
+    }
+
+    @Benchmark
+    public WidgetMutationSpec decode() throws IOException {
+        return objectMapper.readValue(body, WidgetMutationSpec.class);
+    }
+
+    @Benchmark
+    public Widget apply() {
+        return WidgetOps.update(widget, widgetMutationSpec);
+    }
+
+    @Benchmark
+    public Widget update() throws WidgetManagerException {
+        return widgetManager.update(widgetMutationSpec);
+    }
+
+    @Benchmark
+    public Widget decodeAndUpdate() throws IOException, WidgetManagerException {
+        return widgetManager.update(objectMapper.readValue(body, WidgetMutationSpec.class));
+    }
+}
@@ -0,0 +1,182 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every {@link WidgetManager} operation against a manager filled with {@code nWidgets}
+ * widgets, z-indexes 10 apart, reporting both throughput and latency percentiles.
+ * </p>
+ * Every thread also owns a few widgets of its own, which are the only ones it mutates,
+ * so threads never fail on each other's widgets and the size stays constant: creating
+ * replaces the oldest widget of the thread, and updates move a widget to a fresh z-index
+ * above or below the whole stack, or to new coordinates at the same z-index. Reads target
+ * any widget.
+ * </p>
+ * Run with {@code -t} for contention, e.g. {@code -t 8}. The {@code readWrite} group mixes
+ * gets and updates, 3 to 1 by default; {@code -tg} changes the mix, e.g. {@code -tg 1,1}
+ * or {@code -tg 15,1}. {@code -prof gc} adds the allocation rate. Filling 10M widgets
+ * takes several GB of heap for some engines; {@code -jvmArgsAppend -Xmx...} raises it.
+ *
+ * @see ZOrderInsertBenchmark for inserting at the bottom of a dense stack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class WidgetManagerBenchmark {
+
+    private static final int zIndexStep = 10;
+
+    @Param({"blocking", "sequenced", "snapshot", "zorder-tree", "columnar"})
+    String manager;
+
+    @Param({"1000", "100000", "10000000"})
+    int nWidgets;
+
+    private WidgetManager widgetManager;
+    private UUID[] uuids;
+    // Source of fresh z-indexes above and below the filled stack
+    private final AtomicInteger nMoves = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final int nOwnWidgets = 64;
+
+        final UUID[] uuids = new UUID[nOwnWidgets];
+        int next;
+
+        @Setup(Level.Trial)
+        public void createOwnWidgets(WidgetManagerBenchmark benchmark) throws WidgetManagerException {
+            for (int i = 0; i < nOwnWidgets; i++)
+                uuids[i] = benchmark.widgetManager.create(newWidgetSpec()).getUUID();
+        }
+
+        UUID nextUUID() {
+            next = (next + 1) % nOwnWidgets;
+            return uuids[next];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void fill() throws WidgetManagerException {
+        widgetManager = WidgetManagers.create(manager);
+        uuids = new UUID[nWidgets];
+        for (int i = 0; i < nWidgets; i++)
+            uuids[i] = widgetManager.create(newWidgetSpec()).getUUID();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        WidgetManagers.close(widgetManager);
+    }
+
+    @Benchmark
+    public Widget createOnTop(Writer writer) throws WidgetManagerException {
+        return replace(writer, newWidgetSpec());
+    }
+
+    // Lands on a taken z-index, so the widget there gets shifted up into the gap above it
+    @Benchmark
+    public Widget createAtZIndex(Writer writer) throws WidgetManagerException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int zIndex = (random.nextInt(nWidgets) + 1) * zIndexStep;
+        return replace(writer, new NewWidgetSpec(random.nextInt(1000), random.nextInt(1000), 10, 10, zIndex));
+    }
+
+    @Benchmark
+    public Widget updateRaisingZIndex(Writer writer) throws WidgetManagerException {
+        final int zIndex = (nWidgets + 1) * zIndexStep + nMoves.incrementAndGet();
+        return widgetManager.update(new WidgetMutationSpec(writer.nextUUID(), null, null, null, null, zIndex));
+    }
+
+    @Benchmark
+    public Widget updateLoweringZIndex(Writer writer) throws WidgetManagerException {
+        final int zIndex = -nMoves.incrementAndGet();
+        return widgetManager.update(new WidgetMutationSpec(writer.nextUUID(), null, null, null, null, zIndex));
+    }
+
+    // Leaves the z-index as is
+    @Benchmark
+    public Widget updateMoving(Writer writer) throws WidgetManagerException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return widgetManager.update(new WidgetMutationSpec(writer.nextUUID(),
+            (long) random.nextInt(1000), (long) random.nextInt(1000), null, null, null));
+    }
+
+    @Benchmark
+    public Widget get() throws WidgetManagerException {
+        return widgetManager.get(randomUUID());
+    }
+
+    @Benchmark
+    public List<Widget> getAllByZIndex() throws WidgetManagerException {
+        return widgetManager.getAllByZIndex();
+    }
+
+    @Benchmark
+    public Widget remove(Writer writer) throws WidgetManagerException {
+        final Widget removed = widgetManager.remove(writer.uuids[writer.next]);
+        writer.uuids[writer.next] = widgetManager.create(newWidgetSpec()).getUUID();
+        writer.next = (writer.next + 1) % writer.uuids.length;
+        return removed;
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Widget readWriteGet() throws WidgetManagerException {
+        return widgetManager.get(randomUUID());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Widget readWriteUpdate(Writer writer) throws WidgetManagerException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return widgetManager.update(new WidgetMutationSpec(writer.nextUUID(),
+            (long) random.nextInt(1000), (long) random.nextInt(1000), null, null, null));
+    }
+
+    // Creates a widget, and removes the oldest one of the thread to keep the size constant
+    private Widget replace(Writer writer, NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        final Widget created = widgetManager.create(newWidgetSpec);
+        widgetManager.remove(writer.nextUUID());
+        writer.uuids[writer.next] = created.getUUID();
+        return created;
+    }
+
+    private UUID randomUUID() {
+        return uuids[ThreadLocalRandom.current().nextInt(nWidgets)];
+    }
+
+    private static NewWidgetSpec newWidgetSpec() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new NewWidgetSpec(random.nextInt(1000), random.nextInt(1000), 10, 10);
+    }
+}
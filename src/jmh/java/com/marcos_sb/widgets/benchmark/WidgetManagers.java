@@ -0,0 +1,38 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.model.impl.ColumnarWidgetManager;
+import com.marcos_sb.widgets.model.impl.SequencedWidgetManager;
+import com.marcos_sb.widgets.model.impl.SnapshotWidgetManager;
+import com.marcos_sb.widgets.model.impl.ZOrderTreeWidgetManager;
+
+/**
+ * Creates the {@link WidgetManager} engines by the names {@code widgets.manager.type}
+ * takes, so every benchmark can be run against any of them through a {@code manager}
+ * parameter, e.g. {@code -p manager=blocking,columnar}. A new engine only needs to be
+ * added here.
+ */
+final class WidgetManagers {
+
+    private WidgetManagers() {}
+
+    static WidgetManager create(String type) {
+        switch (type) {
+            case "blocking": return new BlockingWidgetManager();
+            case "sequenced": return new SequencedWidgetManager();
+            case "snapshot": return new SnapshotWidgetManager();
+            case "zorder-tree": return new ZOrderTreeWidgetManager();
+            case "columnar": return new ColumnarWidgetManager();
+            default: throw new IllegalArgumentException(String.format("Unknown widget manager '%s'", type));
+        }
+    }
+
+    /**
+     * Releases the resources held by {@code widgetManager}, if any.
+     */
+    static void close(WidgetManager widgetManager) throws Exception {
+        if (widgetManager instanceof AutoCloseable)
+            ((AutoCloseable) widgetManager).close();
+    }
+}
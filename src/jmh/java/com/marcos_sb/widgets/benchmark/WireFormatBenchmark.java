@@ -0,0 +1,123 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes and decodes the resources exchanged with the REST API in every format it
+ * negotiates: a {@link Widget}, a list of {@code nWidgets} of them, and the
+ * {@link NewWidgetSpec} and {@link WidgetMutationSpec} of requests. The size of every
+ * payload is printed once encoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"1000"})
+    int nWidgets;
+
+    private ObjectMapper objectMapper;
+    private Widget widget;
+    private List<Widget> widgets;
+    private NewWidgetSpec newWidgetSpec;
+    private WidgetMutationSpec widgetMutationSpec;
+    private byte[] encodedWidget;
+    private byte[] encodedWidgets;
+    private byte[] encodedNewWidgetSpec;
+    private byte[] encodedWidgetMutationSpec;
+
+    @Setup(Level.Trial)
+    public void encode() throws IOException {
+        final JsonFactory factory;
+        switch (format) {
+            case "json": factory = new JsonFactory(); break;
+            case "smile": factory = new SmileFactory(); break;
+            case "cbor": factory = new CBORFactory(); break;
+            default: throw new IllegalArgumentException(String.format("Unknown format '%s'", format));
+        }
+        // As configured by Spring Boot
+        objectMapper = new ObjectMapper(factory)
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        widgets = new ArrayList<>(nWidgets);
+        for (int i = 0; i < nWidgets; i++)
+            widgets.add(new Widget(UUID.randomUUID(), random.nextLong(-10_000, 10_000),
+                random.nextLong(-10_000, 10_000), random.nextInt(1, 500), random.nextInt(1, 500), i));
+        widget = widgets.get(0);
+        newWidgetSpec = new NewWidgetSpec(widget.getX(), widget.getY(),
+            widget.getWidth(), widget.getHeight(), widget.getZIndex());
+        widgetMutationSpec = new WidgetMutationSpec(widget.getUUID(), widget.getX() + 1, null, null, null, null,
+            widget.getVersion());
+
+        encodedWidget = objectMapper.writeValueAsBytes(widget);
+        encodedWidgets = objectMapper.writeValueAsBytes(widgets);
+        encodedNewWidgetSpec = objectMapper.writeValueAsBytes(newWidgetSpec);
+        encodedWidgetMutationSpec = objectMapper.writeValueAsBytes(widgetMutationSpec);
+        System.out.printf("%n%s: %d bytes per widget, %d per list of %d, %d per new widget, %d per mutation%n",
+            format, encodedWidget.length, encodedWidgets.length, nWidgets,
+            encodedNewWidgetSpec.length, encodedWidgetMutationSpec.length);
+    }
+
+    @Benchmark
+    public byte[] encodeWidget() throws IOException {
+        return objectMapper.writeValueAsBytes(widget);
+    }
+
+    @Benchmark
+    public Widget decodeWidget() throws IOException {
+        return objectMapper.readValue(encodedWidget, Widget.class);
+    }
+
+    @Benchmark
+    public byte[] encodeWidgetList() throws IOException {
+        return objectMapper.writeValueAsBytes(widgets);
+    }
+
+    @Benchmark
+    public Widget[] decodeWidgetList() throws IOException {
+        return objectMapper.readValue(encodedWidgets, Widget[].class);
+    }
+
+    @Benchmark
+    public NewWidgetSpec decodeNewWidgetSpec() throws IOException {
+        return objectMapper.readValue(encodedNewWidgetSpec, NewWidgetSpec.class);
+    }
+
+    @Benchmark
+    public WidgetMutationSpec decodeWidgetMutationSpec() throws IOException {
+        return objectMapper.readValue(encodedWidgetMutationSpec, WidgetMutationSpec.class);
+    }
+}
@@ -0,0 +1,83 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.impl.DurableWidgetManager;
+import com.marcos_sb.widgets.persistence.DurabilityMode;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Updates the geometry of a widget per thread through a {@link DurableWidgetManager},
+ * so every operation appends one log record and waits for it to be durable.
+ * Run with {@code -t} to see how group commit scales with the number of writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(8)
+public class WriteAheadLogBenchmark {
+
+    @Param({"sync", "group", "periodic"})
+    String durability;
+
+    private Path directory;
+    private DurableWidgetManager widgetManager;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        UUID uuid;
+        long x;
+
+        @Setup(Level.Trial)
+        public void createWidget(WriteAheadLogBenchmark benchmark) throws WidgetManagerException {
+            uuid = benchmark.widgetManager.create(new NewWidgetSpec(0, 0, 1, 1)).getUUID();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void openLog() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        widgetManager = DurableWidgetManager.open(directory,
+            DurabilityMode.valueOf(durability.toUpperCase(Locale.ROOT)), 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        widgetManager.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Widget update(Writer writer) throws WidgetManagerException {
+        return widgetManager.update(
+            new WidgetMutationSpec(writer.uuid, ++writer.x, null, null, null, null));
+    }
+}
@@ -0,0 +1,65 @@
+package com.marcos_sb.widgets.benchmark;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserts a widget at the bottom of a dense stack, i.e. with z-indexes
+ * 0, 1, 2... all taken, so the whole stack must be shifted up, and then
+ * removes it again to keep the stack size constant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ZOrderInsertBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int stackSize;
+
+    @Param({"blocking", "sequenced", "snapshot", "zorder-tree", "columnar"})
+    String manager;
+
+    private WidgetManager widgetManager;
+    private int bottomZIndex;
+
+    @Setup(Level.Trial)
+    public void fillStack() throws WidgetManagerException {
+        widgetManager = WidgetManagers.create(manager);
+        for (int z = 0; z < stackSize; z++)
+            widgetManager.create(new NewWidgetSpec(z, z, 1, 1, z));
+        bottomZIndex = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        WidgetManagers.close(widgetManager);
+    }
+
+    @Benchmark
+    public Widget insertAtBottomOfDenseStack() throws WidgetManagerException {
+        final Widget widget = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, bottomZIndex));
+        widgetManager.remove(widget.getUUID());
+        // The stack has moved up by one
+        bottomZIndex++;
+        return widget;
+    }
+}
@@ -0,0 +1,207 @@
+package com.marcos_sb.widgets.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the encoding of responses read from a {@link WidgetManager}, JSON unless
+ * another {@link ObjectMapper} is given, so they're served as a byte copy for as long as
+ * the version of the manager doesn't change. Every encoding of a response is cached
+ * on its own.
+ * </p>
+ * Every response is cached along with the version of the manager read before building
+ * it, and is only served while the manager is still at that version; otherwise it's
+ * rebuilt on the next read. The least recently used responses are evicted once their
+ * total size exceeds {@code maxBytes}, or their number {@code maxEntries}. A
+ * {@code maxBytes} of 0 disables caching.
+ * </p>
+ * Every entry counts {@link #entryOverhead} bytes on top of its encoding, for its key,
+ * view and map node, so that many small responses, e.g. empty pages over arbitrary
+ * z-index ranges, can't hold far more memory than {@code maxBytes}.
+ * </p>
+ * Entries are guarded by a {@link ReentrantLock} rather than a monitor, so virtual
+ * threads contending for it unmount instead of pinning their carrier.
+ */
+public class ResponseCache {
+
+    /**
+     * Bytes counted for every entry besides its encoding.
+     */
+    static final int entryOverhead = 256;
+    static final int defaultMaxEntries = 4096;
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final ReentrantLock lock;
+
+    // Guarded by 'lock'. In access order, least recently used first.
+    private final LinkedHashMap<Key, Entry> entries;
+    private long bytes;
+
+    public ResponseCache(ObjectMapper objectMapper, long maxBytes) {
+        this(objectMapper, maxBytes, defaultMaxEntries);
+    }
+
+    public ResponseCache(ObjectMapper objectMapper, long maxBytes, int maxEntries) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException(
+                String.format("The maximum number of entries must be positive (actual: %d)", maxEntries));
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.lock = new ReentrantLock();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the JSON encoding of the response {@code view} of {@code widgetManager},
+     * which {@code response} builds if it's not cached for the current version.
+     *
+     * @param widgetManager Manager the response is read from.
+     * @param view Identifies the response among those read from the same manager.
+     */
+    public byte[] get(WidgetManager widgetManager, String view, Response response)
+        throws WidgetManagerException, IOException {
+        return get(widgetManager, view, objectMapper, response);
+    }
+
+    /**
+     * Returns the encoding by {@code encoder} of the response {@code view} of
+     * {@code widgetManager}, which {@code response} builds if it's not cached for the
+     * current version.
+     *
+     * @param encoder Encodes the response, e.g. as JSON or in a binary format.
+     */
+    public byte[] get(WidgetManager widgetManager, String view, ObjectMapper encoder, Response response)
+        throws WidgetManagerException, IOException {
+        final Key key = new Key(widgetManager, view, encoder);
+        final long version = widgetManager.getVersion();
+        try {
+            lock.lock();
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                hits.increment();
+                return entry.encoded;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        final byte[] encoded = encoder.writeValueAsBytes(response.build());
+        if (encoded.length + entryOverhead <= maxBytes) put(key, new Entry(version, encoded));
+        return encoded;
+    }
+
+    private void put(Key key, Entry entry) {
+        try {
+            lock.lock();
+            final Entry previous = entries.get(key);
+            // Some other thread may have cached a more recent version meanwhile
+            if (previous != null && previous.version > entry.version) return;
+            if (previous != null) bytes -= previous.size();
+            entries.put(key, entry);
+            bytes += entry.size();
+
+            final Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+            while (bytes > maxBytes || entries.size() > maxEntries) {
+                bytes -= leastRecentlyUsed.next().size();
+                leastRecentlyUsed.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The total size of the responses cached, in bytes, overhead of every entry
+     * included.
+     */
+    public long getBytes() {
+        try {
+            lock.lock();
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        try {
+            lock.lock();
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Builds the object to encode as the response.
+     */
+    @FunctionalInterface
+    public interface Response {
+        Object build() throws WidgetManagerException;
+    }
+
+    private static final class Key {
+        private final WidgetManager widgetManager;
+        private final String view;
+        private final ObjectMapper encoder;
+
+        private Key(WidgetManager widgetManager, String view, ObjectMapper encoder) {
+            this.widgetManager = widgetManager;
+            this.view = view;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(widgetManager) + view.hashCode())
+                + System.identityHashCode(encoder);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (!(obj instanceof Key)) return false;
+            final Key that = (Key) obj;
+            return this.widgetManager == that.widgetManager && Objects.equals(this.view, that.view)
+                && this.encoder == that.encoder;
+        }
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final byte[] encoded;
+
+        private Entry(long version, byte[] encoded) {
+            this.version = version;
+            this.encoded = encoded;
+        }
+
+        private long size() {
+            return encoded.length + entryOverhead;
+        }
+    }
+}
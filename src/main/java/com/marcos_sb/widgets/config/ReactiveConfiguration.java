@@ -0,0 +1,58 @@
+package com.marcos_sb.widgets.config;
+
+import com.marcos_sb.widgets.model.ReactiveWidgetManager;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.impl.ReactiveWidgetManagerAdapter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Sets up the reactive stack, served by Netty when the application runs with the
+ * {@code reactive} profile. Mutations are applied on a scheduler of their own, with up
+ * to {@code widgets.reactive.mutation-threads} threads waiting for their turn and
+ * {@code widgets.reactive.mutation-queue-size} mutations queued on top of those, so
+ * the event loop threads never park. Reads are run on a scheduler of their own likewise,
+ * unless {@code widgets.reactive.inline-reads} is set, which is only safe for managers
+ * whose reads never wait, i.e. the {@code snapshot} and {@code sequenced} ones.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveConfiguration {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler widgetMutationScheduler(
+        @Value("${widgets.reactive.mutation-threads:64}") int threads,
+        @Value("${widgets.reactive.mutation-queue-size:100000}") int queueSize
+    ) {
+        return Schedulers.newBoundedElastic(threads, queueSize, "widget-mutation");
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler widgetReadScheduler(
+        @Value("${widgets.reactive.inline-reads:false}") boolean inline,
+        @Value("${widgets.reactive.read-threads:64}") int threads,
+        @Value("${widgets.reactive.read-queue-size:100000}") int queueSize
+    ) {
+        return inline
+            ? Schedulers.immediate()
+            : Schedulers.newBoundedElastic(threads, queueSize, "widget-read");
+    }
+
+    @Bean
+    public ReactiveWidgetManager reactiveWidgetManager(
+        WidgetManager widgetManager, Scheduler widgetMutationScheduler, Scheduler widgetReadScheduler
+    ) {
+        return new ReactiveWidgetManagerAdapter(widgetManager, widgetMutationScheduler, widgetReadScheduler);
+    }
+}
@@ -0,0 +1,48 @@
+package com.marcos_sb.widgets.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcos_sb.widgets.cache.ResponseCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sets up the {@link ResponseCache} of the widget lists, sized through
+ * {@code widgets.cache.max-bytes} and {@code widgets.cache.max-entries}, and publishes its hits, misses and size as metrics.
+ */
+@Configuration
+public class ResponseCacheConfiguration {
+
+    @Bean
+    public ResponseCache responseCache(
+        ObjectMapper objectMapper,
+        @Value("${widgets.cache.max-bytes:67108864}") long maxBytes,
+        @Value("${widgets.cache.max-entries:4096}") int maxEntries
+    ) {
+        return new ResponseCache(objectMapper, maxBytes, maxEntries);
+    }
+
+    @Bean
+    public MeterBinder responseCacheMetrics(ResponseCache responseCache) {
+        return registry -> {
+            FunctionCounter.builder("widgets.cache.requests", responseCache, ResponseCache::getHits)
+                .tag("result", "hit")
+                .description("Responses served from the cache")
+                .register(registry);
+            FunctionCounter.builder("widgets.cache.requests", responseCache, ResponseCache::getMisses)
+                .tag("result", "miss")
+                .description("Responses built because they weren't cached for the current version")
+                .register(registry);
+            Gauge.builder("widgets.cache.size", responseCache, ResponseCache::getBytes)
+                .baseUnit("bytes")
+                .description("Total size of the responses cached")
+                .register(registry);
+            Gauge.builder("widgets.cache.entries", responseCache, ResponseCache::size)
+                .description("Number of responses cached")
+                .register(registry);
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package com.marcos_sb.widgets.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Runs every request served by Tomcat on a virtual thread of its own, instead of on
+ * the pool of {@code server.tomcat.threads.max} platform threads, when
+ * {@code widgets.web.virtual-threads} is enabled, e.g. through the
+ * {@code virtual-threads} profile. Connections are then only bounded by
+ * {@code server.tomcat.max-connections}.
+ * </p>
+ * Virtual threads require JDK 21 or later. The application still targets Java 8, so
+ * they're created through reflection, and startup fails on earlier JDKs.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(name = "widgets.web.virtual-threads", havingValue = "true")
+public class VirtualThreadConfiguration implements DisposableBean {
+
+    private final ExecutorService executor;
+
+    public VirtualThreadConfiguration() {
+        this.executor = newVirtualThreadPerTaskExecutor();
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(
+                String.format("Virtual threads require JDK 21 or later (actual: %s)",
+                    System.getProperty("java.version")), ex);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadExecutorCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
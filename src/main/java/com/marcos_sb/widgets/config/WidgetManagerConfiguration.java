@@ -0,0 +1,176 @@
+package com.marcos_sb.widgets.config;
+
+import com.marcos_sb.widgets.feed.WidgetChangeFeed;
+import com.marcos_sb.widgets.metrics.InstrumentedWidgetManager;
+import com.marcos_sb.widgets.metrics.MicrometerWidgetManagerMetrics;
+import com.marcos_sb.widgets.model.UUIDGenerator;
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.WidgetManagerMetrics;
+import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.model.impl.ColumnarWidgetManager;
+import com.marcos_sb.widgets.model.impl.DurableWidgetManager;
+import com.marcos_sb.widgets.model.impl.PartitionedWidgetManager;
+import com.marcos_sb.widgets.model.impl.SequencedWidgetManager;
+import com.marcos_sb.widgets.model.impl.SnapshotWidgetManager;
+import com.marcos_sb.widgets.model.impl.ZOrderTreeWidgetManager;
+import com.marcos_sb.widgets.persistence.DurabilityMode;
+import com.marcos_sb.widgets.util.TimeOrderedUUIDGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects the {@link WidgetManager} implementation backing the REST API through
+ * the {@code widgets.manager.type} property. Persistence, enabled through
+ * {@code widgets.persistence.enabled}, is only supported by the blocking one.
+ * </p>
+ * Canvases other than the default one are kept in memory by the implementation
+ * selected through {@code widgets.canvases.manager.type}. As they wouldn't survive a
+ * restart, they cannot be created while persistence is enabled, unless
+ * {@code widgets.canvases.allow-with-persistence} is set.
+ * </p>
+ * The changes applied by the blocking implementation to the default canvas are
+ * published to the {@link WidgetChangeFeed}, whose endpoints answer 501 Not Implemented
+ * with any other implementation.
+ * </p>
+ * The operations on the default canvas are timed, whatever the implementation, and the
+ * blocking one also reports its shifts and lock times, all through Micrometer.
+ * </p>
+ * The blocking implementation generates the UUIDs of new widgets as selected through
+ * {@code widgets.manager.uuid-generator}: {@code random} ones, the default, or
+ * {@code time-ordered} ones, which are cheaper to generate under contention.
+ */
+@Configuration
+public class WidgetManagerConfiguration {
+
+    private static Logger logger = LoggerFactory.getLogger(WidgetManagerConfiguration.class);
+
+    @Value("${widgets.persistence.enabled:false}")
+    private boolean persistent;
+
+    @Bean
+    public WidgetChangeFeed widgetChangeFeed(
+        @Value("${widgets.feed.history-size:4096}") int historySize,
+        @Value("${widgets.feed.subscriber-buffer-size:1024}") int subscriberBufferSize,
+        @Value("${widgets.feed.delivery-threads:16}") int deliveryThreads
+    ) {
+        return new WidgetChangeFeed(historySize, subscriberBufferSize, deliveryThreads);
+    }
+
+    @Bean
+    public WidgetManagerMetrics widgetManagerMetrics(MeterRegistry meterRegistry) {
+        return new MicrometerWidgetManagerMetrics(meterRegistry);
+    }
+
+    @Bean
+    public UUIDGenerator uuidGenerator(@Value("${widgets.manager.uuid-generator:random}") String type) {
+        switch (type) {
+            case "random": return UUIDGenerator.RANDOM;
+            case "time-ordered": return new TimeOrderedUUIDGenerator();
+            default: throw new IllegalArgumentException(String.format("Unknown UUID generator '%s'", type));
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.manager.type", havingValue = "blocking", matchIfMissing = true)
+    public WidgetManager blockingWidgetManager(
+        WidgetChangeFeed widgetChangeFeed,
+        WidgetManagerMetrics widgetManagerMetrics,
+        UUIDGenerator uuidGenerator,
+        MeterRegistry meterRegistry,
+        @Value("${widgets.persistence.directory:data}") String directory,
+        @Value("${widgets.persistence.durability:group}") String durability,
+        @Value("${widgets.persistence.fsync-interval-ms:10}") long fsyncIntervalMillis,
+        @Value("${widgets.persistence.snapshot-interval-ms:60000}") long snapshotIntervalMillis
+    ) throws IOException {
+        if (!persistent)
+            return new InstrumentedWidgetManager(
+                new BlockingWidgetManager(widgetChangeFeed, widgetManagerMetrics, uuidGenerator), meterRegistry);
+        return new InstrumentedWidgetManager(DurableWidgetManager.open(Paths.get(directory),
+            DurabilityMode.valueOf(durability.toUpperCase(Locale.ROOT)), fsyncIntervalMillis,
+            snapshotIntervalMillis, widgetChangeFeed, widgetManagerMetrics, uuidGenerator), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.manager.type", havingValue = "sequenced")
+    public WidgetManager sequencedWidgetManager(
+        MeterRegistry meterRegistry,
+        @Value("${widgets.manager.sequenced.buffer-size:1024}") int bufferSize
+    ) {
+        checkNotPersistent("sequenced");
+        return new InstrumentedWidgetManager(new SequencedWidgetManager(bufferSize), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.manager.type", havingValue = "snapshot")
+    public WidgetManager snapshotWidgetManager(MeterRegistry meterRegistry) {
+        checkNotPersistent("snapshot");
+        return new InstrumentedWidgetManager(new SnapshotWidgetManager(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.manager.type", havingValue = "zorder-tree")
+    public WidgetManager zOrderTreeWidgetManager(MeterRegistry meterRegistry) {
+        checkNotPersistent("zorder-tree");
+        return new InstrumentedWidgetManager(new ZOrderTreeWidgetManager(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.manager.type", havingValue = "columnar")
+    public WidgetManager columnarWidgetManager(
+        MeterRegistry meterRegistry,
+        @Value("${widgets.manager.columnar.initial-capacity:1024}") int initialCapacity
+    ) {
+        checkNotPersistent("columnar");
+        return new InstrumentedWidgetManager(new ColumnarWidgetManager(initialCapacity), meterRegistry);
+    }
+
+    @Bean
+    public PartitionedWidgetManager partitionedWidgetManager(
+        UUIDGenerator uuidGenerator,
+        @Value("${widgets.canvases.manager.type:blocking}") String type,
+        @Value("${widgets.canvases.max-count:10000}") int maxCanvases,
+        @Value("${widgets.canvases.allow-with-persistence:false}") boolean allowWithPersistence,
+        @Value("${widgets.manager.sequenced.buffer-size:1024}") int bufferSize
+    ) {
+        if (persistent && !allowWithPersistence)
+            return new PartitionedWidgetManager(() -> {
+                throw new IllegalArgumentException(
+                    "Canvases cannot be created while persistence is enabled, as they're kept in memory");
+            }, maxCanvases);
+        if (persistent)
+            logger.warn("Persistence is enabled, but the widgets of canvases other than the default one "
+                + "are kept in memory and will be lost on restart");
+
+        final Supplier<WidgetManager> canvasFactory;
+        switch (type) {
+            case "blocking":
+                canvasFactory = () ->
+                    new BlockingWidgetManager(WidgetChangeListener.NONE, WidgetManagerMetrics.NONE, uuidGenerator);
+                break;
+            case "sequenced": canvasFactory = () -> new SequencedWidgetManager(bufferSize); break;
+            case "snapshot": canvasFactory = SnapshotWidgetManager::new; break;
+            case "zorder-tree": canvasFactory = ZOrderTreeWidgetManager::new; break;
+            // Columns start small, as most canvases hold few widgets
+            case "columnar": canvasFactory = () -> new ColumnarWidgetManager(16); break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown widget manager '%s'", type));
+        }
+        return new PartitionedWidgetManager(canvasFactory, maxCanvases);
+    }
+
+    private void checkNotPersistent(String type) {
+        if (persistent)
+            throw new IllegalStateException(
+                String.format("Persistence is not supported by the '%s' widget manager", type));
+    }
+}
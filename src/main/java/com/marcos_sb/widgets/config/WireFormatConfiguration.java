@@ -0,0 +1,37 @@
+package com.marcos_sb.widgets.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Reads and writes the Jackson Smile and CBOR binary formats with the same settings as
+ * the JSON, so they carry the same properties. They replace the converters Spring MVC
+ * registers by default, whose mappers ignore the {@code spring.jackson} settings.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = Type.SERVLET)
+public class WireFormatConfiguration {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(
+        Jackson2ObjectMapperBuilder objectMapperBuilder
+    ) {
+        return new MappingJackson2SmileHttpMessageConverter(
+            objectMapperBuilder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+        Jackson2ObjectMapperBuilder objectMapperBuilder
+    ) {
+        return new MappingJackson2CborHttpMessageConverter(
+            objectMapperBuilder.factory(new CBORFactory()).build());
+    }
+}
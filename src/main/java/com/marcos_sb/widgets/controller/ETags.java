@@ -0,0 +1,53 @@
+package com.marcos_sb.widgets.controller;
+
+import com.marcos_sb.widgets.resource.Widget;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strong entity tags for the representations served by the controllers.
+ * </p>
+ * A {@link Widget} is tagged with a fingerprint of all of its properties, so its tag
+ * changes whenever it does, shifts included, whatever the implementation of
+ * {@link com.marcos_sb.widgets.model.WidgetManager}. Collections are tagged with the
+ * version of the manager they were read from, prefixed by a random epoch so tags
+ * handed out before a restart, when versions start over, are never matched.
+ */
+final class ETags {
+
+    private static final long nanosPerSecond = 1_000_000_000L;
+    private static final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private ETags() {}
+
+    static String of(Widget widget) {
+        long hash = mix(widget.getUUID().getMostSignificantBits());
+        hash = mix(hash ^ widget.getUUID().getLeastSignificantBits());
+        hash = mix(hash ^ widget.getX());
+        hash = mix(hash ^ widget.getY());
+        hash = mix(hash ^ Double.doubleToLongBits(widget.getWidth()));
+        hash = mix(hash ^ Double.doubleToLongBits(widget.getHeight()));
+        hash = mix(hash ^ widget.getZIndex());
+        hash = mix(hash ^ widget.getVersion());
+        hash = mix(hash ^ Math.floorDiv(widget.getLastModifiedEpochNanos(), nanosPerSecond));
+        hash = mix(hash ^ Math.floorMod(widget.getLastModifiedEpochNanos(), nanosPerSecond));
+        return quote(Long.toHexString(hash));
+    }
+
+    static String ofVersion(long version) {
+        return quote(epoch + "-" + Long.toHexString(version));
+    }
+
+    private static String quote(String tag) {
+        return '"' + tag + '"';
+    }
+
+    // Finalizer of MurmurHash3
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
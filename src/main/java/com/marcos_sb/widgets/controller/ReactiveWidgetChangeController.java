@@ -0,0 +1,103 @@
+package com.marcos_sb.widgets.controller;
+
+import com.marcos_sb.widgets.feed.WidgetChangeFeed;
+import com.marcos_sb.widgets.feed.WidgetChangeFeed.Subscription;
+import com.marcos_sb.widgets.resource.WidgetChange;
+import com.marcos_sb.widgets.resource.WidgetChanges;
+import java.time.Duration;
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Serves the same endpoints as {@link WidgetChangeController} on the reactive stack.
+ * Streams are fed by the {@link WidgetChangeFeed} as it delivers changes, and the
+ * subscription to the feed is cancelled as soon as the client goes away. Up to
+ * {@code widgets.feed.subscriber-buffer-size} changes are queued for a client that
+ * doesn't keep up, which is then disconnected so it can resume from the last one it got.
+ */
+@RestController
+@RequestMapping("/widgets/changes")
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveWidgetChangeController {
+
+    private final WidgetChangeFeed widgetChangeFeed;
+    private final boolean fed;
+    private final long streamTimeoutMillis;
+    private final int subscriberBufferSize;
+
+    public ReactiveWidgetChangeController(
+        WidgetChangeFeed widgetChangeFeed,
+        @Value("${widgets.manager.type:blocking}") String managerType,
+        @Value("${widgets.feed.stream-timeout-ms:1800000}") long streamTimeoutMillis,
+        @Value("${widgets.feed.subscriber-buffer-size:1024}") int subscriberBufferSize
+    ) {
+        this.widgetChangeFeed = widgetChangeFeed;
+        // Only the blocking manager reports its changes to the feed
+        this.fed = managerType.equals("blocking");
+        this.streamTimeoutMillis = streamTimeoutMillis;
+        this.subscriberBufferSize = subscriberBufferSize;
+    }
+
+    /**
+     * @see WidgetChangeController#getChanges(long)
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE, params = "since")
+    public ResponseEntity<WidgetChanges> getChanges(@RequestParam long since) {
+        checkFed();
+        return ResponseEntity.ok(widgetChangeFeed.getChangesSince(since));
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<WidgetChange>> streamChanges(
+        @RequestParam(required = false) Long since,
+        @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        checkFed();
+        // Subscribed right away, so an unavailable 'since' is rejected before streaming
+        final UnicastProcessor<ServerSentEvent<WidgetChange>> events =
+            UnicastProcessor.create(Queues.<ServerSentEvent<WidgetChange>>get(subscriberBufferSize).get());
+        final Subscription subscription = widgetChangeFeed.subscribe(since != null ? since : lastEventId,
+            new WidgetChangeFeed.Subscriber() {
+                @Override
+                public void onChange(WidgetChange change) {
+                    events.onNext(ServerSentEvent.builder(change)
+                        .id(Long.toString(change.getSequence()))
+                        .event(change.getType().name().toLowerCase(Locale.ROOT))
+                        .build());
+                }
+
+                @Override
+                public void onOverflow() {
+                    // The client reconnects with the id of the last change it got
+                    events.onComplete();
+                }
+            });
+        return events
+            // Clients that don't keep up with the stream are let go as if the feed overflowed
+            .onErrorResume(Exceptions::isOverflow, ex -> Flux.empty())
+            .take(Duration.ofMillis(streamTimeoutMillis))
+            .doFinally(signal -> subscription.cancel());
+    }
+
+    private void checkFed() {
+        if (!fed)
+            throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED,
+                "Changes are only fed by the blocking widget manager");
+    }
+}
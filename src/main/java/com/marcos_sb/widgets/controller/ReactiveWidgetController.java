@@ -0,0 +1,313 @@
+package com.marcos_sb.widgets.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcos_sb.widgets.cache.ResponseCache;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.ReactiveWidgetManager;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.impl.PartitionedWidgetManager;
+import com.marcos_sb.widgets.model.impl.ReactiveWidgetManagerAdapter;
+import com.marcos_sb.widgets.resource.BatchRequest;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.resource.WidgetPage;
+import com.marcos_sb.widgets.util.WidgetOps;
+import com.marcos_sb.widgets.util.ZIndexCursor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+import javax.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Serves the same endpoints as {@link WidgetController} on the reactive stack, with the
+ * same responses, ETags and conditional requests included.
+ * </p>
+ * Handlers return as soon as the request is read: mutations are applied through a
+ * {@link ReactiveWidgetManager}, which completes them asynchronously, so request
+ * threads never park waiting for a mutation to get its turn.
+ */
+@RestController
+@RequestMapping({"/widgets", "/canvases/{canvasId}/widgets"})
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveWidgetController {
+
+    private static final int maxPageSize = 1000;
+    private static final int streamChunkSize = 256;
+    private static final MediaType ndjson = MediaType.valueOf("application/x-ndjson");
+
+    private final WidgetManager widgetManager;
+    private final ReactiveWidgetManager reactiveWidgetManager;
+    private final PartitionedWidgetManager canvases;
+    private final Scheduler mutationScheduler;
+    private final Scheduler readScheduler;
+    private final ResponseCache responseCache;
+    private final ObjectMapper objectMapper;
+
+    public ReactiveWidgetController(WidgetManager widgetManager, ReactiveWidgetManager reactiveWidgetManager,
+                                    PartitionedWidgetManager canvases, Scheduler widgetMutationScheduler,
+                                    Scheduler widgetReadScheduler, ResponseCache responseCache,
+                                    ObjectMapper objectMapper) {
+        this.widgetManager = widgetManager;
+        this.reactiveWidgetManager = reactiveWidgetManager;
+        this.canvases = canvases;
+        this.mutationScheduler = widgetMutationScheduler;
+        this.readScheduler = widgetReadScheduler;
+        this.responseCache = responseCache;
+        this.objectMapper = objectMapper;
+    }
+
+    // Creates the canvas if it doesn't exist
+    private ReactiveWidgetManager canvas(String canvasId) {
+        return canvasId == null
+            ? reactiveWidgetManager
+            : new ReactiveWidgetManagerAdapter(canvases.canvas(canvasId), mutationScheduler, readScheduler);
+    }
+
+    private WidgetManager existingCanvas(String canvasId) {
+        return canvasId == null ? widgetManager : canvases.existingCanvas(canvasId);
+    }
+
+    private ReactiveWidgetManager existingReactiveCanvas(String canvasId) {
+        return canvasId == null
+            ? reactiveWidgetManager
+            : new ReactiveWidgetManagerAdapter(canvases.existingCanvas(canvasId), mutationScheduler,
+                readScheduler);
+    }
+
+    @PostMapping( value = "/new",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Widget>> createWidget(
+        @PathVariable(required = false) String canvasId,
+        @Valid @RequestBody NewWidgetSpec newWidgetSpec
+    ) {
+        return canvas(canvasId).create(newWidgetSpec).map(ResponseEntity::ok);
+    }
+
+    // The 304 Not Modified is sent by WebFlux when the ETag matches the If-None-Match
+    @GetMapping(value = "/{uuid}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Widget>> getWidget(
+        @PathVariable(required = false) String canvasId, @PathVariable UUID uuid
+    ) {
+        return existingReactiveCanvas(canvasId).get(uuid)
+            .map(widget -> ResponseEntity.ok().eTag(ETags.of(widget)).body(widget));
+    }
+
+    @GetMapping(value = "/list/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<byte[]>> getAllWidgets(
+        @PathVariable(required = false) String canvasId, ServerWebExchange exchange
+    ) {
+        final WidgetManager canvas = existingCanvas(canvasId);
+        // Read before the list, so the list is at least as recent as the tag
+        final String eTag = ETags.ofVersion(canvas.getVersion());
+        if (exchange.checkNotModified(eTag))
+            return Mono.empty();
+        return Mono.fromCallable(() -> ResponseEntity.ok()
+            .eTag(eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(responseCache.get(canvas, "all", canvas::getAllByZIndex)))
+            .subscribeOn(readScheduler);
+    }
+
+    /**
+     * Streams all widgets sorted by z-index ascending, either as a JSON array
+     * ({@code stream=json}) or as newline-delimited JSON ({@code stream=ndjson}).
+     * Widgets are read in chunks of z-index ranges as the client consumes them, so
+     * memory usage doesn't depend on the number of widgets.
+     */
+    @GetMapping(value = "/list/all", params = "stream")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> streamAllWidgets(
+        @PathVariable(required = false) String canvasId, @RequestParam String stream,
+        ServerWebExchange exchange
+    ) {
+        final ReactiveWidgetManager canvas = existingReactiveCanvas(canvasId);
+        final boolean newlineDelimited;
+        switch (stream) {
+            case "json": newlineDelimited = false; break;
+            case "ndjson": newlineDelimited = true; break;
+            default:
+                throw new IllegalArgumentException(
+                    String.format("Unknown stream format '%s' (expected: json, ndjson)", stream));
+        }
+        final String eTag = ETags.ofVersion(canvas.getVersion());
+        if (exchange.checkNotModified(eTag))
+            return Mono.empty();
+        return Mono.just(ResponseEntity.ok()
+            .eTag(eTag)
+            .contentType(newlineDelimited ? ndjson : MediaType.APPLICATION_JSON)
+            .body(encodeAll(canvas.streamAllByZIndex(streamChunkSize), newlineDelimited,
+                exchange.getResponse().bufferFactory())));
+    }
+
+    private Flux<DataBuffer> encodeAll(Flux<Widget> widgets, boolean newlineDelimited,
+                                       DataBufferFactory bufferFactory) {
+        final Flux<DataBuffer> chunks = widgets.buffer(streamChunkSize).index()
+            .map(chunk -> bufferFactory.wrap(encode(chunk.getT2(), chunk.getT1() == 0, newlineDelimited)));
+        if (newlineDelimited) return chunks;
+        return Flux.concat(
+            Mono.fromSupplier(() -> bufferFactory.wrap(new byte[] {'['})),
+            chunks,
+            Mono.fromSupplier(() -> bufferFactory.wrap(new byte[] {']'})));
+    }
+
+    private byte[] encode(List<Widget> chunk, boolean firstChunk, boolean newlineDelimited) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (int i = 0; i < chunk.size(); i++) {
+                if (!newlineDelimited && (i > 0 || !firstChunk)) out.write(',');
+                objectMapper.writeValue(out, chunk.get(i));
+                if (newlineDelimited) out.write('\n');
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("An error occurred while streaming the list of widgets", ex);
+        }
+        return out.toByteArray();
+    }
+
+    @GetMapping(value = "/list", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<byte[]>> getWidgetPage(
+        @PathVariable(required = false) String canvasId,
+        @RequestParam(defaultValue = "100") int limit,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer fromZ,
+        @RequestParam(required = false) Integer toZ
+    ) {
+        // A page of no widgets would point at itself as the next one
+        WidgetOps.checkLimit(limit);
+        if (limit > maxPageSize)
+            throw new IllegalArgumentException(
+                String.format("Limit cannot exceed %d (actual: %d)", maxPageSize, limit));
+
+        final ZIndexCursor position = cursor != null
+            ? ZIndexCursor.decode(cursor)
+            : new ZIndexCursor(fromZ != null ? fromZ : Integer.MIN_VALUE,
+                               toZ != null ? toZ : Integer.MAX_VALUE);
+
+        final WidgetManager canvas = existingCanvas(canvasId);
+        final String view = String.format("page:%d:%d:%d",
+            position.getFromZIndex(), position.getToZIndex(), limit);
+        return Mono.fromCallable(() -> ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(responseCache.get(canvas, view, () -> WidgetController.getWidgetPage(canvas, position, limit))))
+            .subscribeOn(readScheduler);
+    }
+
+    @GetMapping(value = "/area", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<Widget>>> getWidgetsInArea(
+        @PathVariable(required = false) String canvasId,
+        @RequestParam long x1, @RequestParam long y1,
+        @RequestParam long x2, @RequestParam long y2
+    ) {
+        return existingReactiveCanvas(canvasId).getAllInArea(x1, y1, x2, y2).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/at", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<Widget>>> getWidgetsAt(
+        @PathVariable(required = false) String canvasId,
+        @RequestParam long x, @RequestParam long y,
+        @RequestParam(defaultValue = "1") int limit
+    ) {
+        return existingReactiveCanvas(canvasId).getAllAt(x, y, limit).map(ResponseEntity::ok);
+    }
+
+    @PutMapping(value = "/update",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Widget>> updateWidget(
+        @PathVariable(required = false) String canvasId,
+        @Valid @RequestBody WidgetMutationSpec widgetMutationSpec,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        final ReactiveWidgetManager canvas = existingReactiveCanvas(canvasId);
+        if (ifMatch == null)
+            return update(canvas, widgetMutationSpec, widgetMutationSpec.hasVersion());
+
+        return canvas.get(widgetMutationSpec.getUUID()).flatMap(current -> {
+            if (!WidgetController.matches(ifMatch, current))
+                return Mono.just(WidgetController.<Widget>preconditionFailed(current));
+            WidgetOps.checkVersion(current, widgetMutationSpec);
+            return update(canvas, widgetMutationSpec.withVersion(current.getVersion()),
+                widgetMutationSpec.hasVersion());
+        });
+    }
+
+    // A conflict on a version taken from an If-Match is a failed precondition
+    private static Mono<ResponseEntity<Widget>> update(ReactiveWidgetManager canvas,
+                                                       WidgetMutationSpec widgetMutationSpec,
+                                                       boolean versionRequested) {
+        return canvas.update(widgetMutationSpec)
+            .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated)).body(updated))
+            .onErrorResume(WidgetVersionConflictException.class, ex -> !versionRequested
+                ? Mono.just(WidgetController.preconditionFailed(ex.getCurrent()))
+                : Mono.error(ex));
+    }
+
+    @PostMapping(value = "/batch",
+        produces = MediaType.APPLICATION_JSON_VALUE,
+        consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<BatchResult>>> applyBatch(
+        @PathVariable(required = false) String canvasId,
+        @Valid @RequestBody BatchRequest batchRequest
+    ) {
+        return canvas(canvasId).applyBatch(batchRequest.getOperations(), batchRequest.isAtomic())
+            .map(results -> {
+                // An atomic batch is either fully applied or rejected as a whole
+                final boolean rejected =
+                    batchRequest.isAtomic() && !results.stream().allMatch(BatchResult::isOk);
+                return ResponseEntity.status(rejected ? HttpStatus.CONFLICT : HttpStatus.OK).body(results);
+            });
+    }
+
+    @DeleteMapping(value = "/delete/{uuid}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Widget>> deleteWidget(
+        @PathVariable(required = false) String canvasId, @PathVariable UUID uuid,
+        @RequestParam(required = false) Long version,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        final ReactiveWidgetManager canvas = existingReactiveCanvas(canvasId);
+        if (ifMatch == null)
+            return remove(canvas, uuid, version, version);
+
+        return canvas.get(uuid).flatMap(current -> {
+            if (!WidgetController.matches(ifMatch, current))
+                return Mono.just(WidgetController.<Widget>preconditionFailed(current));
+            WidgetOps.checkVersion(current, version);
+            return remove(canvas, uuid, current.getVersion(), version);
+        });
+    }
+
+    private static Mono<ResponseEntity<Widget>> remove(ReactiveWidgetManager canvas, UUID uuid,
+                                                       Long expectedVersion, Long requestedVersion) {
+        return canvas.remove(uuid, expectedVersion)
+            .map(ResponseEntity::ok)
+            .onErrorResume(WidgetVersionConflictException.class, ex -> requestedVersion == null
+                ? Mono.just(WidgetController.preconditionFailed(ex.getCurrent()))
+                : Mono.error(ex));
+    }
+}
@@ -0,0 +1,98 @@
+package com.marcos_sb.widgets.controller;
+
+import com.marcos_sb.widgets.feed.WidgetChangeFeed;
+import com.marcos_sb.widgets.feed.WidgetChangeFeed.Subscription;
+import com.marcos_sb.widgets.resource.WidgetChange;
+import com.marcos_sb.widgets.resource.WidgetChanges;
+import java.util.Locale;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Serves the changes to the widgets of the default canvas, either collapsed into the
+ * changes since a version, for clients that poll, or pushed as Server-Sent Events. Every
+ * event is named after the kind of change, carries the change as JSON and has its
+ * sequence number as id, so clients that reconnect with a {@code Last-Event-ID} header,
+ * or a {@code since} parameter, resume right after the last change they got.
+ * </p>
+ * Only the blocking {@link com.marcos_sb.widgets.model.WidgetManager} reports its
+ * changes to the feed, so with any other one these endpoints answer 501 Not Implemented
+ * rather than an empty feed.
+ */
+@RestController
+@RequestMapping("/widgets/changes")
+@ConditionalOnWebApplication(type = Type.SERVLET)
+public class WidgetChangeController {
+
+    private final WidgetChangeFeed widgetChangeFeed;
+    private final boolean fed;
+    private final long streamTimeoutMillis;
+
+    public WidgetChangeController(
+        WidgetChangeFeed widgetChangeFeed,
+        @Value("${widgets.manager.type:blocking}") String managerType,
+        @Value("${widgets.feed.stream-timeout-ms:1800000}") long streamTimeoutMillis
+    ) {
+        this.widgetChangeFeed = widgetChangeFeed;
+        // Only the blocking manager reports its changes to the feed
+        this.fed = managerType.equals("blocking");
+        this.streamTimeoutMillis = streamTimeoutMillis;
+    }
+
+    /**
+     * Returns what changed after version {@code since}, the version in the previous
+     * response. If that's too far behind, the response asks for a resync, after which the
+     * client polls from the version in it.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE, params = "since")
+    public ResponseEntity<WidgetChanges> getChanges(@RequestParam long since) {
+        checkFed();
+        return ResponseEntity.ok(widgetChangeFeed.getChangesSince(since));
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+        @RequestParam(required = false) Long since,
+        @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        checkFed();
+        final SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        final Subscription subscription = widgetChangeFeed.subscribe(since != null ? since : lastEventId,
+            new WidgetChangeFeed.Subscriber() {
+                @Override
+                public void onChange(WidgetChange change) throws Exception {
+                    emitter.send(SseEmitter.event()
+                        .id(Long.toString(change.getSequence()))
+                        .name(change.getType().name().toLowerCase(Locale.ROOT))
+                        .data(change, MediaType.APPLICATION_JSON));
+                }
+
+                @Override
+                public void onOverflow() {
+                    // The client reconnects with the id of the last change it got
+                    emitter.complete();
+                }
+            });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(ex -> subscription.cancel());
+        return emitter;
+    }
+
+    private void checkFed() {
+        if (!fed)
+            throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED,
+                "Changes are only fed by the blocking widget manager");
+    }
+}
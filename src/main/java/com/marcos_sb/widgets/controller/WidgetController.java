@@ -1,16 +1,35 @@
 package com.marcos_sb.widgets.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marcos_sb.widgets.cache.ResponseCache;
+import com.marcos_sb.widgets.resource.BatchRequest;
+import com.marcos_sb.widgets.resource.BatchResult;
 import com.marcos_sb.widgets.resource.NewWidgetSpec;
 import com.marcos_sb.widgets.resource.WidgetMutationSpec;
 import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
 import com.marcos_sb.widgets.model.WidgetManager;
-import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.model.impl.PartitionedWidgetManager;
 import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetPage;
+import com.marcos_sb.widgets.util.WidgetOps;
+import com.marcos_sb.widgets.util.ZIndexCursor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import javax.validation.Valid;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -18,52 +37,313 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+/**
+ * Serves the default canvas under {@code /widgets}, and every other canvas under
+ * {@code /canvases/{canvasId}/widgets} with the same endpoints.
+ * </p>
+ * Single {@link Widget}s and the list of all of them carry strong ETags, so conditional
+ * requests whose {@code If-None-Match} still matches get a 304 Not Modified without
+ * the list being read or anything being serialized. Otherwise, the list and its pages
+ * are served from the {@link ResponseCache} until the next mutation.
+ * </p>
+ * Updates and deletions are made conditional either on the version of the
+ * {@link Widget}, which gets a 409 Conflict along with the current {@link Widget} on a
+ * mismatch, or on an {@code If-Match} with its ETag, which gets a 412 Precondition Failed.
+ * </p>
+ * Requests and responses are JSON unless a {@link WireFormat binary format} is negotiated
+ * through {@code Content-Type} and {@code Accept}, the streamed list excepted.
+ */
 @RestController
-@RequestMapping("/widgets")
+@RequestMapping({"/widgets", "/canvases/{canvasId}/widgets"})
+@ConditionalOnWebApplication(type = Type.SERVLET)
 public class WidgetController {
 
+    private static final int maxPageSize = 1000;
+    private static final int streamChunkSize = 256;
+    private static final MediaType ndjson = MediaType.valueOf("application/x-ndjson");
+
     private final WidgetManager widgetManager;
+    private final PartitionedWidgetManager canvases;
+    private final ResponseCache responseCache;
+    private final ObjectMapper objectMapper;
+    private final Map<WireFormat, ObjectMapper> encoders;
 
-    public WidgetController(WidgetManager widgetManager) {
+    public WidgetController(WidgetManager widgetManager, PartitionedWidgetManager canvases,
+                            ResponseCache responseCache, ObjectMapper objectMapper,
+                            MappingJackson2SmileHttpMessageConverter smileConverter,
+                            MappingJackson2CborHttpMessageConverter cborConverter) {
         this.widgetManager = widgetManager;
+        this.canvases = canvases;
+        this.responseCache = responseCache;
+        this.objectMapper = objectMapper;
+        this.encoders = new EnumMap<>(WireFormat.class);
+        encoders.put(WireFormat.JSON, objectMapper);
+        encoders.put(WireFormat.SMILE, smileConverter.getObjectMapper());
+        encoders.put(WireFormat.CBOR, cborConverter.getObjectMapper());
+    }
+
+    // Creates the canvas if it doesn't exist
+    private WidgetManager canvas(String canvasId) {
+        return canvasId == null ? widgetManager : canvases.canvas(canvasId);
     }
 
-    public WidgetController() {
-        this(new BlockingWidgetManager());
+    private WidgetManager existingCanvas(String canvasId) {
+        return canvasId == null ? widgetManager : canvases.existingCanvas(canvasId);
     }
 
     @PostMapping( value = "/new",
-        produces = MediaType.APPLICATION_JSON_VALUE,
-        consumes = MediaType.APPLICATION_JSON_VALUE)
+        produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+        consumes = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
     public ResponseEntity<Widget> createWidget(
+        @PathVariable(required = false) String canvasId,
         @Valid @RequestBody NewWidgetSpec newWidgetSpec
     ) throws WidgetManagerException {
-        return ResponseEntity.ok(widgetManager.create(newWidgetSpec));
+        return ResponseEntity.ok(canvas(canvasId).create(newWidgetSpec));
+    }
+
+    @GetMapping(value = "/{uuid}", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<Widget> getWidget(
+        @PathVariable(required = false) String canvasId, @PathVariable UUID uuid,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept, WebRequest request
+    ) throws WidgetManagerException {
+        final WireFormat format = WireFormat.negotiate(accept);
+        final Widget widget = existingCanvas(canvasId).get(uuid);
+        if (request.checkNotModified(format.tag(ETags.of(widget))))
+            return null;
+        return ResponseEntity.ok().contentType(format.getMediaType()).body(widget);
+    }
+
+    @GetMapping(value = "/list/all", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getAllWidgets(
+        @PathVariable(required = false) String canvasId,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept, WebRequest request
+    ) throws WidgetManagerException, IOException {
+        final WireFormat format = WireFormat.negotiate(accept);
+        final WidgetManager canvas = existingCanvas(canvasId);
+        // Read before the list, so the list is at least as recent as the tag
+        if (request.checkNotModified(format.tag(ETags.ofVersion(canvas.getVersion()))))
+            return null;
+        return ResponseEntity.ok()
+            .contentType(format.getMediaType())
+            .body(responseCache.get(canvas, "all", encoders.get(format), canvas::getAllByZIndex));
+    }
+
+    /**
+     * Streams all widgets sorted by z-index ascending, either as a JSON array
+     * ({@code stream=json}) or as newline-delimited JSON ({@code stream=ndjson}).
+     * Widgets are read in chunks of z-index ranges and written as they come, so
+     * memory usage doesn't depend on the number of widgets.
+     */
+    @GetMapping(value = "/list/all", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamAllWidgets(
+        @PathVariable(required = false) String canvasId, @RequestParam String stream, WebRequest request
+    ) {
+        final WidgetManager canvas = existingCanvas(canvasId);
+        final boolean newlineDelimited;
+        switch (stream) {
+            case "json": newlineDelimited = false; break;
+            case "ndjson": newlineDelimited = true; break;
+            default:
+                throw new IllegalArgumentException(
+                    String.format("Unknown stream format '%s' (expected: json, ndjson)", stream));
+        }
+        if (request.checkNotModified(ETags.ofVersion(canvas.getVersion())))
+            return null;
+        return ResponseEntity.ok()
+            .contentType(newlineDelimited ? ndjson : MediaType.APPLICATION_JSON)
+            .body(out -> writeAllWidgets(canvas, out, newlineDelimited));
+    }
+
+    private void writeAllWidgets(WidgetManager canvas, OutputStream out, boolean newlineDelimited)
+        throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            if (!newlineDelimited) generator.writeStartArray();
+
+            int fromZIndex = Integer.MIN_VALUE;
+            while (true) {
+                final List<Widget> chunk =
+                    canvas.getRangeByZIndex(fromZIndex, Integer.MAX_VALUE, streamChunkSize);
+                for (Widget widget : chunk) {
+                    generator.writeObject(widget);
+                    if (newlineDelimited) generator.writeRaw('\n');
+                }
+                generator.flush();
+
+                if (chunk.size() < streamChunkSize) break;
+                final int lastZIndex = chunk.get(chunk.size() - 1).getZIndex();
+                if (lastZIndex == Integer.MAX_VALUE) break;
+                fromZIndex = lastZIndex + 1;
+            }
+
+            if (!newlineDelimited) generator.writeEndArray();
+        } catch (WidgetManagerException ex) {
+            throw new IOException("An error occurred while streaming the list of widgets", ex);
+        }
+    }
+
+    @GetMapping(value = "/list", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<byte[]> getWidgetPage(
+        @PathVariable(required = false) String canvasId,
+        @RequestParam(defaultValue = "100") int limit,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer fromZ,
+        @RequestParam(required = false) Integer toZ,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) throws WidgetManagerException, IOException {
+        // A page of no widgets would point at itself as the next one
+        WidgetOps.checkLimit(limit);
+        if (limit > maxPageSize)
+            throw new IllegalArgumentException(
+                String.format("Limit cannot exceed %d (actual: %d)", maxPageSize, limit));
+
+        final ZIndexCursor position = cursor != null
+            ? ZIndexCursor.decode(cursor)
+            : new ZIndexCursor(fromZ != null ? fromZ : Integer.MIN_VALUE,
+                               toZ != null ? toZ : Integer.MAX_VALUE);
+
+        final WidgetManager canvas = existingCanvas(canvasId);
+        final String view = String.format("page:%d:%d:%d",
+            position.getFromZIndex(), position.getToZIndex(), limit);
+        final WireFormat format = WireFormat.negotiate(accept);
+        return ResponseEntity.ok()
+            .contentType(format.getMediaType())
+            .body(responseCache.get(canvas, view, encoders.get(format),
+                () -> getWidgetPage(canvas, position, limit)));
     }
 
-    @GetMapping(value = "/{uuid}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Widget> getWidget(@PathVariable UUID uuid) throws WidgetManagerException {
-        return ResponseEntity.ok(widgetManager.get(uuid));
+    static WidgetPage getWidgetPage(WidgetManager canvas, ZIndexCursor position, int limit)
+        throws WidgetManagerException {
+        // Fetches one extra widget to tell whether there's a next page
+        final List<Widget> widgets = canvas.getRangeByZIndex(
+            position.getFromZIndex(), position.getToZIndex(), limit + 1);
+        if (widgets.size() <= limit)
+            return new WidgetPage(widgets, null);
+
+        final List<Widget> page = widgets.subList(0, limit);
+        final ZIndexCursor next = new ZIndexCursor(
+            widgets.get(limit).getZIndex(), position.getToZIndex());
+        return new WidgetPage(page, next.encode());
     }
 
-    @GetMapping(value = "/list/all", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Widget>> getAllWidgets() throws WidgetManagerException {
-        return ResponseEntity.ok(widgetManager.getAllByZIndex());
+    @GetMapping(value = "/area", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<Widget>> getWidgetsInArea(
+        @PathVariable(required = false) String canvasId,
+        @RequestParam long x1, @RequestParam long y1,
+        @RequestParam long x2, @RequestParam long y2
+    ) throws WidgetManagerException {
+        return ResponseEntity.ok(existingCanvas(canvasId).getAllInArea(x1, y1, x2, y2));
+    }
+
+    @GetMapping(value = "/at", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<Widget>> getWidgetsAt(
+        @PathVariable(required = false) String canvasId,
+        @RequestParam long x, @RequestParam long y,
+        @RequestParam(defaultValue = "1") int limit
+    ) throws WidgetManagerException {
+        return ResponseEntity.ok(existingCanvas(canvasId).getAllAt(x, y, limit));
     }
 
     @PutMapping(value = "/update",
-        produces = MediaType.APPLICATION_JSON_VALUE,
-        consumes = MediaType.APPLICATION_JSON_VALUE)
+        produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+        consumes = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
     public ResponseEntity<Widget> updateWidget(
-        @Valid @RequestBody WidgetMutationSpec widgetMutationSpec
+        @PathVariable(required = false) String canvasId,
+        @Valid @RequestBody WidgetMutationSpec widgetMutationSpec,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) throws WidgetManagerException {
+        final WireFormat format = WireFormat.negotiate(accept);
+        final WidgetManager canvas = existingCanvas(canvasId);
+        WidgetMutationSpec conditionalSpec = widgetMutationSpec;
+        if (ifMatch != null) {
+            final Widget current = canvas.get(widgetMutationSpec.getUUID());
+            if (!matches(ifMatch, current))
+                return preconditionFailed(current, format);
+            WidgetOps.checkVersion(current, widgetMutationSpec);
+            conditionalSpec = widgetMutationSpec.withVersion(current.getVersion());
+        }
+
+        final Widget updated;
+        try {
+            updated = canvas.update(conditionalSpec);
+        } catch (WidgetVersionConflictException ex) {
+            // Updated by someone else since the tag was checked
+            if (!widgetMutationSpec.hasVersion()) return preconditionFailed(ex.getCurrent(), format);
+            throw ex;
+        }
+        return ResponseEntity.ok()
+            .eTag(format.tag(ETags.of(updated)))
+            .contentType(format.getMediaType())
+            .body(updated);
+    }
+
+    @PostMapping(value = "/batch",
+        produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+        consumes = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<List<BatchResult>> applyBatch(
+        @PathVariable(required = false) String canvasId,
+        @Valid @RequestBody BatchRequest batchRequest
     ) throws WidgetManagerException {
-        return ResponseEntity.ok(widgetManager.update(widgetMutationSpec));
+        final List<BatchResult> results =
+            canvas(canvasId).applyBatch(batchRequest.getOperations(), batchRequest.isAtomic());
+        // An atomic batch is either fully applied or rejected as a whole
+        final boolean rejected = batchRequest.isAtomic() && !results.stream().allMatch(BatchResult::isOk);
+        return ResponseEntity.status(rejected ? HttpStatus.CONFLICT : HttpStatus.OK).body(results);
+    }
+
+    @DeleteMapping(value = "/delete/{uuid}", produces = {MediaType.APPLICATION_JSON_VALUE, WireFormat.SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity deleteWidget(
+        @PathVariable(required = false) String canvasId, @PathVariable UUID uuid,
+        @RequestParam(required = false) Long version,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) throws WidgetManagerException {
+        final WireFormat format = WireFormat.negotiate(accept);
+        final WidgetManager canvas = existingCanvas(canvasId);
+        Long expectedVersion = version;
+        if (ifMatch != null) {
+            final Widget current = canvas.get(uuid);
+            if (!matches(ifMatch, current))
+                return preconditionFailed(current, format);
+            WidgetOps.checkVersion(current, version);
+            expectedVersion = current.getVersion();
+        }
+
+        try {
+            return ResponseEntity.ok(canvas.remove(uuid, expectedVersion));
+        } catch (WidgetVersionConflictException ex) {
+            if (version == null) return preconditionFailed(ex.getCurrent(), format);
+            throw ex;
+        }
+    }
+
+    // Whether 'widget' matches any of the strong tags in an If-Match header, in any format
+    static boolean matches(String ifMatch, Widget widget) {
+        final String eTag = ETags.of(widget);
+        for (String tag : ifMatch.split(",")) {
+            final String trimmed = tag.trim();
+            if (trimmed.equals("*")) return true;
+            for (WireFormat format : WireFormat.values()) {
+                if (trimmed.equals(format.tag(eTag)))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    static <T> ResponseEntity<T> preconditionFailed(Widget current) {
+        return preconditionFailed(current, WireFormat.JSON);
     }
 
-    @DeleteMapping(value = "/delete/{uuid}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity deleteWidget(@PathVariable UUID uuid) throws WidgetManagerException {
-        return ResponseEntity.ok(widgetManager.remove(uuid));
+    private static <T> ResponseEntity<T> preconditionFailed(Widget current, WireFormat format) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+            .eTag(format.tag(ETags.of(current)))
+            .build();
     }
 }
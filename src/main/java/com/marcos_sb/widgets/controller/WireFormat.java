@@ -0,0 +1,58 @@
+package com.marcos_sb.widgets.controller;
+
+import java.util.List;
+import org.springframework.http.MediaType;
+
+/**
+ * The formats {@link WidgetController} serves and reads: JSON, the default, and the
+ * binary Jackson Smile and CBOR, negotiated through {@code Accept} and
+ * {@code Content-Type}. The binary ones carry the same properties as the JSON.
+ * </p>
+ * Every format of a representation is tagged apart, so caches keyed by ETag never
+ * serve one format for another.
+ */
+enum WireFormat {
+
+    JSON(MediaType.APPLICATION_JSON, ""),
+    SMILE(MediaType.valueOf(WireFormat.SMILE_VALUE), "-smile"),
+    CBOR(MediaType.APPLICATION_CBOR, "-cbor");
+
+    static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    private final MediaType mediaType;
+    private final String tagSuffix;
+
+    WireFormat(MediaType mediaType, String tagSuffix) {
+        this.mediaType = mediaType;
+        this.tagSuffix = tagSuffix;
+    }
+
+    MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return The ETag of the representation in this format, given its JSON one.
+     */
+    String tag(String eTag) {
+        if (tagSuffix.isEmpty()) return eTag;
+        return eTag.substring(0, eTag.length() - 1) + tagSuffix + '"';
+    }
+
+    /**
+     * @return The format most preferred by an {@code Accept} header, JSON if it has none
+     * or prefers anything, the same pick Spring MVC makes among the produced types.
+     */
+    static WireFormat negotiate(String accept) {
+        if (accept == null) return JSON;
+        final List<MediaType> acceptable = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType mediaType : acceptable) {
+            for (WireFormat format : values()) {
+                if (mediaType.isCompatibleWith(format.mediaType))
+                    return format;
+            }
+        }
+        return JSON;
+    }
+}
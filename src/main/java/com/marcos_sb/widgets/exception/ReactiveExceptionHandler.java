@@ -0,0 +1,34 @@
+package com.marcos_sb.widgets.exception;
+
+import java.util.NoSuchElementException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Maps exceptions to responses on the reactive stack, as
+ * {@link RestResponseEntityExceptionHandler} does on the servlet one.
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveExceptionHandler {
+
+    @ExceptionHandler(NoSuchElementException.class)
+    protected ResponseEntity<?> handleNotFound(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("");
+    }
+
+    // Responds with the widget as it is, so clients can retry from it
+    @ExceptionHandler(WidgetVersionConflictException.class)
+    protected ResponseEntity<?> handleVersionConflict(WidgetVersionConflictException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getCurrent());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    protected ResponseEntity<?> handleBadRequest(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("");
+    }
+}
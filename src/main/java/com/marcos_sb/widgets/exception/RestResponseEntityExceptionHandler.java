@@ -1,6 +1,8 @@
 package com.marcos_sb.widgets.exception;
 
 import java.util.NoSuchElementException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +12,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = Type.SERVLET)
 public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionHandler {
 
     @ExceptionHandler(NoSuchElementException.class)
@@ -17,5 +20,18 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
         return handleExceptionInternal(ex, "", new HttpHeaders(),
             HttpStatus.NOT_FOUND, request);
     }
+
+    // Responds with the widget as it is, so clients can retry from it
+    @ExceptionHandler(WidgetVersionConflictException.class)
+    protected ResponseEntity<?> handleVersionConflict(WidgetVersionConflictException ex, WebRequest request) {
+        return handleExceptionInternal(ex, ex.getCurrent(), new HttpHeaders(),
+            HttpStatus.CONFLICT, request);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    protected ResponseEntity<?> handleBadRequest(RuntimeException ex, WebRequest request) {
+        return handleExceptionInternal(ex, "", new HttpHeaders(),
+            HttpStatus.BAD_REQUEST, request);
+    }
 }
 
@@ -0,0 +1,32 @@
+package com.marcos_sb.widgets.exception;
+
+import com.marcos_sb.widgets.resource.Widget;
+
+/**
+ * Thrown when a mutation expects a {@link Widget} to be at a version it no longer is,
+ * i.e. it's been updated since the client read it.
+ */
+public class WidgetVersionConflictException extends RuntimeException {
+
+    private final transient Widget current;
+    private final long expectedVersion;
+
+    public WidgetVersionConflictException(Widget current, long expectedVersion) {
+        this.current = current;
+        this.expectedVersion = expectedVersion;
+    }
+
+    // Formatted on demand, as conflicts are usually handled without reading the message
+    @Override
+    public String getMessage() {
+        return String.format("Widget with uuid '%s' is at version %d (expected: %d)",
+            current.getUUID(), current.getVersion(), expectedVersion);
+    }
+
+    /**
+     * @return The {@link Widget} as it was when the mutation was rejected.
+     */
+    public Widget getCurrent() {
+        return current;
+    }
+}
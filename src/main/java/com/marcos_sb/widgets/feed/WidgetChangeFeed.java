@@ -0,0 +1,307 @@
+package com.marcos_sb.widgets.feed;
+
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetChange;
+import com.marcos_sb.widgets.resource.WidgetChanges;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Numbers every change a {@link com.marcos_sb.widgets.model.WidgetManager} applies and
+ * pushes it to subscribers, which can resume from any of the most recent changes.
+ * </p>
+ * Changes are numbered from 1, in the order they're applied. The last
+ * {@code historySize} of them are kept, so a subscriber that reconnects can ask for the
+ * changes after the last one it got, as long as they're still in the history.
+ * </p>
+ * Writers never wait for subscribers. A change is queued for every subscriber, in a
+ * buffer of at most {@code subscriberBufferSize} changes, and delivered to it from one of
+ * the {@code deliveryThreads} threads of the feed, which take turns among subscribers a
+ * few changes at a time. A subscriber whose buffer fills up gets the changes already
+ * queued and is then closed, so it can resume from the last change it got. A subscriber
+ * that blocks while getting a change holds on to its thread, and the others then share
+ * the rest: however many subscribers stall, the feed never starts more threads, and
+ * those left waiting for a thread overflow and are closed rather than queue without
+ * bound.
+ * </p>
+ * The sequence number of the last change doubles as the version of the whole set of
+ * {@link Widget}s, which clients that poll use to fetch only what changed since their
+ * last poll.
+ */
+public class WidgetChangeFeed implements WidgetChangeListener, AutoCloseable {
+
+    private static final int defaultDeliveryThreads = 16;
+    // Changes delivered to a subscriber before its thread moves on to the next one
+    private static final int deliveryBatchSize = 64;
+    private static Logger logger = LoggerFactory.getLogger(WidgetChangeFeed.class);
+
+    private final WidgetChange[] history;
+    private final int subscriberBufferSize;
+    private final ReentrantLock lock;
+    private final ExecutorService deliverer;
+
+    // Guarded by 'lock'
+    private final List<Subscription> subscriptions;
+    private boolean closed;
+    private volatile long sequence;
+
+    public WidgetChangeFeed(int historySize, int subscriberBufferSize, int deliveryThreads) {
+        if (historySize < 1 || subscriberBufferSize < 1 || deliveryThreads < 1)
+            throw new IllegalArgumentException(
+                String.format("History and buffer sizes, and delivery threads, must be positive (actual: %d, %d, %d)",
+                    historySize, subscriberBufferSize, deliveryThreads));
+        this.history = new WidgetChange[historySize];
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.lock = new ReentrantLock();
+        final AtomicInteger nThreads = new AtomicInteger();
+        this.deliverer = Executors.newFixedThreadPool(deliveryThreads, r -> {
+            final Thread thread = new Thread(r, "widget-feed-" + nThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.subscriptions = new ArrayList<>();
+    }
+
+    public WidgetChangeFeed(int historySize, int subscriberBufferSize) {
+        this(historySize, subscriberBufferSize, defaultDeliveryThreads);
+    }
+
+    /**
+     * @return The sequence number of the last change, or 0 if there's been none.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public void onChange(ChangeType type, Widget widget) {
+        // The manager may modify the widget afterwards
+        final Widget copy = new Widget(widget.getUUID(), widget.getX(), widget.getY(),
+            widget.getWidth(), widget.getHeight(), widget.getLastModifiedEpochNanos(), widget.getZIndex(),
+            widget.getVersion());
+        try {
+            lock.lock();
+            final WidgetChange change = new WidgetChange(sequence + 1, type, copy);
+            history[(int) (change.getSequence() % history.length)] = change;
+            sequence = change.getSequence();
+            for (int i = subscriptions.size() - 1; i >= 0; i--) {
+                final Subscription subscription = subscriptions.get(i);
+                if (!subscription.offer(change)) {
+                    logger.info("Closing a subscriber {} changes behind", subscriberBufferSize);
+                    subscriptions.remove(i);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the net effect of the changes after {@code sinceVersion}, where the version
+     * is the sequence number of the last change applied, or a resync if they're no longer
+     * in the history. The changes are collapsed per {@link Widget}, so the result is never
+     * larger than the history, no matter how many {@link Widget}s there are.
+     *
+     * @throws IllegalArgumentException If {@code sinceVersion} is negative or ahead of
+     * the feed.
+     */
+    public WidgetChanges getChangesSince(long sinceVersion) {
+        final WidgetChange[] changes;
+        final long version;
+        try {
+            lock.lock();
+            version = sequence;
+            if (sinceVersion < 0 || sinceVersion > version)
+                throw new IllegalArgumentException(
+                    String.format("Version %d is not valid (current: %d)", sinceVersion, version));
+            if (sinceVersion < version - history.length)
+                return WidgetChanges.resync(version);
+            changes = new WidgetChange[(int) (version - sinceVersion)];
+            for (int i = 0; i < changes.length; i++)
+                changes[i] = history[(int) ((sinceVersion + 1 + i) % history.length)];
+        } finally {
+            lock.unlock();
+        }
+
+        // Last change of every widget, in the order they happened
+        final Map<UUID, WidgetChange> lastChanges = new LinkedHashMap<>();
+        final Set<UUID> created = new HashSet<>();
+        for (WidgetChange change : changes) {
+            final UUID uuid = change.getWidget().getUUID();
+            if (change.getType() == ChangeType.CREATE) created.add(uuid);
+            lastChanges.remove(uuid);
+            lastChanges.put(uuid, change);
+        }
+
+        final List<Widget> upserts = new ArrayList<>();
+        final List<UUID> tombstones = new ArrayList<>();
+        for (WidgetChange change : lastChanges.values()) {
+            final UUID uuid = change.getWidget().getUUID();
+            if (change.getType() != ChangeType.REMOVE) upserts.add(change.getWidget());
+            // Widgets created and removed after 'sinceVersion' were never seen by the client
+            else if (!created.contains(uuid)) tombstones.add(uuid);
+        }
+        return new WidgetChanges(version, false, upserts, tombstones);
+    }
+
+    /**
+     * Registers {@code subscriber} to get the changes after {@code sinceSequence}, or
+     * only the upcoming ones if it's null.
+     *
+     * @throws IllegalArgumentException If the changes after {@code sinceSequence} are
+     * no longer in the history, or {@code sinceSequence} is ahead of the feed.
+     * @throws IllegalStateException If the feed has been closed.
+     */
+    public Subscription subscribe(Long sinceSequence, Subscriber subscriber) {
+        try {
+            lock.lock();
+            if (closed)
+                throw new IllegalStateException("The change feed has been closed");
+            final long since = sinceSequence != null ? sinceSequence : sequence;
+            final long oldest = Math.max(1, sequence - history.length + 1);
+            if (since > sequence || since < oldest - 1)
+                throw new IllegalArgumentException(
+                    String.format("Changes after %d are not available (available: %d to %d)",
+                        since, oldest, sequence));
+
+            final Subscription subscription = new Subscription(subscriber);
+            boolean subscribed = true;
+            for (long s = since + 1; s <= sequence && subscribed; s++)
+                subscribed = subscription.offer(history[(int) (s % history.length)]);
+            if (subscribed) subscriptions.add(subscription);
+            return subscription;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of subscribers changes are currently queued for.
+     */
+    public int getSubscriberCount() {
+        try {
+            lock.lock();
+            return subscriptions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.lock();
+            closed = true;
+            for (Subscription subscription : subscriptions)
+                subscription.cancelled = true;
+            subscriptions.clear();
+        } finally {
+            lock.unlock();
+        }
+        deliverer.shutdown();
+    }
+
+    /**
+     * Gets the changes of a feed, one at a time and in order, from a thread of the feed.
+     */
+    public interface Subscriber {
+        /**
+         * @throws Exception If the change couldn't be delivered, which cancels the
+         * subscription.
+         */
+        void onChange(WidgetChange change) throws Exception;
+
+        /**
+         * Called after the last change queued has been delivered, once the subscriber
+         * has fallen too far behind.
+         */
+        void onOverflow();
+    }
+
+    public final class Subscription {
+        private final Subscriber subscriber;
+        // Guarded by 'lock'
+        private final ArrayDeque<WidgetChange> buffer;
+        private boolean delivering;
+        private boolean overflowed;
+        private volatile boolean cancelled;
+
+        private Subscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+            this.buffer = new ArrayDeque<>();
+        }
+
+        /**
+         * Stops delivering changes to the subscriber.
+         */
+        public void cancel() {
+            try {
+                lock.lock();
+                cancelled = true;
+                buffer.clear();
+                subscriptions.remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Must be called holding 'lock'. Returns false once the buffer is full.
+        private boolean offer(WidgetChange change) {
+            if (buffer.size() >= subscriberBufferSize) {
+                overflowed = true;
+            } else {
+                buffer.add(change);
+            }
+            if (!delivering) {
+                delivering = true;
+                deliverer.execute(this::deliver);
+            }
+            return !overflowed;
+        }
+
+        private void deliver() {
+            for (int delivered = 0; !cancelled; delivered++) {
+                final WidgetChange change;
+                try {
+                    lock.lock();
+                    if (delivered == deliveryBatchSize && !buffer.isEmpty()) {
+                        // Lets the subscribers waiting for a thread take their turn
+                        if (!cancelled) deliverer.execute(this::deliver);
+                        return;
+                    }
+                    change = buffer.poll();
+                    if (change == null) {
+                        delivering = false;
+                        if (!overflowed) return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (change == null) {
+                    subscriber.onOverflow();
+                    return;
+                }
+
+                try {
+                    subscriber.onChange(change);
+                } catch (Exception ex) {
+                    logger.debug("Cancelling a subscriber that failed to get change {}", change.getSequence(), ex);
+                    cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.marcos_sb.widgets.metrics;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorates a {@link WidgetManager} to publish the latency of every operation as a
+ * histogram, {@code widgets.manager.operations} tagged with the operation, failed ones
+ * included. It also counts the mutations rejected because they expected a stale
+ * version, {@code widgets.manager.conflicts}, and gauges the number of {@link Widget}s,
+ * {@code widgets.manager.widgets}.
+ * </p>
+ * Every meter is registered upfront, and timings are taken with
+ * {@link System#nanoTime()}, so operations allocate nothing on top of what the
+ * decorated {@link WidgetManager} does.
+ */
+public class InstrumentedWidgetManager implements WidgetManager, AutoCloseable {
+
+    private final WidgetManager delegate;
+    private final Timer createTimer;
+    private final Timer getTimer;
+    private final Timer getAllTimer;
+    private final Timer getRangeTimer;
+    private final Timer getInAreaTimer;
+    private final Timer getAtTimer;
+    private final Timer updateTimer;
+    private final Timer removeTimer;
+    private final Timer batchTimer;
+    private final Counter updateConflicts;
+    private final Counter removeConflicts;
+    private final Counter batchConflicts;
+
+    public InstrumentedWidgetManager(WidgetManager delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.createTimer = timer(registry, "create");
+        this.getTimer = timer(registry, "get");
+        this.getAllTimer = timer(registry, "get-all");
+        this.getRangeTimer = timer(registry, "get-range");
+        this.getInAreaTimer = timer(registry, "get-in-area");
+        this.getAtTimer = timer(registry, "get-at");
+        this.updateTimer = timer(registry, "update");
+        this.removeTimer = timer(registry, "remove");
+        this.batchTimer = timer(registry, "batch");
+        this.updateConflicts = conflicts(registry, "update");
+        this.removeConflicts = conflicts(registry, "remove");
+        this.batchConflicts = conflicts(registry, "batch");
+        Gauge.builder("widgets.manager.widgets", delegate, WidgetManager::size)
+            .description("Number of widgets")
+            .register(registry);
+    }
+
+    private static Timer timer(MeterRegistry registry, String operation) {
+        return Timer.builder("widgets.manager.operations")
+            .tag("operation", operation)
+            .description("Latency of the widget manager operations")
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private static Counter conflicts(MeterRegistry registry, String operation) {
+        return Counter.builder("widgets.manager.conflicts")
+            .tag("operation", operation)
+            .description("Mutations rejected because they expected a stale widget version")
+            .register(registry);
+    }
+
+    @Override
+    public Widget create(NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.create(newWidgetSpec);
+        } finally {
+            createTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Widget get(UUID uuid) throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.get(uuid);
+        } finally {
+            getTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Widget> getAllByZIndex() throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getAllByZIndex();
+        } finally {
+            getAllTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit)
+        throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getRangeByZIndex(fromZIndex, toZIndex, limit);
+        } finally {
+            getRangeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Widget> getAllInArea(long x1, long y1, long x2, long y2) throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getAllInArea(x1, y1, x2, y2);
+        } finally {
+            getInAreaTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Widget> getAllAt(long x, long y, int limit) throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getAllAt(x, y, limit);
+        } finally {
+            getAtTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.update(widgetMutationSpec);
+        } catch (WidgetVersionConflictException ex) {
+            updateConflicts.increment();
+            throw ex;
+        } finally {
+            updateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.remove(uuid, expectedVersion);
+        } catch (WidgetVersionConflictException ex) {
+            removeConflicts.increment();
+            throw ex;
+        } finally {
+            removeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        final long start = System.nanoTime();
+        try {
+            final List<BatchResult> results = delegate.applyBatch(operations, atomic);
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).getStatus() == BatchResult.Status.CONFLICT)
+                    batchConflicts.increment();
+            }
+            return results;
+        } finally {
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable)
+            ((AutoCloseable) delegate).close();
+    }
+}
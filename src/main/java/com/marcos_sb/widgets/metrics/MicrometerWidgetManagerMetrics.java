@@ -0,0 +1,59 @@
+package com.marcos_sb.widgets.metrics;
+
+import com.marcos_sb.widgets.model.WidgetManagerMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the measurements of a {@link com.marcos_sb.widgets.model.WidgetManager} as
+ * Micrometer histograms: {@code widgets.manager.shifts}, and
+ * {@code widgets.manager.lock.wait} and {@code widgets.manager.lock.hold} tagged with
+ * the lock. Every meter is registered upfront, so recording allocates nothing.
+ */
+public class MicrometerWidgetManagerMetrics implements WidgetManagerMetrics {
+
+    private final DistributionSummary shifts;
+    private final Timer[] lockWaits;
+    private final Timer[] lockHolds;
+
+    public MicrometerWidgetManagerMetrics(MeterRegistry registry) {
+        this.shifts = DistributionSummary.builder("widgets.manager.shifts")
+            .description("Widgets shifted up by a single create or update")
+            .publishPercentileHistogram()
+            .register(registry);
+        final LockType[] lockTypes = LockType.values();
+        this.lockWaits = new Timer[lockTypes.length];
+        this.lockHolds = new Timer[lockTypes.length];
+        for (LockType lockType : lockTypes) {
+            final String lock = lockType.name().toLowerCase(Locale.ROOT);
+            lockWaits[lockType.ordinal()] = Timer.builder("widgets.manager.lock.wait")
+                .tag("lock", lock)
+                .description("Time spent waiting for a lock")
+                .publishPercentileHistogram()
+                .register(registry);
+            lockHolds[lockType.ordinal()] = Timer.builder("widgets.manager.lock.hold")
+                .tag("lock", lock)
+                .description("Time a lock is held for")
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+    }
+
+    @Override
+    public void recordShift(int nShifted) {
+        shifts.record(nShifted);
+    }
+
+    @Override
+    public void recordLockWait(LockType lockType, long nanos) {
+        lockWaits[lockType.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLockHold(LockType lockType, long nanos) {
+        lockHolds[lockType.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,81 @@
+package com.marcos_sb.widgets.model;
+
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.List;
+import java.util.UUID;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The non-blocking counterpart of {@link WidgetManager}, for the reactive stack.
+ * Every operation is lazy, i.e. nothing is read nor applied until the result is
+ * subscribed to, and signals the same errors the {@link WidgetManager} operation
+ * throws, with the same consistency guarantees.
+ * </p>
+ * Subscribing never parks the calling thread for longer than a read takes: operations
+ * that may wait, such as mutations queued behind others, complete asynchronously.
+ */
+public interface ReactiveWidgetManager {
+
+    /**
+     * @see WidgetManager#create(NewWidgetSpec)
+     */
+    Mono<Widget> create(NewWidgetSpec newWidgetSpec);
+
+    /**
+     * @see WidgetManager#get(UUID)
+     */
+    Mono<Widget> get(UUID uuid);
+
+    /**
+     * @see WidgetManager#getAllByZIndex()
+     */
+    Mono<List<Widget>> getAllByZIndex();
+
+    /**
+     * Emits all {@link Widget}s sorted by z-index ascending, read {@code chunkSize} at a
+     * time as they're requested, so memory usage doesn't depend on the number of
+     * {@link Widget}s. {@link Widget}s whose z-index changes while they're being emitted
+     * may be emitted twice or not at all.
+     */
+    Flux<Widget> streamAllByZIndex(int chunkSize);
+
+    /**
+     * @see WidgetManager#getRangeByZIndex(int, int, int)
+     */
+    Mono<List<Widget>> getRangeByZIndex(int fromZIndex, int toZIndex, int limit);
+
+    /**
+     * @see WidgetManager#getAllInArea(long, long, long, long)
+     */
+    Mono<List<Widget>> getAllInArea(long x1, long y1, long x2, long y2);
+
+    /**
+     * @see WidgetManager#getAllAt(long, long, int)
+     */
+    Mono<List<Widget>> getAllAt(long x, long y, int limit);
+
+    /**
+     * @see WidgetManager#update(WidgetMutationSpec)
+     */
+    Mono<Widget> update(WidgetMutationSpec widgetMutationSpec);
+
+    /**
+     * @see WidgetManager#remove(UUID, Long)
+     */
+    Mono<Widget> remove(UUID uuid, Long expectedVersion);
+
+    /**
+     * @see WidgetManager#applyBatch(List, boolean)
+     */
+    Mono<List<BatchResult>> applyBatch(List<BatchOperation> operations, boolean atomic);
+
+    /**
+     * @see WidgetManager#getVersion()
+     */
+    long getVersion();
+}
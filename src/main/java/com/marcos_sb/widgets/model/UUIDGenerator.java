@@ -0,0 +1,22 @@
+package com.marcos_sb.widgets.model;
+
+import com.marcos_sb.widgets.resource.Widget;
+import java.util.UUID;
+
+/**
+ * Generates the {@link UUID}s of the {@link Widget}s a {@link WidgetManager} creates.
+ * It's called concurrently and, by the managers that support it, outside of their
+ * critical section, so implementations must be thread-safe and shouldn't block. A
+ * manager retries with another {@link UUID} if one is already taken.
+ */
+@FunctionalInterface
+public interface UUIDGenerator {
+
+    /**
+     * Random (version 4) {@link UUID}s, from a cryptographically strong generator shared
+     * by the whole JVM, i.e. unpredictable but contended.
+     */
+    UUIDGenerator RANDOM = UUID::randomUUID;
+
+    UUID next();
+}
@@ -0,0 +1,42 @@
+package com.marcos_sb.widgets.model;
+
+import com.marcos_sb.widgets.resource.Widget;
+
+/**
+ * Gets notified of every change a {@link WidgetManager} applies to its set of
+ * {@link Widget}s, in the order they're applied. Notifications are delivered
+ * synchronously from within the manager's critical section, so implementations
+ * must be fast and must not call back into the manager.
+ * </p>
+ * The {@link Widget} passed may be modified by the manager once the notification
+ * returns; implementations that keep it around should copy it.
+ */
+@FunctionalInterface
+public interface WidgetChangeListener {
+
+    enum ChangeType {
+        CREATE,
+        UPDATE,
+        // The z-index of an existing widget got incremented to make room for another one
+        SHIFT,
+        REMOVE
+    }
+
+    WidgetChangeListener NONE = (type, widget) -> {};
+
+    /**
+     * @param type Kind of change.
+     * @param widget State of the {@link Widget} after the change, or before it if removed.
+     */
+    void onChange(ChangeType type, Widget widget);
+
+    /**
+     * @return A listener that notifies this listener first, and then {@code next}.
+     */
+    default WidgetChangeListener andThen(WidgetChangeListener next) {
+        return (type, widget) -> {
+            onChange(type, widget);
+            next.onChange(type, widget);
+        };
+    }
+}
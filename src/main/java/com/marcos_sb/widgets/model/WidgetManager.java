@@ -1,12 +1,18 @@
 package com.marcos_sb.widgets.model;
 
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
 import com.marcos_sb.widgets.resource.NewWidgetSpec;
 import com.marcos_sb.widgets.resource.WidgetMutationSpec;
 import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
 import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.util.WidgetOps;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * An interface that defines expected functionality from any implementing
@@ -53,9 +59,92 @@ public interface WidgetManager {
      */
     List<Widget> getAllByZIndex() throws WidgetManagerException;
 
+    /**
+     * Returns the {@link Widget}s with a z-index within the input range, sorted by
+     * their z-index ascending, up to {@code limit} of them. Pages of the z-ordered
+     * set can be traversed by calling this method again from the z-index right above
+     * the last {@link Widget} returned.
+     * </p>
+     * The default implementation filters {@link #getAllByZIndex()}. Implementing
+     * classes are expected to override it with a range view on their z-ordered index.
+     *
+     * @param fromZIndex Lowest z-index in the range, inclusive.
+     * @param toZIndex Highest z-index in the range, inclusive.
+     * @param limit Maximum number of {@link Widget}s to return.
+     * @return A list containing up to {@code limit} {@link Widget}s with the lowest
+     * z-indexes within the range, sorted by their z-index ascending.
+     * @throws WidgetManagerException If it was not possible to retrieve and compose
+     * the resulting list.
+     * @throws IllegalArgumentException If {@code limit} is not positive.
+     */
+    default List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit)
+        throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        return getAllByZIndex().stream()
+            .filter(w -> fromZIndex <= w.getZIndex() && w.getZIndex() <= toZIndex)
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns all {@link Widget}s lying fully or partially within the input
+     * rectangle, sorted by their z-index ascending. A {@link Widget} spans from
+     * its (x, y) coordinates to (x + width, y + height), edges included.
+     * </p>
+     * The default implementation filters {@link #getAllByZIndex()}. Implementing
+     * classes are expected to override it with an indexed look-up.
+     *
+     * @param x1 Lower x-coordinate of the rectangle.
+     * @param y1 Lower y-coordinate of the rectangle.
+     * @param x2 Upper x-coordinate of the rectangle.
+     * @param y2 Upper y-coordinate of the rectangle.
+     * @return A list containing the {@link Widget}s intersecting the rectangle
+     * sorted by their z-index ascending.
+     * @throws WidgetManagerException If it was not possible to retrieve and compose
+     * the resulting list.
+     * @throws IllegalArgumentException If the rectangle is not well-formed, i.e.
+     * {@code x1 > x2} or {@code y1 > y2}.
+     */
+    default List<Widget> getAllInArea(long x1, long y1, long x2, long y2) throws WidgetManagerException {
+        WidgetOps.checkArea(x1, y1, x2, y2);
+        return getAllByZIndex().stream()
+            .filter(w -> WidgetOps.intersects(w, x1, y1, x2, y2))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the {@link Widget}s containing the input point, edges included,
+     * sorted by their z-index descending, i.e. the topmost {@link Widget} first.
+     * </p>
+     * The default implementation filters {@link #getAllByZIndex()}. Implementing
+     * classes are expected to override it with an indexed look-up.
+     *
+     * @param x X-coordinate of the point.
+     * @param y Y-coordinate of the point.
+     * @param limit Maximum number of {@link Widget}s to return.
+     * @return A list containing up to {@code limit} {@link Widget}s, the ones
+     * with the highest z-index containing the point.
+     * @throws WidgetManagerException If it was not possible to retrieve and compose
+     * the resulting list.
+     * @throws IllegalArgumentException If {@code limit} is not positive.
+     */
+    default List<Widget> getAllAt(long x, long y, int limit) throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        final List<Widget> allWidgets = getAllByZIndex();
+        final List<Widget> atPoint = new ArrayList<>();
+        for (int i = allWidgets.size() - 1; i >= 0 && atPoint.size() < limit; i--) {
+            final Widget widget = allWidgets.get(i);
+            if (WidgetOps.intersects(widget, x, y, x, y))
+                atPoint.add(widget);
+        }
+        return atPoint;
+    }
+
     /**
      * Updates an existing {@link Widget} with the values provided in the
-     * specification.
+     * specification, and increments its version. If the specification has a version,
+     * the {@link Widget} is only updated if it's still at that version, checked and
+     * updated atomically.
      *
      * @param widgetMutationSpec Contains the new values for the {@link Widget}.
      * @return The resulting {@link Widget} after applying the input mutation.
@@ -63,6 +152,8 @@ public interface WidgetManager {
      * the {@link Widget}.
      * @throws NoSuchElementException If there's no {@link Widget} in storage with the
      * {@link UUID} in the specification.
+     * @throws WidgetVersionConflictException If the {@link Widget} is not at the version
+     * in the specification.
      */
     Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException;
 
@@ -76,7 +167,78 @@ public interface WidgetManager {
      * @throws NoSuchElementException If there exists no {@link Widget} with the
      * input {@link UUID}.
      */
-    Widget remove(UUID uuid) throws WidgetManagerException;
+    default Widget remove(UUID uuid) throws WidgetManagerException {
+        return remove(uuid, null);
+    }
+
+    /**
+     * Removes the {@link Widget} with the input {@link UUID} if it's at
+     * {@code expectedVersion}, checked and removed atomically.
+     *
+     * @param uuid {@link UUID} of the {@link Widget} to delete.
+     * @param expectedVersion Version the {@link Widget} must be at, or null if any.
+     * @return The full details of the deleted {@link Widget}.
+     * @throws WidgetManagerException If it was not possible to remove the
+     * {@link Widget} from storage.
+     * @throws NoSuchElementException If there exists no {@link Widget} with the
+     * input {@link UUID}.
+     * @throws WidgetVersionConflictException If the {@link Widget} is not at
+     * {@code expectedVersion}.
+     */
+    Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException;
+
+    /**
+     * Applies {@code operations} in order, each one observing the effects of the
+     * previous ones, and reports the outcome of each operation. The failure of
+     * one operation doesn't prevent the following ones from being applied, unless
+     * the batch is {@code atomic}: in that case, all operations are checked first,
+     * and if any of them would fail, none is applied.
+     * </p>
+     * The default implementation applies every operation through {@link #create},
+     * {@link #update} and {@link #remove}, so other mutations may interleave with
+     * the batch. Implementing classes are expected to override it so that the whole
+     * batch is applied in isolation.
+     *
+     * @param operations Operations to apply.
+     * @param atomic true iff the batch must be applied either fully or not at all.
+     * @return A result per operation, in the same order.
+     * @throws WidgetManagerException If it was not possible to apply the batch.
+     */
+    default List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        if (atomic) {
+            final List<BatchResult> rejected = WidgetOps.checkBatch(operations, uuid -> {
+                try {
+                    return get(uuid);
+                } catch (NoSuchElementException | WidgetManagerException ex) {
+                    return null;
+                }
+            });
+            if (rejected != null) return rejected;
+        }
+
+        final List<BatchResult> results = new ArrayList<>(operations.size());
+        for (BatchOperation operation : operations) {
+            results.add(WidgetOps.tryApply(() -> {
+                switch (operation.getType()) {
+                    case CREATE: return create(operation.getCreate());
+                    case UPDATE: return update(operation.getUpdate());
+                    default: return remove(operation.getDelete());
+                }
+            }));
+        }
+        return results;
+    }
+
+    /**
+     * Returns a number that grows every time the set of {@link Widget}s changes, starting
+     * at 0 when the implementing class is instantiated. It's only increased once a change
+     * is visible, so the {@link Widget}s read after reading the version are at least as
+     * recent as that version.
+     *
+     * @return The current version of the set of {@link Widget}s.
+     */
+    long getVersion();
 
     /**
      * @return true iff there's no {@link Widget} in storage.
@@ -0,0 +1,41 @@
+package com.marcos_sb.widgets.model;
+
+/**
+ * Gets the measurements a {@link WidgetManager} takes of its internals: how many
+ * widgets get shifted up by a single mutation, and how long its locks are waited for
+ * and held. Measurements are taken on every mutation, from within the manager's
+ * critical section, so implementations must be fast, thread-safe and allocation-free.
+ */
+public interface WidgetManagerMetrics {
+
+    enum LockType {
+        // Serializes the mutations that may change z-indexes
+        MUTATION,
+        // Shared by the updates that leave z-indexes as is
+        MOVE,
+        // Serializes the updates to a single widget that leave z-indexes as is
+        WIDGET,
+        // Keeps readers out while a widget is lowered below the ones it shifts up
+        SHIFT
+    }
+
+    WidgetManagerMetrics NONE = new WidgetManagerMetrics() {
+        @Override
+        public void recordShift(int nShifted) {}
+
+        @Override
+        public void recordLockWait(LockType lockType, long nanos) {}
+
+        @Override
+        public void recordLockHold(LockType lockType, long nanos) {}
+    };
+
+    /**
+     * @param nShifted Number of widgets shifted up by a single create or update.
+     */
+    void recordShift(int nShifted);
+
+    void recordLockWait(LockType lockType, long nanos);
+
+    void recordLockHold(LockType lockType, long nanos);
+}
@@ -1,12 +1,20 @@
 package com.marcos_sb.widgets.model.impl;
 
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
 import com.marcos_sb.widgets.resource.NewWidgetSpec;
 import com.marcos_sb.widgets.resource.Widget;
 import com.marcos_sb.widgets.resource.WidgetMutationSpec;
 import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.UUIDGenerator;
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.model.WidgetChangeListener.ChangeType;
 import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.WidgetManagerMetrics;
+import com.marcos_sb.widgets.model.WidgetManagerMetrics.LockType;
+import com.marcos_sb.widgets.util.RTree;
 import com.marcos_sb.widgets.util.WidgetOps;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -15,6 +23,8 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.slf4j.Logger;
@@ -32,104 +42,192 @@ import org.slf4j.LoggerFactory;
  * more often than any other.
  * </p>
  * This implementation provides thread-safety to client classes using two-level
- * locking with a {@link ReentrantLock} to protect the critical section in
- * state-mutating operations, and a {@link ReentrantReadWriteLock} to maintain the
+ * locking with a {@link ReentrantReadWriteLock} to protect the critical section in
+ * state-mutating operations, and another one to maintain the
  * consistency requirements while updating the {@link Widget}'s z-index
  * in case of overlapping z-indexes -- otherwise, reading operations may observe a state
  * that's missing {@link Widget}s that another thread is shifting. This thread-locking
  * approach has been implemented to reduce blocking as much as possible.
  * </p>
+ * Mutations that may change any z-index take the write lock of the former, and so
+ * are serialized. Updates that leave the z-index of the {@link Widget} as is, i.e.
+ * moves and resizes, only take its read lock, plus one out of a fixed set of
+ * {@link ReentrantLock}s picked by UUID: they run concurrently with each other, and
+ * only wait for z-index changes and for updates to the same {@link Widget}. Every
+ * instance has a set of {@link ReentrantLock}s of its own, allocated on its first move
+ * or resize, so instances never contend with each other.
+ * </p>
+ * The z-ordered set holds a {@link ZSlot} per {@link Widget}, i.e. its place in the
+ * z-order. A move or resize swaps the {@link Widget} in its slot, so the set itself is
+ * only modified by z-index changes, and readers traversing it always find the
+ * {@link Widget} being moved, either before or after the move.
+ * </p>
  * Additionally, this class relies on the concurrency mechanics provided by
  * the {@link ConcurrentHashMap} for average-case constant-time {@link Widget}
  * look-ups, and the {@link ConcurrentSkipListSet} for logarithmic-time z-index look-ups,
- * and thread-safe traversals of the {@Widget} set.
+ * and thread-safe traversals of the {@link Widget} set.
+ * </p>
+ * Every change, including the z-index shifts, is reported to a
+ * {@link WidgetChangeListener} while still holding the lock, i.e. in the order
+ * the changes are applied. Moves and resizes of different {@link Widget}s may be
+ * reported concurrently, so listeners must be thread-safe.
+ * </p>
+ * No monitor is ever entered, here nor in the structures above: virtual threads
+ * waiting for any of the locks are unmounted rather than pinned to their carrier, as
+ * long as the {@link WidgetChangeListener} doesn't block in one either.
+ * </p>
+ * {@link Widget}s are also indexed by their area in an {@link RTree}, guarded by its
+ * own {@link ReentrantReadWriteLock}, so area and point queries only visit the relevant
+ * {@link Widget}s.
+ * </p>
+ * The number of {@link Widget}s shifted up by every mutation, and the time the locks
+ * taken by mutations are waited for and held, are reported to a
+ * {@link WidgetManagerMetrics}.
+ * </p>
+ * The {@link UUID}s of new {@link Widget}s come from a {@link UUIDGenerator}, called
+ * before taking any lock, so the critical section of a create only checks the
+ * {@link UUID} is not taken and indexes the {@link Widget}.
  *
  * @see WidgetManager
  */
 public class BlockingWidgetManager implements WidgetManager {
 
     private static final int zIndexStep = 10;
+    // A power of 2
+    private static final int nWidgetLocks = 256;
     private static Logger logger = LoggerFactory.getLogger(BlockingWidgetManager.class);
 
     private final ConcurrentMap<UUID, Widget> uuid2widget;
-    private final ConcurrentSkipListSet<Widget> widgets;
-    private final ReentrantLock lock;
+    private final ConcurrentSkipListSet<ZSlot> widgets;
+    // Allocated on the first move or resize, as most canvases never need them
+    private final AtomicReference<ReentrantLock[]> widgetLocks;
+    private final ReentrantReadWriteLock lock;
     private final ReentrantReadWriteLock rwLock;
+    private final RTree<Widget> widgetsByArea;
+    private final ReentrantReadWriteLock areaLock;
+    private final WidgetChangeListener listener;
+    private final WidgetManagerMetrics metrics;
+    private final UUIDGenerator uuidGenerator;
+    private final AtomicLong version;
+    // Guarded by the write lock of 'lock'
+    private long mutationLockedAt;
+    // Guarded by the write lock of 'rwLock'
+    private long shiftLockedAt;
 
+    /**
+     * Manages the {@link Widget}s in {@code uuid2widget}, which is kept up to date.
+     *
+     * @throws IllegalArgumentException If some of the {@link Widget}s share a z-index.
+     */
     public BlockingWidgetManager(ConcurrentMap<UUID, Widget> uuid2widget,
-                                 ConcurrentSkipListSet<Widget> widgets) {
+                                 WidgetChangeListener listener,
+                                 WidgetManagerMetrics metrics,
+                                 UUIDGenerator uuidGenerator) {
         this.uuid2widget = uuid2widget;
-        this.widgets = widgets;
-        this.lock = new ReentrantLock(true);
+        this.widgets = new ConcurrentSkipListSet<>(Comparator.comparingInt(ZSlot::getZIndex));
+        // Adding in z-index order is several times faster than in hash order
+        final List<Widget> byZIndex = WidgetOps.sortByZIndex(new ArrayList<>(uuid2widget.values()));
+        for (int i = 0; i < byZIndex.size(); i++) {
+            final Widget widget = byZIndex.get(i);
+            if (i > 0 && byZIndex.get(i - 1).getZIndex() == widget.getZIndex())
+                throw new IllegalArgumentException(String.format("Widgets '%s' and '%s' share z-index %d",
+                    byZIndex.get(i - 1).getUUID(), widget.getUUID(), widget.getZIndex()));
+            widgets.add(new ZSlot(widget));
+        }
+        this.widgetLocks = new AtomicReference<>();
+        this.lock = new ReentrantReadWriteLock(true);
         this.rwLock = new ReentrantReadWriteLock(true);
+        this.widgetsByArea = RTree.pack(new ArrayList<>(uuid2widget.values()), (widget, rectangle) -> {
+            rectangle[0] = widget.getX();
+            rectangle[1] = widget.getY();
+            rectangle[2] = widget.getX() + widget.getWidth();
+            rectangle[3] = widget.getY() + widget.getHeight();
+        });
+        this.areaLock = new ReentrantReadWriteLock();
+        this.listener = listener;
+        this.metrics = metrics;
+        this.uuidGenerator = uuidGenerator;
+        this.version = new AtomicLong();
+    }
+
+    public BlockingWidgetManager(ConcurrentMap<UUID, Widget> uuid2widget,
+                                 WidgetChangeListener listener,
+                                 WidgetManagerMetrics metrics) {
+        this(uuid2widget, listener, metrics, UUIDGenerator.RANDOM);
+    }
+
+    public BlockingWidgetManager(ConcurrentMap<UUID, Widget> uuid2widget,
+                                 WidgetChangeListener listener) {
+        this(uuid2widget, listener, WidgetManagerMetrics.NONE);
+    }
+
+    public BlockingWidgetManager(ConcurrentMap<UUID, Widget> uuid2widget) {
+        this(uuid2widget, WidgetChangeListener.NONE);
+    }
+
+    public BlockingWidgetManager(WidgetChangeListener listener, WidgetManagerMetrics metrics,
+                                 UUIDGenerator uuidGenerator) {
+        this(new ConcurrentHashMap<>(), listener, metrics, uuidGenerator);
+    }
+
+    public BlockingWidgetManager(WidgetChangeListener listener, WidgetManagerMetrics metrics) {
+        this(listener, metrics, UUIDGenerator.RANDOM);
+    }
+
+    public BlockingWidgetManager(WidgetChangeListener listener) {
+        this(listener, WidgetManagerMetrics.NONE);
     }
 
     public BlockingWidgetManager() {
-        this(new ConcurrentHashMap<>(),
-             new ConcurrentSkipListSet<>(Comparator.comparingInt(Widget::getZIndex)));
+        this(WidgetChangeListener.NONE);
     }
 
     @Override
     public Widget create(NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        final UUID uuid = uuidGenerator.next();
         try {
-            lock.lock();
-
-            UUID uuid;
-            do { uuid = UUID.randomUUID(); } while (uuid2widget.containsKey(uuid));
-
-            // If the widget spec specifies a z-index value, existing widgets may
-            // need to be shifted up.
-            Widget newWidget;
-            if (newWidgetSpec.hasZIndex()) {
-                newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, newWidgetSpec.getzIndex());
-                shiftOverlyingWidgetsUp(newWidget);
-            } else {
-                final int topZIndex = widgets.isEmpty() ? 0 : widgets.last().getZIndex();
-                final int newWidgetZIndex = topZIndex + zIndexStep;
-                newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, newWidgetZIndex);
-            }
-
-            uuid2widget.put(uuid, newWidget);
-            widgets.add(newWidget);
-
-            return newWidget;
+            lockMutation();
+            return doCreate(uuid, newWidgetSpec);
         } catch (Exception ex) {
             throw new WidgetManagerException(
                 String.format("An error occurred while creating a new widget '%s'", newWidgetSpec), ex);
         } finally {
-            lock.unlock();
+            unlockMutation();
         }
     }
 
-    private void shiftOverlyingWidgetsUp(Widget widget) {
-        final Widget floorWidget = widgets.floor(widget);
-        if (floorWidget != null && floorWidget.getZIndex() == widget.getZIndex()) {
-            final List<Widget> toIncZIndex = new ArrayList<>();
-
-            // Finds first gap between widgets above 'newWidget'
-            // and keeps track of all back-to-back widgets starting from 'floorWidget',
-            // as they will have to be shifted up to open a gap for 'newWidget'
-            Widget prev = floorWidget;
-            Widget current;
-            while (true) {
-                toIncZIndex.add(prev);
-                current = widgets.higher(prev);
-                if (current != null && current.getZIndex() == prev.getZIndex() + 1)
-                    prev = current;
-                else break;
-            }
+    // Must be called holding the write lock of 'lock'
+    private Widget doCreate(UUID uuid, NewWidgetSpec newWidgetSpec) {
+        while (uuid2widget.containsKey(uuid))
+            uuid = uuidGenerator.next();
 
-            // Increments the z-index of all back-to-back widgets in-place, traversing
-            // from highest to lowest z-index. This strategy will preserve the skip list
-            // ordering invariant w/o forcing read ops to get a lock to observe this shifting
-            // as atomic.
-            // Different threads may observe different states of the skip list, but no snapshot
-            // of the skip list will contain duplicate z-indexes.
-            for (int i = toIncZIndex.size() - 1; i >= 0; i--) {
-                final Widget w = toIncZIndex.get(i);
-                w.setZIndex(w.getZIndex() + 1);
-            }
+        // If the widget spec specifies a z-index value, existing widgets may
+        // need to be shifted up.
+        Widget newWidget;
+        if (newWidgetSpec.hasZIndex()) {
+            newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, newWidgetSpec.getzIndex());
+            shiftOverlyingWidgetsUp(newWidget);
+        } else {
+            final int topZIndex = widgets.isEmpty() ? 0 : widgets.last().getZIndex();
+            final int newWidgetZIndex = topZIndex + zIndexStep;
+            newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, newWidgetZIndex);
         }
+
+        uuid2widget.put(uuid, newWidget);
+        widgets.add(new ZSlot(newWidget));
+        index(newWidget);
+        listener.onChange(ChangeType.CREATE, newWidget);
+        version.incrementAndGet();
+
+        return newWidget;
+    }
+
+    private void shiftOverlyingWidgetsUp(Widget widget) {
+        final List<Widget> shiftedWidgets =
+            WidgetOps.shiftOverlyingWidgetsUp(widgets, new ZSlot(widget), ZSlot::getWidget);
+        metrics.recordShift(shiftedWidgets.size());
+        for (Widget shifted : shiftedWidgets)
+            listener.onChange(ChangeType.SHIFT, shifted);
     }
 
     @Override
@@ -155,7 +253,10 @@ public class BlockingWidgetManager implements WidgetManager {
     public List<Widget> getAllByZIndex() throws WidgetManagerException {
         try {
             rwLock.readLock().lock();
-            return new ArrayList<>(widgets);
+            final List<Widget> allWidgets = new ArrayList<>(widgets.size());
+            for (ZSlot slot : widgets)
+                allWidgets.add(slot.widget);
+            return allWidgets;
         } catch (Exception ex) {
             throw new WidgetManagerException("An error occurred while getting the list of widgets", ex);
         } finally {
@@ -163,87 +264,305 @@ public class BlockingWidgetManager implements WidgetManager {
         }
     }
 
+    @Override
+    public List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit)
+        throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        try {
+            rwLock.readLock().lock();
+            return WidgetOps.rangeByZIndex(widgets, ZSlot::probe, ZSlot::getWidget, fromZIndex, toZIndex, limit);
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets in z-index range [%d, %d]",
+                    fromZIndex, toZIndex), ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Widget> getAllInArea(long x1, long y1, long x2, long y2) throws WidgetManagerException {
+        WidgetOps.checkArea(x1, y1, x2, y2);
+        final List<Widget> inArea = new ArrayList<>();
+        try {
+            areaLock.readLock().lock();
+            widgetsByArea.search(x1, y1, x2, y2, inArea::add);
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets in area [%d, %d, %d, %d]",
+                    x1, y1, x2, y2), ex);
+        } finally {
+            areaLock.readLock().unlock();
+        }
+        return WidgetOps.sortByZIndex(inArea);
+    }
+
+    @Override
+    public List<Widget> getAllAt(long x, long y, int limit) throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        final List<Widget> atPoint = new ArrayList<>();
+        try {
+            areaLock.readLock().lock();
+            widgetsByArea.search(x, y, x, y, atPoint::add);
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets at (%d, %d)", x, y), ex);
+        } finally {
+            areaLock.readLock().unlock();
+        }
+        return WidgetOps.topByZIndex(atPoint, limit);
+    }
+
     @Override
     public Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException {
         try {
-            lock.lock();
+            final Widget updated = tryUpdateGeometry(widgetMutationSpec);
+            if (updated != null) return updated;
+            lockMutation();
+            return doUpdate(widgetMutationSpec);
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while updating a widget '%s'", widgetMutationSpec), ex);
+        } finally {
+            if (rwLock.isWriteLockedByCurrentThread())
+                unlockShift();
+            if (lock.isWriteLockedByCurrentThread())
+                unlockMutation();
+        }
+    }
 
-            final Instant now = Instant.now();
-            final UUID uuid = widgetMutationSpec.getUUID();
-            if (!uuid2widget.containsKey(uuid))
+    // Applies the update if it leaves the z-index as is, or returns null otherwise.
+    // No z-index changes while holding the read lock of 'lock', so the widget keeps
+    // its slot in 'widgets', and the lock of the widget keeps out other updates to it.
+    private Widget tryUpdateGeometry(WidgetMutationSpec widgetMutationSpec) {
+        final UUID uuid = widgetMutationSpec.getUUID();
+        final ReentrantLock widgetLock = widgetLock(uuid);
+        final long start = System.nanoTime();
+        lock.readLock().lock();
+        final long moveLockedAt = System.nanoTime();
+        widgetLock.lock();
+        final long widgetLockedAt = System.nanoTime();
+        metrics.recordLockWait(LockType.MOVE, moveLockedAt - start);
+        metrics.recordLockWait(LockType.WIDGET, widgetLockedAt - moveLockedAt);
+        try {
+            final Widget oldWidget = uuid2widget.get(uuid);
+            if (oldWidget == null)
                 throw new NoSuchElementException(
                     String.format("Widget with uuid '%s' not found", uuid));
+            if (widgetMutationSpec.hasZIndex() && widgetMutationSpec.getZIndex() != oldWidget.getZIndex())
+                return null;
 
-            final Widget oldWidget = uuid2widget.get(uuid);
-            if (now.isBefore(oldWidget.getLastModified())) {
-                logger.info("Skipping stale update '{}'", widgetMutationSpec);
-                return oldWidget;
-            }
-            final Widget newWidget =
-                WidgetOps.update(oldWidget, widgetMutationSpec);
-
-            // If there's no change to the z-index, no shifting is required.
-
-            // If the z-index has been increased, only the overlying widgets
-            // with the new z-index may need to be shifted.
-
-            // If the z-index has been decreased, the underlying widgets
-            // may need to be shifted. In this case, this shifting may
-            // produce overlapping z-indexes between 'oldWidget' and the
-            // widget immediately below 'oldWidget'.
-            // Removing 'oldWidget', shifting and adding 'newWidget' solves the issue,
-            // but any thread traversing the skip list may not see either
-            // 'oldWidget' or 'newWidget'. Adding a RW lock is a possible solution.
-            if (newWidget.getZIndex() < oldWidget.getZIndex()) {
-                rwLock.writeLock().lock();
-                widgets.remove(oldWidget);
-                shiftOverlyingWidgetsUp(newWidget);
-                uuid2widget.replace(uuid, newWidget);
-                widgets.add(newWidget);
-                return newWidget;
-            }
+            final Widget newWidget = WidgetOps.update(oldWidget, widgetMutationSpec);
+            uuid2widget.replace(uuid, newWidget);
+            widgets.ceiling(new ZSlot(oldWidget)).widget = newWidget;
+            reindex(oldWidget, newWidget);
+            listener.onChange(ChangeType.UPDATE, newWidget);
+            version.incrementAndGet();
+            return newWidget;
+        } finally {
+            final long end = System.nanoTime();
+            widgetLock.unlock();
+            lock.readLock().unlock();
+            metrics.recordLockHold(LockType.WIDGET, end - widgetLockedAt);
+            metrics.recordLockHold(LockType.MOVE, end - moveLockedAt);
+        }
+    }
 
-            if (oldWidget.getZIndex() < newWidget.getZIndex())
-                shiftOverlyingWidgetsUp(newWidget);
+    // Must be called holding the write lock of 'lock'. It may leave the write lock of 'rwLock' held,
+    // so callers must release it.
+    private Widget doUpdate(WidgetMutationSpec widgetMutationSpec) {
+        final UUID uuid = widgetMutationSpec.getUUID();
+        if (!uuid2widget.containsKey(uuid))
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
 
-            uuid2widget.replace(uuid, newWidget);
-            widgets.remove(oldWidget);
-            widgets.add(newWidget);
+        final Widget oldWidget = uuid2widget.get(uuid);
+        final Widget newWidget =
+            WidgetOps.update(oldWidget, widgetMutationSpec);
+
+        // If there's no change to the z-index, no shifting is required.
 
+        // If the z-index has been increased, only the overlying widgets
+        // with the new z-index may need to be shifted.
+
+        // If the z-index has been decreased, the underlying widgets
+        // may need to be shifted. In this case, this shifting may
+        // produce overlapping z-indexes between 'oldWidget' and the
+        // widget immediately below 'oldWidget'.
+        // Removing 'oldWidget', shifting and adding 'newWidget' solves the issue,
+        // but any thread traversing the skip list may not see either
+        // 'oldWidget' or 'newWidget'. Adding a RW lock is a possible solution.
+        if (newWidget.getZIndex() < oldWidget.getZIndex()) {
+            if (!rwLock.isWriteLockedByCurrentThread())
+                lockShift();
+            widgets.remove(new ZSlot(oldWidget));
+            shiftOverlyingWidgetsUp(newWidget);
+            uuid2widget.replace(uuid, newWidget);
+            widgets.add(new ZSlot(newWidget));
+            reindex(oldWidget, newWidget);
+            listener.onChange(ChangeType.UPDATE, newWidget);
+            version.incrementAndGet();
             return newWidget;
-        } catch (NoSuchElementException ex) {
+        }
+
+        if (oldWidget.getZIndex() < newWidget.getZIndex())
+            shiftOverlyingWidgetsUp(newWidget);
+
+        uuid2widget.replace(uuid, newWidget);
+        widgets.remove(new ZSlot(oldWidget));
+        widgets.add(new ZSlot(newWidget));
+        reindex(oldWidget, newWidget);
+        listener.onChange(ChangeType.UPDATE, newWidget);
+        version.incrementAndGet();
+
+        return newWidget;
+    }
+
+    @Override
+    public Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException {
+        try {
+            lockMutation();
+            return doRemove(uuid, expectedVersion);
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
             throw ex;
         } catch (Exception ex) {
             throw new WidgetManagerException(
-                String.format("An error occurred while updating a widget '%s'", widgetMutationSpec), ex);
+                String.format("An error occurred while removing a widget, uuid '%s'", uuid), ex);
         } finally {
-            if (rwLock.isWriteLockedByCurrentThread())
-                rwLock.writeLock().unlock();
-            lock.unlock();
+            unlockMutation();
         }
     }
 
+    // Must be called holding the write lock of 'lock'
+    private Widget doRemove(UUID uuid, Long expectedVersion) {
+        if (!uuid2widget.containsKey(uuid))
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+
+        final Widget widget = uuid2widget.get(uuid);
+        WidgetOps.checkVersion(widget, expectedVersion);
+        widgets.remove(new ZSlot(widget));
+        unindex(widget);
+        // Gone before it's reported, as listeners may read the map, e.g. to checkpoint it
+        uuid2widget.remove(uuid);
+        listener.onChange(ChangeType.REMOVE, widget);
+        version.incrementAndGet();
+        return widget;
+    }
+
+    /**
+     * Applies the whole batch under a single acquisition of the mutation lock, so
+     * no other mutation interleaves with it. Once a z-index decrease takes the write
+     * lock that hides shifting from readers, it's kept until the batch completes.
+     */
     @Override
-    public Widget remove(UUID uuid) throws WidgetManagerException {
+    public List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        final UUID[] newUUIDs = new UUID[operations.size()];
+        for (int i = 0; i < newUUIDs.length; i++) {
+            if (operations.get(i).getType() == BatchOperation.Type.CREATE)
+                newUUIDs[i] = uuidGenerator.next();
+        }
         try {
-            lock.lock();
-
-            if (!uuid2widget.containsKey(uuid))
-                throw new NoSuchElementException(
-                    String.format("Widget with uuid '%s' not found", uuid));
+            lockMutation();
+            if (atomic) {
+                final List<BatchResult> rejected = WidgetOps.checkBatch(operations, uuid2widget::get);
+                if (rejected != null) return rejected;
+            }
 
-            widgets.remove(uuid2widget.get(uuid));
-            return uuid2widget.remove(uuid);
-        } catch (NoSuchElementException ex) {
-            throw ex;
+            final List<BatchResult> results = new ArrayList<>(operations.size());
+            for (int i = 0; i < operations.size(); i++) {
+                final BatchOperation operation = operations.get(i);
+                final UUID newUUID = newUUIDs[i];
+                results.add(WidgetOps.tryApply(() -> {
+                    switch (operation.getType()) {
+                        case CREATE: return doCreate(newUUID, operation.getCreate());
+                        case UPDATE: return doUpdate(operation.getUpdate());
+                        default: return doRemove(operation.getDelete(), null);
+                    }
+                }));
+            }
+            return results;
         } catch (Exception ex) {
             throw new WidgetManagerException(
-                String.format("An error occurred while removing a widget, uuid '%s'", uuid), ex);
+                String.format("An error occurred while applying a batch of %d operations",
+                    operations.size()), ex);
         } finally {
-            lock.unlock();
+            if (rwLock.isWriteLockedByCurrentThread())
+                unlockShift();
+            unlockMutation();
         }
     }
 
+    private ReentrantLock widgetLock(UUID uuid) {
+        ReentrantLock[] locks = widgetLocks.get();
+        if (locks == null) {
+            final ReentrantLock[] allocated = new ReentrantLock[nWidgetLocks];
+            for (int i = 0; i < nWidgetLocks; i++)
+                allocated[i] = new ReentrantLock();
+            locks = widgetLocks.compareAndSet(null, allocated) ? allocated : widgetLocks.get();
+        }
+        return locks[uuid.hashCode() & (nWidgetLocks - 1)];
+    }
+
+    private void lockMutation() {
+        final long start = System.nanoTime();
+        lock.writeLock().lock();
+        mutationLockedAt = System.nanoTime();
+        metrics.recordLockWait(LockType.MUTATION, mutationLockedAt - start);
+    }
+
+    private void unlockMutation() {
+        final long held = System.nanoTime() - mutationLockedAt;
+        lock.writeLock().unlock();
+        metrics.recordLockHold(LockType.MUTATION, held);
+    }
+
+    private void lockShift() {
+        final long start = System.nanoTime();
+        rwLock.writeLock().lock();
+        shiftLockedAt = System.nanoTime();
+        metrics.recordLockWait(LockType.SHIFT, shiftLockedAt - start);
+    }
+
+    private void unlockShift() {
+        final long held = System.nanoTime() - shiftLockedAt;
+        rwLock.writeLock().unlock();
+        metrics.recordLockHold(LockType.SHIFT, held);
+    }
+
+    private void index(Widget widget) {
+        try {
+            areaLock.writeLock().lock();
+            widgetsByArea.insert(widget.getX(), widget.getY(),
+                widget.getX() + widget.getWidth(), widget.getY() + widget.getHeight(), widget);
+        } finally {
+            areaLock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(Widget widget) {
+        try {
+            areaLock.writeLock().lock();
+            widgetsByArea.remove(widget.getX(), widget.getY(),
+                widget.getX() + widget.getWidth(), widget.getY() + widget.getHeight(), widget);
+        } finally {
+            areaLock.writeLock().unlock();
+        }
+    }
+
+    private void reindex(Widget oldWidget, Widget newWidget) {
+        unindex(oldWidget);
+        index(newWidget);
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
     @Override
     public boolean isEmpty() {
         return uuid2widget.isEmpty() && widgets.isEmpty();
@@ -253,4 +572,27 @@ public class BlockingWidgetManager implements WidgetManager {
     public int size() {
         return uuid2widget.size();
     }
+
+    // The place of a widget in the z-order. The widget is only swapped while its z-index
+    // stays the same, so the order of the slots never changes but through z-index shifts.
+    private static final class ZSlot {
+
+        volatile Widget widget;
+
+        ZSlot(Widget widget) {
+            this.widget = widget;
+        }
+
+        static ZSlot probe(int zIndex) {
+            return new ZSlot(WidgetOps.zIndexProbe(zIndex));
+        }
+
+        Widget getWidget() {
+            return widget;
+        }
+
+        int getZIndex() {
+            return widget.getZIndex();
+        }
+    }
 }
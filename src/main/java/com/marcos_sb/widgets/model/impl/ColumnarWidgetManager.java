@@ -0,0 +1,401 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.UUIDSlotMap;
+import com.marcos_sb.widgets.util.WidgetOps;
+import com.marcos_sb.widgets.util.ZIndexBlocks;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a thread-safe in-memory {@link WidgetManager} that keeps the
+ * properties of its {@link Widget}s in primitive columns rather than as objects. The
+ * consistency guarantees provided by this implementation include those specified in the
+ * {@link WidgetManager} interface, namely UUID and z-index uniqueness, and atomic
+ * updates to the {@link Widget}'s properties.
+ * </p>
+ * Every {@link Widget} is assigned a slot, i.e. an index into one array per property;
+ * slots are recycled once their {@link Widget} is removed. {@link UUID}s are mapped to
+ * slots through a {@link UUIDSlotMap}, and z-indexes through a {@link ZIndexBlocks}, so
+ * no structure holds an object per {@link Widget}: the collector has a handful of large
+ * arrays to deal with, whatever the number of {@link Widget}s, and the footprint is
+ * around 130 bytes per {@link Widget}, half that of {@link BlockingWidgetManager}.
+ * {@link Widget} objects are only created when returned.
+ * </p>
+ * Area and point queries scan the columns in z-index order instead of using a spatial
+ * index, which would hold objects per {@link Widget}. The scan is cheap over primitive
+ * arrays but linear in the number of {@link Widget}s, whatever the size of the result.
+ * </p>
+ * The columns are guarded by a {@link ReentrantReadWriteLock}: reading operations may run
+ * concurrently with each other, and observe no partial updates.
+ *
+ * @see WidgetManager
+ */
+public class ColumnarWidgetManager implements WidgetManager {
+
+    private static final int zIndexStep = 10;
+    private static final int defaultCapacity = 1024;
+    private static Logger logger = LoggerFactory.getLogger(ColumnarWidgetManager.class);
+
+    private final UUIDSlotMap uuid2slot;
+    private final ZIndexBlocks zIndex2slot;
+    private final ReentrantReadWriteLock rwLock;
+    // Only written holding the write lock
+    private volatile long version;
+
+    // Columns, indexed by slot
+    private long[] uuidMostSigBits;
+    private long[] uuidLeastSigBits;
+    private long[] xs;
+    private long[] ys;
+    private double[] widths;
+    private double[] heights;
+    private int[] zIndexes;
+    // Nanoseconds since the epoch
+    private long[] lastModifieds;
+    private long[] versions;
+
+    // Slots below 'nextSlot' that have been freed
+    private int[] freeSlots;
+    private int nFreeSlots;
+    private int nextSlot;
+
+    public ColumnarWidgetManager(int initialCapacity) {
+        final int capacity = Math.max(1, initialCapacity);
+        this.uuid2slot = new UUIDSlotMap(capacity);
+        this.zIndex2slot = new ZIndexBlocks();
+        this.rwLock = new ReentrantReadWriteLock();
+        this.uuidMostSigBits = new long[capacity];
+        this.uuidLeastSigBits = new long[capacity];
+        this.xs = new long[capacity];
+        this.ys = new long[capacity];
+        this.widths = new double[capacity];
+        this.heights = new double[capacity];
+        this.zIndexes = new int[capacity];
+        this.lastModifieds = new long[capacity];
+        this.versions = new long[capacity];
+        this.freeSlots = new int[0];
+    }
+
+    public ColumnarWidgetManager() {
+        this(defaultCapacity);
+    }
+
+    @Override
+    public Widget create(NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            return doCreate(newWidgetSpec);
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while creating a new widget '%s'", newWidgetSpec), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private Widget doCreate(NewWidgetSpec newWidgetSpec) {
+        UUID uuid;
+        do { uuid = UUID.randomUUID(); } while (uuid2slot.containsKey(uuid));
+
+        final int zIndex = newWidgetSpec.hasZIndex()
+            ? newWidgetSpec.getzIndex()
+            : (zIndex2slot.isEmpty() ? 0 : zIndex2slot.lastZIndex()) + zIndexStep;
+
+        // Validates the spec, so must precede the shift for a rejected one to change nothing
+        final Widget newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, zIndex);
+        if (newWidgetSpec.hasZIndex()) shiftOverlyingWidgetsUp(zIndex);
+        final int slot = allocateSlot();
+        store(slot, newWidget);
+        uuid2slot.put(uuid, slot);
+        zIndex2slot.put(zIndex, slot);
+        version++;
+        return newWidget;
+    }
+
+    @Override
+    public Widget get(UUID uuid) throws WidgetManagerException {
+        try {
+            rwLock.readLock().lock();
+            return materialize(slotOf(uuid));
+        } catch (NoSuchElementException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting a widget, uuid '%s'", uuid), ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Widget> getAllByZIndex() throws WidgetManagerException {
+        try {
+            rwLock.readLock().lock();
+            final List<Widget> allWidgets = new ArrayList<>(zIndex2slot.size());
+            zIndex2slot.forEachFrom(Integer.MIN_VALUE, (zIndex, slot) -> allWidgets.add(materialize(slot)));
+            return allWidgets;
+        } catch (Exception ex) {
+            throw new WidgetManagerException("An error occurred while getting the list of widgets", ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit)
+        throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        try {
+            rwLock.readLock().lock();
+            final List<Widget> range = new ArrayList<>();
+            zIndex2slot.forEachFrom(fromZIndex, (zIndex, slot) -> {
+                if (zIndex > toZIndex) return false;
+                range.add(materialize(slot));
+                return range.size() < limit;
+            });
+            return range;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets in z-index range [%d, %d]",
+                    fromZIndex, toZIndex), ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Widget> getAllInArea(long x1, long y1, long x2, long y2) throws WidgetManagerException {
+        WidgetOps.checkArea(x1, y1, x2, y2);
+        try {
+            rwLock.readLock().lock();
+            final List<Widget> inArea = new ArrayList<>();
+            zIndex2slot.forEachFrom(Integer.MIN_VALUE, (zIndex, slot) -> {
+                if (intersects(slot, x1, y1, x2, y2))
+                    inArea.add(materialize(slot));
+                return true;
+            });
+            return inArea;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets in area (%d, %d, %d, %d)",
+                    x1, y1, x2, y2), ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Widget> getAllAt(long x, long y, int limit) throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        try {
+            rwLock.readLock().lock();
+            final List<Widget> atPoint = new ArrayList<>();
+            zIndex2slot.forEachDescending((zIndex, slot) -> {
+                if (intersects(slot, x, y, x, y))
+                    atPoint.add(materialize(slot));
+                return atPoint.size() < limit;
+            });
+            return atPoint;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets at (%d, %d)", x, y), ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            return doUpdate(widgetMutationSpec);
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while updating a widget '%s'", widgetMutationSpec), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private Widget doUpdate(WidgetMutationSpec widgetMutationSpec) {
+        final int slot = slotOf(widgetMutationSpec.getUUID());
+        final Widget oldWidget = materialize(slot);
+        final Widget newWidget = WidgetOps.update(oldWidget, widgetMutationSpec);
+
+        // Once its own z-index is free, moving the widget behaves as inserting it
+        zIndex2slot.remove(oldWidget.getZIndex());
+        shiftOverlyingWidgetsUp(newWidget.getZIndex());
+        zIndex2slot.put(newWidget.getZIndex(), slot);
+        store(slot, newWidget);
+        version++;
+        return newWidget;
+    }
+
+    @Override
+    public Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            return doRemove(uuid, expectedVersion);
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while removing a widget, uuid '%s'", uuid), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private Widget doRemove(UUID uuid, Long expectedVersion) {
+        final int slot = slotOf(uuid);
+        final Widget widget = materialize(slot);
+        WidgetOps.checkVersion(widget, expectedVersion);
+        uuid2slot.remove(uuid);
+        zIndex2slot.remove(widget.getZIndex());
+        freeSlot(slot);
+        version++;
+        return widget;
+    }
+
+    /**
+     * Applies the whole batch under a single acquisition of the write lock, so readers
+     * observe either none or all of its effects.
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            if (atomic) {
+                final List<BatchResult> rejected = WidgetOps.checkBatch(operations, uuid -> {
+                    final int slot = uuid2slot.get(uuid);
+                    return slot == UUIDSlotMap.absent ? null : materialize(slot);
+                });
+                if (rejected != null) return rejected;
+            }
+
+            final List<BatchResult> results = new ArrayList<>(operations.size());
+            for (BatchOperation operation : operations) {
+                results.add(WidgetOps.tryApply(() -> {
+                    switch (operation.getType()) {
+                        case CREATE: return doCreate(operation.getCreate());
+                        case UPDATE: return doUpdate(operation.getUpdate());
+                        default: return doRemove(operation.getDelete(), null);
+                    }
+                }));
+            }
+            return results;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while applying a batch of %d operations",
+                    operations.size()), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        try {
+            rwLock.readLock().lock();
+            return uuid2slot.size();
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private void shiftOverlyingWidgetsUp(int zIndex) {
+        zIndex2slot.shiftUp(zIndex, slot -> zIndexes[slot]++);
+    }
+
+    private int slotOf(UUID uuid) {
+        final int slot = uuid2slot.get(uuid);
+        if (slot == UUIDSlotMap.absent)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+        return slot;
+    }
+
+    private boolean intersects(int slot, long x1, long y1, long x2, long y2) {
+        return xs[slot] <= x2 && x1 <= xs[slot] + widths[slot]
+            && ys[slot] <= y2 && y1 <= ys[slot] + heights[slot];
+    }
+
+    private Widget materialize(int slot) {
+        return new Widget(new UUID(uuidMostSigBits[slot], uuidLeastSigBits[slot]),
+            xs[slot], ys[slot], widths[slot], heights[slot], lastModifieds[slot],
+            zIndexes[slot], versions[slot]);
+    }
+
+    // Must be called holding the write lock
+    private void store(int slot, Widget widget) {
+        uuidMostSigBits[slot] = widget.getUUID().getMostSignificantBits();
+        uuidLeastSigBits[slot] = widget.getUUID().getLeastSignificantBits();
+        xs[slot] = widget.getX();
+        ys[slot] = widget.getY();
+        widths[slot] = widget.getWidth();
+        heights[slot] = widget.getHeight();
+        zIndexes[slot] = widget.getZIndex();
+        lastModifieds[slot] = widget.getLastModifiedEpochNanos();
+        versions[slot] = widget.getVersion();
+    }
+
+    // Must be called holding the write lock
+    private int allocateSlot() {
+        if (nFreeSlots > 0)
+            return freeSlots[--nFreeSlots];
+        if (nextSlot == xs.length)
+            resize(xs.length * 2);
+        return nextSlot++;
+    }
+
+    // Must be called holding the write lock
+    private void freeSlot(int slot) {
+        if (nFreeSlots == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeSlots.length * 2));
+        freeSlots[nFreeSlots++] = slot;
+    }
+
+    // Must be called holding the write lock
+    private void resize(int capacity) {
+        uuidMostSigBits = Arrays.copyOf(uuidMostSigBits, capacity);
+        uuidLeastSigBits = Arrays.copyOf(uuidLeastSigBits, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        zIndexes = Arrays.copyOf(zIndexes, capacity);
+        lastModifieds = Arrays.copyOf(lastModifieds, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+    }
+}
@@ -0,0 +1,312 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.UUIDGenerator;
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.model.WidgetChangeListener.ChangeType;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.WidgetManagerMetrics;
+import com.marcos_sb.widgets.persistence.DurabilityMode;
+import com.marcos_sb.widgets.persistence.SnapshotFile;
+import com.marcos_sb.widgets.persistence.WriteAheadLog;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a {@link WidgetManager} whose state survives restarts. It
+ * wraps a {@link BlockingWidgetManager} that reports every change, z-index shifts
+ * included, to a {@link WriteAheadLog}, and returns from every mutation once the log
+ * records it made are durable.
+ * </p>
+ * The consistency guarantees are those of {@link BlockingWidgetManager}. A mutation
+ * that fails to be made durable is reported as failed, even though it's been applied
+ * in memory.
+ * </p>
+ * Checkpoints bound the log to be replayed on restart. A checkpoint starts a new log
+ * segment and then writes a {@link SnapshotFile} while mutations carry on: a
+ * {@link Widget} may be captured in any state it goes through during the checkpoint,
+ * but every one of those changes is logged in the new segment, and replaying it on top
+ * of the snapshot restores the latest state. Once the snapshot is in place, and the log
+ * appended while it was written is in storage, whatever the {@link DurabilityMode}, the
+ * segments and snapshots it supersedes are deleted. The {@link Widget}s restored are
+ * checked to have unique z-indexes, so a snapshot that can't be repaired by the log
+ * after it fails startup.
+ *
+ * @see WriteAheadLog
+ * @see SnapshotFile
+ */
+public class DurableWidgetManager implements WidgetManager, AutoCloseable {
+
+    private static Logger logger = LoggerFactory.getLogger(DurableWidgetManager.class);
+
+    private final WidgetManager delegate;
+    private final Collection<Widget> widgets;
+    private final WriteAheadLog log;
+    private final Path directory;
+    private final ReentrantLock checkpointLock;
+    private final ScheduledExecutorService checkpointer;
+
+    // Guarded by 'checkpointLock'
+    private long checkpointSequence;
+    private boolean closed;
+
+    DurableWidgetManager(WidgetManager delegate, Collection<Widget> widgets, WriteAheadLog log,
+                         Path directory, long snapshotIntervalMillis) {
+        this.delegate = delegate;
+        this.widgets = widgets;
+        this.log = log;
+        this.directory = directory;
+        this.checkpointLock = new ReentrantLock();
+        this.checkpointSequence = log.getAppendedSequence();
+
+        if (snapshotIntervalMillis > 0) {
+            this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "widget-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checkpointer.scheduleWithFixedDelay(this::checkpointQuietly,
+                snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.checkpointer = null;
+        }
+    }
+
+    /**
+     * Rebuilds the {@link Widget}s from the newest snapshot and the log after it in
+     * {@code directory}, if any, and keeps appending to the log. No checkpoints are
+     * taken but those requested through {@link #checkpoint()}.
+     *
+     * @throws IOException If the {@link Widget}s restored don't have unique z-indexes.
+     */
+    public static DurableWidgetManager open(Path directory, DurabilityMode durabilityMode,
+                                            long fsyncIntervalMillis) throws IOException {
+        return open(directory, durabilityMode, fsyncIntervalMillis, 0);
+    }
+
+    /**
+     * Rebuilds the {@link Widget}s from the newest snapshot and the log after it in
+     * {@code directory}, if any, and keeps appending to the log. A checkpoint is taken
+     * every {@code snapshotIntervalMillis} if there have been changes, or never if it's
+     * not positive.
+     */
+    public static DurableWidgetManager open(Path directory, DurabilityMode durabilityMode,
+                                            long fsyncIntervalMillis, long snapshotIntervalMillis)
+        throws IOException {
+        return open(directory, durabilityMode, fsyncIntervalMillis, snapshotIntervalMillis,
+            WidgetChangeListener.NONE);
+    }
+
+    /**
+     * Same as {@link #open(Path, DurabilityMode, long, long)}, and every change applied
+     * afterwards is also reported to {@code listener}, once it's been logged. Changes
+     * restored from {@code directory} are not.
+     */
+    public static DurableWidgetManager open(Path directory, DurabilityMode durabilityMode,
+                                            long fsyncIntervalMillis, long snapshotIntervalMillis,
+                                            WidgetChangeListener listener) throws IOException {
+        return open(directory, durabilityMode, fsyncIntervalMillis, snapshotIntervalMillis, listener,
+            WidgetManagerMetrics.NONE);
+    }
+
+    /**
+     * Same as {@link #open(Path, DurabilityMode, long, long, WidgetChangeListener)}, and
+     * the shifts and lock times of every mutation are reported to {@code metrics}.
+     */
+    public static DurableWidgetManager open(Path directory, DurabilityMode durabilityMode,
+                                            long fsyncIntervalMillis, long snapshotIntervalMillis,
+                                            WidgetChangeListener listener, WidgetManagerMetrics metrics)
+        throws IOException {
+        return open(directory, durabilityMode, fsyncIntervalMillis, snapshotIntervalMillis, listener,
+            metrics, UUIDGenerator.RANDOM);
+    }
+
+    /**
+     * Same as {@link #open(Path, DurabilityMode, long, long, WidgetChangeListener, WidgetManagerMetrics)},
+     * and new {@link Widget}s get their {@link UUID}s from {@code uuidGenerator}.
+     */
+    public static DurableWidgetManager open(Path directory, DurabilityMode durabilityMode,
+                                            long fsyncIntervalMillis, long snapshotIntervalMillis,
+                                            WidgetChangeListener listener, WidgetManagerMetrics metrics,
+                                            UUIDGenerator uuidGenerator) throws IOException {
+        Files.createDirectories(directory);
+        final long start = System.nanoTime();
+        final List<Long> snapshots = SnapshotFile.snapshots(directory);
+        final long fromSegment = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        final Path snapshot = SnapshotFile.snapshotPath(directory, fromSegment);
+        final ConcurrentMap<UUID, Widget> uuid2widget =
+            new ConcurrentHashMap<>(snapshots.isEmpty() ? 16 : (int) SnapshotFile.count(snapshot));
+        if (!snapshots.isEmpty()) {
+            SnapshotFile.read(snapshot, widget -> uuid2widget.put(widget.getUUID(), widget));
+            logger.info("Loaded {} widgets from '{}'", uuid2widget.size(), snapshot);
+        }
+        final WriteAheadLog log = WriteAheadLog.open(directory, fromSegment,
+            durabilityMode, fsyncIntervalMillis, (type, widget) -> {
+                if (type == ChangeType.REMOVE) uuid2widget.remove(widget.getUUID());
+                else uuid2widget.put(widget.getUUID(), widget);
+            });
+
+        final BlockingWidgetManager delegate;
+        try {
+            delegate = new BlockingWidgetManager(uuid2widget, log.andThen(listener), metrics, uuidGenerator);
+        } catch (IllegalArgumentException ex) {
+            log.close();
+            // A z-ordered set would silently keep just one of the widgets sharing a z-index
+            throw new IOException(String.format("The widgets restored from '%s' are inconsistent", directory), ex);
+        }
+        logger.info("Restored {} widgets from '{}' in {} ms", uuid2widget.size(), directory,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return new DurableWidgetManager(delegate, uuid2widget.values(), log, directory, snapshotIntervalMillis);
+    }
+
+    /**
+     * Writes a snapshot of all {@link Widget}s, and deletes the log segments and
+     * snapshots it makes redundant. Mutations aren't blocked meanwhile.
+     */
+    public void checkpoint() throws IOException {
+        try {
+            checkpointLock.lock();
+            final long sequence = log.getAppendedSequence();
+            final long segment = log.roll();
+            final long start = System.nanoTime();
+            final long nWidgets = SnapshotFile.write(directory, segment, widgets);
+            // The snapshot may have captured a mutation halfway, e.g. some of its shifts, and
+            // only the log after the roll completes it: it must be in storage before the
+            // segments that the snapshot replaces are gone
+            log.force();
+            log.deleteSegmentsBefore(segment);
+            SnapshotFile.deleteSnapshotsBefore(directory, segment);
+            checkpointSequence = sequence;
+            logger.info("Checkpointed {} widgets in {} ms", nWidgets,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpointLock.lock();
+            if (!closed && checkpointSequence < log.getAppendedSequence())
+                checkpoint();
+        } catch (IOException ex) {
+            logger.error("Could not checkpoint the widgets in '{}'", directory, ex);
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    @Override
+    public Widget create(NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        final Widget widget = delegate.create(newWidgetSpec);
+        awaitDurable();
+        return widget;
+    }
+
+    @Override
+    public Widget get(UUID uuid) throws WidgetManagerException {
+        return delegate.get(uuid);
+    }
+
+    @Override
+    public List<Widget> getAllByZIndex() throws WidgetManagerException {
+        return delegate.getAllByZIndex();
+    }
+
+    @Override
+    public List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit)
+        throws WidgetManagerException {
+        return delegate.getRangeByZIndex(fromZIndex, toZIndex, limit);
+    }
+
+    @Override
+    public List<Widget> getAllInArea(long x1, long y1, long x2, long y2) throws WidgetManagerException {
+        return delegate.getAllInArea(x1, y1, x2, y2);
+    }
+
+    @Override
+    public List<Widget> getAllAt(long x, long y, int limit) throws WidgetManagerException {
+        return delegate.getAllAt(x, y, limit);
+    }
+
+    @Override
+    public Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException {
+        final Widget widget = delegate.update(widgetMutationSpec);
+        awaitDurable();
+        return widget;
+    }
+
+    @Override
+    public Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException {
+        final Widget widget = delegate.remove(uuid, expectedVersion);
+        awaitDurable();
+        return widget;
+    }
+
+    /**
+     * The whole batch is made durable at once, after it's been applied.
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        final List<BatchResult> results = delegate.applyBatch(operations, atomic);
+        awaitDurable();
+        return results;
+    }
+
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    // The records of the calling thread were appended before the delegate returned,
+    // so they're all covered by the last sequence appended.
+    private void awaitDurable() throws WidgetManagerException {
+        try {
+            log.awaitDurable(log.getAppendedSequence());
+        } catch (IOException ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while writing to the log '%s'", log.getDirectory()), ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (checkpointer != null)
+            checkpointer.shutdown();
+        try {
+            checkpointLock.lock();
+            closed = true;
+            log.close();
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+}
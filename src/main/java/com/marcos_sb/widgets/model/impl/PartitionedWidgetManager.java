@@ -0,0 +1,154 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class partitions {@link Widget}s into independent canvases, each one backed by
+ * its own {@link WidgetManager}. Canvases share nothing: every one has its own z-ordered
+ * index and its own locks, so mutations to different canvases never contend with each
+ * other and write throughput scales with the number of cores as long as traffic is
+ * spread across canvases.
+ * </p>
+ * Canvases are created on the first mutation that targets them. Reading from a canvas
+ * that doesn't exist yet behaves as reading from an empty one, without creating it, so
+ * only canvases holding {@link Widget}s, or that once did, take up memory.
+ * </p>
+ * Canvas ids are made of letters, digits, '-' and '_', up to 64 characters long.
+ */
+public class PartitionedWidgetManager implements AutoCloseable {
+
+    private static final Pattern canvasIdPattern = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final WidgetManager emptyCanvas = new EmptyWidgetManager();
+    private static Logger logger = LoggerFactory.getLogger(PartitionedWidgetManager.class);
+
+    private final ConcurrentMap<String, WidgetManager> canvases;
+    private final Supplier<? extends WidgetManager> canvasFactory;
+    private final int maxCanvases;
+
+    /**
+     * @param canvasFactory Creates the {@link WidgetManager} of every new canvas.
+     * @param maxCanvases Maximum number of canvases.
+     */
+    public PartitionedWidgetManager(Supplier<? extends WidgetManager> canvasFactory, int maxCanvases) {
+        this.canvases = new ConcurrentHashMap<>();
+        this.canvasFactory = canvasFactory;
+        this.maxCanvases = maxCanvases;
+    }
+
+    /**
+     * Returns the {@link WidgetManager} of the canvas with id {@code canvasId}, creating
+     * the canvas if it doesn't exist yet.
+     *
+     * @throws IllegalArgumentException If {@code canvasId} is not a valid canvas id, or
+     * the canvas doesn't exist and there are already {@code maxCanvases} of them.
+     */
+    public WidgetManager canvas(String canvasId) {
+        checkCanvasId(canvasId);
+        final WidgetManager canvas = canvases.get(canvasId);
+        if (canvas != null) return canvas;
+        return canvases.computeIfAbsent(canvasId, id -> {
+            if (canvases.size() >= maxCanvases)
+                throw new IllegalArgumentException(
+                    String.format("Cannot create canvas '%s': the limit of %d canvases has been reached",
+                        id, maxCanvases));
+            logger.debug("Creating canvas '{}'", id);
+            return canvasFactory.get();
+        });
+    }
+
+    /**
+     * Returns the {@link WidgetManager} of the canvas with id {@code canvasId}, or an
+     * empty one that cannot be mutated if the canvas doesn't exist.
+     *
+     * @throws IllegalArgumentException If {@code canvasId} is not a valid canvas id.
+     */
+    public WidgetManager existingCanvas(String canvasId) {
+        checkCanvasId(canvasId);
+        return canvases.getOrDefault(canvasId, emptyCanvas);
+    }
+
+    /**
+     * @return The ids of the canvases created so far.
+     */
+    public Set<String> getCanvasIds() {
+        return Collections.unmodifiableSet(canvases.keySet());
+    }
+
+    private static void checkCanvasId(String canvasId) {
+        if (canvasId == null || !canvasIdPattern.matcher(canvasId).matches())
+            throw new IllegalArgumentException(
+                String.format("Invalid canvas id '%s' (expected: %s)", canvasId, canvasIdPattern));
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (WidgetManager canvas : canvases.values()) {
+            if (canvas instanceof AutoCloseable)
+                ((AutoCloseable) canvas).close();
+        }
+    }
+
+    /**
+     * Stands in for the canvases that don't exist yet when reading from them.
+     */
+    private static final class EmptyWidgetManager implements WidgetManager {
+
+        @Override
+        public Widget create(NewWidgetSpec newWidgetSpec) {
+            throw new UnsupportedOperationException("Cannot create widgets on a canvas that doesn't exist");
+        }
+
+        @Override
+        public Widget get(UUID uuid) {
+            throw notFound(uuid);
+        }
+
+        @Override
+        public List<Widget> getAllByZIndex() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Widget update(WidgetMutationSpec widgetMutationSpec) {
+            throw notFound(widgetMutationSpec.getUUID());
+        }
+
+        @Override
+        public Widget remove(UUID uuid, Long expectedVersion) {
+            throw notFound(uuid);
+        }
+
+        @Override
+        public long getVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        private static NoSuchElementException notFound(UUID uuid) {
+            return new NoSuchElementException(String.format("Widget with uuid '%s' not found", uuid));
+        }
+    }
+}
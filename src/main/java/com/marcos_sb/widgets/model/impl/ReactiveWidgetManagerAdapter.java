@@ -0,0 +1,126 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.ReactiveWidgetManager;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.WidgetOps;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Serves a {@link WidgetManager} as a {@link ReactiveWidgetManager}.
+ * </p>
+ * Mutations are applied on a {@link Scheduler} of their own, so the threads that
+ * subscribe to them, e.g. those of the event loop, never park while a mutation waits
+ * for its turn: only the scheduler threads do, and the subscriber is signalled once the
+ * mutation has been applied. Reads are run on a {@link Scheduler} of their own too,
+ * as some implementations make them wait for a lock, e.g. while a mutation shifts
+ * z-indexes. Only those of implementations that never wait, such as
+ * {@link SnapshotWidgetManager} and {@link SequencedWidgetManager}, can be run on the
+ * subscribing thread, with {@link reactor.core.scheduler.Schedulers#immediate()}.
+ */
+public class ReactiveWidgetManagerAdapter implements ReactiveWidgetManager {
+
+    private final WidgetManager delegate;
+    private final Scheduler mutationScheduler;
+    private final Scheduler readScheduler;
+
+    public ReactiveWidgetManagerAdapter(WidgetManager delegate, Scheduler mutationScheduler,
+                                        Scheduler readScheduler) {
+        this.delegate = delegate;
+        this.mutationScheduler = mutationScheduler;
+        this.readScheduler = readScheduler;
+    }
+
+    @Override
+    public Mono<Widget> create(NewWidgetSpec newWidgetSpec) {
+        return mutation(() -> delegate.create(newWidgetSpec));
+    }
+
+    @Override
+    public Mono<Widget> get(UUID uuid) {
+        return read(() -> delegate.get(uuid));
+    }
+
+    @Override
+    public Mono<List<Widget>> getAllByZIndex() {
+        return read(delegate::getAllByZIndex);
+    }
+
+    @Override
+    public Flux<Widget> streamAllByZIndex(int chunkSize) {
+        WidgetOps.checkLimit(chunkSize);
+        // The next z-index to read from, past Integer.MAX_VALUE once there's nothing left
+        return Flux.<List<Widget>, Long>generate(() -> (long) Integer.MIN_VALUE, (fromZIndex, sink) -> {
+            if (fromZIndex > Integer.MAX_VALUE) {
+                sink.complete();
+                return fromZIndex;
+            }
+            final List<Widget> chunk;
+            try {
+                chunk = delegate.getRangeByZIndex(fromZIndex.intValue(), Integer.MAX_VALUE, chunkSize);
+            } catch (WidgetManagerException ex) {
+                sink.error(ex);
+                return fromZIndex;
+            }
+            if (!chunk.isEmpty()) sink.next(chunk);
+            if (chunk.size() < chunkSize) {
+                sink.complete();
+                return fromZIndex;
+            }
+            return chunk.get(chunk.size() - 1).getZIndex() + 1L;
+        }).subscribeOn(readScheduler).flatMapIterable(chunk -> chunk);
+    }
+
+    @Override
+    public Mono<List<Widget>> getRangeByZIndex(int fromZIndex, int toZIndex, int limit) {
+        return read(() -> delegate.getRangeByZIndex(fromZIndex, toZIndex, limit));
+    }
+
+    @Override
+    public Mono<List<Widget>> getAllInArea(long x1, long y1, long x2, long y2) {
+        return read(() -> delegate.getAllInArea(x1, y1, x2, y2));
+    }
+
+    @Override
+    public Mono<List<Widget>> getAllAt(long x, long y, int limit) {
+        return read(() -> delegate.getAllAt(x, y, limit));
+    }
+
+    @Override
+    public Mono<Widget> update(WidgetMutationSpec widgetMutationSpec) {
+        return mutation(() -> delegate.update(widgetMutationSpec));
+    }
+
+    @Override
+    public Mono<Widget> remove(UUID uuid, Long expectedVersion) {
+        return mutation(() -> delegate.remove(uuid, expectedVersion));
+    }
+
+    @Override
+    public Mono<List<BatchResult>> applyBatch(List<BatchOperation> operations, boolean atomic) {
+        return mutation(() -> delegate.applyBatch(operations, atomic));
+    }
+
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+
+    private <T> Mono<T> mutation(Callable<T> mutation) {
+        return Mono.fromCallable(mutation).subscribeOn(mutationScheduler);
+    }
+
+    private <T> Mono<T> read(Callable<T> read) {
+        return Mono.fromCallable(read).subscribeOn(readScheduler);
+    }
+}
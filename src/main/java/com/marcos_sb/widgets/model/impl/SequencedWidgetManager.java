@@ -0,0 +1,312 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.RingBufferSequencer;
+import com.marcos_sb.widgets.util.WidgetOps;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a thread-safe in-memory {@link WidgetManager} that
+ * applies every state-mutating operation on a single dedicated writer thread.
+ * The consistency guarantees provided by this implementation are those
+ * specified in the {@link WidgetManager} interface, namely UUID and z-index
+ * uniqueness.
+ * </p>
+ * Mutations are published to a {@link RingBufferSequencer} and applied by its
+ * consumer thread strictly in the order they were sequenced. Since there's only
+ * one writer, no locks are needed to keep the z-index shifting consistent; callers
+ * just wait for the writer to hand them back the resulting {@link Widget}. This
+ * avoids the lock handoff and thread parking {@link BlockingWidgetManager} incurs
+ * under write-heavy loads.
+ * </p>
+ * Reading operations never block. They rely on the concurrency mechanics of the
+ * {@link ConcurrentHashMap} and the {@link ConcurrentSkipListSet}, as does
+ * {@link BlockingWidgetManager}. Note that while the writer lowers the z-index of a
+ * {@link Widget}, a concurrent traversal of the z-ordered set may not observe that
+ * {@link Widget}; it will never observe duplicate z-indexes, though.
+ * </p>
+ * There's no spatial index, as the writer would have to lock readers out of it: area and
+ * point queries filter {@link #getAllByZIndex()}, so they're linear in the number of
+ * {@link Widget}s, whatever the size of the result.
+ * </p>
+ * Instances own a writer thread and should be closed once no longer needed.
+ *
+ * @see WidgetManager
+ */
+public class SequencedWidgetManager implements WidgetManager, AutoCloseable {
+
+    private static final int zIndexStep = 10;
+    private static final int defaultBufferSize = 1024;
+    private static Logger logger = LoggerFactory.getLogger(SequencedWidgetManager.class);
+
+    private final ConcurrentMap<UUID, Widget> uuid2widget;
+    private final ConcurrentSkipListSet<Widget> widgets;
+    private final RingBufferSequencer<Mutation> sequencer;
+    // Only written by the writer thread
+    private volatile long version;
+
+    public SequencedWidgetManager(ConcurrentMap<UUID, Widget> uuid2widget,
+                                  ConcurrentSkipListSet<Widget> widgets,
+                                  int bufferSize) {
+        this.uuid2widget = uuid2widget;
+        this.widgets = widgets;
+        this.sequencer = new RingBufferSequencer<>(bufferSize, "widget-writer", this::apply);
+    }
+
+    public SequencedWidgetManager(int bufferSize) {
+        this(new ConcurrentHashMap<>(),
+             new ConcurrentSkipListSet<>(Comparator.comparingInt(Widget::getZIndex)),
+             bufferSize);
+    }
+
+    public SequencedWidgetManager() {
+        this(defaultBufferSize);
+    }
+
+    @Override
+    public Widget create(NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        return submit(new Mutation(MutationType.CREATE, newWidgetSpec, null, null, null),
+            "An error occurred while creating a new widget '%s'", newWidgetSpec);
+    }
+
+    @Override
+    public Widget get(UUID uuid) throws WidgetManagerException {
+        final Widget widget = uuid2widget.get(uuid);
+        if (widget == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+        return widget;
+    }
+
+    @Override
+    public List<Widget> getAllByZIndex() throws WidgetManagerException {
+        try {
+            return new ArrayList<>(widgets);
+        } catch (Exception ex) {
+            throw new WidgetManagerException("An error occurred while getting the list of widgets", ex);
+        }
+    }
+
+    @Override
+    public List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit)
+        throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        try {
+            return WidgetOps.rangeByZIndex(widgets, fromZIndex, toZIndex, limit);
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets in z-index range [%d, %d]",
+                    fromZIndex, toZIndex), ex);
+        }
+    }
+
+    @Override
+    public Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException {
+        return submit(new Mutation(MutationType.UPDATE, null, widgetMutationSpec, widgetMutationSpec.getUUID(), null),
+            "An error occurred while updating a widget '%s'", widgetMutationSpec);
+    }
+
+    @Override
+    public Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException {
+        return submit(new Mutation(MutationType.REMOVE, null, null, uuid, expectedVersion),
+            "An error occurred while removing a widget, uuid '%s'", uuid);
+    }
+
+    /**
+     * Checks and applies the whole batch as a single mutation of the writer thread, so no
+     * other mutation interleaves with it.
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        return submit(new Mutation(operations, atomic),
+            "An error occurred while applying a batch of %d operations", operations.size());
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return uuid2widget.isEmpty() && widgets.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return uuid2widget.size();
+    }
+
+    /**
+     * Stops the writer thread once all the mutations already submitted have
+     * been applied. Further mutations will fail.
+     */
+    @Override
+    public void close() {
+        sequencer.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T submit(Mutation mutation, String errorFormat, Object errorArg)
+        throws WidgetManagerException {
+        try {
+            sequencer.publish(mutation);
+            return (T) mutation.result.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NoSuchElementException)
+                throw (NoSuchElementException) ex.getCause();
+            if (ex.getCause() instanceof WidgetVersionConflictException)
+                throw (WidgetVersionConflictException) ex.getCause();
+            throw new WidgetManagerException(String.format(errorFormat, errorArg), ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WidgetManagerException(String.format(errorFormat, errorArg), ex);
+        } catch (Exception ex) {
+            throw new WidgetManagerException(String.format(errorFormat, errorArg), ex);
+        }
+    }
+
+    // Runs on the writer thread only.
+    private void apply(Mutation mutation) {
+        try {
+            final Object result;
+            switch (mutation.type) {
+                case CREATE: result = applyCreate(mutation.newWidgetSpec); break;
+                case UPDATE: result = applyUpdate(mutation.widgetMutationSpec); break;
+                case REMOVE: result = applyRemove(mutation.uuid, mutation.expectedVersion); break;
+                case BATCH: result = applyOperations(mutation.operations, mutation.atomic); break;
+                default: throw new IllegalStateException("Unknown mutation " + mutation.type);
+            }
+            mutation.result.complete(result);
+        } catch (Throwable th) {
+            mutation.result.completeExceptionally(th);
+        }
+    }
+
+    private Widget applyCreate(NewWidgetSpec newWidgetSpec) {
+        UUID uuid;
+        do { uuid = UUID.randomUUID(); } while (uuid2widget.containsKey(uuid));
+
+        Widget newWidget;
+        if (newWidgetSpec.hasZIndex()) {
+            newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, newWidgetSpec.getzIndex());
+            WidgetOps.shiftOverlyingWidgetsUp(widgets, newWidget);
+        } else {
+            final int topZIndex = widgets.isEmpty() ? 0 : widgets.last().getZIndex();
+            newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, topZIndex + zIndexStep);
+        }
+
+        uuid2widget.put(uuid, newWidget);
+        widgets.add(newWidget);
+        version++;
+        return newWidget;
+    }
+
+    private Widget applyUpdate(WidgetMutationSpec widgetMutationSpec) {
+        final UUID uuid = widgetMutationSpec.getUUID();
+        final Widget oldWidget = uuid2widget.get(uuid);
+        if (oldWidget == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+
+        final Widget newWidget = WidgetOps.update(oldWidget, widgetMutationSpec);
+
+        // The old widget leaves the z-ordered set before shifting, otherwise it
+        // could be shifted itself if it sits right above the new z-index.
+        widgets.remove(oldWidget);
+        if (newWidget.getZIndex() != oldWidget.getZIndex())
+            WidgetOps.shiftOverlyingWidgetsUp(widgets, newWidget);
+        uuid2widget.replace(uuid, newWidget);
+        widgets.add(newWidget);
+        version++;
+        return newWidget;
+    }
+
+    private Widget applyRemove(UUID uuid, Long expectedVersion) {
+        final Widget widget = uuid2widget.get(uuid);
+        if (widget == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+        WidgetOps.checkVersion(widget, expectedVersion);
+        uuid2widget.remove(uuid);
+        widgets.remove(widget);
+        version++;
+        return widget;
+    }
+
+    // Runs on the writer thread only.
+    private List<BatchResult> applyOperations(List<BatchOperation> operations, boolean atomic) {
+        if (atomic) {
+            final List<BatchResult> rejected = WidgetOps.checkBatch(operations, uuid2widget::get);
+            if (rejected != null) return rejected;
+        }
+
+        final List<BatchResult> results = new ArrayList<>(operations.size());
+        for (BatchOperation operation : operations) {
+            results.add(WidgetOps.tryApply(() -> {
+                switch (operation.getType()) {
+                    case CREATE: return applyCreate(operation.getCreate());
+                    case UPDATE: return applyUpdate(operation.getUpdate());
+                    default: return applyRemove(operation.getDelete(), null);
+                }
+            }));
+        }
+        return results;
+    }
+
+    private enum MutationType { CREATE, UPDATE, REMOVE, BATCH }
+
+    private static class Mutation {
+        final MutationType type;
+        final NewWidgetSpec newWidgetSpec;
+        final WidgetMutationSpec widgetMutationSpec;
+        final UUID uuid;
+        final Long expectedVersion;
+        final List<BatchOperation> operations;
+        final boolean atomic;
+        // A Widget, or the list of BatchResults of a batch
+        final CompletableFuture<Object> result;
+
+        Mutation(MutationType type, NewWidgetSpec newWidgetSpec,
+                 WidgetMutationSpec widgetMutationSpec, UUID uuid, Long expectedVersion) {
+            this.type = type;
+            this.newWidgetSpec = newWidgetSpec;
+            this.widgetMutationSpec = widgetMutationSpec;
+            this.uuid = uuid;
+            this.expectedVersion = expectedVersion;
+            this.operations = null;
+            this.atomic = false;
+            this.result = new CompletableFuture<>();
+        }
+
+        Mutation(List<BatchOperation> operations, boolean atomic) {
+            this.type = MutationType.BATCH;
+            this.newWidgetSpec = null;
+            this.widgetMutationSpec = null;
+            this.uuid = null;
+            this.expectedVersion = null;
+            this.operations = operations;
+            this.atomic = atomic;
+            this.result = new CompletableFuture<>();
+        }
+    }
+}
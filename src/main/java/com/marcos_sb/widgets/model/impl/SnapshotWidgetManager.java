@@ -0,0 +1,331 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.PersistentSortedMap;
+import com.marcos_sb.widgets.util.WidgetOps;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a thread-safe in-memory {@link WidgetManager} based on
+ * multi-version concurrency control. The consistency guarantees provided by this
+ * implementation are stronger than those specified in the {@link WidgetManager}
+ * interface: every reading operation observes a consistent state of the whole
+ * set of {@link Widget}s, as committed by some mutation.
+ * </p>
+ * The state is kept in an immutable {@link Snapshot} made of two
+ * {@link PersistentSortedMap}s, one indexing {@link Widget}s by {@link UUID} and the
+ * other by z-index. Every committed mutation publishes a new snapshot, with a new
+ * version number, through a single volatile write. Readers just pick up the latest
+ * snapshot: no locking and no copying take place, so {@link #getAllByZIndex()} returns
+ * an unmodifiable view of the z-ordered map.
+ * </p>
+ * Writers are serialized through a {@link ReentrantLock}. Since the maps are persistent
+ * (structurally shared between versions), a mutation only allocates O(log n) new nodes
+ * per {@link Widget} it touches. {@link Widget}s are never modified in place: shifting
+ * a {@link Widget} up replaces it with a copy in the next snapshot, hence readers can
+ * never observe a partially shifted state.
+ * </p>
+ * There's no spatial index, as it would have to be persistent too: area and point
+ * queries filter {@link #getAllByZIndex()}, so they're linear in the number of
+ * {@link Widget}s, whatever the size of the result.
+ *
+ * @see WidgetManager
+ */
+public class SnapshotWidgetManager implements WidgetManager {
+
+    private static final int zIndexStep = 10;
+    private static Logger logger = LoggerFactory.getLogger(SnapshotWidgetManager.class);
+
+    private final ReentrantLock lock;
+    private volatile Snapshot snapshot;
+    // The state being built by the writer holding the lock, until it's published
+    private Snapshot staged;
+
+    public SnapshotWidgetManager() {
+        this.lock = new ReentrantLock();
+        this.snapshot = new Snapshot(0,
+            PersistentSortedMap.empty(), PersistentSortedMap.empty());
+    }
+
+    /**
+     * @return The latest committed state.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Widget create(NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        try {
+            lock.lock();
+            staged = snapshot;
+            final Widget newWidget = doCreate(newWidgetSpec);
+            snapshot = staged;
+            return newWidget;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while creating a new widget '%s'", newWidgetSpec), ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called holding 'lock'. Like the other mutations, it only replaces the
+    // staged snapshot once it has succeeded, so a failed one leaves no trace.
+    private Widget doCreate(NewWidgetSpec newWidgetSpec) {
+        final Snapshot current = staged;
+
+        UUID uuid;
+        do { uuid = UUID.randomUUID(); } while (current.uuid2widget.containsKey(uuid));
+
+        final Widget newWidget;
+        Snapshot next = current;
+        if (newWidgetSpec.hasZIndex()) {
+            newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, newWidgetSpec.getzIndex());
+            next = shiftOverlyingWidgetsUp(next, newWidget.getZIndex());
+        } else {
+            final Widget topWidget = current.zIndex2widget.last();
+            final int topZIndex = topWidget == null ? 0 : topWidget.getZIndex();
+            newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, topZIndex + zIndexStep);
+        }
+
+        staged = next.put(newWidget).nextVersion(current);
+        return newWidget;
+    }
+
+    // Replaces all back-to-back widgets from 'zIndex' upwards with copies
+    // one z-index higher, from the top one downwards.
+    private static Snapshot shiftOverlyingWidgetsUp(Snapshot snapshot, int zIndex) {
+        final Widget floorWidget = snapshot.zIndex2widget.get(zIndex);
+        if (floorWidget == null)
+            return snapshot;
+
+        final List<Widget> toIncZIndex = new ArrayList<>();
+        Widget current = floorWidget;
+        while (current != null) {
+            toIncZIndex.add(current);
+            current = snapshot.zIndex2widget.get(current.getZIndex() + 1);
+        }
+
+        Snapshot shifted = snapshot;
+        for (int i = toIncZIndex.size() - 1; i >= 0; i--) {
+            final Widget w = toIncZIndex.get(i);
+            shifted = shifted.put(WidgetOps.withZIndex(w, w.getZIndex() + 1));
+        }
+        return shifted.removeZIndex(zIndex);
+    }
+
+    @Override
+    public Widget get(UUID uuid) throws WidgetManagerException {
+        final Widget widget = snapshot.uuid2widget.get(uuid);
+        if (widget == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+        return widget;
+    }
+
+    @Override
+    public List<Widget> getAllByZIndex() {
+        return snapshot.zIndex2widget.values();
+    }
+
+    @Override
+    public List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit) {
+        WidgetOps.checkLimit(limit);
+        final List<Widget> range = new ArrayList<>();
+        final Iterator<Widget> values = snapshot.zIndex2widget.valuesFrom(fromZIndex, true);
+        while (range.size() < limit && values.hasNext()) {
+            final Widget widget = values.next();
+            if (widget.getZIndex() > toZIndex) break;
+            range.add(widget);
+        }
+        return range;
+    }
+
+    @Override
+    public Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException {
+        try {
+            lock.lock();
+            staged = snapshot;
+            final Widget newWidget = doUpdate(widgetMutationSpec);
+            snapshot = staged;
+            return newWidget;
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while updating a widget '%s'", widgetMutationSpec), ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called holding 'lock'
+    private Widget doUpdate(WidgetMutationSpec widgetMutationSpec) {
+        final Snapshot current = staged;
+
+        final UUID uuid = widgetMutationSpec.getUUID();
+        final Widget oldWidget = current.uuid2widget.get(uuid);
+        if (oldWidget == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+
+        final Widget newWidget = WidgetOps.update(oldWidget, widgetMutationSpec);
+
+        // The old widget is dropped from the z-index map before shifting, so it
+        // can't get shifted itself. Readers only see the resulting snapshot.
+        Snapshot next = current.removeZIndex(oldWidget.getZIndex());
+        if (newWidget.getZIndex() != oldWidget.getZIndex())
+            next = shiftOverlyingWidgetsUp(next, newWidget.getZIndex());
+
+        staged = next.put(newWidget).nextVersion(current);
+        return newWidget;
+    }
+
+    @Override
+    public Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException {
+        try {
+            lock.lock();
+            staged = snapshot;
+            final Widget widget = doRemove(uuid, expectedVersion);
+            snapshot = staged;
+            return widget;
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while removing a widget, uuid '%s'", uuid), ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called holding 'lock'
+    private Widget doRemove(UUID uuid, Long expectedVersion) {
+        final Snapshot current = staged;
+
+        final Widget widget = current.uuid2widget.get(uuid);
+        if (widget == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+        WidgetOps.checkVersion(widget, expectedVersion);
+
+        staged = new Snapshot(current.version + 1,
+            current.uuid2widget.remove(uuid),
+            current.zIndex2widget.remove(widget.getZIndex()));
+        return widget;
+    }
+
+    /**
+     * Checks and applies the whole batch under a single acquisition of the lock, and
+     * publishes its effects in a single snapshot, so readers observe either none or all
+     * of them.
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        try {
+            lock.lock();
+            staged = snapshot;
+            if (atomic) {
+                final List<BatchResult> rejected = WidgetOps.checkBatch(operations, staged::get);
+                if (rejected != null) return rejected;
+            }
+
+            final List<BatchResult> results = new ArrayList<>(operations.size());
+            for (BatchOperation operation : operations) {
+                results.add(WidgetOps.tryApply(() -> {
+                    switch (operation.getType()) {
+                        case CREATE: return doCreate(operation.getCreate());
+                        case UPDATE: return doUpdate(operation.getUpdate());
+                        default: return doRemove(operation.getDelete(), null);
+                    }
+                }));
+            }
+            snapshot = staged;
+            return results;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while applying a batch of %d operations",
+                    operations.size()), ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return snapshot.uuid2widget.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return snapshot.uuid2widget.size();
+    }
+
+    /**
+     * An immutable, versioned state of the set of {@link Widget}s.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final PersistentSortedMap<UUID, Widget> uuid2widget;
+        private final PersistentSortedMap<Integer, Widget> zIndex2widget;
+
+        private Snapshot(long version,
+                         PersistentSortedMap<UUID, Widget> uuid2widget,
+                         PersistentSortedMap<Integer, Widget> zIndex2widget) {
+            this.version = version;
+            this.uuid2widget = uuid2widget;
+            this.zIndex2widget = zIndex2widget;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Widget get(UUID uuid) {
+            return uuid2widget.get(uuid);
+        }
+
+        public List<Widget> getAllByZIndex() {
+            return zIndex2widget.values();
+        }
+
+        public int size() {
+            return uuid2widget.size();
+        }
+
+        private Snapshot put(Widget widget) {
+            return new Snapshot(version,
+                uuid2widget.put(widget.getUUID(), widget),
+                zIndex2widget.put(widget.getZIndex(), widget));
+        }
+
+        private Snapshot removeZIndex(int zIndex) {
+            return new Snapshot(version, uuid2widget, zIndex2widget.remove(zIndex));
+        }
+
+        private Snapshot nextVersion(Snapshot previous) {
+            return new Snapshot(previous.version + 1, uuid2widget, zIndex2widget);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.WidgetOps;
+import com.marcos_sb.widgets.util.ZOrderTree;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a thread-safe in-memory {@link WidgetManager} whose
+ * z-ordering is kept in a {@link ZOrderTree}. The consistency guarantees provided
+ * by this implementation include those specified in the {@link WidgetManager}
+ * interface, namely UUID and z-index uniqueness, and atomic updates to the
+ * {@link Widget}'s properties.
+ * </p>
+ * The tree doesn't store z-indexes but the gaps between consecutive {@link Widget}s,
+ * so opening a gap at a taken z-index only shrinks the first gap above it, however
+ * many back-to-back {@link Widget}s get shifted up. Inserting at a dense z-index is
+ * therefore O(log n) instead of O(k) for a run of k {@link Widget}s. The public z-index
+ * semantics are the same as in {@link BlockingWidgetManager}; z-indexes are just derived
+ * when {@link Widget}s are read.
+ * </p>
+ * As shifted {@link Widget}s aren't touched, their last-modified instant only reflects
+ * the mutations applied to each {@link Widget} itself.
+ * </p>
+ * There's no spatial index: area and point queries filter {@link #getAllByZIndex()}, so
+ * they're linear in the number of {@link Widget}s, whatever the size of the result.
+ * </p>
+ * The tree is guarded by a {@link ReentrantReadWriteLock}: reading operations may run
+ * concurrently with each other, and observe no partial updates.
+ *
+ * @see WidgetManager
+ * @see ZOrderTree
+ */
+public class ZOrderTreeWidgetManager implements WidgetManager {
+
+    private static final int zIndexStep = 10;
+    private static Logger logger = LoggerFactory.getLogger(ZOrderTreeWidgetManager.class);
+
+    private final Map<UUID, ZOrderTree.Node<Widget>> uuid2node;
+    private final ZOrderTree<Widget> widgets;
+    private final ReentrantReadWriteLock rwLock;
+    // Only written holding the write lock
+    private volatile long version;
+
+    public ZOrderTreeWidgetManager() {
+        this.uuid2node = new HashMap<>();
+        this.widgets = new ZOrderTree<>();
+        this.rwLock = new ReentrantReadWriteLock();
+    }
+
+    @Override
+    public Widget create(NewWidgetSpec newWidgetSpec) throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            return doCreate(newWidgetSpec);
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while creating a new widget '%s'", newWidgetSpec), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private Widget doCreate(NewWidgetSpec newWidgetSpec) {
+        UUID uuid;
+        do { uuid = UUID.randomUUID(); } while (uuid2node.containsKey(uuid));
+
+        final int zIndex;
+        if (newWidgetSpec.hasZIndex()) {
+            zIndex = newWidgetSpec.getzIndex();
+        } else {
+            final ZOrderTree.Node<Widget> top = widgets.last();
+            zIndex = (top == null ? 0 : (int) widgets.zIndexOf(top)) + zIndexStep;
+        }
+
+        final Widget newWidget = WidgetOps.widgetFrom(uuid, newWidgetSpec, zIndex);
+        uuid2node.put(uuid, widgets.insert(zIndex, newWidget));
+        version++;
+        return newWidget;
+    }
+
+    @Override
+    public Widget get(UUID uuid) throws WidgetManagerException {
+        try {
+            rwLock.readLock().lock();
+            final ZOrderTree.Node<Widget> node = uuid2node.get(uuid);
+            if (node == null)
+                throw new NoSuchElementException(
+                    String.format("Widget with uuid '%s' not found", uuid));
+
+            return materialize(node.getValue(), widgets.zIndexOf(node));
+        } catch (NoSuchElementException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting a widget, uuid '%s'", uuid), ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Widget> getAllByZIndex() throws WidgetManagerException {
+        try {
+            rwLock.readLock().lock();
+            final List<Widget> allWidgets = new ArrayList<>(widgets.size());
+            widgets.forEach((widget, zIndex) -> allWidgets.add(materialize(widget, zIndex)));
+            return allWidgets;
+        } catch (Exception ex) {
+            throw new WidgetManagerException("An error occurred while getting the list of widgets", ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Widget> getRangeByZIndex(int fromZIndex, int toZIndex, int limit)
+        throws WidgetManagerException {
+        WidgetOps.checkLimit(limit);
+        try {
+            rwLock.readLock().lock();
+            final List<Widget> range = new ArrayList<>();
+            final ZOrderTree.Cursor<Widget> cursor = widgets.cursorFrom(fromZIndex);
+            while (range.size() < limit && cursor.hasNext() && cursor.peekZIndex() <= toZIndex) {
+                final Widget widget = cursor.next();
+                range.add(materialize(widget, cursor.zIndex()));
+            }
+            return range;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while getting the widgets in z-index range [%d, %d]",
+                    fromZIndex, toZIndex), ex);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Widget update(WidgetMutationSpec widgetMutationSpec) throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            return doUpdate(widgetMutationSpec);
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while updating a widget '%s'", widgetMutationSpec), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private Widget doUpdate(WidgetMutationSpec widgetMutationSpec) {
+        final UUID uuid = widgetMutationSpec.getUUID();
+        final ZOrderTree.Node<Widget> oldNode = uuid2node.get(uuid);
+        if (oldNode == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+
+        final Widget oldWidget = materialize(oldNode.getValue(), widgets.zIndexOf(oldNode));
+        final Widget newWidget = WidgetOps.update(oldWidget, widgetMutationSpec);
+
+        // Removing a node preserves the z-index of all others, so re-inserting
+        // behaves as moving the widget, shifting up any overlapping widgets.
+        widgets.remove(oldNode);
+        uuid2node.put(uuid, widgets.insert(newWidget.getZIndex(), newWidget));
+        version++;
+        return newWidget;
+    }
+
+    @Override
+    public Widget remove(UUID uuid, Long expectedVersion) throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            return doRemove(uuid, expectedVersion);
+        } catch (NoSuchElementException | WidgetVersionConflictException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while removing a widget, uuid '%s'", uuid), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // Must be called holding the write lock
+    private Widget doRemove(UUID uuid, Long expectedVersion) {
+        final ZOrderTree.Node<Widget> node = uuid2node.get(uuid);
+        if (node == null)
+            throw new NoSuchElementException(
+                String.format("Widget with uuid '%s' not found", uuid));
+
+        final Widget widget = materialize(node.getValue(), widgets.zIndexOf(node));
+        WidgetOps.checkVersion(widget, expectedVersion);
+        uuid2node.remove(uuid);
+        widgets.remove(node);
+        version++;
+        return widget;
+    }
+
+    /**
+     * Applies the whole batch under a single acquisition of the write lock, so readers
+     * observe either none or all of its effects.
+     */
+    @Override
+    public List<BatchResult> applyBatch(List<BatchOperation> operations, boolean atomic)
+        throws WidgetManagerException {
+        try {
+            rwLock.writeLock().lock();
+            if (atomic) {
+                final List<BatchResult> rejected = WidgetOps.checkBatch(operations, uuid -> {
+                    final ZOrderTree.Node<Widget> node = uuid2node.get(uuid);
+                    return node == null ? null : node.getValue();
+                });
+                if (rejected != null) return rejected;
+            }
+
+            final List<BatchResult> results = new ArrayList<>(operations.size());
+            for (BatchOperation operation : operations) {
+                results.add(WidgetOps.tryApply(() -> {
+                    switch (operation.getType()) {
+                        case CREATE: return doCreate(operation.getCreate());
+                        case UPDATE: return doUpdate(operation.getUpdate());
+                        default: return doRemove(operation.getDelete(), null);
+                    }
+                }));
+            }
+            return results;
+        } catch (Exception ex) {
+            throw new WidgetManagerException(
+                String.format("An error occurred while applying a batch of %d operations",
+                    operations.size()), ex);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        try {
+            rwLock.readLock().lock();
+            return uuid2node.size();
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // The stored widget keeps the z-index it was inserted with; the tree knows the current one.
+    private static Widget materialize(Widget widget, long zIndex) {
+        if (widget.getZIndex() == zIndex)
+            return widget;
+        return new Widget(widget.getUUID(), widget.getX(), widget.getY(),
+            widget.getWidth(), widget.getHeight(), widget.getLastModifiedEpochNanos(), (int) zIndex,
+            widget.getVersion());
+    }
+}
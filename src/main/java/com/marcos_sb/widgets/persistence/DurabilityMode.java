@@ -0,0 +1,21 @@
+package com.marcos_sb.widgets.persistence;
+
+/**
+ * When the records appended to a {@link WriteAheadLog} are forced to storage.
+ */
+public enum DurabilityMode {
+    /**
+     * Every mutation issues its own fsync before being acknowledged.
+     */
+    SYNC,
+    /**
+     * Every mutation is acknowledged once it's been forced to storage, but concurrent
+     * mutations share a single fsync (group commit).
+     */
+    GROUP,
+    /**
+     * Mutations are acknowledged right away, and the log is forced to storage at a fixed
+     * interval. A crash may lose the mutations acknowledged during the last interval.
+     */
+    PERIODIC
+}
@@ -0,0 +1,170 @@
+package com.marcos_sb.widgets.persistence;
+
+import com.marcos_sb.widgets.resource.Widget;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshots of a set of {@link Widget}s, which make the prefix of a
+ * {@link WriteAheadLog} redundant.
+ * </p>
+ * A snapshot is named after the first log segment that isn't covered by it, i.e. that
+ * must be replayed on top of it. It's laid out as a header (magic number, version and
+ * that segment), one fixed-size record per {@link Widget}, and a trailer (number of
+ * records and CRC-32 of all of them). Snapshots are written to a temporary file which is
+ * moved into place once it's in storage, so a crash never leaves a partial one behind.
+ * </p>
+ * Snapshots are read through memory-mapped windows, so loading one doesn't copy it
+ * through intermediate buffers.
+ */
+public final class SnapshotFile {
+
+    private static final int magic = 0x57534E50;
+    private static final int version = 2;
+    // Version 1 records lack the version of the widgets
+    private static final int unversioned = 1;
+    private static final int headerSize = 4 + 4 + 8;
+    private static final int trailerSize = 8 + 4;
+    private static final int writeBufferSize = 1 << 20;
+    private static final String snapshotPrefix = "snapshot-";
+    private static final String snapshotSuffix = ".bin";
+
+    private SnapshotFile() {}
+
+    public static Path snapshotPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", snapshotPrefix, segment, snapshotSuffix));
+    }
+
+    /**
+     * @return The segments named by the snapshots in {@code directory}, in ascending order.
+     */
+    public static List<Long> snapshots(Path directory) throws IOException {
+        final List<Long> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, snapshotPrefix + "*" + snapshotSuffix)) {
+            for (Path path : paths) {
+                final String name = path.getFileName().toString();
+                snapshots.add(Long.parseLong(
+                    name.substring(snapshotPrefix.length(), name.length() - snapshotSuffix.length())));
+            }
+        }
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    /**
+     * Writes all {@code widgets} to a new snapshot in {@code directory}, covering the
+     * log segments before {@code segment}. {@code widgets} may be modified concurrently,
+     * as long as its iterator returns every {@link Widget} at most once.
+     *
+     * @return The number of {@link Widget}s written.
+     */
+    public static long write(Path directory, long segment, Iterable<Widget> widgets) throws IOException {
+        final Path path = snapshotPath(directory, segment);
+        final Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+        final CRC32 crc = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(writeBufferSize);
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.putInt(magic).putInt(version).putLong(segment);
+            drain(channel, buffer, null);
+            for (Widget widget : widgets) {
+                if (buffer.remaining() < WidgetCodec.size)
+                    drain(channel, buffer, crc);
+                WidgetCodec.encode(buffer, widget);
+                count++;
+            }
+            drain(channel, buffer, crc);
+            buffer.putLong(count).putInt((int) crc.getValue());
+            drain(channel, buffer, null);
+            channel.force(true);
+        }
+        Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // Before the segments it covers can be deleted
+        WriteAheadLog.forceDirectory(directory);
+        return count;
+    }
+
+    /**
+     * @return The number of {@link Widget}s in the snapshot at {@code path}, according to
+     * its size.
+     */
+    public static long count(Path path) throws IOException {
+        return Math.max(0, (Files.size(path) - headerSize - trailerSize) / WidgetCodec.size);
+    }
+
+    /**
+     * Calls {@code action} with every {@link Widget} in the snapshot at {@code path}.
+     *
+     * @return The number of {@link Widget}s read.
+     * @throws IOException If the snapshot is incomplete or corrupted, which is only
+     * reported once all its {@link Widget}s have been read.
+     */
+    public static long read(Path path, Consumer<Widget> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long recordsSize = size - headerSize - trailerSize;
+            if (recordsSize < 0)
+                throw new IOException(String.format("Invalid size %d of the snapshot '%s'", size, path));
+
+            final ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, headerSize);
+            final int fileVersion = header.getInt() == magic ? header.getInt() : -1;
+            if (fileVersion != version && fileVersion != unversioned)
+                throw new IOException(String.format("Invalid header in the snapshot '%s'", path));
+            final boolean versioned = fileVersion == version;
+            final int recordSize = versioned ? WidgetCodec.size : WidgetCodec.unversionedSize;
+            if (recordsSize % recordSize != 0)
+                throw new IOException(String.format("Invalid size %d of the snapshot '%s'", size, path));
+
+            // Largest multiple of the record size that can be mapped at once
+            final int maxWindowSize = Integer.MAX_VALUE / recordSize * recordSize;
+            final CRC32 crc = new CRC32();
+            for (long position = headerSize; position < headerSize + recordsSize; position += maxWindowSize) {
+                final long windowSize = Math.min(maxWindowSize, headerSize + recordsSize - position);
+                final MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, windowSize);
+                crc.update(window.duplicate());
+                while (window.hasRemaining())
+                    action.accept(WidgetCodec.decode(window, versioned));
+            }
+
+            final ByteBuffer trailer = channel.map(MapMode.READ_ONLY, size - trailerSize, trailerSize);
+            final long count = trailer.getLong();
+            if (count != recordsSize / recordSize || trailer.getInt() != (int) crc.getValue())
+                throw new IOException(String.format("Corrupted snapshot '%s'", path));
+            return count;
+        }
+    }
+
+    /**
+     * Deletes the snapshots in {@code directory} named by segments below {@code segment}.
+     */
+    public static void deleteSnapshotsBefore(Path directory, long segment) throws IOException {
+        for (long s : snapshots(directory)) {
+            if (s >= segment) break;
+            Files.deleteIfExists(snapshotPath(directory, s));
+        }
+    }
+
+    // Writes out the contents of 'buffer', adding them to 'crc' unless null
+    private static void drain(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        if (crc != null)
+            crc.update(buffer.duplicate());
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
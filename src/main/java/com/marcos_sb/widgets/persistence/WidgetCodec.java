@@ -0,0 +1,59 @@
+package com.marcos_sb.widgets.persistence;
+
+import com.marcos_sb.widgets.resource.Widget;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Fixed-size binary encoding of a {@link Widget}, shared by the log and the snapshots.
+ */
+final class WidgetCodec {
+
+    // uuid, x, y, width, height, last-modified seconds and nanos, z-index, version
+    static final int size = 16 + 8 + 8 + 8 + 8 + 8 + 4 + 4 + 8;
+    // Records written before widgets had a version, which are read as at the initial one
+    static final int unversionedSize = size - 8;
+
+    private static final long nanosPerSecond = 1_000_000_000L;
+
+    private WidgetCodec() {}
+
+    static void encode(ByteBuffer buffer, Widget widget) {
+        encodeUUID(buffer, widget.getUUID());
+        buffer.putLong(widget.getX());
+        buffer.putLong(widget.getY());
+        buffer.putDouble(widget.getWidth());
+        buffer.putDouble(widget.getHeight());
+        final long lastModified = widget.getLastModifiedEpochNanos();
+        buffer.putLong(Math.floorDiv(lastModified, nanosPerSecond));
+        buffer.putInt((int) Math.floorMod(lastModified, nanosPerSecond));
+        buffer.putInt(widget.getZIndex());
+        buffer.putLong(widget.getVersion());
+    }
+
+    static Widget decode(ByteBuffer buffer) {
+        return decode(buffer, true);
+    }
+
+    static Widget decode(ByteBuffer buffer, boolean versioned) {
+        final UUID uuid = decodeUUID(buffer);
+        final long x = buffer.getLong();
+        final long y = buffer.getLong();
+        final double width = buffer.getDouble();
+        final double height = buffer.getDouble();
+        final long lastModifiedSeconds = buffer.getLong();
+        final long lastModified = lastModifiedSeconds * nanosPerSecond + buffer.getInt();
+        final int zIndex = buffer.getInt();
+        final long version = versioned ? buffer.getLong() : Widget.initialVersion;
+        return new Widget(uuid, x, y, width, height, lastModified, zIndex, version);
+    }
+
+    static void encodeUUID(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID decodeUUID(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
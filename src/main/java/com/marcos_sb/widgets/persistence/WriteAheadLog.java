@@ -0,0 +1,460 @@
+package com.marcos_sb.widgets.persistence;
+
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.resource.Widget;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.DirectoryStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only log of {@link Widget} changes, meant to rebuild the state of a
+ * {@link com.marcos_sb.widgets.model.WidgetManager} after a restart.
+ * </p>
+ * The log is split into numbered segment files, so the prefix made redundant by a
+ * snapshot can be deleted. Every record is framed as its payload length and the CRC-32
+ * of its payload, followed by the payload itself. A record holds all the changes made by
+ * a single mutation: the z-index shifts it caused, if any, followed by the create or
+ * update that caused them, so a mutation is replayed either whole or not at all. Shifts
+ * are held back until that closing change is appended, and are never flushed without it.
+ * Replaying a segment stops at the first
+ * record that's incomplete or doesn't match its checksum, which is where a crash
+ * interrupted the last write. Every time the log is opened, it starts a new segment,
+ * after truncating the last one to its valid records. Hence only the last segment may
+ * end in an invalid record, and finding one in any other segment fails opening the log
+ * rather than silently dropping the rest of that segment.
+ * </p>
+ * Changes are appended to an in-memory buffer, as fast as the manager's critical section
+ * requires. {@link #awaitDurable(long)} then writes the buffer to the {@link FileChannel}
+ * and forces it to storage depending on the {@link DurabilityMode}. In
+ * {@link DurabilityMode#GROUP} mode the first thread to get to flush does so for all the
+ * records appended so far, so the threads waiting behind it find theirs already durable.
+ */
+public class WriteAheadLog implements WidgetChangeListener, AutoCloseable {
+
+    private static final int headerSize = 8;
+    // type, widget
+    private static final int putEntrySize = 1 + WidgetCodec.size;
+    private static final int unversionedPutPayloadSize = 1 + WidgetCodec.unversionedSize;
+    // type, uuid
+    private static final int removeEntrySize = 1 + 16;
+    private static final int initialBufferSize = 64 * 1024;
+    private static final String segmentPrefix = "widgets-";
+    private static final String segmentSuffix = ".wal";
+    private static final ChangeType[] changeTypes = ChangeType.values();
+    private static Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private final Path directory;
+    private final DurabilityMode durabilityMode;
+    private final ReentrantLock appendLock;
+    private final ReentrantLock flushLock;
+    private final CRC32 crc;
+    private final ScheduledExecutorService flusher;
+
+    // Guarded by 'appendLock'
+    private ByteBuffer pending;
+    // Position in 'pending' of the record of the mutation being appended, if any, or -1
+    private int openRecord;
+    private volatile long appendedSequence;
+    // Guarded by 'flushLock'
+    private ByteBuffer flushing;
+    private FileChannel channel;
+    private volatile long segment;
+    private volatile long durableSequence;
+
+    private WriteAheadLog(Path directory, long segment,
+                          DurabilityMode durabilityMode, long fsyncIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.durabilityMode = durabilityMode;
+        this.appendLock = new ReentrantLock();
+        this.flushLock = new ReentrantLock();
+        this.crc = new CRC32();
+        this.pending = ByteBuffer.allocate(initialBufferSize);
+        this.openRecord = -1;
+        this.flushing = ByteBuffer.allocate(initialBufferSize);
+        this.segment = segment;
+        this.channel = openSegment(directory, segment);
+
+        if (durabilityMode == DurabilityMode.PERIODIC) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly,
+                fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Opens the log in {@code directory} after replaying, through {@code replay}, all the
+     * valid records in the segments numbered {@code fromSegment} onwards. The last
+     * segment is truncated to its valid records, and new records are appended to a new
+     * segment.
+     *
+     * @throws IOException If a segment other than the last one has an invalid record.
+     */
+    public static WriteAheadLog open(Path directory, long fromSegment,
+                                     DurabilityMode durabilityMode, long fsyncIntervalMillis,
+                                     WidgetChangeListener replay) throws IOException {
+        final List<Long> segments = segments(directory);
+        long nextSegment = fromSegment;
+        for (int i = 0; i < segments.size(); i++) {
+            final long segment = segments.get(i);
+            if (segment < fromSegment) continue;
+            final Path path = segmentPath(directory, segment);
+            final long validLength = replay(path, replay);
+            if (validLength < Files.size(path)) {
+                if (i < segments.size() - 1)
+                    throw new IOException(String.format(
+                        "Invalid record at offset %d of the log segment '%s', which isn't the last one",
+                        validLength, path));
+                truncate(path, validLength);
+            }
+            nextSegment = segment + 1;
+        }
+        return new WriteAheadLog(directory, nextSegment, durabilityMode, fsyncIntervalMillis);
+    }
+
+    // Drops the record torn by a crash at the end of the last segment, before a new one
+    // is started on top of it
+    private static void truncate(Path path, long validLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+            channel.force(true);
+        }
+        logger.warn("Truncated '{}' to its last valid record, at {} bytes", path, validLength);
+    }
+
+    /**
+     * Reads the records in the log segment at {@code path} in order, up to the first
+     * invalid one. Removals are replayed with a {@link Widget} carrying just the
+     * {@link UUID}.
+     *
+     * @return The length of the valid prefix of the segment, in bytes.
+     */
+    public static long replay(Path path, WidgetChangeListener replay) throws IOException {
+        final long size = Files.size(path);
+        long validLength = 0;
+        long nRecords = 0;
+        try (InputStream fileIn = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn, 1 << 16))) {
+            final CRC32 checksum = new CRC32();
+            byte[] payload = new byte[putEntrySize];
+            while (true) {
+                final int length;
+                final int expectedCrc;
+                try {
+                    length = in.readInt();
+                    expectedCrc = in.readInt();
+                    // A torn length may be anything
+                    if (length <= 0 || length > size - validLength - headerSize) break;
+                    if (length > payload.length) payload = new byte[length];
+                    in.readFully(payload, 0, length);
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                checksum.reset();
+                checksum.update(payload, 0, length);
+                if ((int) checksum.getValue() != expectedCrc) break;
+                if (!isWellFormed(ByteBuffer.wrap(payload, 0, length))) break;
+
+                decode(ByteBuffer.wrap(payload, 0, length), replay);
+                validLength += headerSize + length;
+                nRecords++;
+            }
+        }
+        if (validLength < size)
+            logger.warn("Found {} bytes past the last valid record of '{}'", size - validLength, path);
+        logger.info("Replayed {} records from '{}'", nRecords, path);
+        return validLength;
+    }
+
+    /**
+     * @return The numbers of the log segments in {@code directory}, in ascending order.
+     */
+    public static List<Long> segments(Path directory) throws IOException {
+        final List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, segmentPrefix + "*" + segmentSuffix)) {
+            for (Path path : paths) {
+                final String name = path.getFileName().toString();
+                segments.add(Long.parseLong(
+                    name.substring(segmentPrefix.length(), name.length() - segmentSuffix.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    public static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%010d%s", segmentPrefix, segment, segmentSuffix));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    /**
+     * @return The number of the segment records are being appended to.
+     */
+    public long getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return The sequence number of the last record appended.
+     */
+    public long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * @return The sequence number of the last record known to be in storage.
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Appends {@code widget} to the record of the mutation being logged. Shifts leave the
+     * record open, and any other change closes it: mutations that shift {@link Widget}s
+     * must be serialized, and report the change that caused the shifts right after them.
+     */
+    @Override
+    public void onChange(ChangeType type, Widget widget) {
+        try {
+            appendLock.lock();
+            final int entrySize = type == ChangeType.REMOVE ? removeEntrySize : putEntrySize;
+            ensureCapacity(headerSize + entrySize);
+            if (openRecord < 0) {
+                openRecord = pending.position();
+                pending.position(openRecord + headerSize);
+            }
+
+            pending.put((byte) type.ordinal());
+            if (type == ChangeType.REMOVE) WidgetCodec.encodeUUID(pending, widget.getUUID());
+            else WidgetCodec.encode(pending, widget);
+            if (type == ChangeType.SHIFT)
+                return;
+
+            final ByteBuffer payload = pending.duplicate();
+            payload.limit(pending.position()).position(openRecord + headerSize);
+            crc.reset();
+            crc.update(payload.duplicate());
+            pending.putInt(openRecord, payload.remaining());
+            pending.putInt(openRecord + 4, (int) crc.getValue());
+            openRecord = -1;
+            appendedSequence++;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with sequence number {@code sequence}, and all the previous
+     * ones, are durable according to the {@link DurabilityMode}. In
+     * {@link DurabilityMode#PERIODIC} mode it returns right away.
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        if (durabilityMode == DurabilityMode.PERIODIC)
+            return;
+        if (durabilityMode == DurabilityMode.GROUP && durableSequence >= sequence)
+            return;
+
+        try {
+            flushLock.lock();
+            // Some other thread may have forced this record while this one was waiting
+            if (durabilityMode == DurabilityMode.GROUP && durableSequence >= sequence)
+                return;
+            flush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Forces all the records appended so far to storage, whatever the
+     * {@link DurabilityMode}.
+     */
+    public void force() throws IOException {
+        try {
+            flushLock.lock();
+            flush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Forces all the records appended so far to the current segment, and starts a new one.
+     *
+     * @return The number of the new segment. All records appended afterwards go to it or
+     * to later segments.
+     */
+    public long roll() throws IOException {
+        try {
+            flushLock.lock();
+            flush();
+            final FileChannel next = openSegment(directory, segment + 1);
+            channel.close();
+            channel = next;
+            return ++segment;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments numbered below {@code segment}.
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (long s : segments(directory)) {
+            if (s >= segment) break;
+            Files.deleteIfExists(segmentPath(directory, s));
+        }
+    }
+
+    // Must be called holding 'flushLock'
+    private void flush() throws IOException {
+        final long sequence;
+        try {
+            appendLock.lock();
+            final ByteBuffer appended = pending;
+            pending = flushing;
+            flushing = appended;
+            sequence = appendedSequence;
+            // The shifts of the mutation being logged stay pending until it's complete
+            if (openRecord >= 0) {
+                final ByteBuffer open = appended.duplicate();
+                open.limit(appended.position()).position(openRecord);
+                ensureCapacity(open.remaining());
+                pending.put(open);
+                appended.position(openRecord);
+                openRecord = 0;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        flushing.flip();
+        while (flushing.hasRemaining())
+            channel.write(flushing);
+        flushing.clear();
+        channel.force(false);
+        durableSequence = sequence;
+    }
+
+    private void flushQuietly() {
+        try {
+            flushLock.lock();
+            if (durableSequence < appendedSequence)
+                flush();
+        } catch (IOException ex) {
+            logger.error("Could not flush the write-ahead log in '{}'", directory, ex);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Must be called holding 'appendLock'
+    private void ensureCapacity(int size) {
+        if (pending.remaining() >= size)
+            return;
+        final ByteBuffer larger =
+            ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+        pending.flip();
+        larger.put(pending);
+        pending = larger;
+    }
+
+    private static FileChannel openSegment(Path directory, long segment) throws IOException {
+        final FileChannel channel = FileChannel.open(segmentPath(directory, segment),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            forceDirectory(directory);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return channel;
+    }
+
+    // Forces the entries of 'directory' to storage, so files just created, or moved into
+    // it, are still there after a crash
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    // Either a single change of any type, as written before records held whole mutations,
+    // or shifts closed by any other change
+    private static boolean isWellFormed(ByteBuffer payload) {
+        if (payload.remaining() == unversionedPutPayloadSize) {
+            final int ordinal = payload.get(payload.position());
+            return ordinal >= 0 && ordinal < changeTypes.length;
+        }
+        int position = payload.position();
+        while (true) {
+            final int ordinal = payload.get(position);
+            if (ordinal < 0 || ordinal >= changeTypes.length) return false;
+            final ChangeType type = changeTypes[ordinal];
+            position += type == ChangeType.REMOVE ? removeEntrySize : putEntrySize;
+            if (type != ChangeType.SHIFT || position >= payload.limit())
+                return position == payload.limit();
+        }
+    }
+
+    private static void decode(ByteBuffer payload, WidgetChangeListener replay) {
+        if (payload.remaining() == unversionedPutPayloadSize) {
+            final ChangeType type = changeTypes[payload.get()];
+            replay.onChange(type, WidgetCodec.decode(payload, false));
+            return;
+        }
+        while (payload.hasRemaining()) {
+            final ChangeType type = changeTypes[payload.get()];
+            if (type == ChangeType.REMOVE)
+                replay.onChange(type, new Widget(WidgetCodec.decodeUUID(payload), 0, 0, 0, 0, 0, 0, Widget.initialVersion));
+            else
+                replay.onChange(type, WidgetCodec.decode(payload));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null)
+            flusher.shutdown();
+        try {
+            flushLock.lock();
+            flush();
+        } finally {
+            flushLock.unlock();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.marcos_sb.widgets.resource;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.UUID;
+import javax.validation.Valid;
+
+/**
+ * A single operation within a batch: exactly one of {@code create},
+ * {@code update} or {@code delete} is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchOperation {
+
+    public enum Type { CREATE, UPDATE, DELETE }
+
+    @Valid
+    private final NewWidgetSpec create;
+
+    @Valid
+    private final WidgetMutationSpec update;
+
+    private final UUID delete;
+
+    @JsonCreator
+    public BatchOperation(@JsonProperty("create") NewWidgetSpec create,
+                          @JsonProperty("update") WidgetMutationSpec update,
+                          @JsonProperty("delete") UUID delete) {
+        final int nSet = (create != null ? 1 : 0) + (update != null ? 1 : 0) + (delete != null ? 1 : 0);
+        if (nSet != 1)
+            throw new IllegalArgumentException(
+                "A batch operation must set exactly one of 'create', 'update' or 'delete'");
+        this.create = create;
+        this.update = update;
+        this.delete = delete;
+    }
+
+    public static BatchOperation create(NewWidgetSpec newWidgetSpec) {
+        return new BatchOperation(newWidgetSpec, null, null);
+    }
+
+    public static BatchOperation update(WidgetMutationSpec widgetMutationSpec) {
+        return new BatchOperation(null, widgetMutationSpec, null);
+    }
+
+    public static BatchOperation delete(UUID uuid) {
+        return new BatchOperation(null, null, uuid);
+    }
+
+    @Override
+    public String toString() {
+        switch (getType()) {
+            case CREATE: return String.format("[create:%s]", create);
+            case UPDATE: return String.format("[update:%s]", update);
+            default: return String.format("[delete:%s]", delete);
+        }
+    }
+
+    @JsonIgnore
+    public Type getType() {
+        return create != null ? Type.CREATE : update != null ? Type.UPDATE : Type.DELETE;
+    }
+
+    public NewWidgetSpec getCreate() {
+        return create;
+    }
+
+    public WidgetMutationSpec getUpdate() {
+        return update;
+    }
+
+    public UUID getDelete() {
+        return delete;
+    }
+
+    /**
+     * @return The {@link UUID} of the {@link Widget} this operation targets,
+     * or null if it creates a new one.
+     */
+    @JsonIgnore
+    public UUID getTargetUUID() {
+        return update != null ? update.getUUID() : delete;
+    }
+}
@@ -0,0 +1,40 @@
+package com.marcos_sb.widgets.resource;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+public class BatchRequest {
+
+    @JsonProperty(required = true) @NotNull @Size(max = 10000)
+    private final List<@Valid @NotNull BatchOperation> operations;
+
+    private final boolean atomic;
+
+    @JsonCreator
+    public BatchRequest(@JsonProperty("operations") List<BatchOperation> operations,
+                        @JsonProperty("atomic") boolean atomic) {
+        this.operations = operations;
+        this.atomic = atomic;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[operations:%d, atomic:%b]",
+            operations == null ? 0 : operations.size(), atomic);
+    }
+
+    public List<BatchOperation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return true iff either all operations must be applied or none.
+     */
+    public boolean isAtomic() {
+        return atomic;
+    }
+}
@@ -0,0 +1,82 @@
+package com.marcos_sb.widgets.resource;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome of a single {@link BatchOperation}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+
+    public enum Status {
+        @JsonProperty("ok") OK,
+        @JsonProperty("not-found") NOT_FOUND,
+        @JsonProperty("failed") FAILED,
+        // The widget is no longer at the version the operation expected
+        @JsonProperty("conflict") CONFLICT,
+        // Not applied because some other operation in an atomic batch was invalid
+        @JsonProperty("aborted") ABORTED
+    }
+
+    private final Status status;
+    private final Widget widget;
+    private final String error;
+
+    @JsonCreator
+    public BatchResult(@JsonProperty("status") Status status,
+                       @JsonProperty("widget") Widget widget,
+                       @JsonProperty("error") String error) {
+        this.status = status;
+        this.widget = widget;
+        this.error = error;
+    }
+
+    public static BatchResult ok(Widget widget) {
+        return new BatchResult(Status.OK, widget, null);
+    }
+
+    public static BatchResult notFound(String error) {
+        return new BatchResult(Status.NOT_FOUND, null, error);
+    }
+
+    public static BatchResult failed(String error) {
+        return new BatchResult(Status.FAILED, null, error);
+    }
+
+    public static BatchResult conflict(Widget current, String error) {
+        return new BatchResult(Status.CONFLICT, current, error);
+    }
+
+    public static BatchResult aborted() {
+        return new BatchResult(Status.ABORTED, null, null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[status:%s, widget:%s, error:%s]", status, widget, error);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The created or updated {@link Widget}, the deleted one, or the current
+     * one if the operation expected some other version.
+     */
+    public Widget getWidget() {
+        return widget;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @JsonIgnore
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+}
@@ -3,27 +3,46 @@ package com.marcos_sb.widgets.resource;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.marcos_sb.widgets.util.MonotonicClock;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
 
+/**
+ * A widget on a canvas. Its version starts at 1 and grows by 1 with every update, so
+ * clients can make updates and removals conditional on the version they last read.
+ * Z-index shifts caused by other {@link Widget}s don't change the version.
+ * </p>
+ * The time of the last modification is kept in nanoseconds since the epoch, so stamping
+ * a {@link Widget} allocates nothing; see {@link MonotonicClock}.
+ */
 public class Widget {
 
+    public static final long initialVersion = 1;
+
+    private static final long nanosPerSecond = 1_000_000_000L;
+
     private final UUID uuid;
     private final long x;
     private final long y;
     private final double width;
     private final double height;
 
-    @JsonProperty("last-modified")
-    private Instant lastModified;
+    private long lastModified;
 
     @JsonProperty("z-index")
     private int zIndex;
 
+    private final long version;
+
     @JsonCreator
     public Widget(UUID uuid, long x, long y, double width, double height,
-                  Instant lastModified, int zIndex) {
+                  Instant lastModified, int zIndex, long version) {
+        this(uuid, x, y, width, height, epochNanosOf(lastModified), zIndex, version);
+    }
+
+    public Widget(UUID uuid, long x, long y, double width, double height,
+                  long lastModifiedEpochNanos, int zIndex, long version) {
         if (width < 0)
             throw new IllegalArgumentException("Width cannot be negative");
         if (height < 0)
@@ -33,12 +52,22 @@ public class Widget {
         this.y = y;
         this.width = width;
         this.height = height;
-        this.lastModified = lastModified;
+        this.lastModified = lastModifiedEpochNanos;
         this.zIndex = zIndex;
+        this.version = version;
+    }
+
+    public Widget(UUID uuid, long x, long y, double width, double height,
+                  Instant lastModified, int zIndex) {
+        this(uuid, x, y, width, height, lastModified, zIndex, initialVersion);
     }
 
     public Widget(UUID uuid, long x, long y, double width, double height, int zIndex) {
-        this(uuid, x, y, width, height, Instant.now(), zIndex);
+        this(uuid, x, y, width, height, MonotonicClock.epochNanos(), zIndex, initialVersion);
+    }
+
+    private static long epochNanosOf(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), nanosPerSecond), instant.getNano());
     }
 
 
@@ -63,8 +92,8 @@ public class Widget {
 
     @Override
     public String toString() {
-        return String.format("[u:%s, x:%d, y:%d, w:%.2f, h:%.2f, lm:%s z:%d]",
-                uuid, x, y, width, height, lastModified, zIndex);
+        return String.format("[u:%s, x:%d, y:%d, w:%.2f, h:%.2f, lm:%s z:%d, v:%d]",
+                uuid, x, y, width, height, getLastModified(), zIndex, version);
     }
 
     public UUID getUUID() {
@@ -87,13 +116,24 @@ public class Widget {
         return height;
     }
 
+    @JsonProperty("last-modified")
     public Instant getLastModified() {
+        return Instant.ofEpochSecond(Math.floorDiv(lastModified, nanosPerSecond),
+            Math.floorMod(lastModified, nanosPerSecond));
+    }
+
+    @JsonIgnore
+    public long getLastModifiedEpochNanos() {
         return lastModified;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public void setZIndex(int zIndex) {
         this.zIndex = zIndex;
-        this.lastModified = Instant.now();
+        this.lastModified = MonotonicClock.epochNanos();
     }
 
     @JsonIgnore
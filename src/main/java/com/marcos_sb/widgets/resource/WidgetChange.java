@@ -0,0 +1,44 @@
+package com.marcos_sb.widgets.resource;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.marcos_sb.widgets.model.WidgetChangeListener.ChangeType;
+
+/**
+ * A change applied to a {@link Widget}, numbered in the order changes were applied.
+ */
+public class WidgetChange {
+
+    private final long sequence;
+    private final ChangeType type;
+    private final Widget widget;
+
+    @JsonCreator
+    public WidgetChange(@JsonProperty("sequence") long sequence,
+                        @JsonProperty("type") ChangeType type,
+                        @JsonProperty("widget") Widget widget) {
+        this.sequence = sequence;
+        this.type = type;
+        this.widget = widget;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[sequence:%d, type:%s, widget:%s]", sequence, type, widget);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    /**
+     * @return State of the {@link Widget} after the change, or before it if removed.
+     */
+    public Widget getWidget() {
+        return widget;
+    }
+}
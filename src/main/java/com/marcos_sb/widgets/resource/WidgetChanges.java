@@ -0,0 +1,71 @@
+package com.marcos_sb.widgets.resource;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The net effect of the changes applied to the {@link Widget}s after some version:
+ * the latest state of every {@link Widget} created or modified, and the {@link UUID}
+ * of every {@link Widget} removed. Applying it to the state at that version yields the
+ * state at {@link #getVersion()}.
+ * </p>
+ * If the changes after that version are no longer known, {@link #isResync()} is true
+ * and the client has to fetch all {@link Widget}s again.
+ */
+public class WidgetChanges {
+
+    private final long version;
+    private final boolean resync;
+    private final List<Widget> upserts;
+    private final List<UUID> tombstones;
+
+    @JsonCreator
+    public WidgetChanges(@JsonProperty("version") long version,
+                         @JsonProperty("resync") boolean resync,
+                         @JsonProperty("upserts") List<Widget> upserts,
+                         @JsonProperty("tombstones") List<UUID> tombstones) {
+        this.version = version;
+        this.resync = resync;
+        this.upserts = upserts;
+        this.tombstones = tombstones;
+    }
+
+    public static WidgetChanges resync(long version) {
+        return new WidgetChanges(version, true, Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[version:%d, resync:%b, upserts:%s, tombstones:%s]",
+            version, resync, upserts, tombstones);
+    }
+
+    /**
+     * @return The version the changes lead to, to ask for the following ones.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+
+    /**
+     * @return The latest state of the {@link Widget}s created or modified, in the order
+     * they were last changed.
+     */
+    public List<Widget> getUpserts() {
+        return upserts;
+    }
+
+    /**
+     * @return The {@link UUID}s of the {@link Widget}s removed.
+     */
+    public List<UUID> getTombstones() {
+        return tombstones;
+    }
+}
@@ -1,72 +1,269 @@
 package com.marcos_sb.widgets.resource;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
 import java.util.UUID;
 import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.NotNull;
 
+/**
+ * The new values of the properties of a {@link Widget} to update: a property is only
+ * changed if its {@code has*()} method returns true. If {@code version} is set, the
+ * update is only applied while the {@link Widget} is still at that version.
+ * </p>
+ * Values are kept unboxed, along with a mask of those that are set, and are read and
+ * written field by field, so decoding a specification allocates nothing but itself and
+ * its {@link UUID}. A getter returns 0 if its value isn't set.
+ */
+@JsonDeserialize(using = WidgetMutationSpec.Deserializer.class)
+@JsonSerialize(using = WidgetMutationSpec.Serializer.class)
 public class WidgetMutationSpec {
 
-    @JsonProperty(required = true) @NotNull
+    private static final int xSet = 1;
+    private static final int ySet = 1 << 1;
+    private static final int widthSet = 1 << 2;
+    private static final int heightSet = 1 << 3;
+    private static final int zIndexSet = 1 << 4;
+    private static final int versionSet = 1 << 5;
+
+    @NotNull
     private final UUID uuid;
 
-    private final Long x;
-    private final Long y;
+    private final long x;
+    private final long y;
 
     @DecimalMin("0")
-    private final Double width;
+    private final double width;
 
     @DecimalMin("0")
-    private final Double height;
+    private final double height;
+
+    private final int zIndex;
+    private final long version;
+    private final int set;
 
-    @JsonProperty("z-index")
-    private final Integer zIndex;
+    public WidgetMutationSpec(UUID uuid, Long x, Long y, Double width, Double height, Integer zIndex,
+                              Long version) {
+        this(uuid,
+            x != null ? x : 0, y != null ? y : 0,
+            width != null ? width : 0, height != null ? height : 0,
+            zIndex != null ? zIndex : 0, version != null ? version : 0,
+            (x != null ? xSet : 0) | (y != null ? ySet : 0)
+                | (width != null ? widthSet : 0) | (height != null ? heightSet : 0)
+                | (zIndex != null ? zIndexSet : 0) | (version != null ? versionSet : 0));
+    }
 
-    @JsonCreator
     public WidgetMutationSpec(UUID uuid, Long x, Long y, Double width, Double height, Integer zIndex) {
+        this(uuid, x, y, width, height, zIndex, null);
+    }
+
+    private WidgetMutationSpec(UUID uuid, long x, long y, double width, double height, int zIndex,
+                               long version, int set) {
         this.uuid = uuid;
         this.x = x;
         this.y = y;
         this.width = width;
         this.height = height;
         this.zIndex = zIndex;
+        this.version = version;
+        this.set = set;
+    }
+
+    /**
+     * @return A copy of this specification that expects the {@link Widget} to be at
+     * {@code version}.
+     */
+    public WidgetMutationSpec withVersion(long version) {
+        return new WidgetMutationSpec(uuid, x, y, width, height, zIndex, version, set | versionSet);
     }
 
     @Override
     public String toString() {
-        return String.format("[u:%s, x:%d, y:%d, w:%.2f, h:%.2f, z:%d]",
-            uuid, x, y, width, height, zIndex);
+        return String.format("[u:%s, x:%d, y:%d, w:%.2f, h:%.2f, z:%d, v:%d]",
+            uuid,
+            hasX() ? x : null, hasY() ? y : null,
+            hasWidth() ? width : null, hasHeight() ? height : null,
+            hasZIndex() ? zIndex : null, hasVersion() ? version : null);
     }
 
     public UUID getUUID() {
         return uuid;
     }
 
-    public Long getX() {
+    public long getX() {
         return x;
     }
 
-    public Long getY() {
+    public boolean hasX() {
+        return (set & xSet) != 0;
+    }
+
+    public long getY() {
         return y;
     }
 
-    public Double getWidth() {
+    public boolean hasY() {
+        return (set & ySet) != 0;
+    }
+
+    public double getWidth() {
         return width;
     }
 
-    public Double getHeight() {
+    public boolean hasWidth() {
+        return (set & widthSet) != 0;
+    }
+
+    public double getHeight() {
         return height;
     }
 
-    @JsonIgnore
-    public Integer getZIndex() {
+    public boolean hasHeight() {
+        return (set & heightSet) != 0;
+    }
+
+    public int getZIndex() {
         return zIndex;
     }
 
-    @JsonIgnore
     public boolean hasZIndex() {
-        return zIndex != null;
+        return (set & zIndexSet) != 0;
+    }
+
+    /**
+     * @return The version the {@link Widget} is expected to be at, if any.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean hasVersion() {
+        return (set & versionSet) != 0;
+    }
+
+    // Unset values are left out
+    static final class Serializer extends StdSerializer<WidgetMutationSpec> {
+
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(WidgetMutationSpec.class);
+        }
+
+        @Override
+        public void serialize(WidgetMutationSpec spec, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+            generator.writeStartObject(spec);
+            if (spec.uuid != null) provider.defaultSerializeField("uuid", spec.uuid, generator);
+            if (spec.hasX()) generator.writeNumberField("x", spec.x);
+            if (spec.hasY()) generator.writeNumberField("y", spec.y);
+            if (spec.hasWidth()) generator.writeNumberField("width", spec.width);
+            if (spec.hasHeight()) generator.writeNumberField("height", spec.height);
+            if (spec.hasZIndex()) generator.writeNumberField("z-index", spec.zIndex);
+            if (spec.hasVersion()) generator.writeNumberField("version", spec.version);
+            generator.writeEndObject();
+        }
+    }
+
+    // Null values are read as unset, and unknown properties as configured in the context
+    static final class Deserializer extends StdDeserializer<WidgetMutationSpec>
+        implements ResolvableDeserializer {
+
+        private static final long serialVersionUID = 1L;
+
+        // Looked up once, as looking it up on every read allocates
+        private JsonDeserializer<Object> uuidDeserializer;
+
+        Deserializer() {
+            super(WidgetMutationSpec.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext context) throws JsonMappingException {
+            uuidDeserializer = context.findRootValueDeserializer(context.constructType(UUID.class));
+        }
+
+        @Override
+        public WidgetMutationSpec deserialize(JsonParser parser, DeserializationContext context)
+            throws IOException {
+            String name;
+            if (parser.isExpectedStartObjectToken()) name = parser.nextFieldName();
+            else if (parser.hasToken(JsonToken.FIELD_NAME)) name = parser.getCurrentName();
+            else return (WidgetMutationSpec) context.handleUnexpectedToken(WidgetMutationSpec.class, parser);
+
+            UUID uuid = null;
+            long x = 0, y = 0, version = 0;
+            double width = 0, height = 0;
+            int zIndex = 0, set = 0;
+            for (; name != null; name = parser.nextFieldName()) {
+                if (parser.nextToken() == JsonToken.VALUE_NULL) continue;
+                switch (name) {
+                    case "uuid":
+                        uuid = parseUUID(parser);
+                        if (uuid == null) uuid = (UUID) uuidDeserializer.deserialize(parser, context);
+                        break;
+                    case "x":
+                        x = _parseLongPrimitive(parser, context);
+                        set |= xSet;
+                        break;
+                    case "y":
+                        y = _parseLongPrimitive(parser, context);
+                        set |= ySet;
+                        break;
+                    case "width":
+                        width = _parseDoublePrimitive(parser, context);
+                        set |= widthSet;
+                        break;
+                    case "height":
+                        height = _parseDoublePrimitive(parser, context);
+                        set |= heightSet;
+                        break;
+                    case "z-index":
+                        zIndex = _parseIntPrimitive(parser, context);
+                        set |= zIndexSet;
+                        break;
+                    case "version":
+                        version = _parseLongPrimitive(parser, context);
+                        set |= versionSet;
+                        break;
+                    default:
+                        handleUnknownProperty(parser, context, WidgetMutationSpec.class, name);
+                }
+            }
+            return new WidgetMutationSpec(uuid, x, y, width, height, zIndex, version, set);
+        }
+
+        // Parses a UUID in its canonical form straight off the buffer of the parser, or
+        // returns null for the UUID deserializer to handle, and report, anything else
+        private static UUID parseUUID(JsonParser parser) throws IOException {
+            if (!parser.hasToken(JsonToken.VALUE_STRING) || parser.getTextLength() != 36)
+                return null;
+            final char[] chars = parser.getTextCharacters();
+            final int offset = parser.getTextOffset();
+            if (chars[offset + 8] != '-' || chars[offset + 13] != '-'
+                || chars[offset + 18] != '-' || chars[offset + 23] != '-')
+                return null;
+            long mostSigBits = 0;
+            long leastSigBits = 0;
+            for (int i = 0; i < 36; i++) {
+                if (i == 8 || i == 13 || i == 18 || i == 23) continue;
+                final int digit = Character.digit(chars[offset + i], 16);
+                if (digit < 0) return null;
+                if (i < 19) mostSigBits = mostSigBits << 4 | digit;
+                else leastSigBits = leastSigBits << 4 | digit;
+            }
+            return new UUID(mostSigBits, leastSigBits);
+        }
     }
 }
@@ -0,0 +1,36 @@
+package com.marcos_sb.widgets.resource;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+public class WidgetPage {
+
+    private final List<Widget> widgets;
+
+    @JsonProperty("next-cursor")
+    private final String nextCursor;
+
+    @JsonCreator
+    public WidgetPage(@JsonProperty("widgets") List<Widget> widgets,
+                      @JsonProperty("next-cursor") String nextCursor) {
+        this.widgets = widgets;
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[widgets:%d, next-cursor:%s]", widgets.size(), nextCursor);
+    }
+
+    public List<Widget> getWidgets() {
+        return widgets;
+    }
+
+    /**
+     * @return The cursor to the following page, or null if this is the last one.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,58 @@
+package com.marcos_sb.widgets.util;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A cheap source of timestamps, in nanoseconds since the epoch, for stamping
+ * {@link com.marcos_sb.widgets.resource.Widget}s as they're modified.
+ * </p>
+ * Timestamps are extrapolated with {@link System#nanoTime()} from an anchor read off the
+ * wall clock, so taking one allocates nothing but a new anchor once a second, and those
+ * taken by any one thread never go back. Timestamps taken by different threads are only
+ * as ordered as their {@link System#nanoTime()} readings, which aren't synchronized with
+ * renewing the anchor, so they may come out slightly out of order. The anchor is renewed
+ * every second to follow the wall clock, unless it's been set back, in which case
+ * timestamps run ahead of it until it catches up.
+ */
+public final class MonotonicClock {
+
+    private static final long nanosPerSecond = 1_000_000_000L;
+
+    private static final AtomicReference<Anchor> anchor =
+        new AtomicReference<>(new Anchor(System.nanoTime(), wallClockEpochNanos()));
+
+    private MonotonicClock() {}
+
+    public static long epochNanos() {
+        final long nanoTime = System.nanoTime();
+        Anchor current = anchor.get();
+        if (nanoTime - current.nanoTime >= nanosPerSecond) {
+            // Never behind the timestamps extrapolated from the anchor it replaces
+            final Anchor renewed = new Anchor(nanoTime,
+                Math.max(wallClockEpochNanos(), current.epochNanosAt(nanoTime)));
+            current = anchor.compareAndSet(current, renewed) ? renewed : anchor.get();
+        }
+        return current.epochNanosAt(nanoTime);
+    }
+
+    private static long wallClockEpochNanos() {
+        final Instant now = Instant.now();
+        return now.getEpochSecond() * nanosPerSecond + now.getNano();
+    }
+
+    private static final class Anchor {
+
+        final long nanoTime;
+        final long epochNanos;
+
+        Anchor(long nanoTime, long epochNanos) {
+            this.nanoTime = nanoTime;
+            this.epochNanos = epochNanos;
+        }
+
+        long epochNanosAt(long nanoTime) {
+            return epochNanos + (nanoTime - this.nanoTime);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable sorted map implemented as a persistent AVL tree. Every
+ * state-changing operation returns a new map that shares all but O(log n)
+ * nodes with the original one, which is left untouched. Instances can thus
+ * be shared between threads freely and read w/o any synchronization.
+ * </p>
+ * Every node keeps track of the size of its subtree, so positional look-ups
+ * are logarithmic too.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the values.
+ */
+public final class PersistentSortedMap<K, V> {
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentSortedMap<>(comparator, null);
+    }
+
+    public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return empty(Comparator.naturalOrder());
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            final int cmp = comparator.compare(key, node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return A map with {@code key} mapped to {@code value}. Null values are not allowed.
+     */
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("Null values are not allowed");
+        final Node<K, V> newRoot = put(root, key, value);
+        return newRoot == root ? this : new PersistentSortedMap<>(comparator, newRoot);
+    }
+
+    /**
+     * @return A map w/o {@code key}, or this same map if {@code key} wasn't present.
+     */
+    public PersistentSortedMap<K, V> remove(K key) {
+        final Node<K, V> newRoot = remove(root, key);
+        return newRoot == root ? this : new PersistentSortedMap<>(comparator, newRoot);
+    }
+
+    /**
+     * @return The value with the greatest key less than or equal to {@code key}, or null.
+     */
+    public V floor(K key) {
+        Node<K, V> node = root;
+        Node<K, V> candidate = null;
+        while (node != null) {
+            final int cmp = comparator.compare(key, node.key);
+            if (cmp == 0) return node.value;
+            if (cmp < 0) node = node.left;
+            else { candidate = node; node = node.right; }
+        }
+        return candidate == null ? null : candidate.value;
+    }
+
+    /**
+     * @return The value with the least key strictly greater than {@code key}, or null.
+     */
+    public V higher(K key) {
+        Node<K, V> node = root;
+        Node<K, V> candidate = null;
+        while (node != null) {
+            if (comparator.compare(key, node.key) < 0) { candidate = node; node = node.left; }
+            else node = node.right;
+        }
+        return candidate == null ? null : candidate.value;
+    }
+
+    public V first() {
+        if (root == null) return null;
+        Node<K, V> node = root;
+        while (node.left != null) node = node.left;
+        return node.value;
+    }
+
+    public V last() {
+        if (root == null) return null;
+        Node<K, V> node = root;
+        while (node.right != null) node = node.right;
+        return node.value;
+    }
+
+    /**
+     * @return The value at position {@code index} in key order.
+     */
+    public V getAt(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(
+                String.format("Index: %d, size: %d", index, size()));
+        Node<K, V> node = root;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (index == leftSize) return node.value;
+            if (index < leftSize) node = node.left;
+            else { index -= leftSize + 1; node = node.right; }
+        }
+    }
+
+    /**
+     * @return An unmodifiable list view of the values in key order. No copy takes place.
+     */
+    public List<V> values() {
+        return new ValuesView();
+    }
+
+    /**
+     * @return An iterator over the values in key order, starting at {@code fromKey}.
+     */
+    public Iterator<V> valuesFrom(K fromKey, boolean inclusive) {
+        return new ValueIterator(fromKey, inclusive);
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value) {
+        if (node == null)
+            return new Node<>(key, value, null, null);
+
+        final int cmp = comparator.compare(key, node.key);
+        if (cmp == 0)
+            return node.value == value ? node : new Node<>(key, value, node.left, node.right);
+        if (cmp < 0) {
+            final Node<K, V> left = put(node.left, key, value);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        final Node<K, V> right = put(node.right, key, value);
+        return right == node.right ? node : balance(node.key, node.value, node.left, right);
+    }
+
+    private Node<K, V> remove(Node<K, V> node, K key) {
+        if (node == null)
+            return null;
+
+        final int cmp = comparator.compare(key, node.key);
+        if (cmp < 0) {
+            final Node<K, V> left = remove(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (cmp > 0) {
+            final Node<K, V> right = remove(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        Node<K, V> successor = node.right;
+        while (successor.left != null) successor = successor.left;
+        return balance(successor.key, successor.value, node.left, removeMin(node.right));
+    }
+
+    private Node<K, V> removeMin(Node<K, V> node) {
+        if (node.left == null) return node.right;
+        return balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        final int leftHeight = height(left);
+        final int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right))
+                return new Node<>(left.key, left.value, left.left,
+                    new Node<>(key, value, left.right, right));
+            return new Node<>(left.right.key, left.right.value,
+                new Node<>(left.key, left.value, left.left, left.right.left),
+                new Node<>(key, value, left.right.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left))
+                return new Node<>(right.key, right.value,
+                    new Node<>(key, value, left, right.left), right.right);
+            return new Node<>(right.left.key, right.left.value,
+                new Node<>(key, value, left, right.left.left),
+                new Node<>(right.key, right.value, right.left.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+        final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private final class ValuesView extends AbstractList<V> {
+        @Override
+        public V get(int index) {
+            return getAt(index);
+        }
+
+        @Override
+        public int size() {
+            return PersistentSortedMap.this.size();
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+        private final Deque<Node<K, V>> path = new ArrayDeque<>();
+
+        ValueIterator() {
+            pushLeft(root);
+        }
+
+        ValueIterator(K fromKey, boolean inclusive) {
+            Node<K, V> node = root;
+            while (node != null) {
+                final int cmp = comparator.compare(fromKey, node.key);
+                if (cmp < 0 || (cmp == 0 && inclusive)) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        private void pushLeft(Node<K, V> node) {
+            for (; node != null; node = node.left)
+                path.push(node);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public V next() {
+            if (path.isEmpty())
+                throw new NoSuchElementException();
+            final Node<K, V> node = path.pop();
+            pushLeft(node.right);
+            return node.value;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An R-tree indexing values by their axis-aligned bounding rectangle, as described
+ * by Guttman (quadratic split). Searching for the values whose rectangle intersects
+ * a query rectangle only visits the nodes overlapping it, so its cost depends on the
+ * number of results rather than on the total number of values stored.
+ * </p>
+ * Rectangles are closed: two rectangles sharing only an edge intersect.
+ * </p>
+ * A tree holding a known set of values is best built at once with
+ * {@link #pack(List, RectangleFunction)}, which is much faster than inserting them one by
+ * one and yields nodes that overlap less.
+ * </p>
+ * This class is not thread-safe.
+ *
+ * @param <T> Type of the values.
+ */
+public class RTree<T> {
+
+    private static final int maxEntries = 16;
+    private static final int minEntries = 6;
+
+    private Node root;
+    private int size;
+
+    public RTree() {
+        this.root = new Node(true);
+    }
+
+    /**
+     * Builds a tree holding {@code values}, each indexed by the rectangle {@code rectangle}
+     * computes for it, through Sort-Tile-Recursive packing: the rectangles are sorted by
+     * the x of their center and cut into vertical slices, every slice is sorted by the y
+     * of their center and cut into full nodes, and the same is repeated on the nodes
+     * until they fit into the root.
+     */
+    public static <T> RTree<T> pack(List<? extends T> values, RectangleFunction<? super T> rectangle) {
+        final int n = values.size();
+        final double[] minX = new double[n], minY = new double[n];
+        final double[] maxX = new double[n], maxY = new double[n];
+        final Object[] children = values.toArray();
+        final double[] rect = new double[4];
+        for (int i = 0; i < n; i++) {
+            rectangle.apply(values.get(i), rect);
+            if (rect[0] > rect[2] || rect[1] > rect[3])
+                throw new IllegalArgumentException(
+                    String.format("Invalid rectangle [%f, %f, %f, %f]", rect[0], rect[1], rect[2], rect[3]));
+            minX[i] = rect[0];
+            minY[i] = rect[1];
+            maxX[i] = rect[2];
+            maxY[i] = rect[3];
+        }
+
+        final RTree<T> tree = new RTree<>();
+        tree.root = tree.pack(minX, minY, maxX, maxY, children, n, true);
+        tree.size = n;
+        return tree;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void insert(double minX, double minY, double maxX, double maxY, T value) {
+        if (minX > maxX || minY > maxY)
+            throw new IllegalArgumentException(
+                String.format("Invalid rectangle [%f, %f, %f, %f]", minX, minY, maxX, maxY));
+        insert(minX, minY, maxX, maxY, value, 0);
+        size++;
+    }
+
+    /**
+     * Removes {@code value} indexed under the input rectangle, which must be the same
+     * one used to insert it. Values are compared by identity.
+     *
+     * @return true iff the value was found.
+     */
+    public boolean remove(double minX, double minY, double maxX, double maxY, T value) {
+        final Node leaf = findLeaf(root, minX, minY, maxX, maxY, value);
+        if (leaf == null)
+            return false;
+
+        leaf.removeEntry(leaf.indexOf(value));
+        condense(leaf);
+        size--;
+        return true;
+    }
+
+    /**
+     * Calls {@code action} with every value whose rectangle intersects the input one.
+     */
+    public void search(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        search(root, minX, minY, maxX, maxY, action);
+    }
+
+    private void search(Node node, double minX, double minY, double maxX, double maxY,
+                        Consumer<? super T> action) {
+        for (int i = 0; i < node.count; i++) {
+            if (!node.intersects(i, minX, minY, maxX, maxY))
+                continue;
+            if (node.leaf) action.accept(node.value(i));
+            else search(node.child(i), minX, minY, maxX, maxY, action);
+        }
+    }
+
+    private Node findLeaf(Node node, double minX, double minY, double maxX, double maxY, T value) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                if (node.children[i] == value && node.hasRect(i, minX, minY, maxX, maxY))
+                    return node;
+            } else if (node.contains(i, minX, minY, maxX, maxY)) {
+                final Node leaf = findLeaf(node.child(i), minX, minY, maxX, maxY, value);
+                if (leaf != null) return leaf;
+            }
+        }
+        return null;
+    }
+
+    // Inserts an entry (a value if 'level' is 0, or a subtree 'level' levels high)
+    private void insert(double minX, double minY, double maxX, double maxY, Object entry, int level) {
+        Node node = root;
+        for (int height = height(); height > level; height--) {
+            final int i = node.leastEnlargement(minX, minY, maxX, maxY);
+            node = node.child(i);
+        }
+
+        node.addEntry(minX, minY, maxX, maxY, entry);
+        Node sibling = node.count > maxEntries ? split(node) : null;
+
+        // Adjusts bounding rectangles up to the root, propagating splits
+        while (node != root) {
+            final Node parent = node.parent;
+            parent.setRect(parent.indexOf(node), node);
+            if (sibling != null) {
+                parent.addEntry(sibling.minX(), sibling.minY(), sibling.maxX(), sibling.maxY(), sibling);
+                sibling = parent.count > maxEntries ? split(parent) : null;
+            }
+            node = parent;
+        }
+        if (sibling != null) {
+            final Node newRoot = new Node(false);
+            newRoot.addEntry(root.minX(), root.minY(), root.maxX(), root.maxY(), root);
+            newRoot.addEntry(sibling.minX(), sibling.minY(), sibling.maxX(), sibling.maxY(), sibling);
+            root = newRoot;
+        }
+    }
+
+    // Packs the first 'n' entries into nodes, and those into their parents up to the root
+    private Node pack(double[] minX, double[] minY, double[] maxX, double[] maxY,
+                      Object[] children, int n, boolean leaf) {
+        if (n <= maxEntries) {
+            final Node node = new Node(leaf);
+            for (int i = 0; i < n; i++)
+                node.addEntry(minX[i], minY[i], maxX[i], maxY[i], children[i]);
+            return node;
+        }
+
+        final int nNodes = (n + maxEntries - 1) / maxEntries;
+        final int sliceSize = (int) Math.ceil(Math.sqrt(nNodes)) * maxEntries;
+        final double[] nodeMinX = new double[nNodes], nodeMinY = new double[nNodes];
+        final double[] nodeMaxX = new double[nNodes], nodeMaxY = new double[nNodes];
+        final Object[] nodes = new Object[nNodes];
+
+        final long[] byX = sortKeys(minX, maxX, n);
+        final int[] slice = new int[sliceSize];
+        int nextNode = 0;
+        for (int start = 0; start < n; start += sliceSize) {
+            final int end = Math.min(start + sliceSize, n);
+            for (int i = start; i < end; i++)
+                slice[i - start] = (int) byX[i];
+            final long[] byY = sortKeys(minY, maxY, slice, end - start);
+            for (int i = 0; i < byY.length; i += maxEntries) {
+                final Node node = new Node(leaf);
+                for (int j = i; j < Math.min(i + maxEntries, byY.length); j++) {
+                    final int k = (int) byY[j];
+                    node.addEntry(minX[k], minY[k], maxX[k], maxY[k], children[k]);
+                }
+                nodeMinX[nextNode] = node.minX();
+                nodeMinY[nextNode] = node.minY();
+                nodeMaxX[nextNode] = node.maxX();
+                nodeMaxY[nextNode] = node.maxY();
+                nodes[nextNode++] = node;
+            }
+        }
+        return pack(nodeMinX, nodeMinY, nodeMaxX, nodeMaxY, nodes, nextNode, false);
+    }
+
+    // The first 'n' entries sorted by their center along one axis, as sort keys whose
+    // low half is the entry index. Sorting primitives is much faster than sorting objects,
+    // and float precision is plenty for packing.
+    private static long[] sortKeys(double[] min, double[] max, int n) {
+        final long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = sortKey(min[i] + max[i], i);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    // Same as above for the entries at the first 'n' 'indexes'
+    private static long[] sortKeys(double[] min, double[] max, int[] indexes, int n) {
+        final long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = sortKey(min[indexes[i]] + max[indexes[i]], indexes[i]);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static long sortKey(double center, int index) {
+        final int bits = Float.floatToIntBits((float) center);
+        // Flips the magnitude of negative floats, so they compare as signed ints
+        return ((long) (bits ^ ((bits >> 31) & 0x7fffffff)) << 32) | index;
+    }
+
+    private int height() {
+        int height = 0;
+        for (Node node = root; !node.leaf; node = node.child(0))
+            height++;
+        return height;
+    }
+
+    private int levelOf(Node node) {
+        int level = 0;
+        for (Node n = node; !n.leaf; n = n.child(0))
+            level++;
+        return level;
+    }
+
+    // Quadratic split: moves some of the entries of 'node' into a new sibling.
+    private Node split(Node node) {
+        final int n = node.count;
+        final double[] minX = node.minX.clone(), minY = node.minY.clone();
+        final double[] maxX = node.maxX.clone(), maxY = node.maxY.clone();
+        final Object[] children = node.children.clone();
+        final boolean[] assigned = new boolean[n];
+
+        // Picks the two seeds that would waste the most area together
+        int seed1 = 0, seed2 = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                final double waste =
+                    area(Math.min(minX[i], minX[j]), Math.min(minY[i], minY[j]),
+                        Math.max(maxX[i], maxX[j]), Math.max(maxY[i], maxY[j]))
+                    - area(minX[i], minY[i], maxX[i], maxY[i])
+                    - area(minX[j], minY[j], maxX[j], maxY[j]);
+                if (waste > worst) { worst = waste; seed1 = i; seed2 = j; }
+            }
+        }
+
+        final Node sibling = new Node(node.leaf);
+        node.clear();
+        node.addEntry(minX[seed1], minY[seed1], maxX[seed1], maxY[seed1], children[seed1]);
+        sibling.addEntry(minX[seed2], minY[seed2], maxX[seed2], maxY[seed2], children[seed2]);
+        assigned[seed1] = assigned[seed2] = true;
+
+        for (int remaining = n - 2; remaining > 0; remaining--) {
+            // Makes sure both nodes end up with the minimum number of entries
+            final Node needy = node.count + remaining == minEntries ? node
+                : sibling.count + remaining == minEntries ? sibling : null;
+
+            int next = -1;
+            double maxPreference = Double.NEGATIVE_INFINITY;
+            double growNode = 0, growSibling = 0;
+            for (int i = 0; i < n; i++) {
+                if (assigned[i]) continue;
+                final double d1 = node.enlargement(minX[i], minY[i], maxX[i], maxY[i]);
+                final double d2 = sibling.enlargement(minX[i], minY[i], maxX[i], maxY[i]);
+                final double preference = Math.abs(d1 - d2);
+                if (preference > maxPreference) {
+                    maxPreference = preference;
+                    next = i;
+                    growNode = d1;
+                    growSibling = d2;
+                }
+            }
+
+            final Node target;
+            if (needy != null) target = needy;
+            else if (growNode != growSibling) target = growNode < growSibling ? node : sibling;
+            else target = node.count <= sibling.count ? node : sibling;
+            target.addEntry(minX[next], minY[next], maxX[next], maxY[next], children[next]);
+            assigned[next] = true;
+        }
+        return sibling;
+    }
+
+    // Removes underflowing nodes on the way up from 'leaf', reinserting their entries.
+    private void condense(Node leaf) {
+        final List<Node> orphans = new ArrayList<>();
+        Node node = leaf;
+        while (node != root) {
+            final Node parent = node.parent;
+            final int i = parent.indexOf(node);
+            if (node.count < minEntries) {
+                parent.removeEntry(i);
+                orphans.add(node);
+            } else {
+                parent.setRect(i, node);
+            }
+            node = parent;
+        }
+
+        for (Node orphan : orphans) {
+            final int level = levelOf(orphan);
+            for (int i = 0; i < orphan.count; i++) {
+                final Object child = orphan.children[i];
+                insert(orphan.minX[i], orphan.minY[i], orphan.maxX[i], orphan.maxY[i], child, level);
+            }
+        }
+
+        if (!root.leaf && root.count == 1) {
+            root = root.child(0);
+            root.parent = null;
+        } else if (!root.leaf && root.count == 0) {
+            root = new Node(true);
+        }
+    }
+
+    private static double area(double minX, double minY, double maxX, double maxY) {
+        return (maxX - minX) * (maxY - minY);
+    }
+
+    /**
+     * Computes the rectangle a value is indexed by.
+     */
+    @FunctionalInterface
+    public interface RectangleFunction<T> {
+        /**
+         * Stores the rectangle of {@code value} into {@code rectangle}, as its minimum x,
+         * minimum y, maximum x and maximum y.
+         */
+        void apply(T value, double[] rectangle);
+    }
+
+    private final class Node {
+        final boolean leaf;
+        Node parent;
+        int count;
+        final double[] minX = new double[maxEntries + 1];
+        final double[] minY = new double[maxEntries + 1];
+        final double[] maxX = new double[maxEntries + 1];
+        final double[] maxY = new double[maxEntries + 1];
+        final Object[] children = new Object[maxEntries + 1];
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void addEntry(double minX, double minY, double maxX, double maxY, Object child) {
+            this.minX[count] = minX;
+            this.minY[count] = minY;
+            this.maxX[count] = maxX;
+            this.maxY[count] = maxY;
+            this.children[count] = child;
+            if (!leaf) child(count).parent = this;
+            count++;
+        }
+
+        // Children are values in leaves and nodes elsewhere, so they're kept as Objects
+        @SuppressWarnings("unchecked")
+        T value(int i) {
+            return (T) children[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        Node child(int i) {
+            return (Node) children[i];
+        }
+
+        void removeEntry(int i) {
+            count--;
+            minX[i] = minX[count];
+            minY[i] = minY[count];
+            maxX[i] = maxX[count];
+            maxY[i] = maxY[count];
+            children[i] = children[count];
+            children[count] = null;
+        }
+
+        void clear() {
+            for (int i = 0; i < count; i++) children[i] = null;
+            count = 0;
+        }
+
+        int indexOf(Object child) {
+            for (int i = 0; i < count; i++)
+                if (children[i] == child) return i;
+            throw new IllegalStateException("Entry not found in node");
+        }
+
+        void setRect(int i, Node child) {
+            minX[i] = child.minX();
+            minY[i] = child.minY();
+            maxX[i] = child.maxX();
+            maxY[i] = child.maxY();
+        }
+
+        boolean intersects(int i, double minX, double minY, double maxX, double maxY) {
+            return this.minX[i] <= maxX && minX <= this.maxX[i]
+                && this.minY[i] <= maxY && minY <= this.maxY[i];
+        }
+
+        boolean contains(int i, double minX, double minY, double maxX, double maxY) {
+            return this.minX[i] <= minX && maxX <= this.maxX[i]
+                && this.minY[i] <= minY && maxY <= this.maxY[i];
+        }
+
+        boolean hasRect(int i, double minX, double minY, double maxX, double maxY) {
+            return this.minX[i] == minX && this.minY[i] == minY
+                && this.maxX[i] == maxX && this.maxY[i] == maxY;
+        }
+
+        int leastEnlargement(double minX, double minY, double maxX, double maxY) {
+            int best = 0;
+            double bestEnlargement = Double.POSITIVE_INFINITY;
+            double bestArea = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                final double area = area(this.minX[i], this.minY[i], this.maxX[i], this.maxY[i]);
+                final double enlargement = area(
+                    Math.min(this.minX[i], minX), Math.min(this.minY[i], minY),
+                    Math.max(this.maxX[i], maxX), Math.max(this.maxY[i], maxY)) - area;
+                if (enlargement < bestEnlargement
+                    || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = i;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            return best;
+        }
+
+        double enlargement(double minX, double minY, double maxX, double maxY) {
+            final double area = area(minX(), minY(), maxX(), maxY());
+            return area(Math.min(minX(), minX), Math.min(minY(), minY),
+                Math.max(maxX(), maxX), Math.max(maxY(), maxY)) - area;
+        }
+
+        double minX() {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < count; i++) min = Math.min(min, minX[i]);
+            return min;
+        }
+
+        double minY() {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < count; i++) min = Math.min(min, minY[i]);
+            return min;
+        }
+
+        double maxX() {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) max = Math.max(max, maxX[i]);
+            return max;
+        }
+
+        double maxY() {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) max = Math.max(max, maxY[i]);
+            return max;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A bounded multi-producer, single-consumer ring buffer. Producers claim a slot
+ * in the ring with a single atomic increment and publish their event into it;
+ * one dedicated consumer thread handles the events strictly in claim order.
+ * </p>
+ * No locks are taken on either side. Producers only wait (spinning, then parking)
+ * when the ring is full, i.e. when they are more than {@code capacity} events ahead
+ * of the consumer. The consumer spins briefly when the ring is empty before parking
+ * until a producer wakes it up.
+ *
+ * @param <E> Type of the events in the ring.
+ */
+public class RingBufferSequencer<E> implements AutoCloseable {
+
+    private static final int spinTries = 100;
+    private static final long maxParkNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Object[] entries;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed;
+    private final Consumer<? super E> handler;
+    private final Thread consumer;
+
+    private volatile long consumed;
+    private volatile boolean consumerParked;
+    private volatile boolean running;
+
+    /**
+     * @param capacity Number of slots in the ring. Must be a power of 2.
+     * @param threadName Name of the consumer thread.
+     * @param handler Handles every published event on the consumer thread. It should
+     *                not throw; any exception thrown is swallowed so that the consumer
+     *                keeps running.
+     */
+    public RingBufferSequencer(int capacity, String threadName, Consumer<? super E> handler) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException(
+                String.format("Capacity must be a power of 2 (actual: %d)", capacity));
+        this.entries = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) published.set(i, -1);
+        this.mask = capacity - 1;
+        this.claimed = new AtomicLong(-1);
+        this.consumed = -1;
+        this.handler = handler;
+        this.running = true;
+        this.consumer = new Thread(this::consume, threadName);
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Publishes {@code event} to be handled by the consumer thread. Blocks while the
+     * ring is full.
+     *
+     * @return The sequence number assigned to {@code event}.
+     * @throws IllegalStateException If the sequencer has been closed.
+     */
+    public long publish(E event) {
+        final long sequence = claimed.incrementAndGet();
+        final long wrapPoint = sequence - entries.length;
+        while (wrapPoint > consumed)
+            LockSupport.parkNanos(1);
+
+        // The sequence is claimed before checking whether the sequencer is still
+        // running, so the consumer is guaranteed to wait for this slot. If closed,
+        // the slot is published empty and skipped by the consumer.
+        final boolean accepted = running;
+        final int slot = (int) (sequence & mask);
+        entries[slot] = accepted ? event : null;
+        published.set(slot, sequence);
+
+        if (consumerParked)
+            LockSupport.unpark(consumer);
+        if (!accepted)
+            throw new IllegalStateException("Sequencer is closed");
+        return sequence;
+    }
+
+    /**
+     * @return The sequence number of the last event fully handled by the consumer.
+     */
+    public long getConsumedSequence() {
+        return consumed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume() {
+        long next = 0;
+        int idle = 0;
+        while (running || next <= claimed.get()) {
+            final int slot = (int) (next & mask);
+            if (published.get(slot) != next) {
+                idle = idle(slot, next, idle);
+                continue;
+            }
+
+            idle = 0;
+            final E event = (E) entries[slot];
+            entries[slot] = null;
+            if (event != null) {
+                try {
+                    handler.accept(event);
+                } catch (RuntimeException ignored) {
+                    // The handler is responsible for reporting its own failures.
+                }
+            }
+            consumed = next++;
+        }
+    }
+
+    private int idle(int slot, long next, int idle) {
+        if (idle < spinTries)
+            return idle + 1;
+
+        // Producers check 'consumerParked' after publishing, so the slot must be
+        // re-checked after raising the flag to avoid missing a wake-up.
+        consumerParked = true;
+        if (published.get(slot) != next && running)
+            LockSupport.parkNanos(this, maxParkNanos);
+        consumerParked = false;
+        return idle;
+    }
+
+    /**
+     * Stops accepting new events and waits for the consumer thread to drain
+     * the ones already published.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        if (Thread.currentThread() == consumer)
+            return;
+        try {
+            consumer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
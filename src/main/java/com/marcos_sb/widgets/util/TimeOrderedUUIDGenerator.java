@@ -0,0 +1,49 @@
+package com.marcos_sb.widgets.util;
+
+import com.marcos_sb.widgets.model.UUIDGenerator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered (version 7) {@link UUID}s: a millisecond timestamp, followed
+ * by a 12-bit sequence number within the millisecond, and 62 random bits.
+ * </p>
+ * The timestamp and sequence number are taken together from a single counter, advanced
+ * with a compare-and-set to the current time or past the last one handed out, whichever
+ * is greater. So no two {@link UUID}s from the same generator ever collide, even if the
+ * clock goes back, and generating one never blocks. Random bits come from
+ * {@link ThreadLocalRandom}, which isn't shared among threads: the {@link UUID}s are
+ * unique, not unpredictable, and they reveal when they were generated.
+ */
+public class TimeOrderedUUIDGenerator implements UUIDGenerator {
+
+    private static final int sequenceBits = 12;
+    private static final long version = 7L << 12;
+    private static final long variant = 1L << 63;
+
+    // Milliseconds since the epoch, shifted left by sequenceBits, plus the sequence number
+    private final AtomicLong last = new AtomicLong();
+
+    @Override
+    public UUID next() {
+        final long timestampAndSequence = nextTimestampAndSequence();
+        final long mostSigBits =
+            (timestampAndSequence >>> sequenceBits) << 16
+                | version
+                | timestampAndSequence & ((1L << sequenceBits) - 1);
+        final long leastSigBits = variant | ThreadLocalRandom.current().nextLong() >>> 2;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private long nextTimestampAndSequence() {
+        final long now = System.currentTimeMillis() << sequenceBits;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(now, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+        return next;
+    }
+}
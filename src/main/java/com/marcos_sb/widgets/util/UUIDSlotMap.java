@@ -0,0 +1,149 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A map from {@link UUID}s to non-negative {@code int} slots, stored in primitive arrays
+ * with open addressing and linear probing, so it allocates no object per entry. Every
+ * {@link UUID} takes its two longs plus the slot, at a load factor of at most 1/2.
+ * Removals shift the following entries of the probe sequence back instead of leaving
+ * tombstones, so lookups never degrade.
+ * </p>
+ * This class is not thread-safe.
+ */
+public class UUIDSlotMap {
+
+    /**
+     * Returned when a {@link UUID} isn't in the map.
+     */
+    public static final int absent = -1;
+
+    private static final int minCapacity = 16;
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    public UUIDSlotMap(int expectedSize) {
+        allocate(Math.max(minCapacity, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+    }
+
+    public UUIDSlotMap() {
+        this(minCapacity / 2);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The slot of {@code uuid}, or {@link #absent}.
+     */
+    public int get(UUID uuid) {
+        final int i = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return i < 0 ? absent : slots[i];
+    }
+
+    public boolean containsKey(UUID uuid) {
+        return get(uuid) != absent;
+    }
+
+    /**
+     * Maps {@code uuid} to {@code slot}, replacing its previous slot if any.
+     *
+     * @return The previous slot of {@code uuid}, or {@link #absent}.
+     */
+    public int put(UUID uuid, int slot) {
+        if (slot < 0)
+            throw new IllegalArgumentException(String.format("Invalid slot %d", slot));
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        int i = hash(msb, lsb) & mask;
+        for (; slots[i] != absent; i = (i + 1) & mask) {
+            if (mostSigBits[i] == msb && leastSigBits[i] == lsb) {
+                final int previous = slots[i];
+                slots[i] = slot;
+                return previous;
+            }
+        }
+
+        mostSigBits[i] = msb;
+        leastSigBits[i] = lsb;
+        slots[i] = slot;
+        if (++size * 2 > slots.length)
+            resize(slots.length * 2);
+        return absent;
+    }
+
+    /**
+     * @return The slot {@code uuid} was mapped to, or {@link #absent}.
+     */
+    public int remove(UUID uuid) {
+        int i = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (i < 0)
+            return absent;
+        final int removed = slots[i];
+
+        // Moves back every following entry in the probe sequence that would otherwise
+        // become unreachable from its ideal position
+        for (int j = (i + 1) & mask; slots[j] != absent; j = (j + 1) & mask) {
+            final int ideal = hash(mostSigBits[j], leastSigBits[j]) & mask;
+            if (((j - ideal) & mask) >= ((j - i) & mask)) {
+                mostSigBits[i] = mostSigBits[j];
+                leastSigBits[i] = leastSigBits[j];
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        slots[i] = absent;
+        size--;
+        return removed;
+    }
+
+    private int indexOf(long msb, long lsb) {
+        for (int i = hash(msb, lsb) & mask; slots[i] != absent; i = (i + 1) & mask) {
+            if (mostSigBits[i] == msb && leastSigBits[i] == lsb)
+                return i;
+        }
+        return -1;
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        slots = new int[capacity];
+        Arrays.fill(slots, absent);
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        final long[] oldMostSigBits = mostSigBits;
+        final long[] oldLeastSigBits = leastSigBits;
+        final int[] oldSlots = slots;
+        allocate(capacity);
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] == absent) continue;
+            int i = hash(oldMostSigBits[j], oldLeastSigBits[j]) & mask;
+            while (slots[i] != absent) i = (i + 1) & mask;
+            mostSigBits[i] = oldMostSigBits[j];
+            leastSigBits[i] = oldLeastSigBits[j];
+            slots[i] = oldSlots[j];
+        }
+    }
+
+    // Random UUIDs are already uniform, but name-based or sequential ones aren't
+    private static int hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
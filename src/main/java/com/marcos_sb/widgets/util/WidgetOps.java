@@ -1,35 +1,302 @@
 package com.marcos_sb.widgets.util;
 
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
 import com.marcos_sb.widgets.resource.NewWidgetSpec;
 import com.marcos_sb.widgets.resource.WidgetMutationSpec;
 import com.marcos_sb.widgets.resource.Widget;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 public class WidgetOps {
 
+    /**
+     * @return A copy of {@code widget} with the values of {@code widgetMutationSpec}
+     * applied, at the next version.
+     * @throws WidgetVersionConflictException If the specification expects some other
+     * version of {@code widget}.
+     */
     public static Widget update(Widget widget,
                                 WidgetMutationSpec widgetMutationSpec) {
         if (!widget.getUUID().equals(widgetMutationSpec.getUUID()))
             throw new IllegalArgumentException(
                 String.format("Cannot update widget. UUID mismatch (expected: '%s', actual '%s')",
                     widget.getUUID(), widgetMutationSpec.getUUID()));
+        checkVersion(widget, widgetMutationSpec);
 
         final long newX =
-            widgetMutationSpec.getX() != null ? widgetMutationSpec.getX() : widget.getX();
+            widgetMutationSpec.hasX() ? widgetMutationSpec.getX() : widget.getX();
         final long newY =
-            widgetMutationSpec.getY() != null ? widgetMutationSpec.getY() : widget.getY();
+            widgetMutationSpec.hasY() ? widgetMutationSpec.getY() : widget.getY();
         final double newWidth =
-            widgetMutationSpec.getWidth() != null ? widgetMutationSpec.getWidth() : widget.getWidth();
+            widgetMutationSpec.hasWidth() ? widgetMutationSpec.getWidth() : widget.getWidth();
         final double newHeight =
-            widgetMutationSpec.getHeight() != null ? widgetMutationSpec.getHeight() : widget.getHeight();
-        final Integer newZIndex =
-            widgetMutationSpec.getZIndex() != null ? widgetMutationSpec.getZIndex() : widget.getZIndex();
+            widgetMutationSpec.hasHeight() ? widgetMutationSpec.getHeight() : widget.getHeight();
+        final int newZIndex =
+            widgetMutationSpec.hasZIndex() ? widgetMutationSpec.getZIndex() : widget.getZIndex();
 
-        return new Widget(widget.getUUID(), newX, newY, newWidth, newHeight, newZIndex);
+        return new Widget(widget.getUUID(), newX, newY, newWidth, newHeight,
+            MonotonicClock.epochNanos(), newZIndex, widget.getVersion() + 1);
+    }
+
+    /**
+     * @throws WidgetVersionConflictException If {@code widgetMutationSpec} expects some
+     * version of {@code widget} other than the current one.
+     */
+    public static void checkVersion(Widget widget, WidgetMutationSpec widgetMutationSpec) {
+        if (widgetMutationSpec.hasVersion() && widgetMutationSpec.getVersion() != widget.getVersion())
+            throw new WidgetVersionConflictException(widget, widgetMutationSpec.getVersion());
+    }
+
+    /**
+     * @throws WidgetVersionConflictException If {@code expectedVersion} is not null and
+     * {@code widget} is at some other version.
+     */
+    public static void checkVersion(Widget widget, Long expectedVersion) {
+        if (expectedVersion != null && expectedVersion != widget.getVersion())
+            throw new WidgetVersionConflictException(widget, expectedVersion);
     }
 
     public static Widget widgetFrom(UUID uuid, NewWidgetSpec newWidgetSpec, int zIndex) {
         return new Widget(uuid, newWidgetSpec.getX(), newWidgetSpec.getY(),
             newWidgetSpec.getWidth(), newWidgetSpec.getHeight(), zIndex);
     }
+
+    /**
+     * Runs {@code operation}, capturing its outcome as a {@link BatchResult}.
+     */
+    public static BatchResult tryApply(Callable<Widget> operation) {
+        try {
+            return BatchResult.ok(operation.call());
+        } catch (NoSuchElementException ex) {
+            return BatchResult.notFound(ex.getMessage());
+        } catch (WidgetVersionConflictException ex) {
+            return BatchResult.conflict(ex.getCurrent(), ex.getMessage());
+        } catch (Exception ex) {
+            return BatchResult.failed(ex.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether all {@code operations} can be applied in order, w/o applying any.
+     * Updates and deletions must target a {@link Widget} that exists and hasn't been
+     * deleted earlier in the batch, and all resulting {@link Widget}s must be valid.
+     * Updates that expect a version are checked against the version the {@link Widget}
+     * would be at after the previous updates in the batch.
+     *
+     * @param lookup Returns the current {@link Widget} with a {@link UUID}, or null.
+     * @return null if all operations can be applied. Otherwise, a result per operation
+     * where the invalid ones are reported as such and the rest as aborted.
+     */
+    public static List<BatchResult> checkBatch(List<BatchOperation> operations,
+                                               Function<UUID, Widget> lookup) {
+        final List<BatchResult> results = new ArrayList<>(operations.size());
+        final Set<UUID> deleted = new HashSet<>();
+        final Map<UUID, Widget> updated = new HashMap<>();
+        boolean valid = true;
+        for (BatchOperation operation : operations) {
+            BatchResult result = BatchResult.aborted();
+            final UUID uuid = operation.getTargetUUID();
+            final Widget target = uuid == null || deleted.contains(uuid) ? null
+                : updated.containsKey(uuid) ? updated.get(uuid) : lookup.apply(uuid);
+            try {
+                switch (operation.getType()) {
+                    case CREATE:
+                        widgetFrom(null, operation.getCreate(), 0);
+                        break;
+                    case UPDATE:
+                        if (target == null) result = BatchResult.notFound(
+                            String.format("Widget with uuid '%s' not found", uuid));
+                        else updated.put(uuid, update(target, operation.getUpdate()));
+                        break;
+                    case DELETE:
+                        if (target == null) result = BatchResult.notFound(
+                            String.format("Widget with uuid '%s' not found", uuid));
+                        else deleted.add(uuid);
+                        break;
+                }
+            } catch (IllegalArgumentException ex) {
+                result = BatchResult.failed(ex.getMessage());
+            } catch (WidgetVersionConflictException ex) {
+                result = BatchResult.conflict(ex.getCurrent(), ex.getMessage());
+            }
+            valid &= result.getStatus() == BatchResult.Status.ABORTED;
+            results.add(result);
+        }
+        return valid ? null : results;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the rectangle is not well-formed.
+     */
+    public static void checkArea(long x1, long y1, long x2, long y2) {
+        if (x1 > x2 || y1 > y2)
+            throw new IllegalArgumentException(
+                String.format("Invalid area (x1: %d, y1: %d, x2: %d, y2: %d)", x1, y1, x2, y2));
+    }
+
+    /**
+     * @throws IllegalArgumentException If {@code limit} is not positive.
+     */
+    public static void checkLimit(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException(
+                String.format("Limit must be positive (actual: %d)", limit));
+    }
+
+    /**
+     * @return true iff {@code widget} lies fully or partially within the input rectangle.
+     */
+    public static boolean intersects(Widget widget, long x1, long y1, long x2, long y2) {
+        return widget.getX() <= x2 && x1 <= widget.getX() + widget.getWidth()
+            && widget.getY() <= y2 && y1 <= widget.getY() + widget.getHeight();
+    }
+
+    /**
+     * Sorts {@code widgets} by z-index ascending. The z-index of every widget is
+     * read only once, so the result is well-defined even if widgets are being
+     * shifted concurrently.
+     *
+     * @return A new list with the widgets sorted.
+     */
+    public static List<Widget> sortByZIndex(List<Widget> widgets) {
+        final long[] keys = new long[widgets.size()];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = ((long) widgets.get(i).getZIndex() << 32) | i;
+        Arrays.sort(keys);
+
+        final List<Widget> sorted = new ArrayList<>(keys.length);
+        for (long key : keys)
+            sorted.add(widgets.get((int) key));
+        return sorted;
+    }
+
+    /**
+     * @return A new list with up to {@code limit} widgets from {@code widgets},
+     * the ones with the highest z-index, sorted by z-index descending.
+     */
+    public static List<Widget> topByZIndex(List<Widget> widgets, int limit) {
+        final List<Widget> sorted = sortByZIndex(widgets);
+        final List<Widget> top = new ArrayList<>(Math.min(limit, sorted.size()));
+        for (int i = sorted.size() - 1; i >= 0 && top.size() < limit; i--)
+            top.add(sorted.get(i));
+        return top;
+    }
+
+    /**
+     * Collects up to {@code limit} widgets with a z-index within
+     * [{@code fromZIndex}, {@code toZIndex}] from a range view on {@code widgets},
+     * so only the widgets returned are visited.
+     * </p>
+     * The set must be ordered by z-index.
+     *
+     * @return A new list with the widgets in z-index ascending order.
+     */
+    public static List<Widget> rangeByZIndex(NavigableSet<Widget> widgets,
+                                             int fromZIndex, int toZIndex, int limit) {
+        return rangeByZIndex(widgets, WidgetOps::zIndexProbe, Function.identity(), fromZIndex, toZIndex, limit);
+    }
+
+    /**
+     * Same as {@link #rangeByZIndex(NavigableSet, int, int, int)}, on a set of elements
+     * that each hold a widget, as returned by {@code widgetOf}, and are ordered by its
+     * z-index. {@code probe} returns an element only meant to be compared against the
+     * ones in the set, holding a widget with the z-index given.
+     */
+    public static <T> List<Widget> rangeByZIndex(NavigableSet<T> elements, IntFunction<T> probe,
+                                                 Function<? super T, Widget> widgetOf,
+                                                 int fromZIndex, int toZIndex, int limit) {
+        final List<Widget> range = new ArrayList<>();
+        if (fromZIndex > toZIndex)
+            return range;
+
+        for (T element : elements.subSet(probe.apply(fromZIndex), true, probe.apply(toZIndex), true)) {
+            if (range.size() == limit) break;
+            range.add(widgetOf.apply(element));
+        }
+        return range;
+    }
+
+    /**
+     * @return A widget only meant to be compared by z-index against the ones in a set.
+     */
+    public static Widget zIndexProbe(int zIndex) {
+        return new Widget(null, 0, 0, 0, 0, 0, zIndex, Widget.initialVersion);
+    }
+
+    /**
+     * @return A copy of {@code widget} with its z-index set to {@code zIndex}, at the
+     * same version.
+     */
+    public static Widget withZIndex(Widget widget, int zIndex) {
+        return new Widget(widget.getUUID(), widget.getX(), widget.getY(),
+            widget.getWidth(), widget.getHeight(), MonotonicClock.epochNanos(), zIndex, widget.getVersion());
+    }
+
+    /**
+     * Opens a gap in {@code widgets} at the z-index of {@code widget}, if that
+     * z-index is already taken, by shifting up all back-to-back widgets starting
+     * from the one that overlaps {@code widget}.
+     * </p>
+     * The set must be ordered by z-index.
+     *
+     * @return The widgets shifted, sorted by z-index ascending.
+     */
+    public static List<Widget> shiftOverlyingWidgetsUp(NavigableSet<Widget> widgets, Widget widget) {
+        return shiftOverlyingWidgetsUp(widgets, widget, Function.identity());
+    }
+
+    /**
+     * Same as {@link #shiftOverlyingWidgetsUp(NavigableSet, Widget)}, on a set of
+     * elements that each hold a widget, as returned by {@code widgetOf}, and are ordered
+     * by its z-index. The z-index of {@code element} is the one to open a gap at.
+     */
+    public static <T> List<Widget> shiftOverlyingWidgetsUp(NavigableSet<T> elements, T element,
+                                                           Function<? super T, Widget> widgetOf) {
+        final T floorElement = elements.floor(element);
+        if (floorElement == null
+            || widgetOf.apply(floorElement).getZIndex() != widgetOf.apply(element).getZIndex())
+            return Collections.emptyList();
+
+        final List<Widget> toIncZIndex = new ArrayList<>();
+
+        // Finds first gap between widgets above 'element'
+        // and keeps track of all back-to-back widgets starting from 'floorElement',
+        // as they will have to be shifted up to open a gap for 'element'
+        T prev = floorElement;
+        T current;
+        while (true) {
+            toIncZIndex.add(widgetOf.apply(prev));
+            current = elements.higher(prev);
+            if (current != null
+                && widgetOf.apply(current).getZIndex() == widgetOf.apply(prev).getZIndex() + 1)
+                prev = current;
+            else break;
+        }
+
+        // Increments the z-index of all back-to-back widgets in-place, traversing
+        // from highest to lowest z-index. This strategy will preserve the skip list
+        // ordering invariant w/o forcing read ops to get a lock to observe this shifting
+        // as atomic.
+        // Different threads may observe different states of the skip list, but no snapshot
+        // of the skip list will contain duplicate z-indexes.
+        for (int i = toIncZIndex.size() - 1; i >= 0; i--) {
+            final Widget w = toIncZIndex.get(i);
+            w.setZIndex(w.getZIndex() + 1);
+        }
+        return toIncZIndex;
+    }
 }
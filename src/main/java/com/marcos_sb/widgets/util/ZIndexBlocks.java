@@ -0,0 +1,241 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A sorted map from distinct z-indexes to non-negative {@code int} slots, stored as
+ * z-index and slot pairs packed into longs, in sorted blocks of bounded size. It costs
+ * about 8 bytes per entry, and no object but one per block.
+ * </p>
+ * Looking an entry up is a binary search over the first z-index of every block and then
+ * within a block, and inserting or removing one moves at most a block's worth of entries.
+ * Shifting up a run of back-to-back z-indexes increments them in place, as it can't
+ * change their order.
+ * </p>
+ * This class is not thread-safe.
+ */
+public class ZIndexBlocks {
+
+    /**
+     * Returned when a z-index isn't in the map.
+     */
+    public static final int absent = -1;
+
+    private static final int blockSize = 512;
+
+    private final List<Block> blocks;
+    private int size;
+
+    public ZIndexBlocks() {
+        this.blocks = new ArrayList<>();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The slot at {@code zIndex}, or {@link #absent}.
+     */
+    public int get(int zIndex) {
+        if (blocks.isEmpty())
+            return absent;
+        final Block block = blocks.get(blockFor(zIndex));
+        final int i = block.search(zIndex);
+        return i < 0 ? absent : slotOf(block.entries[i]);
+    }
+
+    /**
+     * @return The highest z-index in the map.
+     * @throws NoSuchElementException If the map is empty.
+     */
+    public int lastZIndex() {
+        if (blocks.isEmpty())
+            throw new NoSuchElementException();
+        final Block last = blocks.get(blocks.size() - 1);
+        return zIndexOf(last.entries[last.count - 1]);
+    }
+
+    /**
+     * Maps the free {@code zIndex} to {@code slot}.
+     *
+     * @throws IllegalArgumentException If {@code zIndex} is taken.
+     */
+    public void put(int zIndex, int slot) {
+        if (blocks.isEmpty())
+            blocks.add(new Block());
+        int b = blockFor(zIndex);
+        Block block = blocks.get(b);
+        int i = block.search(zIndex);
+        if (i >= 0)
+            throw new IllegalArgumentException(String.format("Z-index %d is taken", zIndex));
+        i = -i - 1;
+
+        if (block.count == blockSize) {
+            final Block upper = block.splitUpperHalf();
+            blocks.add(b + 1, upper);
+            if (i > block.count) {
+                i -= block.count;
+                block = upper;
+            }
+        }
+        System.arraycopy(block.entries, i, block.entries, i + 1, block.count - i);
+        block.entries[i] = entry(zIndex, slot);
+        block.count++;
+        size++;
+    }
+
+    /**
+     * @return The slot {@code zIndex} was mapped to, or {@link #absent}.
+     */
+    public int remove(int zIndex) {
+        if (blocks.isEmpty())
+            return absent;
+        final int b = blockFor(zIndex);
+        final Block block = blocks.get(b);
+        final int i = block.search(zIndex);
+        if (i < 0)
+            return absent;
+
+        final int slot = slotOf(block.entries[i]);
+        System.arraycopy(block.entries, i + 1, block.entries, i, block.count - i - 1);
+        if (--block.count == 0)
+            blocks.remove(b);
+        size--;
+        return slot;
+    }
+
+    /**
+     * Increments the z-index of the entry at {@code zIndex}, if any, and of all the
+     * back-to-back entries above it, opening a gap at {@code zIndex}.
+     *
+     * @param shifted Called with the slot of every entry shifted, in ascending z-index order.
+     * @return The number of entries shifted.
+     */
+    public int shiftUp(int zIndex, IntConsumer shifted) {
+        if (blocks.isEmpty())
+            return 0;
+        int b = blockFor(zIndex);
+        int i = blocks.get(b).search(zIndex);
+        if (i < 0)
+            return 0;
+
+        int nShifted = 0;
+        int expected = zIndex;
+        for (; b < blocks.size(); b++, i = 0) {
+            final Block block = blocks.get(b);
+            for (; i < block.count; i++) {
+                if (zIndexOf(block.entries[i]) != expected)
+                    return nShifted;
+                block.entries[i] += 1L << 32;
+                shifted.accept(slotOf(block.entries[i]));
+                expected++;
+                nShifted++;
+            }
+        }
+        return nShifted;
+    }
+
+    /**
+     * Calls {@code visitor} with every entry with a z-index greater than or equal to
+     * {@code fromZIndex}, in ascending z-index order, for as long as it returns true.
+     */
+    public void forEachFrom(int fromZIndex, EntryVisitor visitor) {
+        if (blocks.isEmpty())
+            return;
+        int b = blockFor(fromZIndex);
+        int i = blocks.get(b).search(fromZIndex);
+        if (i < 0) i = -i - 1;
+        for (; b < blocks.size(); b++, i = 0) {
+            final Block block = blocks.get(b);
+            for (; i < block.count; i++) {
+                final long entry = block.entries[i];
+                if (!visitor.visit(zIndexOf(entry), slotOf(entry)))
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Calls {@code visitor} with every entry, in descending z-index order, for as long as
+     * it returns true.
+     */
+    public void forEachDescending(EntryVisitor visitor) {
+        for (int b = blocks.size() - 1; b >= 0; b--) {
+            final Block block = blocks.get(b);
+            for (int i = block.count - 1; i >= 0; i--) {
+                final long entry = block.entries[i];
+                if (!visitor.visit(zIndexOf(entry), slotOf(entry)))
+                    return;
+            }
+        }
+    }
+
+    // Index of the last block whose first z-index is less than or equal to 'zIndex', or 0
+    private int blockFor(int zIndex) {
+        int low = 0, high = blocks.size() - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (zIndexOf(blocks.get(middle).entries[0]) <= zIndex) low = middle;
+            else high = middle - 1;
+        }
+        return low;
+    }
+
+    private static long entry(int zIndex, int slot) {
+        return ((long) zIndex << 32) | slot;
+    }
+
+    private static int zIndexOf(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    private static int slotOf(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Visits an entry of the map.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        /**
+         * @return Whether to keep visiting entries.
+         */
+        boolean visit(int zIndex, int slot);
+    }
+
+    private static final class Block {
+        final long[] entries = new long[blockSize];
+        int count;
+
+        // Index of 'zIndex', or '-(insertion point) - 1' if it's not in the block
+        int search(int zIndex) {
+            int low = 0, high = count - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int middleZIndex = zIndexOf(entries[middle]);
+                if (middleZIndex < zIndex) low = middle + 1;
+                else if (middleZIndex > zIndex) high = middle - 1;
+                else return middle;
+            }
+            return -(low + 1);
+        }
+
+        Block splitUpperHalf() {
+            final Block upper = new Block();
+            final int half = count / 2;
+            upper.count = count - half;
+            System.arraycopy(entries, half, upper.entries, 0, upper.count);
+            count = half;
+            return upper;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.marcos_sb.widgets.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A position in a z-index range scan: the z-index to resume from and the upper
+ * bound of the range, both inclusive. Clients get it encoded as an opaque string.
+ * </p>
+ * Resuming from a z-index rather than from an offset keeps pages stable while
+ * {@link com.marcos_sb.widgets.resource.Widget}s are being created or removed
+ * concurrently; only widgets shifted across the cursor may be skipped or seen twice.
+ */
+public final class ZIndexCursor {
+
+    private static final String prefix = "z:";
+
+    private final int fromZIndex;
+    private final int toZIndex;
+
+    public ZIndexCursor(int fromZIndex, int toZIndex) {
+        this.fromZIndex = fromZIndex;
+        this.toZIndex = toZIndex;
+    }
+
+    public int getFromZIndex() {
+        return fromZIndex;
+    }
+
+    public int getToZIndex() {
+        return toZIndex;
+    }
+
+    public String encode() {
+        final String plain = prefix + fromZIndex + ":" + toZIndex;
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(plain.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @throws IllegalArgumentException If {@code cursor} wasn't produced by {@link #encode()}.
+     */
+    public static ZIndexCursor decode(String cursor) {
+        try {
+            final String plain =
+                new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (!plain.startsWith(prefix))
+                throw new IllegalArgumentException("Unknown cursor format");
+            final String[] bounds = plain.substring(prefix.length()).split(":");
+            if (bounds.length != 2)
+                throw new IllegalArgumentException("Unknown cursor format");
+            return new ZIndexCursor(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(String.format("Invalid cursor '%s'", cursor), ex);
+        }
+    }
+}
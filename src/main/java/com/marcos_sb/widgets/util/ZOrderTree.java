@@ -0,0 +1,421 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An ordered sequence of values, each one at a distinct z-index, where z-indexes
+ * are not stored but derived from the gaps between consecutive values.
+ * </p>
+ * Every node keeps its {@code gap}: the number of free z-indexes between itself and
+ * the next node. The z-index of a node is then the z-index of the first node plus
+ * the sum of {@code gap + 1} over all the preceding nodes. The sequence is kept in a
+ * treap with parent pointers, where every node also aggregates that sum and the
+ * largest gap in its subtree, so all of the following operations are O(log n):
+ * <ul>
+ * <li>finding the node at a z-index, and the z-index of a node;</li>
+ * <li>inserting at a taken z-index, which shifts up all back-to-back nodes above it:
+ * only the first positive gap found above the insertion point needs to shrink,
+ * no matter how many nodes are shifted;</li>
+ * <li>removing a node, which widens the gap of its predecessor.</li>
+ * </ul>
+ * Nodes are stable handles for as long as they belong to the tree.
+ * </p>
+ * This class is not thread-safe.
+ *
+ * @param <T> Type of the values.
+ */
+public class ZOrderTree<T> {
+
+    private Node<T> root;
+    private long base;
+    private int size;
+    private long seed = 0x2545F4914F6CDD1DL;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The node at {@code zIndex}, or null if the z-index is free.
+     */
+    public Node<T> find(long zIndex) {
+        long offset = zIndex - base;
+        if (offset < 0) return null;
+        Node<T> node = root;
+        while (node != null) {
+            final long leftSpan = span(node.left);
+            if (offset < leftSpan) {
+                node = node.left;
+            } else if (offset == leftSpan) {
+                return node;
+            } else if (offset <= leftSpan + node.gap) {
+                return null;
+            } else {
+                offset -= leftSpan + node.gap + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The node with the greatest z-index less than or equal to {@code zIndex}, or null.
+     */
+    public Node<T> floor(long zIndex) {
+        long offset = zIndex - base;
+        if (root == null || offset < 0) return null;
+        Node<T> node = root;
+        Node<T> candidate = null;
+        while (node != null) {
+            final long leftSpan = span(node.left);
+            if (offset < leftSpan) {
+                node = node.left;
+            } else {
+                candidate = node;
+                offset -= leftSpan + node.gap + 1;
+                if (offset < 0) break;
+                node = node.right;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * @return The z-index of {@code node}.
+     */
+    public long zIndexOf(Node<T> node) {
+        long offset = span(node.left);
+        for (Node<T> x = node; x.parent != null; x = x.parent) {
+            if (x == x.parent.right)
+                offset += span(x.parent.left) + x.parent.gap + 1;
+        }
+        return base + offset;
+    }
+
+    public Node<T> first() {
+        return root == null ? null : leftmost(root);
+    }
+
+    public Node<T> last() {
+        if (root == null) return null;
+        Node<T> node = root;
+        while (node.right != null) node = node.right;
+        return node;
+    }
+
+    /**
+     * Inserts {@code value} at {@code zIndex}. If the z-index is taken, the node at
+     * {@code zIndex} and all back-to-back nodes above it are shifted up by one.
+     *
+     * @return The node holding {@code value}.
+     */
+    public Node<T> insert(long zIndex, T value) {
+        final Node<T> node = new Node<>(value, nextPriority());
+        if (root == null) {
+            root = node;
+            base = zIndex;
+        } else {
+            final Node<T> floor = floor(zIndex);
+            if (floor == null) {
+                // New first node
+                node.gap = base - zIndex - 1;
+                base = zIndex;
+                attachBefore(leftmost(root), node);
+            } else {
+                final long floorZIndex = zIndexOf(floor);
+                if (floorZIndex < zIndex) {
+                    final long floorGap = floor.gap;
+                    node.gap = isLast(floor) ? 0 : floorGap - (zIndex - floorZIndex);
+                    floor.gap = zIndex - floorZIndex - 1;
+                    pullUp(floor);
+                    attachAfter(floor, node);
+                } else {
+                    // Taken: the new node goes right below 'floor', and the first gap
+                    // above closes by one, which shifts up everything in between.
+                    final Node<T> gapNode = firstWithGap(floor);
+                    if (gapNode != null) {
+                        gapNode.gap--;
+                        pullUp(gapNode);
+                    }
+                    attachBefore(floor, node);
+                }
+            }
+        }
+        size++;
+        return node;
+    }
+
+    /**
+     * Removes {@code node} from the tree. The z-index of all other nodes is preserved.
+     */
+    public void remove(Node<T> node) {
+        final Node<T> predecessor = predecessor(node);
+        final boolean last = isLast(node);
+        if (predecessor != null) {
+            predecessor.gap = last ? 0 : predecessor.gap + node.gap + 1;
+            pullUp(predecessor);
+        } else if (!last) {
+            base += node.gap + 1;
+        }
+
+        // Rotates 'node' down until it's a leaf, then unlinks it
+        while (node.left != null || node.right != null) {
+            if (node.right == null || (node.left != null && node.left.priority > node.right.priority))
+                rotateRight(node);
+            else
+                rotateLeft(node);
+        }
+        replaceChild(node.parent, node, null);
+        pullUp(node.parent);
+        node.parent = null;
+        size--;
+    }
+
+    /**
+     * Calls {@code action} with every value and its z-index, in ascending z-index order.
+     */
+    public void forEach(ObjLongConsumer<? super T> action) {
+        long zIndex = base;
+        for (Node<T> node = first(); node != null; node = successor(node)) {
+            action.accept(node.value, zIndex);
+            zIndex += node.gap + 1;
+        }
+    }
+
+    /**
+     * @return An iterator over the nodes with a z-index greater than or equal to
+     * {@code fromZIndex}, in ascending z-index order. It must not be used once the
+     * tree has been modified.
+     */
+    public Cursor<T> cursorFrom(long fromZIndex) {
+        Node<T> node = floor(fromZIndex);
+        long zIndex;
+        if (node == null) {
+            node = first();
+            zIndex = base;
+        } else {
+            zIndex = zIndexOf(node);
+            if (zIndex < fromZIndex) {
+                zIndex += node.gap + 1;
+                node = successor(node);
+            }
+        }
+        return new Cursor<>(node, zIndex);
+    }
+
+    private boolean isLast(Node<T> node) {
+        return successor(node) == null;
+    }
+
+    // First node with a positive gap, starting at 'node' and going up in z-index order.
+    // The last node's gap is always 0, so it's never returned.
+    private Node<T> firstWithGap(Node<T> node) {
+        if (node.gap > 0) return node;
+        Node<T> found = leftmostWithGap(node.right);
+        if (found != null) return found;
+        for (Node<T> x = node; x.parent != null; x = x.parent) {
+            if (x == x.parent.left) {
+                if (x.parent.gap > 0) return x.parent;
+                found = leftmostWithGap(x.parent.right);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    private static <T> Node<T> leftmostWithGap(Node<T> node) {
+        if (node == null || node.maxGap <= 0) return null;
+        while (true) {
+            if (node.left != null && node.left.maxGap > 0) node = node.left;
+            else if (node.gap > 0) return node;
+            else node = node.right;
+        }
+    }
+
+    private static <T> Node<T> leftmost(Node<T> node) {
+        while (node.left != null) node = node.left;
+        return node;
+    }
+
+    private static <T> Node<T> successor(Node<T> node) {
+        if (node.right != null) return leftmost(node.right);
+        Node<T> x = node;
+        while (x.parent != null && x == x.parent.right) x = x.parent;
+        return x.parent;
+    }
+
+    private static <T> Node<T> predecessor(Node<T> node) {
+        if (node.left != null) {
+            Node<T> x = node.left;
+            while (x.right != null) x = x.right;
+            return x;
+        }
+        Node<T> x = node;
+        while (x.parent != null && x == x.parent.left) x = x.parent;
+        return x.parent;
+    }
+
+    private void attachBefore(Node<T> position, Node<T> node) {
+        if (position.left == null) {
+            link(position, node, true);
+        } else {
+            Node<T> x = position.left;
+            while (x.right != null) x = x.right;
+            link(x, node, false);
+        }
+        siftUp(node);
+    }
+
+    private void attachAfter(Node<T> position, Node<T> node) {
+        if (position.right == null) {
+            link(position, node, false);
+        } else {
+            link(leftmost(position.right), node, true);
+        }
+        siftUp(node);
+    }
+
+    private static <T> void link(Node<T> parent, Node<T> child, boolean asLeft) {
+        if (asLeft) parent.left = child;
+        else parent.right = child;
+        child.parent = parent;
+    }
+
+    private void siftUp(Node<T> node) {
+        node.recompute();
+        while (node.parent != null && node.parent.priority < node.priority) {
+            if (node == node.parent.left) rotateRight(node.parent);
+            else rotateLeft(node.parent);
+        }
+        pullUp(node.parent);
+    }
+
+    // Lifts the left child of 'node' to its place.
+    private void rotateRight(Node<T> node) {
+        final Node<T> pivot = node.left;
+        node.left = pivot.right;
+        if (pivot.right != null) pivot.right.parent = node;
+        replaceChild(node.parent, node, pivot);
+        pivot.right = node;
+        node.parent = pivot;
+        node.recompute();
+        pivot.recompute();
+    }
+
+    // Lifts the right child of 'node' to its place.
+    private void rotateLeft(Node<T> node) {
+        final Node<T> pivot = node.right;
+        node.right = pivot.left;
+        if (pivot.left != null) pivot.left.parent = node;
+        replaceChild(node.parent, node, pivot);
+        pivot.left = node;
+        node.parent = pivot;
+        node.recompute();
+        pivot.recompute();
+    }
+
+    private void replaceChild(Node<T> parent, Node<T> oldChild, Node<T> newChild) {
+        if (newChild != null) newChild.parent = parent;
+        if (parent == null) root = newChild;
+        else if (parent.left == oldChild) parent.left = newChild;
+        else parent.right = newChild;
+    }
+
+    private static <T> void pullUp(Node<T> node) {
+        for (; node != null; node = node.parent)
+            node.recompute();
+    }
+
+    private static long span(Node<?> node) {
+        return node == null ? 0 : node.span;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) seed;
+    }
+
+    public static final class Node<T> {
+        private final T value;
+        private final int priority;
+        private Node<T> left;
+        private Node<T> right;
+        private Node<T> parent;
+        // Free z-indexes between this node and the next one; 0 for the last node.
+        private long gap;
+        // Sum of 'gap + 1' over this subtree.
+        private long span;
+        // Largest 'gap' in this subtree.
+        private long maxGap;
+
+        private Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+            this.span = 1;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        private void recompute() {
+            span = ZOrderTree.span(left) + gap + 1 + ZOrderTree.span(right);
+            long max = gap;
+            if (left != null && left.maxGap > max) max = left.maxGap;
+            if (right != null && right.maxGap > max) max = right.maxGap;
+            maxGap = max;
+        }
+    }
+
+    /**
+     * Iterates over nodes in ascending z-index order, keeping track of their z-index.
+     */
+    public static final class Cursor<T> implements Iterator<T> {
+        private Node<T> next;
+        private long nextZIndex;
+        private long zIndex;
+
+        private Cursor(Node<T> next, long nextZIndex) {
+            this.next = next;
+            this.nextZIndex = nextZIndex;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * @return The z-index the next value sits at.
+         */
+        public long peekZIndex() {
+            if (next == null) throw new NoSuchElementException();
+            return nextZIndex;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            final Node<T> node = next;
+            zIndex = nextZIndex;
+            nextZIndex += node.gap + 1;
+            next = successor(node);
+            return node.value;
+        }
+
+        /**
+         * @return The z-index of the value last returned by {@link #next()}.
+         */
+        public long zIndex() {
+            return zIndex;
+        }
+    }
+}
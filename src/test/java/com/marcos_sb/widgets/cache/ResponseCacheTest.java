@@ -0,0 +1,129 @@
+package com.marcos_sb.widgets.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WidgetManager widgetManager;
+    private AtomicInteger nBuilt;
+
+    @BeforeEach
+    void createWidgetManager() throws WidgetManagerException {
+        widgetManager = new BlockingWidgetManager();
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        nBuilt = new AtomicInteger();
+    }
+
+    private byte[] getAll(ResponseCache cache, WidgetManager widgetManager)
+        throws WidgetManagerException, IOException {
+        return cache.get(widgetManager, "all", () -> {
+            nBuilt.incrementAndGet();
+            return widgetManager.getAllByZIndex();
+        });
+    }
+
+    @Test
+    @DisplayName("responses are cached until the manager changes")
+    void cachedPerVersion() throws WidgetManagerException, IOException {
+        final ResponseCache cache = new ResponseCache(objectMapper, 1 << 20);
+        final byte[] json = getAll(cache, widgetManager);
+        assertArrayEquals(objectMapper.writeValueAsBytes(widgetManager.getAllByZIndex()), json);
+        assertSame(json, getAll(cache, widgetManager));
+        assertEquals(1, nBuilt.get());
+
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        final byte[] updated = getAll(cache, widgetManager);
+        assertArrayEquals(objectMapper.writeValueAsBytes(widgetManager.getAllByZIndex()), updated);
+        assertEquals(2, nBuilt.get());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+        assertEquals(updated.length + ResponseCache.entryOverhead, cache.getBytes());
+    }
+
+    @Test
+    @DisplayName("responses are cached per manager and view")
+    void cachedPerKey() throws WidgetManagerException, IOException {
+        final ResponseCache cache = new ResponseCache(objectMapper, 1 << 20);
+        final WidgetManager other = new BlockingWidgetManager();
+        other.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        getAll(cache, widgetManager);
+        getAll(cache, other);
+        cache.get(widgetManager, "first", () -> widgetManager.getRangeByZIndex(0, 0, 1));
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    @DisplayName("every encoding of a response is cached on its own")
+    void cachedPerEncoder() throws WidgetManagerException, IOException {
+        final ResponseCache cache = new ResponseCache(objectMapper, 1 << 20);
+        final ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        final byte[] json = cache.get(widgetManager, "all", widgetManager::getAllByZIndex);
+        final byte[] encoded = cache.get(widgetManager, "all", smile, widgetManager::getAllByZIndex);
+        assertArrayEquals(smile.writeValueAsBytes(widgetManager.getAllByZIndex()), encoded);
+        assertSame(json, cache.get(widgetManager, "all", objectMapper, widgetManager::getAllByZIndex));
+        assertSame(encoded, cache.get(widgetManager, "all", smile, widgetManager::getAllByZIndex));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    @DisplayName("the least recently used responses are evicted")
+    void eviction() throws WidgetManagerException, IOException {
+        final int size = objectMapper.writeValueAsBytes(widgetManager.getAllByZIndex()).length
+            + ResponseCache.entryOverhead;
+        final ResponseCache cache = new ResponseCache(objectMapper, 2L * size);
+        cache.get(widgetManager, "a", widgetManager::getAllByZIndex);
+        cache.get(widgetManager, "b", widgetManager::getAllByZIndex);
+        cache.get(widgetManager, "a", widgetManager::getAllByZIndex);
+        cache.get(widgetManager, "c", widgetManager::getAllByZIndex);
+        assertEquals(2, cache.size());
+        assertEquals(2L * size, cache.getBytes());
+
+        // "b" was the least recently used
+        cache.get(widgetManager, "a", widgetManager::getAllByZIndex);
+        cache.get(widgetManager, "c", widgetManager::getAllByZIndex);
+        assertEquals(3, cache.getHits());
+        cache.get(widgetManager, "b", widgetManager::getAllByZIndex);
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("the least recently used responses are evicted beyond the maximum number")
+    void maxEntries() throws WidgetManagerException, IOException {
+        final ResponseCache cache = new ResponseCache(objectMapper, 1 << 20, 2);
+        for (int i = 0; i < 100; ++i) {
+            final int fromZ = i;
+            cache.get(widgetManager, "page:" + i, () -> widgetManager.getRangeByZIndex(fromZ, fromZ, 1));
+        }
+        assertEquals(2, cache.size());
+        assertEquals(2L * (2 + ResponseCache.entryOverhead), cache.getBytes());
+    }
+
+    @Test
+    @DisplayName("nothing is cached when the maximum size is 0")
+    void disabled() throws WidgetManagerException, IOException {
+        final ResponseCache cache = new ResponseCache(objectMapper, 0);
+        getAll(cache, widgetManager);
+        getAll(cache, widgetManager);
+        assertEquals(2, nBuilt.get());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+}
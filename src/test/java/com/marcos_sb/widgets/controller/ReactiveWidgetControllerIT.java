@@ -0,0 +1,214 @@
+package com.marcos_sb.widgets.controller;
+
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveWidgetControllerIT {
+
+	@Autowired
+	private WebTestClient webTestClient;
+
+	final NewWidgetSpec newWidgetSpecOk =
+		new NewWidgetSpec(1L, 1L, 1.1D, 1.1D, 0);
+
+	WebTestClient.ResponseSpec create(NewWidgetSpec widgetSpec) {
+		return webTestClient.post().uri("/widgets/new")
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(widgetSpec)
+			.exchange();
+	}
+
+	@Nested
+	@DisplayName("create widget")
+	class Create {
+
+		@Test
+		@DisplayName("success")
+		void createOneWidgetOk() {
+			final Widget created = create(newWidgetSpecOk)
+				.expectStatus().isOk()
+				.expectBody(Widget.class)
+				.returnResult()
+				.getResponseBody();
+
+			assertEquals(newWidgetSpecOk.getX(), created.getX());
+			assertEquals((int) newWidgetSpecOk.getzIndex(), created.getZIndex());
+		}
+
+		@Test
+		@DisplayName("bad request")
+		void createOneWidgetBadRequest() {
+			create(new NewWidgetSpec(1L, 1L, -1D, 1.1D, 0)).expectStatus().isBadRequest();
+		}
+	}
+
+	@Nested
+	@DisplayName("after creating one widget")
+	class AfterCreatingOneWidget {
+
+		Widget created;
+
+		@BeforeEach
+		void createOneWidget() {
+			created = create(newWidgetSpecOk)
+				.expectBody(Widget.class)
+				.returnResult()
+				.getResponseBody();
+		}
+
+		@Test
+		@DisplayName("get existent widget, not modified while unchanged")
+		void getExistent() {
+			final String eTag = webTestClient.get().uri("/widgets/{uuid}", created.getUUID())
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Widget.class).isEqualTo(created)
+				.returnResult()
+				.getResponseHeaders()
+				.getETag();
+
+			webTestClient.get().uri("/widgets/{uuid}", created.getUUID())
+				.header(HttpHeaders.IF_NONE_MATCH, eTag)
+				.exchange()
+				.expectStatus().isNotModified();
+		}
+
+		@Test
+		@DisplayName("get nonexistent widget")
+		void getNonExistent() {
+			webTestClient.get().uri("/widgets/{uuid}", UUID.randomUUID())
+				.exchange()
+				.expectStatus().isNotFound();
+		}
+
+		@Test
+		@DisplayName("get all widgets, listed and streamed")
+		void getAll() {
+			final List<Widget> all = Arrays.asList(webTestClient.get().uri("/widgets/list/all")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Widget[].class)
+				.returnResult()
+				.getResponseBody());
+			assertTrue(all.contains(created));
+
+			webTestClient.get().uri("/widgets/list/all?stream=json")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Widget[].class)
+				.value(streamed -> assertTrue(Arrays.asList(streamed).contains(created)));
+
+			webTestClient.get().uri("/widgets/list/all?stream=xml")
+				.exchange()
+				.expectStatus().isBadRequest();
+		}
+
+		@Test
+		@DisplayName("get page, bad request on a limit out of bounds")
+		void getPageBadLimit() {
+			webTestClient.get().uri("/widgets/list?limit=0")
+				.exchange()
+				.expectStatus().isBadRequest();
+			webTestClient.get().uri("/widgets/list?limit=1001")
+				.exchange()
+				.expectStatus().isBadRequest();
+		}
+
+		@Test
+		@DisplayName("update widget")
+		void update() {
+			webTestClient.put().uri("/widgets/update")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new WidgetMutationSpec(created.getUUID(), 2L, null, null, null, null))
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Widget.class)
+				.value(updated -> assertEquals(2L, updated.getX()));
+		}
+
+		@Test
+		@DisplayName("update conflicts on a stale version")
+		void updateConflict() {
+			webTestClient.put().uri("/widgets/update")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(new WidgetMutationSpec(created.getUUID(), 2L, null, null, null, null,
+					created.getVersion() + 1))
+				.exchange()
+				.expectStatus().isEqualTo(409)
+				.expectBody(Widget.class).isEqualTo(created);
+		}
+
+		@Test
+		@DisplayName("update precondition fails on a stale If-Match")
+		void updatePreconditionFailed() {
+			webTestClient.put().uri("/widgets/update")
+				.contentType(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.IF_MATCH, "\"stale\"")
+				.bodyValue(new WidgetMutationSpec(created.getUUID(), 2L, null, null, null, null))
+				.exchange()
+				.expectStatus().isEqualTo(412);
+		}
+
+		@Test
+		@DisplayName("delete widget")
+		void delete() {
+			webTestClient.delete().uri("/widgets/delete/{uuid}", created.getUUID())
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Widget.class).isEqualTo(created);
+
+			webTestClient.get().uri("/widgets/{uuid}", created.getUUID())
+				.exchange()
+				.expectStatus().isNotFound();
+		}
+
+		@Test
+		@DisplayName("create and get on a canvas of its own")
+		void canvas() {
+			final Widget inCanvas = webTestClient.post().uri("/canvases/{canvasId}/widgets/new", "reactive")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(newWidgetSpecOk)
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(Widget.class)
+				.returnResult()
+				.getResponseBody();
+
+			webTestClient.get().uri("/canvases/{canvasId}/widgets/{uuid}", "reactive", inCanvas.getUUID())
+				.exchange()
+				.expectStatus().isOk();
+			webTestClient.get().uri("/widgets/{uuid}", inCanvas.getUUID())
+				.exchange()
+				.expectStatus().isNotFound();
+		}
+	}
+
+	@Test
+	@DisplayName("changes since an unavailable sequence")
+	void changesUnavailable() {
+		webTestClient.get().uri("/widgets/changes?since=-5")
+			.accept(MediaType.TEXT_EVENT_STREAM)
+			.exchange()
+			.expectStatus().isBadRequest();
+	}
+}
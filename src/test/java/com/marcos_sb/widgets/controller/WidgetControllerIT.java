@@ -1,13 +1,27 @@
 package com.marcos_sb.widgets.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchRequest;
+import com.marcos_sb.widgets.resource.BatchResult;
 import com.marcos_sb.widgets.resource.NewWidgetSpec;
 import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetChange;
+import com.marcos_sb.widgets.resource.WidgetChanges;
 import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.resource.WidgetPage;
 import com.marcos_sb.widgets.util.WidgetOps;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -17,15 +31,21 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -138,6 +158,241 @@ class WidgetControllerIT {
 						.getContentAsString(StandardCharsets.UTF_8);
 				objectMapper.readValue(responseBody, List.class);
 			}
+
+			@Test
+			@DisplayName("streamed as a JSON array")
+			void streamJson() throws Exception {
+				final MvcResult result =
+					mockMvc.perform(get("/widgets/list/all").param("stream", "json"))
+						.andExpect(request().asyncStarted())
+						.andReturn();
+				final String responseBody =
+					mockMvc.perform(asyncDispatch(result))
+						.andExpect(status().isOk())
+						.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				assertTrue(Arrays.asList(objectMapper.readValue(responseBody, Widget[].class))
+					.contains(created));
+			}
+
+			@Test
+			@DisplayName("streamed as newline-delimited JSON")
+			void streamNdjson() throws Exception {
+				final MvcResult result =
+					mockMvc.perform(get("/widgets/list/all").param("stream", "ndjson"))
+						.andExpect(request().asyncStarted())
+						.andReturn();
+				final String responseBody =
+					mockMvc.perform(asyncDispatch(result))
+						.andExpect(status().isOk())
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				final List<Widget> widgets = new ArrayList<>();
+				for (String line : responseBody.split("\n"))
+					widgets.add(objectMapper.readValue(line, Widget.class));
+				assertTrue(widgets.contains(created));
+			}
+
+			@Test
+			@DisplayName("unknown stream format")
+			void streamBadRequest() throws Exception {
+				mockMvc.perform(get("/widgets/list/all").param("stream", "xml"))
+					.andExpect(status().isBadRequest());
+			}
+		}
+
+		@Nested
+		@DisplayName("get page")
+		class GetPage {
+
+			@Test
+			@DisplayName("following cursors visits all widgets")
+			void getAllPages() throws Exception {
+				final List<Widget> visited = new ArrayList<>();
+				String cursor = null;
+				do {
+					final MockHttpServletRequestBuilder request = get("/widgets/list")
+						.param("limit", "1")
+						.contentType(MediaType.APPLICATION_JSON);
+					if (cursor != null) request.param("cursor", cursor);
+					final String responseBody =
+						mockMvc.perform(request)
+							.andExpect(status().isOk())
+							.andReturn()
+							.getResponse()
+							.getContentAsString(StandardCharsets.UTF_8);
+					final WidgetPage page = objectMapper.readValue(responseBody, WidgetPage.class);
+					assertTrue(page.getWidgets().size() <= 1);
+					visited.addAll(page.getWidgets());
+					cursor = page.getNextCursor();
+				} while (cursor != null);
+
+				final String responseBody =
+					mockMvc.perform(get("/widgets/list/all")
+						.contentType(MediaType.APPLICATION_JSON))
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				assertEquals(Arrays.asList(objectMapper.readValue(responseBody, Widget[].class)), visited);
+			}
+
+			@Test
+			@DisplayName("z-index bounds")
+			void getPageInZRange() throws Exception {
+				final String responseBody =
+					mockMvc.perform(get("/widgets/list")
+						.param("fromZ", String.valueOf(created.getZIndex()))
+						.param("toZ", String.valueOf(created.getZIndex()))
+						.contentType(MediaType.APPLICATION_JSON))
+						.andExpect(status().isOk())
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				final WidgetPage page = objectMapper.readValue(responseBody, WidgetPage.class);
+				assertEquals(Collections.singletonList(created), page.getWidgets());
+			}
+
+			@Test
+			@DisplayName("bad request")
+			void getPageBadRequest() throws Exception {
+				mockMvc.perform(get("/widgets/list")
+					.param("cursor", "not-a-cursor")
+					.contentType(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest());
+			}
+
+			@Test
+			@DisplayName("bad request on a limit out of bounds")
+			void getPageBadLimit() throws Exception {
+				mockMvc.perform(get("/widgets/list")
+					.param("limit", "0")
+					.contentType(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest());
+				mockMvc.perform(get("/widgets/list")
+					.param("limit", "1001")
+					.contentType(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest());
+			}
+		}
+
+		@Nested
+		@DisplayName("get in area")
+		class GetInArea {
+
+			@Test
+			@DisplayName("response body contains the widget")
+			void getInArea() throws Exception {
+				final String responseBody =
+					mockMvc.perform(get("/widgets/area")
+						.param("x1", "0").param("y1", "0")
+						.param("x2", "2").param("y2", "2")
+						.contentType(MediaType.APPLICATION_JSON))
+						.andExpect(status().isOk())
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				final List<Widget> widgets = Arrays.asList(
+					objectMapper.readValue(responseBody, Widget[].class));
+				assertTrue(widgets.contains(created));
+			}
+
+			@Test
+			@DisplayName("bad request")
+			void getInAreaBadRequest() throws Exception {
+				mockMvc.perform(get("/widgets/area")
+					.param("x1", "2").param("y1", "0")
+					.param("x2", "0").param("y2", "2")
+					.contentType(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest());
+			}
+		}
+
+		@Nested
+		@DisplayName("get at point")
+		class GetAt {
+
+			@Test
+			@DisplayName("topmost widget first")
+			void getAt() throws Exception {
+				final String responseBody =
+					mockMvc.perform(get("/widgets/at")
+						.param("x", "1").param("y", "2")
+						.param("limit", "100")
+						.contentType(MediaType.APPLICATION_JSON))
+						.andExpect(status().isOk())
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				final List<Widget> widgets = Arrays.asList(
+					objectMapper.readValue(responseBody, Widget[].class));
+				assertTrue(widgets.contains(created));
+			}
+
+			@Test
+			@DisplayName("bad request")
+			void getAtBadRequest() throws Exception {
+				mockMvc.perform(get("/widgets/at")
+					.param("x", "1").param("y", "2")
+					.param("limit", "0")
+					.contentType(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest());
+			}
+		}
+
+		@Nested
+		@DisplayName("batch")
+		class Batch {
+
+			ResultActions batch(BatchRequest batchRequest) throws Exception {
+				return
+					mockMvc.perform(post("/widgets/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(batchRequest)));
+			}
+
+			@Test
+			@DisplayName("success")
+			void batch() throws Exception {
+				final BatchRequest batchRequest = new BatchRequest(Arrays.asList(
+					BatchOperation.create(new NewWidgetSpec(0, 0, 1, 1)),
+					BatchOperation.update(new WidgetMutationSpec(created.getUUID(), 7L, null, null, null, null))),
+					false);
+				final String responseBody =
+					batch(batchRequest)
+						.andExpect(status().isOk())
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				final BatchResult[] results = objectMapper.readValue(responseBody, BatchResult[].class);
+				assertEquals(2, results.length);
+				assertTrue(Arrays.stream(results).allMatch(BatchResult::isOk));
+				assertEquals(7, results[1].getWidget().getX());
+			}
+
+			@Test
+			@DisplayName("atomic batch rejected")
+			void atomicBatchConflict() throws Exception {
+				final BatchRequest batchRequest = new BatchRequest(Arrays.asList(
+					BatchOperation.delete(created.getUUID()),
+					BatchOperation.delete(UUID.randomUUID())),
+					true);
+				batch(batchRequest).andExpect(status().isConflict());
+				mockMvc.perform(get("/widgets/" + created.getUUID()))
+					.andExpect(status().isOk());
+			}
+
+			@Test
+			@DisplayName("bad request")
+			void batchBadRequest() throws Exception {
+				mockMvc.perform(post("/widgets/batch")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("{\"operations\": [{\"delete\": \"" + created.getUUID() + "\", " +
+						"\"create\": {\"x\": 0, \"y\": 0, \"width\": 1, \"height\": 1}}]}"))
+					.andExpect(status().isBadRequest());
+			}
 		}
 
 		@Nested
@@ -187,6 +442,54 @@ class WidgetControllerIT {
 				assertEquals(expected, updated);
 			}
 
+			@Test
+			@DisplayName("conflict on a stale version")
+			void updateStaleVersion() throws Exception {
+				update(new WidgetMutationSpec(created.getUUID(), 1L, null, null, null, null, created.getVersion()))
+					.andExpect(status().isOk());
+				final String responseBody =
+					update(new WidgetMutationSpec(created.getUUID(), 2L, null, null, null, null, created.getVersion()))
+						.andExpect(status().isConflict())
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				final Widget current = objectMapper.readValue(responseBody, Widget.class);
+				assertEquals(1L, current.getX());
+				assertEquals(created.getVersion() + 1, current.getVersion());
+			}
+
+			@Test
+			@DisplayName("precondition failed on a stale If-Match")
+			void updateStaleIfMatch() throws Exception {
+				final String eTag =
+					mockMvc.perform(get("/widgets/{uuid}", created.getUUID()))
+						.andReturn()
+						.getResponse()
+						.getHeader("ETag");
+				final String updatedETag =
+					mockMvc.perform(put("/widgets/update")
+						.header("If-Match", eTag)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(objectMapper.writeValueAsString(
+							new WidgetMutationSpec(created.getUUID(), 1L, null, null, null, null))))
+						.andExpect(status().isOk())
+						.andReturn()
+						.getResponse()
+						.getHeader("ETag");
+				mockMvc.perform(put("/widgets/update")
+					.header("If-Match", eTag)
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(objectMapper.writeValueAsString(
+						new WidgetMutationSpec(created.getUUID(), 2L, null, null, null, null))))
+					.andExpect(status().isPreconditionFailed());
+				mockMvc.perform(put("/widgets/update")
+					.header("If-Match", updatedETag)
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(objectMapper.writeValueAsString(
+						new WidgetMutationSpec(created.getUUID(), 2L, null, null, null, null))))
+					.andExpect(status().isOk());
+			}
+
 			@Test
 			@DisplayName("nonexistent widget")
 			void updateNonExistent() throws Exception {
@@ -204,6 +507,34 @@ class WidgetControllerIT {
 
 				update(mutationSpecKo).andExpect(status().isBadRequest());
 			}
+
+			@Test
+			@DisplayName("nulls and unknown properties leave a widget unchanged")
+			void updateNullsAndUnknownProperties() throws Exception {
+				final String responseBody =
+					mockMvc.perform(put("/widgets/update")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(String.format(
+							"{\"uuid\":\"%s\",\"x\":null,\"z-index\":null,\"colour\":{\"r\":[1]},\"y\":7}",
+							created.getUUID())))
+						.andExpect(status().isOk())
+						.andReturn()
+						.getResponse()
+						.getContentAsString(StandardCharsets.UTF_8);
+				final Widget updated = objectMapper.readValue(responseBody, Widget.class);
+
+				assertEquals(WidgetOps.update(created, new WidgetMutationSpec(created.getUUID(),
+					null, 7L, null, null, null)), updated);
+			}
+
+			@Test
+			@DisplayName("bad request on a non-numeric property")
+			void updateNonNumeric() throws Exception {
+				mockMvc.perform(put("/widgets/update")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(String.format("{\"uuid\":\"%s\",\"x\":\"left\"}", created.getUUID())))
+					.andExpect(status().isBadRequest());
+			}
 		}
 
 		@Nested
@@ -229,6 +560,407 @@ class WidgetControllerIT {
 				mockMvc.perform(delete("/widgets/delete/{uuid}", UUID.randomUUID()))
 					.andExpect(status().isNotFound());
 			}
+
+			@Test
+			@DisplayName("conflict on a stale version")
+			void deleteStaleVersion() throws Exception {
+				mockMvc.perform(delete("/widgets/delete/{uuid}", created.getUUID())
+					.param("version", String.valueOf(created.getVersion() + 1)))
+					.andExpect(status().isConflict());
+				mockMvc.perform(delete("/widgets/delete/{uuid}", created.getUUID())
+					.header("If-Match", "\"0\""))
+					.andExpect(status().isPreconditionFailed());
+				mockMvc.perform(delete("/widgets/delete/{uuid}", created.getUUID())
+					.param("version", String.valueOf(created.getVersion())))
+					.andExpect(status().isOk());
+			}
+		}
+	}
+
+	@Nested
+	@DisplayName("conditional get")
+	class ConditionalGet {
+
+		// The application context is shared by all tests, so every test gets its own canvas
+		final String canvasId = UUID.randomUUID().toString();
+
+		@Test
+		@DisplayName("single widget")
+		void getWidgetNotModified() throws Exception {
+			final Widget created = objectMapper.readValue(
+				create(newWidgetSpecOk)
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8),
+				Widget.class);
+
+			final String eTag =
+				mockMvc.perform(get("/widgets/{uuid}", created.getUUID()))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getHeader("ETag");
+			assertTrue(eTag != null && eTag.startsWith("\""), eTag);
+
+			mockMvc.perform(get("/widgets/{uuid}", created.getUUID()).header("If-None-Match", eTag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+
+			mockMvc.perform(put("/widgets/update")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(
+					new WidgetMutationSpec(created.getUUID(), 10L, null, null, null, null))))
+				.andExpect(status().isOk());
+			mockMvc.perform(get("/widgets/{uuid}", created.getUUID()).header("If-None-Match", eTag))
+				.andExpect(status().isOk());
+		}
+
+		@Test
+		@DisplayName("all widgets")
+		void getAllNotModified() throws Exception {
+			final String eTag =
+				mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getHeader("ETag");
+
+			mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId).header("If-None-Match", eTag))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+
+			mockMvc.perform(post("/canvases/{canvasId}/widgets/new", canvasId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(newWidgetSpecOk)))
+				.andExpect(status().isOk());
+			final String responseBody =
+				mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId).header("If-None-Match", eTag))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8);
+			assertEquals(1, objectMapper.readValue(responseBody, Widget[].class).length);
+		}
+
+		@Test
+		@DisplayName("cached pages are rebuilt after a mutation")
+		void cachedPage() throws Exception {
+			final MockHttpServletRequestBuilder getPage =
+				get("/canvases/{canvasId}/widgets/list", canvasId).param("limit", "10");
+			final String first =
+				mockMvc.perform(getPage)
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8);
+			assertEquals(first,
+				mockMvc.perform(getPage)
+					.andExpect(status().isOk())
+					.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8));
+			assertEquals(0, objectMapper.readValue(first, WidgetPage.class).getWidgets().size());
+
+			mockMvc.perform(post("/canvases/{canvasId}/widgets/new", canvasId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(newWidgetSpecOk)))
+				.andExpect(status().isOk());
+			final String responseBody =
+				mockMvc.perform(getPage)
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8);
+			assertEquals(1, objectMapper.readValue(responseBody, WidgetPage.class).getWidgets().size());
+
+			mockMvc.perform(get("/actuator/metrics/widgets.cache.requests").param("tag", "result:hit"))
+				.andExpect(status().isOk());
+		}
+	}
+
+	@Nested
+	@DisplayName("canvases")
+	class Canvases {
+
+		// The application context is shared by all tests, so every test gets its own canvas
+		final String canvasId = UUID.randomUUID().toString();
+
+		Widget createOnCanvas(String canvasId, NewWidgetSpec widgetSpec) throws Exception {
+			final String responseBody =
+				mockMvc.perform(post("/canvases/{canvasId}/widgets/new", canvasId)
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(objectMapper.writeValueAsString(widgetSpec)))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8);
+			return objectMapper.readValue(responseBody, Widget.class);
+		}
+
+		@Test
+		@DisplayName("independent z-ordering")
+		void independentZOrdering() throws Exception {
+			final String otherCanvasId = UUID.randomUUID().toString();
+			final Widget created = createOnCanvas(canvasId, newWidgetSpecOk);
+			final Widget other = createOnCanvas(otherCanvasId, newWidgetSpecOk);
+
+			// Same z-index on both canvases, so no widget has been shifted
+			assertEquals(newWidgetSpecOk.getzIndex(), created.getZIndex());
+			assertEquals(newWidgetSpecOk.getzIndex(), other.getZIndex());
+
+			final String responseBody =
+				mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8);
+			assertEquals(Collections.singletonList(created),
+				Arrays.asList(objectMapper.readValue(responseBody, Widget[].class)));
+
+			mockMvc.perform(get("/canvases/{canvasId}/widgets/{uuid}", canvasId, created.getUUID()))
+				.andExpect(status().isOk());
+			mockMvc.perform(get("/canvases/{canvasId}/widgets/{uuid}", otherCanvasId, created.getUUID()))
+				.andExpect(status().isNotFound());
+			mockMvc.perform(get("/widgets/{uuid}", created.getUUID()))
+				.andExpect(status().isNotFound());
+		}
+
+		@Test
+		@DisplayName("nonexistent canvas is empty")
+		void nonExistentCanvas() throws Exception {
+			mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[]"));
+			mockMvc.perform(delete("/canvases/{canvasId}/widgets/delete/{uuid}", canvasId, UUID.randomUUID()))
+				.andExpect(status().isNotFound());
+		}
+
+		@Test
+		@DisplayName("bad canvas id")
+		void badCanvasId() throws Exception {
+			mockMvc.perform(post("/canvases/{canvasId}/widgets/new", "not a canvas!")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(newWidgetSpecOk)))
+				.andExpect(status().isBadRequest());
+		}
+	}
+
+	@Nested
+	@DisplayName("change feed")
+	class ChangeFeed {
+
+		// Waits until the events streamed so far contain 'expected'
+		String awaitEvents(MvcResult result, String expected) throws Exception {
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			String events = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+			while (!events.contains(expected) && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+				events = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+			}
+			return events;
+		}
+
+		@Test
+		@DisplayName("streams and resumes changes")
+		void streamChanges() throws Exception {
+			final MvcResult stream =
+				mockMvc.perform(get("/widgets/changes").accept(MediaType.TEXT_EVENT_STREAM))
+					.andExpect(request().asyncStarted())
+					.andReturn();
+
+			final String responseBody =
+				create(newWidgetSpecOk)
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8);
+			final Widget created = objectMapper.readValue(responseBody, Widget.class);
+
+			final String events = awaitEvents(stream, created.getUUID().toString());
+			final Matcher matcher =
+				Pattern.compile("id:(\\d+)\nevent:create\ndata:(.*" + created.getUUID() + ".*)\n").matcher(events);
+			assertTrue(matcher.find(), events);
+			final WidgetChange change = objectMapper.readValue(matcher.group(2), WidgetChange.class);
+			assertEquals(created, change.getWidget());
+
+			final long sequence = Long.parseLong(matcher.group(1));
+			final MvcResult resumed =
+				mockMvc.perform(get("/widgets/changes")
+					.accept(MediaType.TEXT_EVENT_STREAM)
+					.header("Last-Event-ID", sequence - 1))
+					.andExpect(request().asyncStarted())
+					.andReturn();
+			assertTrue(awaitEvents(resumed, created.getUUID().toString()).startsWith("id:" + sequence + "\n"));
+		}
+
+		@Test
+		@DisplayName("changes since a version")
+		void changesSince() throws Exception {
+			final WidgetChanges before = objectMapper.readValue(
+				mockMvc.perform(get("/widgets/changes").param("since", "0"))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8),
+				WidgetChanges.class);
+
+			final Widget created = objectMapper.readValue(
+				create(newWidgetSpecOk)
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8),
+				Widget.class);
+			mockMvc.perform(delete("/widgets/delete/{uuid}", created.getUUID()))
+				.andExpect(status().isOk());
+
+			final WidgetChanges changes = objectMapper.readValue(
+				mockMvc.perform(get("/widgets/changes").param("since", Long.toString(before.getVersion())))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8),
+				WidgetChanges.class);
+			assertTrue(changes.getVersion() > before.getVersion());
+			assertTrue(changes.getUpserts().stream().noneMatch(w -> w.getUUID().equals(created.getUUID())));
+		}
+
+		@Test
+		@DisplayName("unavailable changes")
+		void streamUnavailableChanges() throws Exception {
+			mockMvc.perform(get("/widgets/changes")
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.param("since", Long.toString(Long.MAX_VALUE)))
+				.andExpect(status().isBadRequest());
+			mockMvc.perform(get("/widgets/changes")
+				.param("since", Long.toString(Long.MAX_VALUE)))
+				.andExpect(status().isBadRequest());
+		}
+	}
+
+	@Nested
+	@DisplayName("binary formats")
+	class BinaryFormats {
+
+		final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+		final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory()).findAndRegisterModules();
+		final MediaType smile = MediaType.valueOf("application/x-jackson-smile");
+
+		@Test
+		@DisplayName("create and get in smile")
+		void smile() throws Exception {
+			final byte[] responseBody =
+				mockMvc.perform(post("/widgets/new")
+					.contentType(smile)
+					.accept(smile)
+					.content(smileMapper.writeValueAsBytes(newWidgetSpecOk)))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(smile))
+					.andReturn()
+					.getResponse()
+					.getContentAsByteArray();
+			final Widget created = smileMapper.readValue(responseBody, Widget.class);
+
+			final byte[] got =
+				mockMvc.perform(get("/widgets/{uuid}", created.getUUID()).accept(smile))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(smile))
+					.andReturn()
+					.getResponse()
+					.getContentAsByteArray();
+			assertEquals(created, smileMapper.readValue(got, Widget.class));
+		}
+
+		@Test
+		@DisplayName("update in smile")
+		void smileUpdate() throws Exception {
+			final Widget created = objectMapper.readValue(
+				mockMvc.perform(post("/widgets/new")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(objectMapper.writeValueAsString(newWidgetSpecOk)))
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8), Widget.class);
+			final WidgetMutationSpec mutationSpec =
+				new WidgetMutationSpec(created.getUUID(), 3L, null, null, 0D, null, created.getVersion());
+
+			final byte[] responseBody =
+				mockMvc.perform(put("/widgets/update")
+					.contentType(smile)
+					.accept(smile)
+					.content(smileMapper.writeValueAsBytes(mutationSpec)))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsByteArray();
+			final Widget updated = smileMapper.readValue(responseBody, Widget.class);
+
+			assertEquals(WidgetOps.update(created, mutationSpec), updated);
+			assertEquals(created.getVersion() + 1, updated.getVersion());
+		}
+
+		@Test
+		@DisplayName("all widgets in cbor, tagged apart from json")
+		void cborList() throws Exception {
+			final String canvasId = UUID.randomUUID().toString();
+			mockMvc.perform(post("/canvases/{canvasId}/widgets/new", canvasId)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(newWidgetSpecOk)))
+				.andExpect(status().isOk());
+
+			final MvcResult json =
+				mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId))
+					.andExpect(status().isOk())
+					.andReturn();
+			final MvcResult cbor =
+				mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId)
+					.accept(MediaType.APPLICATION_CBOR))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+					.andReturn();
+
+			assertEquals(
+				Arrays.asList(objectMapper.readValue(json.getResponse().getContentAsByteArray(), Widget[].class)),
+				Arrays.asList(cborMapper.readValue(cbor.getResponse().getContentAsByteArray(), Widget[].class)));
+			assertTrue(cbor.getResponse().getContentAsByteArray().length
+				< json.getResponse().getContentAsByteArray().length);
+
+			final String jsonTag = json.getResponse().getHeader("ETag");
+			final String cborTag = cbor.getResponse().getHeader("ETag");
+			assertTrue(!jsonTag.equals(cborTag), cborTag);
+			mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId)
+				.accept(MediaType.APPLICATION_CBOR).header("If-None-Match", jsonTag))
+				.andExpect(status().isOk());
+			mockMvc.perform(get("/canvases/{canvasId}/widgets/list/all", canvasId)
+				.accept(MediaType.APPLICATION_CBOR).header("If-None-Match", cborTag))
+				.andExpect(status().isNotModified());
+		}
+
+		@Test
+		@DisplayName("unsupported format")
+		void notAcceptable() throws Exception {
+			mockMvc.perform(get("/widgets/{uuid}", UUID.randomUUID()).accept(MediaType.APPLICATION_XML))
+				.andExpect(status().isNotAcceptable());
+		}
+	}
+
+	@Nested
+	@DisplayName("metrics")
+	class Metrics {
+
+		@Test
+		@DisplayName("widget manager metrics in prometheus format")
+		void prometheus() throws Exception {
+			create(newWidgetSpecOk).andExpect(status().isOk());
+			final String metrics =
+				mockMvc.perform(get("/actuator/prometheus"))
+					.andExpect(status().isOk())
+					.andReturn()
+					.getResponse()
+					.getContentAsString(StandardCharsets.UTF_8);
+			assertTrue(metrics.contains("widgets_manager_operations_seconds_bucket{operation=\"create\""), metrics);
+			assertTrue(metrics.contains("widgets_manager_lock_wait_seconds_bucket{lock=\"mutation\""), metrics);
+			assertTrue(metrics.contains("widgets_manager_shifts_bucket"), metrics);
+			assertTrue(metrics.contains("widgets_manager_widgets"), metrics);
 		}
 	}
 }
@@ -0,0 +1,269 @@
+package com.marcos_sb.widgets.feed;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetChangeListener.ChangeType;
+import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetChange;
+import com.marcos_sb.widgets.resource.WidgetChanges;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WidgetChangeFeedTest {
+
+    private WidgetChangeFeed feed;
+
+    // Queues every change it gets, and a marker once it overflows
+    static class QueueingSubscriber implements WidgetChangeFeed.Subscriber {
+        final BlockingQueue<Object> changes = new LinkedBlockingQueue<>();
+        volatile boolean overflowed;
+
+        @Override
+        public void onChange(WidgetChange change) {
+            changes.add(change);
+        }
+
+        @Override
+        public void onOverflow() {
+            overflowed = true;
+            changes.add(Boolean.FALSE);
+        }
+
+        WidgetChange take() throws InterruptedException {
+            final Object change = changes.poll(10, TimeUnit.SECONDS);
+            assertNotNull(change);
+            return change instanceof WidgetChange ? (WidgetChange) change : null;
+        }
+    }
+
+    @BeforeEach
+    void createFeed() {
+        feed = new WidgetChangeFeed(8, 4);
+    }
+
+    @AfterEach
+    void closeFeed() {
+        feed.close();
+    }
+
+    private static Widget widget(int zIndex) {
+        return new Widget(UUID.randomUUID(), 0, 0, 1, 1, zIndex);
+    }
+
+    @Test
+    @DisplayName("changes are delivered in order")
+    void deliveredInOrder() throws Exception {
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        feed.subscribe(null, subscriber);
+
+        final BlockingWidgetManager widgetManager = new BlockingWidgetManager(feed);
+        final Widget first = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        final Widget second = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        widgetManager.remove(second.getUUID());
+
+        final List<WidgetChange> changes = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            changes.add(subscriber.take());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L),
+            changes.stream().map(WidgetChange::getSequence).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(ChangeType.CREATE, ChangeType.SHIFT, ChangeType.CREATE, ChangeType.REMOVE),
+            changes.stream().map(WidgetChange::getType).collect(Collectors.toList()));
+        assertEquals(first.getUUID(), changes.get(1).getWidget().getUUID());
+        assertEquals(1, changes.get(1).getWidget().getZIndex());
+        assertEquals(4, feed.getSequence());
+    }
+
+    @Test
+    @DisplayName("subscribers resume from the history")
+    void resume() throws Exception {
+        for (int i = 0; i < 10; i++)
+            feed.onChange(ChangeType.CREATE, widget(i));
+
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        feed.subscribe(7L, subscriber);
+        assertEquals(8, subscriber.take().getSequence());
+        assertEquals(9, subscriber.take().getSequence());
+        assertEquals(10, subscriber.take().getSequence());
+
+        // The last 8 changes are kept
+        feed.subscribe(2L, new QueueingSubscriber());
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(1L, new QueueingSubscriber()));
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(11L, new QueueingSubscriber()));
+    }
+
+    @Test
+    @DisplayName("changes since a version are collapsed per widget")
+    void changesSince() throws WidgetManagerException {
+        final BlockingWidgetManager widgetManager = new BlockingWidgetManager(feed);
+        final Widget removed = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        final long version = feed.getSequence();
+
+        final Widget updated = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 10));
+        final Widget transient_ = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 20));
+        widgetManager.update(new WidgetMutationSpec(updated.getUUID(), 5L, null, null, null, null));
+        widgetManager.remove(transient_.getUUID());
+        widgetManager.remove(removed.getUUID());
+
+        final WidgetChanges changes = feed.getChangesSince(version);
+        assertFalse(changes.isResync());
+        assertEquals(feed.getSequence(), changes.getVersion());
+        assertEquals(Collections.singletonList(widgetManager.get(updated.getUUID())), changes.getUpserts());
+        assertEquals(Collections.singletonList(removed.getUUID()), changes.getTombstones());
+
+        final WidgetChanges none = feed.getChangesSince(changes.getVersion());
+        assertEquals(changes.getVersion(), none.getVersion());
+        assertTrue(none.getUpserts().isEmpty());
+        assertTrue(none.getTombstones().isEmpty());
+    }
+
+    @Test
+    @DisplayName("changes no longer in the history require a resync")
+    void changesSinceResync() {
+        for (int i = 0; i < 10; i++)
+            feed.onChange(ChangeType.CREATE, widget(i));
+
+        assertEquals(8, feed.getChangesSince(2).getUpserts().size());
+        final WidgetChanges resync = feed.getChangesSince(1);
+        assertTrue(resync.isResync());
+        assertEquals(10, resync.getVersion());
+        assertThrows(IllegalArgumentException.class, () -> feed.getChangesSince(11));
+        assertThrows(IllegalArgumentException.class, () -> feed.getChangesSince(-1));
+    }
+
+    @Test
+    @DisplayName("slow subscribers overflow without blocking writers")
+    void overflow() throws Exception {
+        final CountDownLatch delivering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final QueueingSubscriber slow = new QueueingSubscriber() {
+            @Override
+            public void onChange(WidgetChange change) {
+                delivering.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onChange(change);
+            }
+        };
+        feed.subscribe(null, slow);
+
+        feed.onChange(ChangeType.CREATE, widget(0));
+        assertTrue(delivering.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < 20; i++)
+            feed.onChange(ChangeType.CREATE, widget(i));
+        assertEquals(0, feed.getSubscriberCount());
+        release.countDown();
+
+        // The one being delivered, plus a full buffer
+        for (long sequence = 1; sequence <= 5; sequence++)
+            assertEquals(sequence, slow.take().getSequence());
+        assertNull(slow.take());
+        assertTrue(slow.overflowed);
+        // It can resume from any change still in the history
+        final QueueingSubscriber resumed = new QueueingSubscriber();
+        feed.subscribe(15L, resumed);
+        assertEquals(16, resumed.take().getSequence());
+    }
+
+    @Test
+    @DisplayName("stalled subscribers hold no more than the delivery threads")
+    void boundedDelivery() throws Exception {
+        feed.close();
+        feed = new WidgetChangeFeed(8, 4, 2);
+        final AtomicInteger delivering = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<QueueingSubscriber> subscribers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final QueueingSubscriber stalled = new QueueingSubscriber() {
+                @Override
+                public void onChange(WidgetChange change) {
+                    delivering.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.onChange(change);
+                }
+            };
+            feed.subscribe(null, stalled);
+            subscribers.add(stalled);
+        }
+
+        feed.onChange(ChangeType.CREATE, widget(0));
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (delivering.get() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        Thread.sleep(100);
+        assertEquals(2, delivering.get());
+        release.countDown();
+
+        for (QueueingSubscriber subscriber : subscribers)
+            assertEquals(1, subscriber.take().getSequence());
+    }
+
+    @Test
+    @DisplayName("failing subscribers are cancelled")
+    void failingSubscriber() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        feed.subscribe(null, new QueueingSubscriber() {
+            @Override
+            public void onChange(WidgetChange change) {
+                failed.countDown();
+                throw new IllegalStateException("Gone");
+            }
+        });
+        feed.onChange(ChangeType.CREATE, widget(0));
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (feed.getSubscriberCount() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(0, feed.getSubscriberCount());
+    }
+
+    @Test
+    @DisplayName("cancelled subscribers get no more changes")
+    void cancel() throws Exception {
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        feed.subscribe(null, subscriber).cancel();
+        feed.onChange(ChangeType.CREATE, widget(0));
+        assertEquals(0, feed.getSubscriberCount());
+        assertNull(subscriber.changes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("changes keep the state at the time they were made")
+    void copiesWidgets() throws WidgetManagerException, InterruptedException {
+        final QueueingSubscriber subscriber = new QueueingSubscriber();
+        feed.subscribe(null, subscriber);
+        final Widget widget = widget(0);
+        feed.onChange(ChangeType.CREATE, widget);
+        widget.setZIndex(1);
+        assertEquals(0, subscriber.take().getWidget().getZIndex());
+    }
+}
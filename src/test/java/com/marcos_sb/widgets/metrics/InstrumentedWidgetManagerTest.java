@@ -0,0 +1,91 @@
+package com.marcos_sb.widgets.metrics;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InstrumentedWidgetManagerTest {
+
+    private MeterRegistry registry;
+    private InstrumentedWidgetManager widgetManager;
+
+    @BeforeEach
+    void createWidgetManager() {
+        registry = new SimpleMeterRegistry();
+        widgetManager = new InstrumentedWidgetManager(new BlockingWidgetManager(), registry);
+    }
+
+    private long count(String operation) {
+        return registry.get("widgets.manager.operations").tag("operation", operation).timer().count();
+    }
+
+    private double conflicts(String operation) {
+        return registry.get("widgets.manager.conflicts").tag("operation", operation).counter().count();
+    }
+
+    @Test
+    @DisplayName("operations are timed, failed ones included")
+    void timed() throws WidgetManagerException {
+        final Widget widget = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+        widgetManager.get(widget.getUUID());
+        assertThrows(NoSuchElementException.class, () -> widgetManager.get(UUID.randomUUID()));
+        widgetManager.getAllByZIndex();
+        widgetManager.getAllInArea(0, 0, 1, 1);
+        widgetManager.getAllAt(0, 0, 1);
+        widgetManager.getRangeByZIndex(0, 100, 1);
+        widgetManager.update(new WidgetMutationSpec(widget.getUUID(), 1L, null, null, null, null));
+        widgetManager.remove(widget.getUUID());
+
+        assertEquals(1, count("create"));
+        assertEquals(2, count("get"));
+        assertEquals(1, count("get-all"));
+        assertEquals(1, count("get-in-area"));
+        assertEquals(1, count("get-at"));
+        assertEquals(1, count("get-range"));
+        assertEquals(1, count("update"));
+        assertEquals(1, count("remove"));
+        assertEquals(0, count("batch"));
+    }
+
+    @Test
+    @DisplayName("mutations expecting a stale version are counted")
+    void conflictsCounted() throws WidgetManagerException {
+        final Widget widget = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+        widgetManager.update(new WidgetMutationSpec(widget.getUUID(), 1L, null, null, null, null));
+        final long stale = widget.getVersion();
+
+        assertThrows(WidgetVersionConflictException.class, () -> widgetManager.update(
+            new WidgetMutationSpec(widget.getUUID(), 2L, null, null, null, null, stale)));
+        assertThrows(WidgetVersionConflictException.class, () -> widgetManager.remove(widget.getUUID(), stale));
+        widgetManager.applyBatch(Collections.singletonList(BatchOperation.update(
+            new WidgetMutationSpec(widget.getUUID(), 3L, null, null, null, null, stale))), false);
+
+        assertEquals(1, conflicts("update"));
+        assertEquals(1, conflicts("remove"));
+        assertEquals(1, conflicts("batch"));
+        assertEquals(1, count("batch"));
+    }
+
+    @Test
+    @DisplayName("the number of widgets is gauged")
+    void widgetCount() throws WidgetManagerException {
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+        assertEquals(2, registry.get("widgets.manager.widgets").gauge().value());
+    }
+}
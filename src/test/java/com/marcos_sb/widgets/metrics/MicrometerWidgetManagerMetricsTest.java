@@ -0,0 +1,68 @@
+package com.marcos_sb.widgets.metrics;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.model.impl.BlockingWidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MicrometerWidgetManagerMetricsTest {
+
+    private MeterRegistry registry;
+    private BlockingWidgetManager widgetManager;
+
+    @BeforeEach
+    void createWidgetManager() {
+        registry = new SimpleMeterRegistry();
+        widgetManager = new BlockingWidgetManager(WidgetChangeListener.NONE,
+            new MicrometerWidgetManagerMetrics(registry));
+    }
+
+    private long lockCount(String name, String lock) {
+        return registry.get(name).tag("lock", lock).timer().count();
+    }
+
+    @Test
+    @DisplayName("shifts are recorded per mutation")
+    void shifts() throws WidgetManagerException {
+        for (int i = 0; i < 3; i++)
+            widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, i));
+        // Shifts the three of them up
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        // Shifts nothing, and isn't recorded as it has no z-index
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+
+        final DistributionSummary shifts = registry.get("widgets.manager.shifts").summary();
+        assertEquals(4, shifts.count());
+        assertEquals(3, shifts.totalAmount());
+        assertEquals(3, shifts.max());
+    }
+
+    @Test
+    @DisplayName("lock waits and holds are recorded per lock")
+    void locks() throws WidgetManagerException {
+        final Widget widget = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 10));
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 20));
+        // Moves take the shared locks only
+        widgetManager.update(new WidgetMutationSpec(widget.getUUID(), 1L, null, null, null, null));
+        // Lowering below another widget takes the mutation and shift locks
+        widgetManager.update(new WidgetMutationSpec(widget.getUUID(), null, null, null, null, 30));
+        widgetManager.update(new WidgetMutationSpec(widget.getUUID(), null, null, null, null, 20));
+
+        for (String name : new String[] {"widgets.manager.lock.wait", "widgets.manager.lock.hold"}) {
+            assertEquals(4, lockCount(name, "mutation"));
+            assertEquals(3, lockCount(name, "move"));
+            assertEquals(3, lockCount(name, "widget"));
+            assertEquals(1, lockCount(name, "shift"));
+        }
+    }
+}
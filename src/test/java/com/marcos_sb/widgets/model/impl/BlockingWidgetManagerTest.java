@@ -1,15 +1,28 @@
 package com.marcos_sb.widgets.model.impl;
 
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
 import com.marcos_sb.widgets.resource.NewWidgetSpec;
 import com.marcos_sb.widgets.resource.Widget;
 import com.marcos_sb.widgets.resource.WidgetMutationSpec;
 import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetChangeListener;
+import com.marcos_sb.widgets.model.WidgetManagerMetrics;
 import com.marcos_sb.widgets.util.WidgetOps;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -19,50 +32,103 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-class BlockingWidgetManagerTest {
+class BlockingWidgetManagerTest extends WidgetManagerContractTest<BlockingWidgetManager> {
 
-    private BlockingWidgetManager widgetManager;
+    @Override
+    protected BlockingWidgetManager newManager() {
+        return new BlockingWidgetManager();
+    }
 
     @Nested
     @DisplayName("when new")
     class WhenNew {
 
-        final WidgetMutationSpec nullMutation =
-            new WidgetMutationSpec(UUID.randomUUID(), null, null, null, null, null);
-
-        @BeforeEach
-        void createNewWidgetManager() {
-            widgetManager = new BlockingWidgetManager();
-        }
-
         @Test
-        @DisplayName("is empty")
-        void isEmpty() {
-            assertTrue(widgetManager.isEmpty());
+        @DisplayName("create retries taken uuids, in batches too")
+        void createRetriesTakenUUIDs() throws WidgetManagerException {
+            final UUID taken = UUID.randomUUID();
+            final Iterator<UUID> uuids = Arrays.asList(taken, taken, UUID.randomUUID(), taken,
+                UUID.randomUUID()).iterator();
+            widgetManager = new BlockingWidgetManager(WidgetChangeListener.NONE, WidgetManagerMetrics.NONE,
+                uuids::next);
+
+            assertEquals(taken, widgetManager.create(new NewWidgetSpec(0, 0, 1, 1)).getUUID());
+            final Widget created = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+            final List<BatchResult> results = widgetManager.applyBatch(
+                Collections.singletonList(BatchOperation.create(new NewWidgetSpec(0, 0, 1, 1))), true);
+
+            assertEquals(3, new HashSet<>(Arrays.asList(taken, created.getUUID(),
+                results.get(0).getWidget().getUUID())).size());
+            assertTrue(!uuids.hasNext());
         }
 
         @Test
-        @DisplayName("get any uuid throws exception")
-        void getThrowsException() {
-            assertThrows(NoSuchElementException.class, () -> widgetManager.get(nullMutation.getUUID()));
-        }
+        @DisplayName("concurrent moves and z-index changes are all applied")
+        void concurrentMovesAndZIndexChanges() throws Exception {
+            final int nThreads = 8;
+            final int nUpdatesPerThread = 500;
+            final Widget shared = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+            final List<UUID> uuids = new ArrayList<>();
+            for (int i = 0; i < nThreads; i++)
+                uuids.add(widgetManager.create(new NewWidgetSpec(0, 0, 1, 1)).getUUID());
+
+            final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < nThreads; i++) {
+                    final UUID own = uuids.get(i);
+                    futures.add(executor.submit(() -> {
+                        final ThreadLocalRandom random = ThreadLocalRandom.current();
+                        for (int j = 0; j < nUpdatesPerThread; j++) {
+                            widgetManager.update(new WidgetMutationSpec(shared.getUUID(),
+                                (long) random.nextInt(100), (long) random.nextInt(100), null, null, null));
+                            widgetManager.update(new WidgetMutationSpec(own, (long) j, null, null, null,
+                                j % 10 == 0 ? random.nextInt(-50, 50) : null));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) future.get();
+            } finally {
+                executor.shutdown();
+            }
 
-        @Test
-        @DisplayName("get all widgets returns an empty list")
-        void returnsAnEmptyWidgetList() throws WidgetManagerException {
-            assertTrue(widgetManager.getAllByZIndex().isEmpty());
+            assertEquals(Widget.initialVersion + nThreads * nUpdatesPerThread,
+                widgetManager.get(shared.getUUID()).getVersion());
+            assertEquals(1 + nThreads + 2L * nThreads * nUpdatesPerThread, widgetManager.getVersion());
+            final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+            final Set<Integer> zIndexes = new HashSet<>();
+            allWidgets.forEach(w -> zIndexes.add(w.getZIndex()));
+            assertEquals(nThreads + 1, allWidgets.size());
+            assertEquals(allWidgets.size(), zIndexes.size());
+            for (Widget widget : allWidgets)
+                assertEquals(widgetManager.get(widget.getUUID()), widget);
+            assertEquals(allWidgets, widgetManager.getAllInArea(-1000, -1000, 1000, 1000));
         }
 
         @Test
-        @DisplayName("update any widget throws exception")
-        void updateThrowsException() {
-            assertThrows(NoSuchElementException.class, () -> widgetManager.update(nullMutation));
-        }
-
-        @Test
-        @DisplayName("remove any uuid throws exception")
-        void removeThrowsException() {
-            assertThrows(NoSuchElementException.class, () -> widgetManager.remove(nullMutation.getUUID()));
+        @DisplayName("readers never miss a widget being moved")
+        void readsDuringMoves() throws Exception {
+            final Widget moved = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+            for (int i = 0; i < 100; i++)
+                widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+
+            final AtomicBoolean moving = new AtomicBoolean(true);
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final Future<?> mover = executor.submit(() -> {
+                    for (long x = 0; moving.get(); x++)
+                        widgetManager.update(new WidgetMutationSpec(moved.getUUID(), x, x, null, null, null));
+                    return null;
+                });
+                for (int i = 0; i < 100_000; i++)
+                    assertEquals(1, widgetManager.getRangeByZIndex(moved.getZIndex(), moved.getZIndex(), 1).size());
+                assertEquals(101, widgetManager.getAllByZIndex().size());
+                moving.set(false);
+                mover.get();
+            } finally {
+                executor.shutdown();
+            }
         }
 
         @Nested
@@ -163,6 +229,86 @@ class BlockingWidgetManagerTest {
                 assertEquals(allWidgets, widgetManager.getAllByZIndex());
             }
 
+            @Test
+            @DisplayName("get all in area returns intersecting widgets in ascending z-index")
+            void getAllInArea() throws WidgetManagerException {
+                assertEquals(Collections.singletonList(createdWidgetZIndex1),
+                    widgetManager.getAllInArea(1, 2, 5, 5));
+                assertEquals(Collections.singletonList(createdWidgetZIndex2),
+                    widgetManager.getAllInArea(-1, -1, 0, 0));
+                assertEquals(Arrays.asList(createdWidgetZIndex1, createdWidgetZIndex2),
+                    widgetManager.getAllInArea(-10, -10, 10, 10));
+                assertTrue(widgetManager.getAllInArea(3, 0, 10, 10).isEmpty());
+            }
+
+            @Test
+            @DisplayName("moving a widget keeps its place in the z-order")
+            void moveKeepsZOrder() throws WidgetManagerException {
+                final Widget moved = widgetManager.update(new WidgetMutationSpec(createdWidgetZIndex1.getUUID(),
+                    5L, 5L, null, null, createdWidgetZIndex1.getZIndex()));
+
+                assertEquals(createdWidgetZIndex1.getZIndex(), moved.getZIndex());
+                assertEquals(5, moved.getX());
+                assertEquals(Arrays.asList(moved, createdWidgetZIndex2), widgetManager.getAllByZIndex());
+            }
+
+            @Test
+            @DisplayName("get all in area follows updates")
+            void getAllInAreaAfterUpdate() throws WidgetManagerException {
+                final Widget moved = widgetManager.update(
+                    new WidgetMutationSpec(createdWidgetZIndex1.getUUID(), 100L, 100L, null, null, null));
+
+                assertTrue(widgetManager.getAllInArea(0, 1, 2, 4).isEmpty());
+                assertEquals(Collections.singletonList(moved), widgetManager.getAllInArea(101, 101, 101, 101));
+            }
+
+            @Test
+            @DisplayName("get all in invalid area throws exception")
+            void getAllInInvalidArea() {
+                assertThrows(IllegalArgumentException.class, () -> widgetManager.getAllInArea(1, 0, 0, 1));
+            }
+
+            @Test
+            @DisplayName("get range by z-index is bounded and limited")
+            void getRangeByZIndex() throws WidgetManagerException {
+                assertEquals(Collections.singletonList(createdWidgetZIndex2),
+                    widgetManager.getRangeByZIndex(0, 10, 10));
+                assertEquals(Collections.singletonList(createdWidgetZIndex1),
+                    widgetManager.getRangeByZIndex(-10, 10, 1));
+                assertTrue(widgetManager.getRangeByZIndex(1, 10, 10).isEmpty());
+                assertThrows(IllegalArgumentException.class, () -> widgetManager.getRangeByZIndex(0, 10, 0));
+            }
+
+            @Test
+            @DisplayName("get all at point returns the topmost widgets first")
+            void getAllAt() throws WidgetManagerException {
+                final Widget overlay = widgetManager.create(new NewWidgetSpec(-5, -5, 10, 10));
+
+                assertEquals(Collections.singletonList(overlay), widgetManager.getAllAt(0, 0, 1));
+                assertEquals(Arrays.asList(overlay, createdWidgetZIndex2), widgetManager.getAllAt(0, 0, 5));
+                assertEquals(Arrays.asList(overlay, createdWidgetZIndex1), widgetManager.getAllAt(2, 4, 5));
+                assertTrue(widgetManager.getAllAt(100, 100, 5).isEmpty());
+                assertThrows(IllegalArgumentException.class, () -> widgetManager.getAllAt(0, 0, 0));
+            }
+
+            @Test
+            @DisplayName("apply batch reports every operation and goes on after failures")
+            void applyBatch() throws WidgetManagerException {
+                final List<BatchResult> results = widgetManager.applyBatch(Arrays.asList(
+                    BatchOperation.create(new NewWidgetSpec(0, 0, 1, 1, 0)),
+                    BatchOperation.delete(UUID.randomUUID()),
+                    BatchOperation.update(new WidgetMutationSpec(
+                        createdWidgetZIndex1.getUUID(), null, null, null, null, 5)),
+                    BatchOperation.delete(createdWidgetZIndex2.getUUID())), false);
+
+                assertEquals(Arrays.asList(BatchResult.Status.OK, BatchResult.Status.NOT_FOUND,
+                    BatchResult.Status.OK, BatchResult.Status.OK),
+                    results.stream().map(BatchResult::getStatus).collect(Collectors.toList()));
+                assertEquals(Arrays.asList(results.get(0).getWidget(), results.get(2).getWidget()),
+                    widgetManager.getAllByZIndex());
+                assertEquals(1, results.get(3).getWidget().getZIndex());
+            }
+
             @Test
             @DisplayName("update z-index top-to-bottom")
             void updateZIndexTopToBottom() throws WidgetManagerException {
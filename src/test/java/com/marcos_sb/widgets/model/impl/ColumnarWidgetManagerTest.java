@@ -0,0 +1,91 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarWidgetManagerTest extends WidgetManagerContractTest<ColumnarWidgetManager> {
+
+    @Override
+    protected ColumnarWidgetManager newManager() {
+        return new ColumnarWidgetManager();
+    }
+
+    @Test
+    @DisplayName("get all in area and at point scan the columns")
+    void getAllInAreaAndAt() throws WidgetManagerException {
+        createThreeWidgets();
+        assertEquals(Arrays.asList(widget0, widget1), widgetManager.getAllInArea(0, 0, 1, 1));
+        assertEquals(Arrays.asList(widget2, widget1), widgetManager.getAllAt(2, 2, 5));
+        assertEquals(Arrays.asList(widget2), widgetManager.getAllAt(2, 2, 1));
+        assertTrue(widgetManager.getAllAt(5, 5, 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("removed slots are reused")
+    void slotsReused() throws WidgetManagerException {
+        createThreeWidgets();
+        widgetManager.remove(widget1.getUUID());
+        final Widget created = widgetManager.create(new NewWidgetSpec(7, 7, 1, 1, 1));
+        assertEquals(Arrays.asList(widget0, created, widget2), widgetManager.getAllByZIndex());
+        assertEquals(widget2, widgetManager.get(widget2.getUUID()));
+    }
+
+    @Test
+    @DisplayName("matches the blocking manager under random operations")
+    void randomOperations() throws WidgetManagerException {
+        widgetManager = new ColumnarWidgetManager(4);
+        final BlockingWidgetManager reference = new BlockingWidgetManager();
+        final List<UUID> columnarUUIDs = new ArrayList<>();
+        final List<UUID> referenceUUIDs = new ArrayList<>();
+        final Random random = new Random(17);
+
+        for (int i = 0; i < 5_000; i++) {
+            final int operation = random.nextInt(4);
+            if (columnarUUIDs.isEmpty() || operation < 2) {
+                final NewWidgetSpec spec = random.nextBoolean()
+                    ? new NewWidgetSpec(random.nextInt(100), random.nextInt(100), 5, 5, random.nextInt(200))
+                    : new NewWidgetSpec(random.nextInt(100), random.nextInt(100), 5, 5);
+                columnarUUIDs.add(widgetManager.create(spec).getUUID());
+                referenceUUIDs.add(reference.create(spec).getUUID());
+            } else if (operation == 2) {
+                final int k = random.nextInt(columnarUUIDs.size());
+                final Long x = random.nextBoolean() ? (long) random.nextInt(100) : null;
+                final Integer z = random.nextBoolean() ? random.nextInt(200) : null;
+                widgetManager.update(new WidgetMutationSpec(columnarUUIDs.get(k), x, null, null, null, z));
+                reference.update(new WidgetMutationSpec(referenceUUIDs.get(k), x, null, null, null, z));
+            } else {
+                final int k = random.nextInt(columnarUUIDs.size());
+                widgetManager.remove(columnarUUIDs.remove(k));
+                reference.remove(referenceUUIDs.remove(k));
+            }
+
+            if (i % 250 == 0) {
+                assertEquals(summaries(reference.getAllByZIndex(), referenceUUIDs),
+                    summaries(widgetManager.getAllByZIndex(), columnarUUIDs));
+                assertEquals(summaries(reference.getAllInArea(20, 20, 40, 40), referenceUUIDs),
+                    summaries(widgetManager.getAllInArea(20, 20, 40, 40), columnarUUIDs));
+            }
+        }
+        assertEquals(reference.size(), widgetManager.size());
+    }
+
+    // Widgets as (index of their uuid in 'uuids', x, y, z-index), comparable across managers
+    private static List<List<Long>> summaries(List<Widget> widgets, List<UUID> uuids) {
+        return widgets.stream()
+            .map(w -> Arrays.asList((long) uuids.indexOf(w.getUUID()), w.getX(), w.getY(), (long) w.getZIndex()))
+            .collect(Collectors.toList());
+    }
+}
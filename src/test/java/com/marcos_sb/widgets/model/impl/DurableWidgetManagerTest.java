@@ -0,0 +1,190 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetChangeListener.ChangeType;
+import com.marcos_sb.widgets.persistence.DurabilityMode;
+import com.marcos_sb.widgets.persistence.SnapshotFile;
+import com.marcos_sb.widgets.persistence.WriteAheadLog;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DurableWidgetManagerTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(DurabilityMode.class)
+    @DisplayName("reopening restores all widgets, shifts included")
+    void reopen(DurabilityMode durabilityMode) throws IOException, WidgetManagerException {
+        final List<Widget> before;
+        try (DurableWidgetManager widgetManager = DurableWidgetManager.open(directory, durabilityMode, 1)) {
+            final Widget widget0 = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+            final Widget widget1 = widgetManager.create(new NewWidgetSpec(1, 1, 1, 1, 1));
+            widgetManager.create(new NewWidgetSpec(2, 2, 1, 1, 0));
+            widgetManager.update(new WidgetMutationSpec(widget1.getUUID(), 5L, null, null, null, -1));
+            widgetManager.remove(widget0.getUUID());
+            before = widgetManager.getAllByZIndex();
+        }
+
+        try (DurableWidgetManager widgetManager = DurableWidgetManager.open(directory, durabilityMode, 1)) {
+            assertEquals(before, widgetManager.getAllByZIndex());
+            assertEquals(before.get(0), widgetManager.getAllAt(5, 1, 1).get(0));
+        }
+    }
+
+    @Test
+    @DisplayName("a shift logged without the change that caused it is not restored")
+    void incompleteShift() throws IOException, WidgetManagerException {
+        final Widget widget0 = new Widget(UUID.randomUUID(), 0, 0, 1, 1, 1);
+        final Widget widget1 = new Widget(UUID.randomUUID(), 0, 0, 1, 1, 2);
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.SYNC, 1, (t, w) -> {})) {
+            log.onChange(ChangeType.CREATE, widget0);
+            log.onChange(ChangeType.CREATE, widget1);
+            log.onChange(ChangeType.SHIFT, new Widget(widget0.getUUID(), 0, 0, 1, 1, 2));
+        }
+
+        try (DurableWidgetManager widgetManager = DurableWidgetManager.open(directory, DurabilityMode.SYNC, 1)) {
+            assertEquals(Arrays.asList(widget0, widget1), widgetManager.getAllByZIndex());
+            assertEquals(1, widgetManager.get(widget0.getUUID()).getZIndex());
+        }
+    }
+
+    @Test
+    @DisplayName("opening fails if the widgets restored share a z-index")
+    void duplicateZIndex() throws IOException {
+        final Widget widget0 = new Widget(UUID.randomUUID(), 0, 0, 1, 1, 1);
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.SYNC, 1, (t, w) -> {})) {
+            log.onChange(ChangeType.CREATE, widget0);
+            log.onChange(ChangeType.CREATE, new Widget(UUID.randomUUID(), 0, 0, 1, 1, 2));
+            log.onChange(ChangeType.UPDATE, new Widget(widget0.getUUID(), 0, 0, 1, 1, 2));
+        }
+
+        assertThrows(IOException.class, () -> DurableWidgetManager.open(directory, DurabilityMode.SYNC, 1));
+    }
+
+    @Test
+    @DisplayName("a widget removed while checkpointing stays removed")
+    void removeWhileCheckpointing() throws Exception {
+        final AtomicReference<DurableWidgetManager> checkpointed = new AtomicReference<>();
+        final List<Widget> before;
+        // Checkpoints right after the removal is logged, before it returns
+        try (DurableWidgetManager widgetManager = DurableWidgetManager.open(directory, DurabilityMode.GROUP, 1, 0,
+                 (type, widget) -> {
+                     if (type != ChangeType.REMOVE) return;
+                     try {
+                         checkpointed.get().checkpoint();
+                     } catch (IOException ex) {
+                         throw new UncheckedIOException(ex);
+                     }
+                 })) {
+            checkpointed.set(widgetManager);
+            final Widget removed = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+            widgetManager.create(new NewWidgetSpec(1, 1, 1, 1, 1));
+            widgetManager.remove(removed.getUUID());
+            // Takes the z-index of the removed widget
+            widgetManager.create(new NewWidgetSpec(2, 2, 1, 1, 0));
+            before = widgetManager.getAllByZIndex();
+        }
+
+        try (DurableWidgetManager widgetManager = DurableWidgetManager.open(directory, DurabilityMode.GROUP, 1)) {
+            assertEquals(before, widgetManager.getAllByZIndex());
+        }
+    }
+
+    @Test
+    @DisplayName("concurrent creates are all restored")
+    void concurrentCreates() throws Exception {
+        final int nThreads = 8;
+        final int nWidgetsPerThread = 100;
+        try (DurableWidgetManager widgetManager =
+                 DurableWidgetManager.open(directory, DurabilityMode.GROUP, 1)) {
+            final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < nThreads; i++)
+                    futures.add(executor.submit(() -> {
+                        for (int j = 0; j < nWidgetsPerThread; j++)
+                            widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+                        return null;
+                    }));
+                for (Future<?> future : futures) future.get();
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        try (DurableWidgetManager widgetManager =
+                 DurableWidgetManager.open(directory, DurabilityMode.GROUP, 1)) {
+            final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+            assertEquals(nThreads * nWidgetsPerThread, allWidgets.size());
+            for (int i = 0; i < allWidgets.size(); i++)
+                assertEquals(i, allWidgets.get(i).getZIndex());
+        }
+    }
+
+    @Test
+    @DisplayName("reopening after a checkpoint restores the snapshot and the log after it")
+    void checkpoint() throws IOException, WidgetManagerException {
+        final List<Widget> before;
+        try (DurableWidgetManager widgetManager =
+                 DurableWidgetManager.open(directory, DurabilityMode.GROUP, 1)) {
+            final Widget widget0 = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+            final Widget widget1 = widgetManager.create(new NewWidgetSpec(1, 1, 1, 1, 1));
+            widgetManager.checkpoint();
+            widgetManager.create(new NewWidgetSpec(2, 2, 1, 1, 0));
+            widgetManager.remove(widget1.getUUID());
+            widgetManager.checkpoint();
+            widgetManager.update(new WidgetMutationSpec(widget0.getUUID(), 5L, null, null, null, 3));
+            before = widgetManager.getAllByZIndex();
+        }
+
+        // Opening the log starts a segment, and every checkpoint starts another one
+        assertEquals(Arrays.asList(2L), SnapshotFile.snapshots(directory));
+        assertEquals(Arrays.asList(2L), WriteAheadLog.segments(directory));
+        try (DurableWidgetManager widgetManager =
+                 DurableWidgetManager.open(directory, DurabilityMode.GROUP, 1)) {
+            assertEquals(before, widgetManager.getAllByZIndex());
+            assertEquals(before.get(1), widgetManager.getAllAt(5, 0, 1).get(0));
+        }
+    }
+
+    @Test
+    @DisplayName("checkpoints taken while creating concurrently lose no widgets")
+    void concurrentCheckpoints() throws Exception {
+        final int nWidgets = 2000;
+        try (DurableWidgetManager widgetManager =
+                 DurableWidgetManager.open(directory, DurabilityMode.PERIODIC, 1, 1)) {
+            for (int i = 0; i < nWidgets; i++)
+                widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        }
+
+        try (DurableWidgetManager widgetManager =
+                 DurableWidgetManager.open(directory, DurabilityMode.PERIODIC, 1)) {
+            final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+            assertEquals(nWidgets, allWidgets.size());
+            for (int i = 0; i < allWidgets.size(); i++)
+                assertEquals(i, allWidgets.get(i).getZIndex());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedWidgetManagerTest {
+
+    private PartitionedWidgetManager canvases;
+
+    @BeforeEach
+    void createPartitionedWidgetManager() {
+        canvases = new PartitionedWidgetManager(BlockingWidgetManager::new, 3);
+    }
+
+    @Test
+    @DisplayName("canvases are created lazily")
+    void lazyCanvases() throws WidgetManagerException {
+        final WidgetManager canvas = canvases.existingCanvas("a");
+        assertTrue(canvas.isEmpty());
+        assertTrue(canvas.getAllByZIndex().isEmpty());
+        assertThrows(NoSuchElementException.class, () -> canvas.get(UUID.randomUUID()));
+        assertThrows(NoSuchElementException.class, () -> canvas.remove(UUID.randomUUID()));
+        assertTrue(canvases.getCanvasIds().isEmpty());
+
+        final Widget created = canvases.canvas("a").create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        assertEquals(Collections.singleton("a"), canvases.getCanvasIds());
+        assertSame(canvases.canvas("a"), canvases.existingCanvas("a"));
+        assertEquals(created, canvases.existingCanvas("a").get(created.getUUID()));
+    }
+
+    @Test
+    @DisplayName("canvases have independent z-orderings")
+    void independentCanvases() throws WidgetManagerException {
+        final Widget a1 = canvases.canvas("a").create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        final Widget b1 = canvases.canvas("b").create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        final Widget a2 = canvases.canvas("a").create(new NewWidgetSpec(0, 0, 1, 1, 0));
+
+        assertEquals(0, b1.getZIndex());
+        assertEquals(1, canvases.canvas("a").get(a1.getUUID()).getZIndex());
+        assertEquals(0, a2.getZIndex());
+        assertEquals(1, canvases.canvas("b").size());
+        assertThrows(NoSuchElementException.class, () -> canvases.canvas("b").get(a1.getUUID()));
+    }
+
+    @Test
+    @DisplayName("invalid canvas ids are rejected")
+    void invalidCanvasIds() {
+        assertThrows(IllegalArgumentException.class, () -> canvases.canvas(""));
+        assertThrows(IllegalArgumentException.class, () -> canvases.canvas("a/b"));
+        assertThrows(IllegalArgumentException.class, () -> canvases.existingCanvas("a b"));
+        assertThrows(IllegalArgumentException.class, () -> canvases.canvas(String.join("", Collections.nCopies(65, "a"))));
+    }
+
+    @Test
+    @DisplayName("no more than the maximum number of canvases")
+    void maxCanvases() {
+        canvases.canvas("a");
+        canvases.canvas("b");
+        canvases.canvas("c");
+        assertThrows(IllegalArgumentException.class, () -> canvases.canvas("d"));
+        canvases.canvas("a");
+        assertEquals(3, canvases.getCanvasIds().size());
+    }
+
+    @Test
+    @DisplayName("concurrent accesses get the same canvas")
+    void concurrentCanvasCreation() throws Exception {
+        final int nThreads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            final List<Future<WidgetManager>> futures = new ArrayList<>();
+            for (int i = 0; i < nThreads; i++)
+                futures.add(executor.submit(() -> canvases.canvas("a")));
+            for (Future<WidgetManager> future : futures)
+                assertSame(canvases.canvas("a"), future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveWidgetManagerAdapterTest {
+
+    private WidgetManager widgetManager;
+    private Scheduler mutationScheduler;
+    private Scheduler readScheduler;
+    private ReactiveWidgetManagerAdapter reactiveWidgetManager;
+
+    @BeforeEach
+    void createWidgetManager() {
+        widgetManager = new BlockingWidgetManager();
+        mutationScheduler = Schedulers.newSingle("widget-mutation");
+        readScheduler = Schedulers.newSingle("widget-read");
+        reactiveWidgetManager = new ReactiveWidgetManagerAdapter(widgetManager, mutationScheduler, readScheduler);
+    }
+
+    @AfterEach
+    void disposeScheduler() {
+        mutationScheduler.dispose();
+        readScheduler.dispose();
+    }
+
+    @Test
+    @DisplayName("mutations are applied on the mutation scheduler")
+    void mutationsOnScheduler() throws WidgetManagerException {
+        final AtomicReference<String> thread = new AtomicReference<>();
+        final Widget created = reactiveWidgetManager.create(new NewWidgetSpec(0L, 0L, 1D, 1D, 0))
+            .doOnNext(widget -> thread.set(Thread.currentThread().getName()))
+            .block();
+
+        assertTrue(thread.get().startsWith("widget-mutation"));
+        assertEquals(created, widgetManager.get(created.getUUID()));
+    }
+
+    @Test
+    @DisplayName("reads are run on the read scheduler")
+    void readsOnScheduler() throws WidgetManagerException {
+        final Widget created = widgetManager.create(new NewWidgetSpec(0L, 0L, 1D, 1D, 0));
+        final AtomicReference<String> thread = new AtomicReference<>();
+        reactiveWidgetManager.getAllAt(0L, 0L, 1)
+            .doOnNext(widgets -> thread.set(Thread.currentThread().getName()))
+            .block();
+        assertTrue(thread.get().startsWith("widget-read"));
+
+        thread.set(null);
+        assertEquals(created, reactiveWidgetManager.streamAllByZIndex(3)
+            .doOnNext(widget -> thread.set(Thread.currentThread().getName()))
+            .blockFirst());
+        assertTrue(thread.get().startsWith("widget-read"));
+    }
+
+    @Test
+    @DisplayName("nothing is applied until subscribed to")
+    void lazy() throws WidgetManagerException {
+        final Mono<Widget> creation = reactiveWidgetManager.create(new NewWidgetSpec(0L, 0L, 1D, 1D, 0));
+        assertTrue(widgetManager.isEmpty());
+
+        creation.block();
+        assertEquals(1, widgetManager.size());
+    }
+
+    @Test
+    @DisplayName("errors are signalled as thrown")
+    void errors() throws WidgetManagerException {
+        final Widget created = widgetManager.create(new NewWidgetSpec(0L, 0L, 1D, 1D, 0));
+
+        assertThrows(NoSuchElementException.class,
+            () -> reactiveWidgetManager.get(UUID.randomUUID()).block());
+        assertThrows(WidgetVersionConflictException.class,
+            () -> reactiveWidgetManager.update(new WidgetMutationSpec(created.getUUID(),
+                1L, null, null, null, null, created.getVersion() + 1)).block());
+        assertThrows(WidgetVersionConflictException.class,
+            () -> reactiveWidgetManager.remove(created.getUUID(), created.getVersion() + 1).block());
+        assertEquals(created, widgetManager.get(created.getUUID()));
+    }
+
+    @Test
+    @DisplayName("streams every widget sorted by z-index across chunks")
+    void streamAll() throws WidgetManagerException {
+        for (int i = 0; i < 10; i++)
+            widgetManager.create(new NewWidgetSpec((long) i, 0L, 1D, 1D, 10 - i));
+        widgetManager.create(new NewWidgetSpec(0L, 0L, 1D, 1D, Integer.MAX_VALUE));
+        widgetManager.create(new NewWidgetSpec(0L, 0L, 1D, 1D, Integer.MIN_VALUE));
+
+        final List<Widget> streamed = reactiveWidgetManager.streamAllByZIndex(3).collectList().block();
+
+        assertEquals(widgetManager.getAllByZIndex(), streamed);
+    }
+
+    @Test
+    @DisplayName("streams nothing when there are no widgets")
+    void streamNone() {
+        assertTrue(reactiveWidgetManager.streamAllByZIndex(3).collectList().block().isEmpty());
+    }
+}
@@ -0,0 +1,160 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.WidgetOps;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SequencedWidgetManagerTest extends WidgetManagerContractTest<SequencedWidgetManager> {
+
+    @Override
+    protected SequencedWidgetManager newManager() {
+        return new SequencedWidgetManager(16);
+    }
+
+    @Nested
+    @DisplayName("when new")
+    class WhenNew {
+
+        @Test
+        @DisplayName("concurrent creates w/ same z-index never overlap")
+        void concurrentCreatesNeverOverlap() throws Exception {
+            final int nThreads = 8;
+            final int nWidgetsPerThread = 200;
+            final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < nThreads; i++)
+                    futures.add(executor.submit(() -> {
+                        for (int j = 0; j < nWidgetsPerThread; j++)
+                            widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+                        return null;
+                    }));
+                for (Future<?> future : futures) future.get();
+            } finally {
+                executor.shutdown();
+            }
+
+            final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+            final Set<Integer> zIndexes = new HashSet<>();
+            allWidgets.forEach(w -> zIndexes.add(w.getZIndex()));
+            assertEquals(nThreads * nWidgetsPerThread, widgetManager.size());
+            assertEquals(widgetManager.size(), zIndexes.size());
+        }
+
+        @Test
+        @DisplayName("mutations fail once closed")
+        void closedThrowsException() {
+            widgetManager.close();
+            assertThrows(WidgetManagerException.class,
+                () -> widgetManager.create(new NewWidgetSpec(0, 0, 1, 1)));
+        }
+
+        @Nested
+        @DisplayName("after creating two widgets")
+        class AfterCreatingTwoWidgets {
+
+            final NewWidgetSpec widgetSpecZIndex1 = new NewWidgetSpec(0, 1, 2, 3, -1);
+            final NewWidgetSpec widgetSpecZIndex2 = new NewWidgetSpec(0, 0, 0, 0, 0);
+            Widget createdWidgetZIndex1;
+            Widget createdWidgetZIndex2;
+
+            @BeforeEach
+            void createTwoWidgets() throws WidgetManagerException {
+                createdWidgetZIndex1 = widgetManager.create(widgetSpecZIndex1);
+                createdWidgetZIndex2 = widgetManager.create(widgetSpecZIndex2);
+            }
+
+            @Test
+            @DisplayName("get returns the widget created")
+            void getCreatedWidget() throws WidgetManagerException {
+                assertEquals(createdWidgetZIndex1, widgetManager.get(createdWidgetZIndex1.getUUID()));
+            }
+
+            @Test
+            @DisplayName("create new w/o z-index appears on top")
+            void createEmptyZIndexOnTop() throws WidgetManagerException {
+                final Widget createdWidgetNoZIndex = widgetManager.create(new NewWidgetSpec(0, 1, 2, 3));
+                final List<Widget> allWidgets =
+                    Arrays.asList(createdWidgetZIndex1, createdWidgetZIndex2, createdWidgetNoZIndex);
+
+                assertEquals(allWidgets, widgetManager.getAllByZIndex());
+            }
+
+            @Test
+            @DisplayName("create new w/ existing z-index shifts up")
+            void createWithZIndexShifts() throws WidgetManagerException {
+                final Widget createdWidgetExistingZIndex =
+                    widgetManager.create(new NewWidgetSpec(0, 1, 2, 3, -1));
+                final List<Widget> allWidgets =
+                    Arrays.asList(createdWidgetExistingZIndex, createdWidgetZIndex1, createdWidgetZIndex2);
+
+                assertEquals(allWidgets, widgetManager.getAllByZIndex());
+                assertEquals(-1, createdWidgetExistingZIndex.getZIndex());
+                assertEquals(0, createdWidgetZIndex1.getZIndex());
+                assertEquals(1, createdWidgetZIndex2.getZIndex());
+            }
+
+            @Test
+            @DisplayName("update returns the updated widget")
+            void updatedWidget() throws WidgetManagerException {
+                final WidgetMutationSpec mutationSpec =
+                    new WidgetMutationSpec(createdWidgetZIndex1.getUUID(), 5L, 5L, 1D, 1D, null);
+                final Widget updatedWidget = WidgetOps.update(createdWidgetZIndex1, mutationSpec);
+                assertEquals(updatedWidget, widgetManager.update(mutationSpec));
+            }
+
+            @Test
+            @DisplayName("update z-index top-to-bottom overlapping z-index")
+            void updateZIndexTopToBottomOverlap() throws WidgetManagerException {
+                final WidgetMutationSpec mutateWidget2OverlapWidget1 =
+                    new WidgetMutationSpec(createdWidgetZIndex2.getUUID(), null, null, null, null, -1);
+                final Widget mutatedWidget2 = widgetManager.update(mutateWidget2OverlapWidget1);
+                final List<Widget> allWidgets = Arrays.asList(mutatedWidget2, createdWidgetZIndex1);
+
+                assertEquals(allWidgets, widgetManager.getAllByZIndex());
+            }
+
+            @Test
+            @DisplayName("remove deletes the widget")
+            void removedWidget() throws WidgetManagerException {
+                assertEquals(createdWidgetZIndex1, widgetManager.remove(createdWidgetZIndex1.getUUID()));
+                assertEquals(1, widgetManager.size());
+            }
+
+            @Test
+            @DisplayName("apply atomic batch applies every operation in order")
+            void applyAtomicBatch() throws WidgetManagerException {
+                final List<BatchResult> results = widgetManager.applyBatch(Arrays.asList(
+                    BatchOperation.create(new NewWidgetSpec(0, 0, 1, 1, -1)),
+                    BatchOperation.update(new WidgetMutationSpec(
+                        createdWidgetZIndex1.getUUID(), 5L, null, null, null, null)),
+                    BatchOperation.delete(createdWidgetZIndex2.getUUID())), true);
+
+                assertTrue(results.stream().allMatch(BatchResult::isOk));
+                assertEquals(Arrays.asList(results.get(0).getWidget(), results.get(1).getWidget()),
+                    widgetManager.getAllByZIndex());
+                assertEquals(0, results.get(1).getWidget().getZIndex());
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotWidgetManagerTest extends WidgetManagerContractTest<SnapshotWidgetManager> {
+
+    @Override
+    protected SnapshotWidgetManager newManager() {
+        return new SnapshotWidgetManager();
+    }
+
+    @Nested
+    @DisplayName("snapshots of three back-to-back widgets")
+    class Snapshots {
+
+        @BeforeEach
+        void createWidgets() throws WidgetManagerException {
+            createThreeWidgets();
+        }
+
+        @Test
+        @DisplayName("previous snapshots are not affected by shifting")
+        void snapshotsAreImmutable() throws WidgetManagerException {
+            final List<Widget> before = widgetManager.getAllByZIndex();
+            final long versionBefore = widgetManager.getSnapshot().getVersion();
+            widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+
+            assertEquals(Arrays.asList(0, 1, 2), zIndexes(before));
+            assertEquals(Arrays.asList(widget0, widget1, widget2), before);
+            assertEquals(versionBefore + 1, widgetManager.getSnapshot().getVersion());
+        }
+
+        @Test
+        @DisplayName("apply atomic batch publishes all its operations at once")
+        void applyAtomicBatch() throws WidgetManagerException {
+            final SnapshotWidgetManager.Snapshot before = widgetManager.getSnapshot();
+            final List<BatchResult> results = widgetManager.applyBatch(Arrays.asList(
+                BatchOperation.create(new NewWidgetSpec(0, 0, 1, 1, 0)),
+                BatchOperation.update(new WidgetMutationSpec(widget0.getUUID(), 5L, null, null, null, null)),
+                BatchOperation.delete(widget2.getUUID())), true);
+
+            assertTrue(results.stream().allMatch(BatchResult::isOk));
+            assertEquals(Arrays.asList(results.get(0).getWidget(), results.get(1).getWidget(),
+                widgetManager.get(widget1.getUUID())), widgetManager.getAllByZIndex());
+            assertEquals(Arrays.asList(0, 1, 2), zIndexes(widgetManager.getAllByZIndex()));
+            assertEquals(Arrays.asList(widget0, widget1, widget2), before.getAllByZIndex());
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.model.WidgetManager;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import com.marcos_sb.widgets.resource.WidgetMutationSpec;
+import com.marcos_sb.widgets.util.WidgetOps;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The behaviour specified by the {@link WidgetManager} interface, checked on every
+ * implementation whose test extends this class. Before every test, nested ones
+ * included, {@code widgetManager} is set to a new instance, which is closed after the
+ * test if it's {@link AutoCloseable}.
+ */
+abstract class WidgetManagerContractTest<M extends WidgetManager> {
+
+    protected M widgetManager;
+    protected Widget widget0;
+    protected Widget widget1;
+    protected Widget widget2;
+
+    final WidgetMutationSpec nullMutation =
+        new WidgetMutationSpec(UUID.randomUUID(), null, null, null, null, null);
+
+    protected abstract M newManager();
+
+    protected static List<Integer> zIndexes(List<Widget> widgets) {
+        return widgets.stream().map(Widget::getZIndex).collect(Collectors.toList());
+    }
+
+    protected static List<UUID> uuids(List<Widget> widgets) {
+        return widgets.stream().map(Widget::getUUID).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    void createNewWidgetManager() {
+        widgetManager = newManager();
+    }
+
+    @AfterEach
+    void closeWidgetManager() throws Exception {
+        if (widgetManager instanceof AutoCloseable)
+            ((AutoCloseable) widgetManager).close();
+    }
+
+    @Test
+    @DisplayName("is empty when new")
+    void isEmpty() throws WidgetManagerException {
+        assertTrue(widgetManager.isEmpty());
+        assertEquals(0, widgetManager.size());
+        assertTrue(widgetManager.getAllByZIndex().isEmpty());
+    }
+
+    @Test
+    @DisplayName("get any uuid throws exception when new")
+    void getThrowsException() {
+        assertThrows(NoSuchElementException.class, () -> widgetManager.get(nullMutation.getUUID()));
+    }
+
+    @Test
+    @DisplayName("update any widget throws exception when new")
+    void updateThrowsException() {
+        assertThrows(NoSuchElementException.class, () -> widgetManager.update(nullMutation));
+    }
+
+    @Test
+    @DisplayName("remove any uuid throws exception when new")
+    void removeThrowsException() {
+        assertThrows(NoSuchElementException.class, () -> widgetManager.remove(nullMutation.getUUID()));
+    }
+
+    @Test
+    @DisplayName("version grows with every mutation")
+    void versionGrows() throws WidgetManagerException {
+        assertEquals(0, widgetManager.getVersion());
+        final Widget widget = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1));
+        assertEquals(1, widgetManager.getVersion());
+        widgetManager.update(new WidgetMutationSpec(widget.getUUID(), 1L, null, null, null, null));
+        assertEquals(2, widgetManager.getVersion());
+        assertThrows(NoSuchElementException.class, () -> widgetManager.remove(UUID.randomUUID()));
+        widgetManager.remove(widget.getUUID());
+        assertEquals(3, widgetManager.getVersion());
+    }
+
+    @Test
+    @DisplayName("updates and removals expecting a stale version conflict")
+    void versionConflict() throws WidgetManagerException {
+        final Widget widget = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        assertEquals(Widget.initialVersion, widget.getVersion());
+        // Shifts don't change the version
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        assertEquals(Widget.initialVersion, widgetManager.get(widget.getUUID()).getVersion());
+
+        final Widget updated = widgetManager.update(
+            new WidgetMutationSpec(widget.getUUID(), 1L, null, null, null, null, Widget.initialVersion));
+        assertEquals(Widget.initialVersion + 1, updated.getVersion());
+        final WidgetVersionConflictException conflict = assertThrows(WidgetVersionConflictException.class,
+            () -> widgetManager.update(
+                new WidgetMutationSpec(widget.getUUID(), 2L, null, null, null, null, Widget.initialVersion)));
+        assertEquals(updated, conflict.getCurrent());
+        assertThrows(WidgetVersionConflictException.class,
+            () -> widgetManager.remove(widget.getUUID(), Widget.initialVersion));
+
+        assertEquals(updated, widgetManager.get(widget.getUUID()));
+        assertEquals(updated, widgetManager.remove(widget.getUUID(), updated.getVersion()));
+        assertEquals(1, widgetManager.size());
+    }
+
+    // Three back-to-back widgets, at z-indexes 0 to 2
+    protected void createThreeWidgets() throws WidgetManagerException {
+        widget0 = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        widget1 = widgetManager.create(new NewWidgetSpec(1, 1, 1, 1, 1));
+        widget2 = widgetManager.create(new NewWidgetSpec(2, 2, 1, 1, 2));
+    }
+
+    @Test
+    @DisplayName("get returns the widget created")
+    void getCreatedWidget() throws WidgetManagerException {
+        createThreeWidgets();
+        assertEquals(widget1, widgetManager.get(widget1.getUUID()));
+        assertEquals(3, widgetManager.size());
+    }
+
+    @Test
+    @DisplayName("create new w/o z-index appears on top")
+    void createEmptyZIndexOnTop() throws WidgetManagerException {
+        createThreeWidgets();
+        final Widget created = widgetManager.create(new NewWidgetSpec(0, 1, 2, 3));
+        assertEquals(12, created.getZIndex());
+        assertEquals(Arrays.asList(widget0, widget1, widget2, created), widgetManager.getAllByZIndex());
+    }
+
+    @Test
+    @DisplayName("get range by z-index is bounded and limited")
+    void getRangeByZIndex() throws WidgetManagerException {
+        createThreeWidgets();
+        assertEquals(Arrays.asList(widget1, widget2), widgetManager.getRangeByZIndex(1, 5, 10));
+        assertEquals(Arrays.asList(widget0, widget1), widgetManager.getRangeByZIndex(-5, 5, 2));
+        assertTrue(widgetManager.getRangeByZIndex(3, 5, 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("create new w/ existing z-index shifts all back-to-back widgets up")
+    void createWithZIndexShifts() throws WidgetManagerException {
+        createThreeWidgets();
+        final Widget created = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 1));
+        final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), zIndexes(allWidgets));
+        assertEquals(Arrays.asList(widget0.getUUID(), created.getUUID(),
+            widget1.getUUID(), widget2.getUUID()), uuids(allWidgets));
+        assertEquals(3, widgetManager.get(widget2.getUUID()).getZIndex());
+    }
+
+    @Test
+    @DisplayName("create new w/ existing z-index and invalid geometry shifts nothing")
+    void createInvalidWithZIndex() throws WidgetManagerException {
+        createThreeWidgets();
+        final long version = widgetManager.getVersion();
+        assertThrows(Exception.class, () -> widgetManager.create(new NewWidgetSpec(0, 0, -1, 1, 1)));
+
+        assertEquals(Arrays.asList(widget0, widget1, widget2), widgetManager.getAllByZIndex());
+        assertEquals(1, widgetManager.get(widget1.getUUID()).getZIndex());
+        assertEquals(version, widgetManager.getVersion());
+    }
+
+    @Test
+    @DisplayName("update z-index top-to-bottom overlapping z-index")
+    void updateZIndexTopToBottomOverlap() throws WidgetManagerException {
+        createThreeWidgets();
+        final WidgetMutationSpec mutation =
+            new WidgetMutationSpec(widget2.getUUID(), null, null, null, null, 0);
+        final Widget mutated = widgetManager.update(mutation);
+        final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+
+        assertEquals(WidgetOps.update(widget2, mutation), mutated);
+        assertEquals(Arrays.asList(0, 1, 2), zIndexes(allWidgets));
+        assertEquals(Arrays.asList(widget2.getUUID(), widget0.getUUID(), widget1.getUUID()),
+            uuids(allWidgets));
+    }
+
+    @Test
+    @DisplayName("update geometry keeps z-index")
+    void updateGeometry() throws WidgetManagerException {
+        createThreeWidgets();
+        final WidgetMutationSpec mutation =
+            new WidgetMutationSpec(widget1.getUUID(), 9L, 9L, 9D, 9D, null);
+        final Widget mutated = widgetManager.update(mutation);
+
+        assertEquals(1, mutated.getZIndex());
+        assertEquals(Arrays.asList(widget0, mutated, widget2), widgetManager.getAllByZIndex());
+    }
+
+    @Test
+    @DisplayName("remove deletes the widget")
+    void removedWidget() throws WidgetManagerException {
+        createThreeWidgets();
+        assertEquals(widget1, widgetManager.remove(widget1.getUUID()));
+        assertEquals(Arrays.asList(widget0, widget2), widgetManager.getAllByZIndex());
+    }
+
+    @Test
+    @DisplayName("apply batch sees the effects of previous operations")
+    void applyBatch() throws WidgetManagerException {
+        createThreeWidgets();
+        final List<BatchResult> results = widgetManager.applyBatch(Arrays.asList(
+            BatchOperation.create(new NewWidgetSpec(0, 0, 1, 1, 0)),
+            BatchOperation.delete(widget2.getUUID()),
+            BatchOperation.update(new WidgetMutationSpec(widget0.getUUID(), 5L, null, null, null, null))),
+            true);
+        final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+
+        assertTrue(results.stream().allMatch(BatchResult::isOk));
+        assertEquals(Arrays.asList(0, 1, 2), zIndexes(allWidgets));
+        assertEquals(Arrays.asList(results.get(0).getWidget().getUUID(), widget0.getUUID(),
+            widget1.getUUID()), uuids(allWidgets));
+        assertEquals(5, widgetManager.get(widget0.getUUID()).getX());
+    }
+
+    @Test
+    @DisplayName("apply atomic batch w/ an invalid operation applies none")
+    void applyInvalidAtomicBatch() throws WidgetManagerException {
+        createThreeWidgets();
+        final List<Widget> before = widgetManager.getAllByZIndex();
+        final List<BatchResult> results = widgetManager.applyBatch(Arrays.asList(
+            BatchOperation.create(new NewWidgetSpec(0, 0, 1, 1, 0)),
+            BatchOperation.delete(widget1.getUUID()),
+            BatchOperation.delete(widget1.getUUID())), true);
+
+        assertEquals(Arrays.asList(BatchResult.Status.ABORTED, BatchResult.Status.ABORTED,
+            BatchResult.Status.NOT_FOUND),
+            results.stream().map(BatchResult::getStatus).collect(Collectors.toList()));
+        assertEquals(before, widgetManager.getAllByZIndex());
+    }
+}
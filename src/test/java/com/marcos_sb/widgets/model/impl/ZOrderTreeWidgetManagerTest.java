@@ -0,0 +1,67 @@
+package com.marcos_sb.widgets.model.impl;
+
+import com.marcos_sb.widgets.exception.WidgetManagerException;
+import com.marcos_sb.widgets.resource.NewWidgetSpec;
+import com.marcos_sb.widgets.resource.Widget;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ZOrderTreeWidgetManagerTest extends WidgetManagerContractTest<ZOrderTreeWidgetManager> {
+
+    @Override
+    protected ZOrderTreeWidgetManager newManager() {
+        return new ZOrderTreeWidgetManager();
+    }
+
+    @Test
+    @DisplayName("opening a gap only shrinks the first gap above the run of widgets")
+    void gapsShrink() throws WidgetManagerException {
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 1));
+        final Widget above = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 4));
+
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        assertEquals(Arrays.asList(0, 1, 2, 4), zIndexes(widgetManager.getAllByZIndex()));
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), zIndexes(widgetManager.getAllByZIndex()));
+        // No gap is left, so the widget above is shifted too
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), zIndexes(widgetManager.getAllByZIndex()));
+        assertEquals(5, widgetManager.get(above.getUUID()).getZIndex());
+    }
+
+    @Test
+    @DisplayName("a long run of back-to-back widgets is shifted as a whole")
+    void longRunShifted() throws WidgetManagerException {
+        final int nWidgets = 10_000;
+        final List<Widget> run = new ArrayList<>();
+        for (int i = 0; i < nWidgets; i++)
+            run.add(widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, i)));
+
+        final Widget bottom = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        final List<Widget> allWidgets = widgetManager.getAllByZIndex();
+
+        assertEquals(IntStream.rangeClosed(0, nWidgets).boxed().collect(Collectors.toList()),
+            zIndexes(allWidgets));
+        assertEquals(bottom.getUUID(), allWidgets.get(0).getUUID());
+        assertEquals(uuids(run), uuids(allWidgets.subList(1, allWidgets.size())));
+    }
+
+    @Test
+    @DisplayName("shifted widgets keep their last-modified instant")
+    void shiftedKeepLastModified() throws WidgetManagerException {
+        final Widget widget = widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+        widgetManager.create(new NewWidgetSpec(0, 0, 1, 1, 0));
+
+        final Widget shifted = widgetManager.get(widget.getUUID());
+        assertEquals(1, shifted.getZIndex());
+        assertEquals(widget.getLastModified(), shifted.getLastModified());
+    }
+}
@@ -0,0 +1,100 @@
+package com.marcos_sb.widgets.persistence;
+
+import com.marcos_sb.widgets.resource.Widget;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    final Widget widget0 = new Widget(UUID.randomUUID(), 1, 2, 3, 4, 0);
+    final Widget widget1 = new Widget(UUID.randomUUID(), -1, -2, 0.5, 0, Instant.now(), 1, 5);
+
+    @Test
+    @DisplayName("read returns all widgets written")
+    void roundTrip() throws IOException {
+        assertEquals(2, SnapshotFile.write(directory, 7, Arrays.asList(widget0, widget1)));
+        assertEquals(Arrays.asList(7L), SnapshotFile.snapshots(directory));
+
+        final List<Widget> widgets = new ArrayList<>();
+        assertEquals(2, SnapshotFile.read(SnapshotFile.snapshotPath(directory, 7), widgets::add));
+        assertEquals(Arrays.asList(widget0, widget1), widgets);
+        assertEquals(widget1.getLastModified(), widgets.get(1).getLastModified());
+        assertEquals(widget1.getZIndex(), widgets.get(1).getZIndex());
+        assertEquals(widget1.getVersion(), widgets.get(1).getVersion());
+    }
+
+    @Test
+    @DisplayName("snapshots written before widgets had a version can be read")
+    void unversioned() throws IOException {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocate(16 + 2 * WidgetCodec.size + 12);
+        buffer.putInt(0x57534E50).putInt(1).putLong(0);
+        for (Widget widget : Arrays.asList(widget0, widget1)) {
+            final int start = buffer.position();
+            WidgetCodec.encode(buffer, widget);
+            buffer.position(start + WidgetCodec.unversionedSize);
+            crc.update(buffer.array(), start, WidgetCodec.unversionedSize);
+        }
+        buffer.putLong(2).putInt((int) crc.getValue()).flip();
+        final Path path = SnapshotFile.snapshotPath(directory, 0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(buffer);
+        }
+
+        final List<Widget> widgets = new ArrayList<>();
+        assertEquals(2, SnapshotFile.read(path, widgets::add));
+        assertEquals(Arrays.asList(widget0, widget1), widgets);
+        assertEquals(Widget.initialVersion, widgets.get(1).getVersion());
+    }
+
+    @Test
+    @DisplayName("an empty snapshot can be read")
+    void empty() throws IOException {
+        SnapshotFile.write(directory, 0, Collections.emptyList());
+        assertEquals(0, SnapshotFile.read(SnapshotFile.snapshotPath(directory, 0), widget -> {}));
+    }
+
+    @Test
+    @DisplayName("read fails on a corrupted snapshot")
+    void corrupted() throws IOException {
+        SnapshotFile.write(directory, 0, Arrays.asList(widget0, widget1));
+        final Path path = SnapshotFile.snapshotPath(directory, 0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), 20);
+        }
+        assertThrows(IOException.class, () -> SnapshotFile.read(path, widget -> {}));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertThrows(IOException.class, () -> SnapshotFile.read(path, widget -> {}));
+    }
+
+    @Test
+    @DisplayName("deleteSnapshotsBefore keeps the newer snapshots")
+    void deleteSnapshotsBefore() throws IOException {
+        for (long segment = 0; segment < 3; segment++)
+            SnapshotFile.write(directory, segment, Collections.singletonList(widget0));
+        SnapshotFile.deleteSnapshotsBefore(directory, 2);
+        assertEquals(Arrays.asList(2L), SnapshotFile.snapshots(directory));
+    }
+}
@@ -0,0 +1,204 @@
+package com.marcos_sb.widgets.persistence;
+
+import com.marcos_sb.widgets.model.WidgetChangeListener.ChangeType;
+import com.marcos_sb.widgets.resource.Widget;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    Path path;
+    final Widget widget0 = new Widget(UUID.randomUUID(), 1, 2, 3, 4, 0);
+    final Widget widget1 = new Widget(UUID.randomUUID(), -1, -2, 0.5, 0, Instant.now(), 1, 5);
+
+    @BeforeEach
+    void writeLog() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.GROUP, 10, (t, w) -> {})) {
+            path = WriteAheadLog.segmentPath(directory, log.getSegment());
+            log.onChange(ChangeType.CREATE, widget0);
+            log.onChange(ChangeType.CREATE, widget1);
+            log.onChange(ChangeType.REMOVE, widget0);
+            log.awaitDurable(log.getAppendedSequence());
+            assertEquals(3, log.getDurableSequence());
+        }
+    }
+
+    @Test
+    @DisplayName("replay returns all records in order")
+    void replay() throws IOException {
+        final List<ChangeType> types = new ArrayList<>();
+        final List<Widget> widgets = new ArrayList<>();
+        WriteAheadLog.replay(path, (type, widget) -> { types.add(type); widgets.add(widget); });
+
+        assertEquals(Arrays.asList(ChangeType.CREATE, ChangeType.CREATE, ChangeType.REMOVE), types);
+        assertEquals(widget0, widgets.get(0));
+        assertEquals(widget1, widgets.get(1));
+        assertEquals(widget1.getLastModified(), widgets.get(1).getLastModified());
+        assertEquals(widget1.getVersion(), widgets.get(1).getVersion());
+        assertEquals(widget0.getUUID(), widgets.get(2).getUUID());
+    }
+
+    @Test
+    @DisplayName("shifts are flushed along with the change that caused them, and replayed with it")
+    void shiftsCompleteMutation() throws IOException {
+        final Path nextPath;
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.SYNC, 10, (t, w) -> {})) {
+            nextPath = WriteAheadLog.segmentPath(directory, log.getSegment());
+            log.onChange(ChangeType.SHIFT, widget0);
+            log.awaitDurable(log.getAppendedSequence());
+            assertEquals(0, Files.size(nextPath));
+            log.onChange(ChangeType.SHIFT, widget1);
+            log.onChange(ChangeType.CREATE, widget1);
+            assertEquals(1, log.getAppendedSequence());
+            log.awaitDurable(log.getAppendedSequence());
+            assertEquals(8 + 3 * 73, Files.size(nextPath));
+        }
+
+        final List<ChangeType> types = new ArrayList<>();
+        final List<Widget> widgets = new ArrayList<>();
+        WriteAheadLog.replay(nextPath, (type, widget) -> { types.add(type); widgets.add(widget); });
+        assertEquals(Arrays.asList(ChangeType.SHIFT, ChangeType.SHIFT, ChangeType.CREATE), types);
+        assertEquals(Arrays.asList(widget0, widget1, widget1), widgets);
+    }
+
+    @Test
+    @DisplayName("shifts whose mutation wasn't completed are never written")
+    void incompleteMutation() throws IOException {
+        final Path nextPath;
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.PERIODIC, 1, (t, w) -> {})) {
+            nextPath = WriteAheadLog.segmentPath(directory, log.getSegment());
+            log.onChange(ChangeType.CREATE, widget1);
+            log.onChange(ChangeType.SHIFT, widget1);
+        }
+
+        final List<ChangeType> types = new ArrayList<>();
+        WriteAheadLog.replay(nextPath, (type, widget) -> types.add(type));
+        assertEquals(Arrays.asList(ChangeType.CREATE), types);
+        assertEquals(8 + 73, Files.size(nextPath));
+    }
+
+    @Test
+    @DisplayName("force makes all records durable, even in periodic mode")
+    void force() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.PERIODIC, 3_600_000, (t, w) -> {})) {
+            log.onChange(ChangeType.UPDATE, widget1);
+            log.awaitDurable(log.getAppendedSequence());
+            assertEquals(0, log.getDurableSequence());
+            log.force();
+            assertEquals(1, log.getDurableSequence());
+            assertEquals(8 + 73, Files.size(WriteAheadLog.segmentPath(directory, log.getSegment())));
+        }
+    }
+
+    @Test
+    @DisplayName("replay reads records written before widgets had a version")
+    void unversionedRecord() throws IOException {
+        final ByteBuffer payload = ByteBuffer.allocate(1 + WidgetCodec.size);
+        payload.put((byte) ChangeType.UPDATE.ordinal());
+        WidgetCodec.encode(payload, widget1);
+        payload.flip().limit(1 + WidgetCodec.unversionedSize);
+        final CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        final ByteBuffer record = ByteBuffer.allocate(8 + payload.remaining());
+        record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload).flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(record);
+        }
+
+        final List<Widget> widgets = new ArrayList<>();
+        WriteAheadLog.replay(path, (type, widget) -> widgets.add(widget));
+        assertEquals(4, widgets.size());
+        assertEquals(widget1, widgets.get(3));
+        assertEquals(Widget.initialVersion, widgets.get(3).getVersion());
+    }
+
+    @Test
+    @DisplayName("open truncates a torn record and appends to a new segment")
+    void tornRecord() throws IOException {
+        final long validLength = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 17, 1, 2}));
+        }
+
+        final List<ChangeType> types = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.SYNC, 10, (t, w) -> types.add(t))) {
+            assertEquals(1, log.getSegment());
+            assertEquals(validLength, Files.size(path));
+            log.onChange(ChangeType.UPDATE, widget1);
+            log.awaitDurable(log.getAppendedSequence());
+        }
+
+        types.clear();
+        WriteAheadLog.open(directory, 0, DurabilityMode.SYNC, 10, (type, widget) -> types.add(type)).close();
+        assertEquals(Arrays.asList(ChangeType.CREATE, ChangeType.CREATE, ChangeType.REMOVE, ChangeType.UPDATE),
+            types);
+    }
+
+    @Test
+    @DisplayName("roll starts a new segment, and open replays from the one requested")
+    void roll() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.GROUP, 10, (t, w) -> {})) {
+            log.onChange(ChangeType.UPDATE, widget1);
+            assertEquals(2, log.roll());
+            assertEquals(1, log.getDurableSequence());
+            log.onChange(ChangeType.REMOVE, widget1);
+            log.deleteSegmentsBefore(2);
+        }
+        assertEquals(Arrays.asList(2L), WriteAheadLog.segments(directory));
+
+        final List<ChangeType> types = new ArrayList<>();
+        WriteAheadLog.open(directory, 3, DurabilityMode.GROUP, 10, (type, widget) -> types.add(type)).close();
+        assertTrue(types.isEmpty());
+        WriteAheadLog.open(directory, 0, DurabilityMode.GROUP, 10, (type, widget) -> types.add(type)).close();
+        assertEquals(Arrays.asList(ChangeType.REMOVE), types);
+    }
+
+    @Test
+    @DisplayName("open fails on a corrupted record in a segment other than the last one")
+    void corruptedEarlierSegment() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0, DurabilityMode.SYNC, 10, (t, w) -> {})) {
+            log.onChange(ChangeType.UPDATE, widget1);
+            log.awaitDurable(log.getAppendedSequence());
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), 2 * (8 + 73) - 1);
+        }
+
+        assertThrows(IOException.class,
+            () -> WriteAheadLog.open(directory, 0, DurabilityMode.SYNC, 10, (type, widget) -> {}));
+    }
+
+    @Test
+    @DisplayName("replay stops at a corrupted record")
+    void corruptedRecord() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            // Flips a byte in the payload of the second record
+            channel.write(ByteBuffer.wrap(new byte[] {42}), 2 * (8 + 73) - 1);
+        }
+
+        final List<ChangeType> types = new ArrayList<>();
+        assertEquals(8 + 73, WriteAheadLog.replay(path, (type, widget) -> types.add(type)));
+        assertEquals(Arrays.asList(ChangeType.CREATE), types);
+    }
+}
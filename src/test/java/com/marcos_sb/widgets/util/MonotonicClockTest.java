@@ -0,0 +1,35 @@
+package com.marcos_sb.widgets.util;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonotonicClockTest {
+
+    @Test
+    @DisplayName("never goes back")
+    void neverGoesBack() {
+        long previous = MonotonicClock.epochNanos();
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+        while (System.nanoTime() < end) {
+            final long now = MonotonicClock.epochNanos();
+            assertTrue(now >= previous);
+            previous = now;
+        }
+    }
+
+    @Test
+    @DisplayName("follows the wall clock")
+    void followsWallClock() {
+        final Instant before = Instant.now();
+        final long now = MonotonicClock.epochNanos();
+        final Instant after = Instant.now();
+        final long slack = TimeUnit.MILLISECONDS.toNanos(100);
+
+        assertTrue(now >= before.getEpochSecond() * 1_000_000_000L + before.getNano() - slack);
+        assertTrue(now <= after.getEpochSecond() * 1_000_000_000L + after.getNano() + slack);
+    }
+}
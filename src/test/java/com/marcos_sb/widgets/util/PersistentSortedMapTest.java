@@ -0,0 +1,84 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersistentSortedMapTest {
+
+    @Test
+    @DisplayName("put leaves previous version untouched")
+    void putIsPersistent() {
+        final PersistentSortedMap<Integer, String> v0 = PersistentSortedMap.empty();
+        final PersistentSortedMap<Integer, String> v1 = v0.put(1, "a");
+        final PersistentSortedMap<Integer, String> v2 = v1.put(2, "b").put(1, "c");
+
+        assertTrue(v0.isEmpty());
+        assertEquals(Collections.singletonList("a"), v1.values());
+        assertEquals(Arrays.asList("c", "b"), v2.values());
+    }
+
+    @Test
+    @DisplayName("remove of an absent key returns the same map")
+    void removeAbsent() {
+        final PersistentSortedMap<Integer, String> map = PersistentSortedMap.<Integer, String>empty().put(1, "a");
+        assertSame(map, map.remove(2));
+    }
+
+    @Test
+    @DisplayName("navigation methods")
+    void navigation() {
+        PersistentSortedMap<Integer, Integer> map = PersistentSortedMap.empty();
+        for (int k : new int[] {10, 20, 30}) map = map.put(k, k);
+
+        assertEquals(20, map.floor(25));
+        assertEquals(20, map.floor(20));
+        assertNull(map.floor(5));
+        assertEquals(30, map.higher(20));
+        assertNull(map.higher(30));
+        assertEquals(10, map.first());
+        assertEquals(30, map.last());
+
+        final List<Integer> from20 = new ArrayList<>();
+        map.valuesFrom(20, false).forEachRemaining(from20::add);
+        assertEquals(Collections.singletonList(30), from20);
+    }
+
+    @Test
+    @DisplayName("behaves like a TreeMap under random operations")
+    void randomOperations() {
+        final Random random = new Random(42);
+        final TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentSortedMap<Integer, Integer> actual = PersistentSortedMap.empty();
+
+        for (int i = 0; i < 10_000; i++) {
+            final int key = random.nextInt(1_000);
+            if (random.nextBoolean()) {
+                expected.put(key, i);
+                actual = actual.put(key, i);
+            } else {
+                expected.remove(key);
+                actual = actual.remove(key);
+            }
+        }
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new ArrayList<>(expected.values()), actual.values());
+        final Iterator<Integer> it = actual.valuesFrom(500, true);
+        for (Integer value : expected.tailMap(500, true).values())
+            assertEquals(value, it.next());
+        for (int i = 0; i < actual.size(); i += 97)
+            assertEquals(new ArrayList<>(expected.values()).get(i), actual.getAt(i));
+    }
+}
@@ -0,0 +1,140 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RTreeTest {
+
+    private static final class Box {
+        final double minX, minY, maxX, maxY;
+
+        Box(double minX, double minY, double maxX, double maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        boolean intersects(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && minX <= this.maxX && this.minY <= maxY && minY <= this.maxY;
+        }
+    }
+
+    private static Set<Box> search(RTree<Box> tree, double minX, double minY, double maxX, double maxY) {
+        final Set<Box> found = new HashSet<>();
+        tree.search(minX, minY, maxX, maxY, found::add);
+        return found;
+    }
+
+    @Test
+    @DisplayName("edges touching count as intersecting")
+    void closedRectangles() {
+        final RTree<Box> tree = new RTree<>();
+        final Box box = new Box(0, 0, 10, 10);
+        tree.insert(box.minX, box.minY, box.maxX, box.maxY, box);
+
+        assertTrue(search(tree, 10, 10, 20, 20).contains(box));
+        assertTrue(search(tree, -5, -5, 0, 0).contains(box));
+        assertTrue(search(tree, 11, 0, 20, 20).isEmpty());
+    }
+
+    @Test
+    @DisplayName("remove needs the exact rectangle and value")
+    void remove() {
+        final RTree<Box> tree = new RTree<>();
+        final Box box = new Box(0, 0, 10, 10);
+        tree.insert(box.minX, box.minY, box.maxX, box.maxY, box);
+
+        assertFalse(tree.remove(0, 0, 5, 5, box));
+        assertFalse(tree.remove(0, 0, 10, 10, new Box(0, 0, 10, 10)));
+        assertTrue(tree.remove(0, 0, 10, 10, box));
+        assertTrue(tree.isEmpty());
+    }
+
+    @Test
+    @DisplayName("invalid rectangle throws exception")
+    void invalidRectangle() {
+        assertThrows(IllegalArgumentException.class, () -> new RTree<Box>().insert(1, 0, 0, 1, null));
+    }
+
+    @Test
+    @DisplayName("matches a linear scan under random operations")
+    void randomOperations() {
+        final Random random = new Random(11);
+        final RTree<Box> tree = new RTree<>();
+        final List<Box> boxes = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            if (boxes.isEmpty() || random.nextInt(3) > 0) {
+                final double x = random.nextInt(1_000), y = random.nextInt(1_000);
+                final Box box = new Box(x, y, x + random.nextInt(50), y + random.nextInt(50));
+                boxes.add(box);
+                tree.insert(box.minX, box.minY, box.maxX, box.maxY, box);
+            } else {
+                final Box box = boxes.remove(random.nextInt(boxes.size()));
+                assertTrue(tree.remove(box.minX, box.minY, box.maxX, box.maxY, box));
+            }
+
+            if (i % 500 == 0) {
+                final double x = random.nextInt(1_000), y = random.nextInt(1_000);
+                final double w = random.nextInt(200), h = random.nextInt(200);
+                final Set<Box> expected = new HashSet<>();
+                for (Box box : boxes)
+                    if (box.intersects(x, y, x + w, y + h)) expected.add(box);
+                assertEquals(expected, search(tree, x, y, x + w, y + h));
+            }
+        }
+        assertEquals(boxes.size(), tree.size());
+        assertEquals(new HashSet<>(boxes), search(tree, -1, -1, 2_000, 2_000));
+    }
+
+    @Test
+    @DisplayName("a packed tree matches a linear scan, also after further operations")
+    void pack() {
+        final Random random = new Random(13);
+        final List<Box> boxes = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            final double x = random.nextInt(1_000), y = random.nextInt(1_000);
+            boxes.add(new Box(x, y, x + random.nextInt(50), y + random.nextInt(50)));
+        }
+        final RTree<Box> tree = RTree.pack(boxes, (box, rectangle) -> {
+            rectangle[0] = box.minX;
+            rectangle[1] = box.minY;
+            rectangle[2] = box.maxX;
+            rectangle[3] = box.maxY;
+        });
+        assertEquals(boxes.size(), tree.size());
+
+        for (int i = 0; i < 5_000; i++) {
+            if (random.nextBoolean()) {
+                final double x = random.nextInt(1_000), y = random.nextInt(1_000);
+                final Box box = new Box(x, y, x + random.nextInt(50), y + random.nextInt(50));
+                boxes.add(box);
+                tree.insert(box.minX, box.minY, box.maxX, box.maxY, box);
+            } else {
+                final Box box = boxes.remove(random.nextInt(boxes.size()));
+                assertTrue(tree.remove(box.minX, box.minY, box.maxX, box.maxY, box));
+            }
+
+            if (i % 500 == 0) {
+                final double x = random.nextInt(1_000), y = random.nextInt(1_000);
+                final Set<Box> expected = new HashSet<>();
+                for (Box box : boxes)
+                    if (box.intersects(x, y, x + 100, y + 100)) expected.add(box);
+                assertEquals(expected, search(tree, x, y, x + 100, y + 100));
+            }
+        }
+        assertEquals(boxes.size(), tree.size());
+        assertEquals(new HashSet<>(boxes), search(tree, -1, -1, 2_000, 2_000));
+    }
+}
@@ -0,0 +1,71 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedUUIDGeneratorTest {
+
+    private final TimeOrderedUUIDGenerator generator = new TimeOrderedUUIDGenerator();
+
+    @Test
+    @DisplayName("generates version 7 uuids stamped with the current time")
+    void version7() {
+        final long before = System.currentTimeMillis();
+        final UUID uuid = generator.next();
+        final long after = System.currentTimeMillis();
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        final long timestamp = uuid.getMostSignificantBits() >>> 16;
+        // More than 4096 uuids within a millisecond borrow from the next one
+        assertTrue(before <= timestamp && timestamp <= after + 1, Long.toString(timestamp));
+        assertEquals(uuid, UUID.fromString(uuid.toString()));
+    }
+
+    @Test
+    @DisplayName("generates ever greater uuids, faster than the clock ticks")
+    void increasing() {
+        UUID previous = generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            final UUID next = generator.next();
+            assertTrue(Long.compareUnsigned(previous.getMostSignificantBits(), next.getMostSignificantBits()) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    @DisplayName("never generates the same uuid twice across threads")
+    void uniqueAcrossThreads() throws Exception {
+        final int nThreads = 8;
+        final int nUUIDsPerThread = 50_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            final List<Future<List<UUID>>> futures = new ArrayList<>();
+            for (int i = 0; i < nThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    final List<UUID> uuids = new ArrayList<>(nUUIDsPerThread);
+                    for (int j = 0; j < nUUIDsPerThread; j++)
+                        uuids.add(generator.next());
+                    return uuids;
+                }));
+            }
+            final Set<Long> mostSigBits = new HashSet<>();
+            for (Future<List<UUID>> future : futures)
+                future.get().forEach(uuid -> mostSigBits.add(uuid.getMostSignificantBits()));
+            assertEquals(nThreads * nUUIDsPerThread, mostSigBits.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
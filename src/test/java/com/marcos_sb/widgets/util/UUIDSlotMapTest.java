@@ -0,0 +1,55 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UUIDSlotMapTest {
+
+    @Test
+    @DisplayName("put replaces and returns the previous slot")
+    void put() {
+        final UUIDSlotMap map = new UUIDSlotMap();
+        final UUID uuid = UUID.randomUUID();
+        assertEquals(UUIDSlotMap.absent, map.put(uuid, 3));
+        assertEquals(3, map.put(uuid, 4));
+        assertEquals(4, map.get(uuid));
+        assertEquals(1, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(uuid, -1));
+    }
+
+    @Test
+    @DisplayName("matches a HashMap under random operations, colliding sequential UUIDs included")
+    void randomOperations() {
+        final Random random = new Random(5);
+        final UUIDSlotMap map = new UUIDSlotMap(1);
+        final Map<UUID, Integer> expected = new HashMap<>();
+        final List<UUID> uuids = new ArrayList<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            if (uuids.isEmpty() || random.nextInt(3) > 0) {
+                final UUID uuid = random.nextBoolean() ? UUID.randomUUID() : new UUID(0, i);
+                uuids.add(uuid);
+                map.put(uuid, i);
+                expected.put(uuid, i);
+            } else {
+                final UUID uuid = uuids.remove(random.nextInt(uuids.size()));
+                assertEquals((int) expected.remove(uuid), map.remove(uuid));
+                assertEquals(UUIDSlotMap.absent, map.remove(uuid));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<UUID, Integer> entry : expected.entrySet())
+            assertEquals((int) entry.getValue(), map.get(entry.getKey()));
+        assertEquals(UUIDSlotMap.absent, map.get(UUID.randomUUID()));
+    }
+}
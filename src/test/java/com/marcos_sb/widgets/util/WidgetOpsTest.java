@@ -1,14 +1,21 @@
 package com.marcos_sb.widgets.util;
 
+import com.marcos_sb.widgets.exception.WidgetVersionConflictException;
+import com.marcos_sb.widgets.resource.BatchOperation;
+import com.marcos_sb.widgets.resource.BatchResult;
 import com.marcos_sb.widgets.resource.WidgetMutationSpec;
 import com.marcos_sb.widgets.resource.Widget;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class WidgetOpsTest {
 
@@ -68,4 +75,43 @@ class WidgetOpsTest {
 
         assertEquals(expectedWidget, actualWidget);
     }
+
+    @Test
+    @DisplayName("update applies zeros, and only the properties set")
+    void updateZeros() {
+        final WidgetMutationSpec mutation =
+            new WidgetMutationSpec(widget.getUUID(), 0L, null, 0D, null, 0);
+        final Widget expectedWidget =
+            new Widget(widget.getUUID(), 0L, widget.getY(), 0D, widget.getHeight(), 0);
+        final Widget actualWidget = WidgetOps.update(widget, mutation);
+
+        assertEquals(expectedWidget, actualWidget);
+        assertTrue(actualWidget.getLastModifiedEpochNanos() >= widget.getLastModifiedEpochNanos());
+    }
+
+    @Test
+    @DisplayName("update increments the version, unless it expects some other")
+    void updateVersion() {
+        final WidgetMutationSpec mutation =
+            new WidgetMutationSpec(widget.getUUID(), 5L, null, null, null, null, Widget.initialVersion);
+        final Widget updatedWidget = WidgetOps.update(widget, mutation);
+        assertEquals(Widget.initialVersion + 1, updatedWidget.getVersion());
+        assertThrows(WidgetVersionConflictException.class, () -> WidgetOps.update(updatedWidget, mutation));
+    }
+
+    @Test
+    @DisplayName("check batch follows the versions of earlier updates")
+    void checkBatchVersions() {
+        final WidgetMutationSpec first =
+            new WidgetMutationSpec(widget.getUUID(), 5L, null, null, null, null, Widget.initialVersion);
+        final WidgetMutationSpec second =
+            new WidgetMutationSpec(widget.getUUID(), 6L, null, null, null, null, Widget.initialVersion + 1);
+        assertNull(WidgetOps.checkBatch(
+            Arrays.asList(BatchOperation.update(first), BatchOperation.update(second)), uuid -> widget));
+
+        final List<BatchResult> results = WidgetOps.checkBatch(
+            Arrays.asList(BatchOperation.update(second), BatchOperation.update(first)), uuid -> widget);
+        assertEquals(BatchResult.Status.CONFLICT, results.get(0).getStatus());
+        assertEquals(widget, results.get(0).getWidget());
+    }
 }
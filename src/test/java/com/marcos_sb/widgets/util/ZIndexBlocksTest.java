@@ -0,0 +1,85 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ZIndexBlocksTest {
+
+    private static Map<Integer, Integer> contents(ZIndexBlocks blocks) {
+        final Map<Integer, Integer> contents = new TreeMap<>();
+        blocks.forEachFrom(Integer.MIN_VALUE, (zIndex, slot) -> contents.put(zIndex, slot) == null);
+        return contents;
+    }
+
+    @Test
+    @DisplayName("shift up increments back-to-back z-indexes only")
+    void shiftUp() {
+        final ZIndexBlocks blocks = new ZIndexBlocks();
+        blocks.put(1, 10);
+        blocks.put(2, 20);
+        blocks.put(3, 30);
+        blocks.put(5, 50);
+
+        final List<Integer> shifted = new ArrayList<>();
+        assertEquals(2, blocks.shiftUp(2, shifted::add));
+        assertEquals(0, blocks.shiftUp(2, shifted::add));
+
+        final Map<Integer, Integer> expected = new TreeMap<>();
+        expected.put(1, 10);
+        expected.put(3, 20);
+        expected.put(4, 30);
+        expected.put(5, 50);
+        assertEquals(expected, contents(blocks));
+        assertEquals(Arrays.asList(20, 30), shifted);
+        assertThrows(IllegalArgumentException.class, () -> blocks.put(4, 0));
+    }
+
+    @Test
+    @DisplayName("matches a TreeMap under random operations across many blocks")
+    void randomOperations() {
+        final Random random = new Random(7);
+        final ZIndexBlocks blocks = new ZIndexBlocks();
+        final NavigableMap<Integer, Integer> expected = new TreeMap<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            final int zIndex = random.nextInt(20_000) - 10_000;
+            final int operation = random.nextInt(4);
+            if (operation < 2) {
+                if (expected.containsKey(zIndex)) {
+                    // Same as inserting at a taken z-index
+                    final NavigableMap<Integer, Integer> shifted = new TreeMap<>();
+                    int z = zIndex;
+                    while (expected.containsKey(z)) shifted.put(z + 1, expected.remove(z++));
+                    expected.putAll(shifted);
+                    assertEquals(shifted.size(), blocks.shiftUp(zIndex, slot -> {}));
+                }
+                blocks.put(zIndex, i);
+                expected.put(zIndex, i);
+            } else if (operation == 2) {
+                final Integer slot = expected.remove(zIndex);
+                assertEquals(slot == null ? ZIndexBlocks.absent : slot, blocks.remove(zIndex));
+            } else {
+                final Integer slot = expected.get(zIndex);
+                assertEquals(slot == null ? ZIndexBlocks.absent : slot, blocks.get(zIndex));
+            }
+        }
+
+        assertEquals(expected, contents(blocks));
+        assertEquals(expected.size(), blocks.size());
+        assertEquals((int) expected.lastKey(), blocks.lastZIndex());
+
+        final List<Integer> descending = new ArrayList<>();
+        blocks.forEachDescending((zIndex, slot) -> descending.add(zIndex));
+        assertEquals(new ArrayList<>(expected.descendingKeySet()), descending);
+    }
+}
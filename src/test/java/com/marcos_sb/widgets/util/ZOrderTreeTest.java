@@ -0,0 +1,114 @@
+package com.marcos_sb.widgets.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ZOrderTreeTest {
+
+    private static Map<Long, String> contents(ZOrderTree<String> tree) {
+        final Map<Long, String> contents = new TreeMap<>();
+        tree.forEach((value, zIndex) -> contents.put(zIndex, value));
+        return contents;
+    }
+
+    @Test
+    @DisplayName("insert at a taken z-index shifts back-to-back values up")
+    void insertShifts() {
+        final ZOrderTree<String> tree = new ZOrderTree<>();
+        tree.insert(1, "a");
+        tree.insert(2, "b");
+        tree.insert(3, "c");
+        tree.insert(5, "d");
+        tree.insert(2, "e");
+
+        final Map<Long, String> expected = new TreeMap<>();
+        expected.put(1L, "a");
+        expected.put(2L, "e");
+        expected.put(3L, "b");
+        expected.put(4L, "c");
+        expected.put(5L, "d");
+        assertEquals(expected, contents(tree));
+
+        tree.insert(2, "f");
+        assertEquals(Arrays.asList("a", "f", "e", "b", "c", "d"), new ArrayList<>(contents(tree).values()));
+        assertEquals(6L, tree.zIndexOf(tree.find(6)));
+        assertEquals("d", tree.find(6).getValue());
+    }
+
+    @Test
+    @DisplayName("remove preserves other z-indexes")
+    void removePreserves() {
+        final ZOrderTree<String> tree = new ZOrderTree<>();
+        final ZOrderTree.Node<String> a = tree.insert(-10, "a");
+        tree.insert(0, "b");
+        final ZOrderTree.Node<String> c = tree.insert(7, "c");
+
+        tree.remove(a);
+        assertEquals(0L, tree.zIndexOf(tree.first()));
+        tree.remove(c);
+        assertEquals(0L, tree.zIndexOf(tree.last()));
+        assertNull(tree.find(7));
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    @DisplayName("cursor starts at the first z-index not below the bound")
+    void cursorFrom() {
+        final ZOrderTree<String> tree = new ZOrderTree<>();
+        tree.insert(0, "a");
+        tree.insert(10, "b");
+        tree.insert(20, "c");
+
+        final ZOrderTree.Cursor<String> cursor = tree.cursorFrom(5);
+        assertEquals(10L, cursor.peekZIndex());
+        assertEquals("b", cursor.next());
+        assertEquals("c", cursor.next());
+        assertEquals(20L, cursor.zIndex());
+    }
+
+    @Test
+    @DisplayName("behaves like shifting a sorted map under random operations")
+    void randomOperations() {
+        final Random random = new Random(7);
+        final TreeMap<Long, String> expected = new TreeMap<>();
+        final Map<String, ZOrderTree.Node<String>> nodes = new TreeMap<>();
+        final ZOrderTree<String> tree = new ZOrderTree<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                final long zIndex = random.nextInt(400) - 200;
+                final String value = "v" + i;
+                if (expected.containsKey(zIndex)) {
+                    long top = zIndex;
+                    while (expected.containsKey(top + 1)) top++;
+                    for (long z = top; z >= zIndex; z--)
+                        expected.put(z + 1, expected.remove(z));
+                }
+                expected.put(zIndex, value);
+                nodes.put(value, tree.insert(zIndex, value));
+            } else {
+                final List<Long> zIndexes = new ArrayList<>(expected.keySet());
+                final long zIndex = zIndexes.get(random.nextInt(zIndexes.size()));
+                final String value = expected.remove(zIndex);
+                final ZOrderTree.Node<String> node = nodes.remove(value);
+                assertEquals(zIndex, tree.zIndexOf(node));
+                tree.remove(node);
+            }
+        }
+
+        assertEquals(expected, contents(tree));
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), tree.find(entry.getKey()).getValue());
+            assertEquals(entry.getKey(), tree.zIndexOf(nodes.get(entry.getValue())));
+        }
+    }
+}